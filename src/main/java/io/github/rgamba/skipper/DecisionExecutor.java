@@ -2,10 +2,12 @@ package io.github.rgamba.skipper;
 
 import io.github.rgamba.skipper.api.DecisionRequest;
 import io.github.rgamba.skipper.api.DecisionResponse;
+import io.github.rgamba.skipper.api.annotations.ResumableWorkflow;
 import io.github.rgamba.skipper.common.Anything;
 import io.github.rgamba.skipper.models.WorkflowInstance;
+import io.github.rgamba.skipper.runtime.ContinueAsNew;
+import io.github.rgamba.skipper.runtime.DecisionThread;
 import io.github.rgamba.skipper.runtime.StopWorkflowExecution;
-import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -21,8 +23,10 @@ public class DecisionExecutor {
       @NonNull DecisionRequest decisionRequest, @NonNull DependencyRegistry registry) {
     DecisionResponse.DecisionResponseBuilder builder =
         DecisionResponse.builder().operationRequests(new ArrayList<>());
+    // Must be taken before the workflow runs, as it may mutate its state in place.
+    val initialState = StateFingerprint.of(decisionRequest.getWorkflowInstance().getState());
     try {
-      builder = executeInternal(decisionRequest, registry);
+      builder = executeInternal(decisionRequest, registry, initialState);
       builder.newStatus(WorkflowInstance.Status.COMPLETED);
     } catch (StopWorkflowExecution e) {
       // We need to override some fields passed by the handler
@@ -38,6 +42,23 @@ public class DecisionExecutor {
       builder.waitForDuration(e.getWaitForDuration());
       builder.newStatus(WorkflowInstance.Status.ACTIVE);
       builder.newState(e.getNewState());
+      if (e.getNewState() != null) {
+        builder.changedStateFields(initialState.getChangedFields(e.getNewState()));
+      }
+      val replayTracker = DecisionThread.getReplayTracker();
+      if (replayTracker.isPresent()) {
+        builder.replayCheckpoint(
+            replayTracker
+                .get()
+                .toCheckpoint(DecisionThread.getLatestCurrentExecutionCheckpoint().orElse(null)));
+      }
+    } catch (ContinueAsNew e) {
+      builder.continueAsNewArgs(e.getArgs());
+      builder.newStatus(WorkflowInstance.Status.ACTIVE);
+      builder.newState(e.getNewState());
+      if (e.getNewState() != null) {
+        builder.changedStateFields(initialState.getChangedFields(e.getNewState()));
+      }
     } catch (Exception e) {
       builder.newStatus(WorkflowInstance.Status.ERROR);
       String reason = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
@@ -47,37 +68,43 @@ public class DecisionExecutor {
     return builder.inlineExecutions(new ArrayList<>()).build();
   }
 
-  @SneakyThrows
   public DecisionResponse.DecisionResponseBuilder executeInternal(
       @NonNull DecisionRequest decisionRequest, @NonNull DependencyRegistry registry) {
+    return executeInternal(
+        decisionRequest,
+        registry,
+        StateFingerprint.of(decisionRequest.getWorkflowInstance().getState()));
+  }
+
+  @SneakyThrows
+  private DecisionResponse.DecisionResponseBuilder executeInternal(
+      @NonNull DecisionRequest decisionRequest,
+      @NonNull DependencyRegistry registry,
+      @NonNull StateFingerprint initialState) {
     val clazz = decisionRequest.getWorkflowInstance().getWorkflowType().getClazz();
     val decider = registry.getWorkflow(clazz);
     val inspector = new WorkflowInspector(clazz, decider);
     inspector.setState(decisionRequest.getWorkflowInstance().getState());
+    if (clazz.isAnnotationPresent(ResumableWorkflow.class)) {
+      DecisionThread.startReplayTracking(
+          decisionRequest.getWorkflowInstance().getReplayCheckpoint());
+    } else {
+      DecisionThread.stopReplayTracking();
+    }
     val workflowMethod = inspector.getWorkflowMethod();
-    val params =
-        inspector.getWorkflowMethodParams(decisionRequest.getWorkflowInstance().getInitialArgs());
     Object result;
     try (val decisionTimer = Metrics.getDecisionLatencyTimer(clazz).time()) {
-      result = workflowMethod.invoke(decider, params);
-    } catch (IllegalAccessException e) {
-      throw new IllegalStateException(
-          String.format("unable to invoke workflow method on workflow %s", clazz), e);
-    } catch (InvocationTargetException e) {
-      if (e.getCause() != null && e.getCause() instanceof StopWorkflowExecution) {
-        throw ((StopWorkflowExecution) e.getCause())
-            .toBuilder()
-            .newState(inspector.getState())
-            .build();
-      }
-      if (e.getCause() != null) {
-        throw e.getCause();
-      }
-      throw new RuntimeException(e);
+      result =
+          inspector.invokeWorkflowMethod(decisionRequest.getWorkflowInstance().getInitialArgs());
+    } catch (StopWorkflowExecution e) {
+      throw e.toBuilder().newState(inspector.getState()).build();
+    } catch (ContinueAsNew e) {
+      throw e.toBuilder().newState(inspector.getState()).build();
     }
     val finalState = inspector.getState();
     val response = DecisionResponse.builder().operationRequests(new ArrayList<>());
     response.newState(finalState);
+    response.changedStateFields(initialState.getChangedFields(finalState));
     if (result != null) {
       response.result(new Anything(workflowMethod.getReturnType(), result));
     }
@@ -93,23 +120,8 @@ public class DecisionExecutor {
     val clazz = instance.getWorkflowType().getClazz();
     val decider = registry.getWorkflow(clazz);
     val inspector = new WorkflowInspector(clazz, decider);
-    val signalMethod = inspector.getSignalConsumerMethod(signalMethodName);
-    val params = inspector.getMethodParams(signalMethod, args);
     inspector.setState(instance.getState());
-    try {
-      signalMethod.invoke(decider, params);
-    } catch (IllegalAccessException e) {
-      throw new IllegalStateException(
-          String.format(
-              "unable to invoke signal consumer method '%s' on workflow %s",
-              signalMethodName, clazz),
-          e);
-    } catch (InvocationTargetException e) {
-      if (e.getCause() != null) {
-        throw e.getCause();
-      }
-      throw new RuntimeException(e);
-    }
+    inspector.invokeSignalConsumer(signalMethodName, args);
     return inspector.getState();
   }
 }
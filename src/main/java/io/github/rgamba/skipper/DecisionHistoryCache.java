@@ -0,0 +1,134 @@
+package io.github.rgamba.skipper;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import com.codahale.metrics.Gauge;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import io.github.rgamba.skipper.models.OperationResponse;
+import io.github.rgamba.skipper.models.WorkflowInstance;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.NonNull;
+import lombok.Value;
+import lombok.val;
+
+/**
+ * Bounded LRU cache of the workflow instances processed by the latest decisions on this node, along
+ * with their non-transient operation responses. The next decision of the same workflow instance
+ * only needs to check that the instance didn't change in the meantime and fetch the responses
+ * numbered after the latest response sequence (see {@link
+ * io.github.rgamba.skipper.store.OperationStore#getLatestResponseSequence(String)}) seen when the
+ * history was loaded, instead of loading and deserializing the whole history again.
+ *
+ * <p>The cache is bounded by the estimated memory footprint of the entries rather than their count,
+ * as the history size varies a lot between workflow instances.
+ */
+public class DecisionHistoryCache {
+  // Rough estimates of the footprint of the cached objects, they only need to be proportional to it
+  private static final int INSTANCE_BYTES = 1024;
+  private static final int STATE_FIELD_BYTES = 256;
+  private static final int RESPONSE_BYTES = 512;
+
+  private static final AtomicLong estimatedBytes = new AtomicLong();
+
+  static {
+    Metrics.registry.gauge(
+        name("decision_history_cache", "estimated_bytes"), () -> (Gauge<Long>) estimatedBytes::get);
+  }
+
+  private final Cache<String, Entry> cache;
+
+  /** @param maxBytes The maximum estimated memory footprint of the cached entries. */
+  public DecisionHistoryCache(long maxBytes) {
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((String id, Entry entry) -> entry.getWeight())
+            .removalListener(this::onRemoval)
+            .build();
+  }
+
+  /**
+   * @param workflowInstanceId The workflow instance ID
+   * @param currentVersion The current version of the workflow instance in the store
+   * @return The cached entry, only if the cached instance is still at the current version.
+   */
+  public Optional<Entry> get(@NonNull String workflowInstanceId, int currentVersion) {
+    val entry = cache.getIfPresent(workflowInstanceId);
+    if (entry == null || entry.getInstance().getVersion() != currentVersion) {
+      if (entry != null) {
+        cache.invalidate(workflowInstanceId);
+      }
+      Metrics.getCounter("decision_history_cache", "miss").inc();
+      return Optional.empty();
+    }
+    Metrics.getCounter("decision_history_cache", "hit").inc();
+    return Optional.of(entry);
+  }
+
+  public void put(@NonNull Entry entry) {
+    estimatedBytes.addAndGet(entry.getWeight());
+    cache.put(entry.getInstance().getId(), entry);
+  }
+
+  public void invalidate(@NonNull String workflowInstanceId) {
+    cache.invalidate(workflowInstanceId);
+  }
+
+  private void onRemoval(RemovalNotification<String, Entry> notification) {
+    if (notification.getValue() != null) {
+      estimatedBytes.addAndGet(-notification.getValue().getWeight());
+    }
+    if (notification.getCause() == RemovalCause.SIZE) {
+      Metrics.getCounter("decision_history_cache", "eviction").inc();
+    }
+  }
+
+  /**
+   * A workflow instance along with its non-transient operation responses, by creation time, which
+   * include at least all the responses numbered up to the response sequence.
+   */
+  @Value
+  public static class Entry {
+    @NonNull WorkflowInstance instance;
+    @NonNull List<OperationResponse> responses;
+    long responseSequence;
+    int weight;
+
+    public Entry(
+        @NonNull WorkflowInstance instance,
+        @NonNull List<OperationResponse> responses,
+        long responseSequence) {
+      this.instance = instance;
+      this.responses = Collections.unmodifiableList(new ArrayList<>(responses));
+      this.responseSequence = responseSequence;
+      this.weight =
+          INSTANCE_BYTES
+              + instance.getState().size() * STATE_FIELD_BYTES
+              + responses.size() * RESPONSE_BYTES;
+    }
+
+    /**
+     * @param newResponses Responses fetched after the cached ones, which may overlap with them
+     * @param responseSequence The response sequence up to which the new responses were fetched
+     * @return A copy of the entry with the responses that were not cached yet added
+     */
+    public Entry withResponses(
+        @NonNull List<OperationResponse> newResponses, long responseSequence) {
+      val ids = new HashSet<String>();
+      responses.forEach(response -> ids.add(response.getId()));
+      val merged = new ArrayList<>(responses);
+      newResponses.stream().filter(response -> ids.add(response.getId())).forEach(merged::add);
+      merged.sort(Comparator.comparing(OperationResponse::getCreationTime));
+      return new Entry(instance, merged, responseSequence);
+    }
+  }
+}
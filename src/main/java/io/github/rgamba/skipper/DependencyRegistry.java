@@ -4,8 +4,10 @@ import io.github.rgamba.skipper.api.CallbackHandler;
 import io.github.rgamba.skipper.api.ChildWorkflowCallbackHandler;
 import io.github.rgamba.skipper.api.SkipperWorkflow;
 import io.github.rgamba.skipper.api.annotations.WorkflowMethod;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Supplier;
 import lombok.*;
 
@@ -29,8 +31,8 @@ public class DependencyRegistry {
       @NonNull Map<Class<? extends CallbackHandler>, CallbackHandler> callbackHandlers) {
     workflows.forEach(
         (key, value) -> {
-          WorkflowInspector inspector = new WorkflowInspector(key, value.get());
-          inspector.getWorkflowMethod(); // Basic validation of the workflow class
+          // Basic validation of the workflow class, it also warms up its metadata cache
+          WorkflowMetadata.of(key).getWorkflowMethod();
           if (value.get() == value.get()) {
             // The factory provided must not return the same object instance, it should instead
             // create a new instance
@@ -42,6 +44,7 @@ public class DependencyRegistry {
                     key.getName()));
           }
         });
+    operations.keySet().forEach(OperationMetadata::of);
     callbackHandlers.put(ChildWorkflowCallbackHandler.class, new ChildWorkflowCallbackHandler());
     this.workflows = workflows;
     this.operations = operations;
@@ -58,6 +61,11 @@ public class DependencyRegistry {
     return workflowClassName.cast(workflows.get(workflowClassName).get());
   }
 
+  /** @return The workflow classes registered */
+  public Set<Class<? extends SkipperWorkflow>> getWorkflowClasses() {
+    return Collections.unmodifiableSet(workflows.keySet());
+  }
+
   public <T> T getOperation(@NonNull Class<T> operationName) {
     if (!operations.containsKey(operationName)) {
       throw new IllegalArgumentException(
@@ -0,0 +1,34 @@
+package io.github.rgamba.skipper;
+
+import io.github.rgamba.skipper.models.Timer;
+import lombok.NonNull;
+
+/**
+ * Hands timers that were just persisted by the current node and are already due straight to a local
+ * worker, instead of waiting for the next timer poll to pick them up.
+ */
+public interface LocalTimerDispatcher {
+  /**
+   * Try to process the given timer locally.
+   *
+   * <p>The timer must already be persisted, since it is claimed by ID and version before it is
+   * processed. If the timer can't be dispatched, or it gets claimed by another node first, it will
+   * be processed through the regular timer polling.
+   *
+   * @param timer The persisted timer, including its current version
+   * @return true if the timer was accepted for local processing
+   */
+  boolean tryDispatch(@NonNull Timer timer);
+
+  /**
+   * Run the task on the calling thread, serially with the timers being processed locally for the
+   * same affinity key, so that e.g. a signal never interleaves with a decision of the same workflow
+   * instance.
+   *
+   * @param affinityKey The affinity key of the timers the task must be serialized with
+   * @param task The task to run
+   */
+  default void runSerialized(@NonNull String affinityKey, @NonNull Runnable task) {
+    task.run();
+  }
+}
@@ -0,0 +1,62 @@
+package io.github.rgamba.skipper;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Reflection data of a workflow or operation method that is resolved once and reused on every
+ * invocation, including a {@link MethodHandle} used to invoke it.
+ */
+@Getter
+public class MethodMetadata {
+  private final Method method;
+  private final Parameter[] parameters;
+  private final Class<?>[] exceptionTypes;
+  // (Object target, Object[] args)Object
+  @Getter(lombok.AccessLevel.NONE)
+  private final MethodHandle invoker;
+
+  MethodMetadata(@NonNull Method method) {
+    this.method = method;
+    this.parameters = method.getParameters();
+    this.exceptionTypes = method.getExceptionTypes();
+    trySetAccessible(method);
+    try {
+      MethodHandle handle = MethodHandles.lookup().unreflect(method);
+      this.invoker =
+          handle.asType(handle.type().generic()).asSpreader(Object[].class, parameters.length);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(
+          String.format("unable to access method %s, it must be public", method), e);
+    }
+  }
+
+  static void trySetAccessible(AccessibleObject object) {
+    try {
+      object.setAccessible(true);
+    } catch (RuntimeException e) {
+      // Not allowed by the security manager or the module system, only public members will work.
+    }
+  }
+
+  public String getName() {
+    return method.getName();
+  }
+
+  /**
+   * Invoke the method. Unlike {@link Method#invoke(Object, Object...)}, exceptions thrown by the
+   * method are propagated as they are instead of being wrapped.
+   *
+   * @param target The object to invoke the method on
+   * @param args The method arguments
+   * @return The value returned by the method, null for void methods
+   */
+  public Object invoke(Object target, Object[] args) throws Throwable {
+    return (Object) invoker.invokeExact(target, args);
+  }
+}
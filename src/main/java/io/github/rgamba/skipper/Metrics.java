@@ -41,11 +41,16 @@ public class Metrics {
 
   public static void registerIntegerGauge(
       String component, String detail, Callable<Integer> callable) {
+    registerGauge(component, detail, callable);
+  }
+
+  public static <T extends Number> void registerGauge(
+      String component, String detail, Callable<T> callable) {
     Metrics.registry.register(
         name(component, detail),
-        new Gauge<Integer>() {
+        new Gauge<T>() {
           @Override
-          public Integer getValue() {
+          public T getValue() {
             try {
               return callable.call();
             } catch (Exception e) {
@@ -2,7 +2,6 @@ package io.github.rgamba.skipper;
 
 import com.google.common.base.Stopwatch;
 import io.github.rgamba.skipper.api.OperationConfig;
-import io.github.rgamba.skipper.api.OperationError;
 import io.github.rgamba.skipper.api.OperationExecutionResponse;
 import io.github.rgamba.skipper.api.WaitTimeout;
 import io.github.rgamba.skipper.common.Anything;
@@ -11,11 +10,10 @@ import io.github.rgamba.skipper.models.OperationRequest;
 import io.github.rgamba.skipper.models.OperationType;
 import io.github.rgamba.skipper.models.RetryStrategy;
 import io.github.rgamba.skipper.runtime.StopWorkflowExecution;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
 import java.time.Duration;
 import java.util.*;
-import java.util.stream.Stream;
 import lombok.NonNull;
 import lombok.val;
 import org.slf4j.Logger;
@@ -39,34 +37,30 @@ public class OperationExecutor {
           .build();
     }
     val operation = registry.getOperation(request.getOperationType().getClazz());
-    Method method = getMethod(request.getOperationType());
+    val method = getMethod(request.getOperationType());
     Stopwatch timer = Stopwatch.createStarted();
     try (val metricTimer =
         Metrics.getOperationExecutionLatencyTimer(
                 request.getOperationType().getClazz(), method.getName())
             .time()) {
-      val result = method.invoke(operation, getMethodParams(method, request.getArguments()));
-      if (result != null) {
-        responseBuilder.result(new Anything(result.getClass(), result));
-      }
-      responseBuilder.status(OperationExecutionResponse.Status.COMPLETED);
-    } catch (IllegalAccessException e) {
-      responseBuilder.error(new Anything(OperationError.class, new OperationError(e)));
-      responseBuilder.status(OperationExecutionResponse.Status.NON_RETRIABLE_ERROR);
-    } catch (InvocationTargetException e) {
-      if (e.getCause() != null && e.getCause() instanceof StopWorkflowExecution) {
-        throw (StopWorkflowExecution) e.getCause();
+      val params = getMethodParams(method, request.getArguments());
+      try {
+        val result = method.invoke(operation, params);
+        if (result != null) {
+          responseBuilder.result(new Anything(result.getClass(), result));
+        }
+        responseBuilder.status(OperationExecutionResponse.Status.COMPLETED);
+      } catch (StopWorkflowExecution e) {
+        throw e;
+      } catch (Throwable error) {
+        // TODO error is not propagated correctly here!
+        responseBuilder.error(new Anything(error.getClass(), error));
+        val status =
+            isRetriableError(error, method)
+                ? OperationExecutionResponse.Status.RETRIABLE_ERROR
+                : OperationExecutionResponse.Status.NON_RETRIABLE_ERROR;
+        responseBuilder.status(status);
       }
-      // TODO error is not propagated correctly here!
-      Class<? extends Throwable> clazz =
-          e.getCause() != null ? e.getCause().getClass() : e.getClass();
-      Throwable error = e.getCause() != null ? e.getCause() : e;
-      responseBuilder.error(new Anything(clazz, error));
-      val status =
-          isRetriableError(error, method)
-              ? OperationExecutionResponse.Status.RETRIABLE_ERROR
-              : OperationExecutionResponse.Status.NON_RETRIABLE_ERROR;
-      responseBuilder.status(status);
     } catch (IllegalArgumentException e) {
       // This might happen if we tried to inject the params to the operation and failed due to bad
       // input params
@@ -82,7 +76,7 @@ public class OperationExecutor {
     return response;
   }
 
-  private boolean isRetriableError(Throwable error, Method method) {
+  private boolean isRetriableError(Throwable error, MethodMetadata method) {
     List<Class<? extends Throwable>> commonNonRetriableErrors = new ArrayList<>();
     commonNonRetriableErrors.add(NullPointerException.class);
     commonNonRetriableErrors.add(IllegalArgumentException.class);
@@ -95,26 +89,25 @@ public class OperationExecutor {
         .noneMatch(declaredEx -> declaredEx.isInstance(error));
   }
 
-  private Method getMethod(OperationType operationType) {
-    return Stream.of(operationType.getClazz().getDeclaredMethods())
-        .filter(m -> m.getName().equals(operationType.getMethod()))
-        .findFirst()
-        .orElseThrow(
-            () ->
-                new IllegalArgumentException(
-                    String.format(
-                        "the operation class %s does not have a method %s",
-                        operationType.getClazz(), operationType.getMethod())));
+  private MethodMetadata getMethod(OperationType operationType) {
+    return OperationMetadata.of(operationType.getClazz()).getMethod(operationType.getMethod());
   }
 
   public Object[] getMethodParams(@NonNull Method method, @NonNull List<Anything> methodArgs) {
-    if (methodArgs.size() != method.getParameters().length) {
+    return getMethodParams(method.getParameters(), methodArgs);
+  }
+
+  private Object[] getMethodParams(
+      @NonNull MethodMetadata method, @NonNull List<Anything> methodArgs) {
+    return getMethodParams(method.getParameters(), methodArgs);
+  }
+
+  private Object[] getMethodParams(Parameter[] params, List<Anything> methodArgs) {
+    if (methodArgs.size() != params.length) {
       throw new IllegalArgumentException(
           String.format(
-              "expected %d method arguments but got %d",
-              method.getParameters().length, methodArgs.size()));
+              "expected %d method arguments but got %d", params.length, methodArgs.size()));
     }
-    val params = method.getParameters();
     val response = new Object[methodArgs.size()];
     for (int i = 0; i < methodArgs.size(); i++) {
       val argValue = methodArgs.get(i);
@@ -0,0 +1,46 @@
+package io.github.rgamba.skipper;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.NonNull;
+
+/** Cached reflection data of an operation class. */
+public class OperationMetadata {
+  private static final Map<Class<?>, OperationMetadata> cache = new ConcurrentHashMap<>();
+
+  private final Class<?> clazz;
+  // The first declared method with each name, operation methods are looked up by name only
+  private final Map<String, Method> declaredMethods = new HashMap<>();
+  private final Map<String, MethodMetadata> methods = new ConcurrentHashMap<>();
+
+  private OperationMetadata(Class<?> clazz) {
+    this.clazz = clazz;
+    for (Method method : clazz.getDeclaredMethods()) {
+      declaredMethods.putIfAbsent(method.getName(), method);
+    }
+  }
+
+  public static OperationMetadata of(@NonNull Class<?> clazz) {
+    return cache.computeIfAbsent(clazz, OperationMetadata::new);
+  }
+
+  /**
+   * @param methodName The operation method name
+   * @return The metadata of the operation method
+   * @throws IllegalArgumentException If the operation class doesn't have the method
+   */
+  public MethodMetadata getMethod(@NonNull String methodName) {
+    MethodMetadata metadata = methods.get(methodName);
+    if (metadata != null) {
+      return metadata;
+    }
+    Method method = declaredMethods.get(methodName);
+    if (method == null) {
+      throw new IllegalArgumentException(
+          String.format("the operation class %s does not have a method %s", clazz, methodName));
+    }
+    return methods.computeIfAbsent(methodName, name -> new MethodMetadata(method));
+  }
+}
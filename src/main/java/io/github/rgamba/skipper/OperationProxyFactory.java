@@ -3,31 +3,44 @@ package io.github.rgamba.skipper;
 import io.github.rgamba.skipper.api.OperationConfig;
 import io.github.rgamba.skipper.api.SkipperWorkflow;
 import io.github.rgamba.skipper.api.annotations.WorkflowMethod;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javassist.util.proxy.Proxy;
 import javassist.util.proxy.ProxyFactory;
 import javax.annotation.Nullable;
 
 public class OperationProxyFactory {
+  // Generating a proxy class is expensive and every generated class lives in the metaspace, so
+  // they are generated once per operation class and only instantiated on every call.
+  private static final Map<Class<?>, Class<?>> proxyClasses = new ConcurrentHashMap<>();
 
   public static <T> T create(Class<T> clazz, @Nullable OperationConfig config) {
-    ProxyFactory factory = new ProxyFactory();
-    factory.setSuperclass(clazz);
-    Object instance;
     boolean isWorkflow = SkipperWorkflow.class.isAssignableFrom(clazz);
-    if (isWorkflow) {
-      factory.setFilter(method -> method.isAnnotationPresent(WorkflowMethod.class));
-      factory.setInterfaces(new Class[] {SkipperWorkflow.class});
-    }
+    Object instance;
     try {
       instance =
-          factory.create(
-              new Class<?>[0], new Object[0], new OperationProxyHandler(clazz, config, isWorkflow));
+          proxyClasses
+              .computeIfAbsent(clazz, c -> createProxyClass(c, isWorkflow))
+              .getDeclaredConstructor()
+              .newInstance();
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
+    ((Proxy) instance).setHandler(new OperationProxyHandler(clazz, config, isWorkflow));
     return clazz.cast(instance);
   }
 
   public static <T> T create(Class<T> clazz) {
     return create(clazz, null);
   }
+
+  private static Class<?> createProxyClass(Class<?> clazz, boolean isWorkflow) {
+    ProxyFactory factory = new ProxyFactory();
+    factory.setSuperclass(clazz);
+    if (isWorkflow) {
+      factory.setFilter(method -> method.isAnnotationPresent(WorkflowMethod.class));
+      factory.setInterfaces(new Class[] {SkipperWorkflow.class});
+    }
+    return factory.createClass();
+  }
 }
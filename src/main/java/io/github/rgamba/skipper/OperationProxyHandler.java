@@ -47,19 +47,25 @@ public class OperationProxyHandler implements MethodHandler {
   public Object invoke(Object proxy, Method method, Method method1, Object[] args)
       throws Throwable {
     val context = DecisionThread.getWorkflowContext();
-    val responses = context.getOperationResponses();
+    val replayTracker = DecisionThread.getReplayTracker();
     if (!iteration.containsKey(method.getName())) {
-      iteration.put(method.getName(), new AtomicInteger(0));
+      // Resumable workflows don't replay the responses before the replay checkpoint
+      iteration.put(
+          method.getName(),
+          new AtomicInteger(
+              replayTracker
+                  .map(tracker -> tracker.getIteration(operationClazz, method.getName()))
+                  .orElse(0)));
     }
     val response =
-        responses.stream()
-            .filter(resp -> resp.getOperationType().getClazz().equals(operationClazz))
-            .filter(resp -> resp.getOperationType().getMethod().equals(method.getName()))
-            .filter(resp -> resp.getIteration() == iteration.get(method.getName()).get())
-            .filter(resp -> !resp.isTransient())
-            .findFirst();
+        context
+            .getResponseIndex()
+            .findOperationResponse(
+                operationClazz, method.getName(), iteration.get(method.getName()).get());
     if (response.isPresent()) {
-      iteration.get(method.getName()).incrementAndGet();
+      val replayed = iteration.get(method.getName()).incrementAndGet();
+      replayTracker.ifPresent(
+          tracker -> tracker.setIteration(operationClazz, method.getName(), replayed));
       DecisionThread.setLatestCurrentExecutionCheckpoint(response.get().getCreationTime());
       if (!response.get().isSuccess()) {
         // If it is not success then we'll raise an exception
@@ -92,7 +98,8 @@ public class OperationProxyHandler implements MethodHandler {
             .timeout(Duration.ZERO)
             .arguments(new ArrayList<>())
             .build();
-    val operationRequestId = OperationRequest.createOperationRequestId(operationRequest);
+    val operationRequestId =
+        OperationRequest.createOperationRequestId(operationRequest, context.getRunNumber());
     val argsList =
         Stream.of(args)
             .map(
@@ -101,7 +108,8 @@ public class OperationProxyHandler implements MethodHandler {
                     return null;
                   }
                   if (SkipperWorkflow.IDEMPOTENCY_TOKEN_PLACEHOLDER.equals(arg)) {
-                    return Anything.of(operationRequest.generateIdempotencyToken());
+                    return Anything.of(
+                        operationRequest.generateIdempotencyToken(context.getRunNumber()));
                   }
                   return Anything.of(arg);
                 })
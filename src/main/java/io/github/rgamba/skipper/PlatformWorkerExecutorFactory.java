@@ -0,0 +1,32 @@
+package io.github.rgamba.skipper;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.NonNull;
+import lombok.val;
+
+/** Runs the handlers on a bounded pool of platform threads, one thread per running handler. */
+public class PlatformWorkerExecutorFactory implements WorkerExecutorFactory {
+  @Override
+  public ExecutorService create(@NonNull String name, @NonNull TimerHandlerPoolConfig config) {
+    if (config.getPriority() < Thread.MIN_PRIORITY || config.getPriority() > Thread.MAX_PRIORITY) {
+      throw new IllegalArgumentException("invalid thread priority " + config.getPriority());
+    }
+    val count = new AtomicInteger();
+    return new ThreadPoolExecutor(
+        config.getPoolSize(),
+        config.getPoolSize(),
+        60L,
+        TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(config.getQueueCapacity()),
+        runnable -> {
+          val thread = new Thread(runnable, "timer-" + name + "-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          thread.setPriority(config.getPriority());
+          return thread;
+        });
+  }
+}
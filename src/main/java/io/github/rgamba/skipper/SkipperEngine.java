@@ -2,21 +2,28 @@ package io.github.rgamba.skipper;
 
 import com.google.inject.assistedinject.Assisted;
 import io.github.rgamba.skipper.api.*;
+import io.github.rgamba.skipper.api.annotations.ResumableWorkflow;
 import io.github.rgamba.skipper.api.annotations.SignalConsumer;
 import io.github.rgamba.skipper.common.Anything;
+import io.github.rgamba.skipper.common.ValidationUtils;
 import io.github.rgamba.skipper.models.*;
 import io.github.rgamba.skipper.models.Timer;
 import io.github.rgamba.skipper.runtime.DecisionThread;
 import io.github.rgamba.skipper.store.OperationStore;
 import io.github.rgamba.skipper.store.StorageError;
 import io.github.rgamba.skipper.store.TimerStore;
+import io.github.rgamba.skipper.store.UnitOfWork;
 import io.github.rgamba.skipper.store.WorkflowInstanceStore;
+import io.github.rgamba.skipper.store.inmemory.InMemoryUnitOfWork;
 import io.github.rgamba.skipper.timers.DecisionTimerHandler;
 import io.github.rgamba.skipper.timers.OperationRequestTimerHandler;
 import io.github.rgamba.skipper.timers.WorkflowInstanceCallbackTimerHandler;
 import java.time.Clock;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
@@ -38,6 +45,11 @@ public class SkipperEngine {
   private final OperationExecutor operationExecutor;
   private final Clock clock;
   private final DependencyRegistry registry;
+  private final SkipperEngineConfig config;
+  private final UnitOfWork unitOfWork;
+  @Nullable private final DecisionHistoryCache historyCache;
+  private final WorkflowCompletionNotifier completionNotifier;
+  @Nullable private volatile LocalTimerDispatcher localTimerDispatcher;
 
   public SkipperEngine(
       Clock clock,
@@ -47,6 +59,53 @@ public class SkipperEngine {
       @NonNull DecisionExecutor decisionExecutor,
       @NonNull OperationExecutor operationExecutor,
       @NonNull @Assisted DependencyRegistry registry) {
+    this(
+        clock,
+        workflowInstanceStore,
+        operationStore,
+        timerStore,
+        decisionExecutor,
+        operationExecutor,
+        registry,
+        SkipperEngineConfig.defaults());
+  }
+
+  public SkipperEngine(
+      Clock clock,
+      @NonNull WorkflowInstanceStore workflowInstanceStore,
+      @NonNull OperationStore operationStore,
+      @NonNull TimerStore timerStore,
+      @NonNull DecisionExecutor decisionExecutor,
+      @NonNull OperationExecutor operationExecutor,
+      @NonNull DependencyRegistry registry,
+      @NonNull SkipperEngineConfig config) {
+    this(
+        clock,
+        workflowInstanceStore,
+        operationStore,
+        timerStore,
+        decisionExecutor,
+        operationExecutor,
+        registry,
+        config,
+        new InMemoryUnitOfWork());
+  }
+
+  /**
+   * @param unitOfWork Groups the writes of each decision into a single atomic unit, it must match
+   *     the stores (e.g. a {@link io.github.rgamba.skipper.store.mysql.SqlUnitOfWork} for the MySQL
+   *     stores).
+   */
+  public SkipperEngine(
+      Clock clock,
+      @NonNull WorkflowInstanceStore workflowInstanceStore,
+      @NonNull OperationStore operationStore,
+      @NonNull TimerStore timerStore,
+      @NonNull DecisionExecutor decisionExecutor,
+      @NonNull OperationExecutor operationExecutor,
+      @NonNull DependencyRegistry registry,
+      @NonNull SkipperEngineConfig config,
+      @NonNull UnitOfWork unitOfWork) {
     this.workflowInstanceStore = workflowInstanceStore;
     this.operationStore = operationStore;
     this.timerStore = timerStore;
@@ -54,6 +113,29 @@ public class SkipperEngine {
     this.operationExecutor = operationExecutor;
     this.clock = clock;
     this.registry = registry;
+    this.config = config;
+    this.unitOfWork = unitOfWork;
+    this.historyCache =
+        config.getHistoryCacheMaxBytes() > 0
+            ? new DecisionHistoryCache(config.getHistoryCacheMaxBytes())
+            : null;
+    this.completionNotifier =
+        new WorkflowCompletionNotifier(
+            workflowInstanceStore,
+            clock,
+            config.getCompletionFeedPollInterval(),
+            config.getCompletionFeedRetention(),
+            config.getCompletionFeedGracePeriod());
+  }
+
+  /**
+   * Register the dispatcher used to process immediately-due timers created by this engine on the
+   * local node, without waiting for the next timer poll.
+   *
+   * @param dispatcher The local timer dispatcher
+   */
+  public void registerLocalTimerDispatcher(@NonNull LocalTimerDispatcher dispatcher) {
+    this.localTimerDispatcher = dispatcher;
   }
 
   /**
@@ -64,43 +146,195 @@ public class SkipperEngine {
    *     will throw runtime exceptions in case invalid input was provided.
    */
   public WorkflowCreationResponse createWorkflowInstance(@NonNull WorkflowCreationRequest req) {
-    val workflowInstance =
-        WorkflowInstance.builder()
-            .id(UUID.randomUUID().toString())
-            .correlationId(req.getCorrelationId())
-            .status(WorkflowInstance.Status.ACTIVE)
-            .version(0)
-            .workflowType(req.getWorkflowType())
-            .initialArgs(req.getArguments())
-            .state(new HashMap<>())
-            .callbackHandlerClazz(req.getCallbackHandlerClazz())
-            .creationTime(clock.instant())
-            .build();
-    workflowInstanceStore.create(workflowInstance);
-    log.debug("workflow instance persisted on storage {}", workflowInstance);
-    scheduleDecision(workflowInstance.getId());
+    val workflowInstance = newWorkflowInstance(req);
+    if (req.getEagerDecisionBudget() != null) {
+      createAndDecideEagerly(workflowInstance, req.getEagerDecisionBudget());
+    } else {
+      workflowInstanceStore.create(workflowInstance);
+      log.debug("workflow instance persisted on storage {}", workflowInstance);
+      // There is nothing to coalesce the first decision with, it is not debounced
+      scheduleDecision(workflowInstance.getId(), null);
+    }
     Metrics.WORKFLOW_INSTANCE_CREATION_COUNT.mark();
     return WorkflowCreationResponse.builder().workflowInstance(workflowInstance).build();
   }
 
+  /**
+   * Create many workflow instances at once. The instances and their decision timers are written
+   * with multi-row inserts, one transaction per chunk of {@link
+   * SkipperEngineConfig#getBulkCreationChunkSize()} instances.
+   *
+   * <p>A request whose correlation ID is already taken doesn't fail the rest, it is reported as
+   * such in its result instead. The eager decision budget of the requests is ignored, their first
+   * decision is always left to the timer pollers.
+   *
+   * @param reqs The workflow instance creation requests
+   * @return The result of each request, in the same order as the requests.
+   */
+  public List<WorkflowCreationResult> createWorkflowInstances(
+      @NonNull List<WorkflowCreationRequest> reqs) {
+    List<WorkflowCreationResult> results = new ArrayList<>(reqs.size());
+    val chunkSize = config.getBulkCreationChunkSize();
+    ValidationUtils.require(chunkSize > 0).orFail("bulkCreationChunkSize must be positive");
+    for (int from = 0; from < reqs.size(); from += chunkSize) {
+      val chunk = reqs.subList(from, Math.min(from + chunkSize, reqs.size()));
+      val workflowInstances =
+          chunk.stream().map(this::newWorkflowInstance).collect(Collectors.toList());
+      val created = new HashSet<String>();
+      val persistedTimers =
+          unitOfWork.execute(
+              () -> {
+                created.addAll(workflowInstanceStore.createAll(workflowInstances));
+                return timerStore.createOrUpdateAll(
+                    workflowInstances.stream()
+                        .filter(instance -> created.contains(instance.getId()))
+                        .map(instance -> decisionTimer(instance.getId()).build())
+                        .collect(Collectors.toList()));
+              });
+      for (int i = 0; i < chunk.size(); i++) {
+        val workflowInstance = workflowInstances.get(i);
+        val result = WorkflowCreationResult.builder().request(chunk.get(i));
+        if (created.contains(workflowInstance.getId())) {
+          Metrics.WORKFLOW_INSTANCE_CREATION_COUNT.mark();
+          result.status(WorkflowCreationResult.Status.CREATED).workflowInstance(workflowInstance);
+        } else {
+          result.status(WorkflowCreationResult.Status.DUPLICATE_CORRELATION_ID);
+        }
+        results.add(result.build());
+      }
+      log.debug("created {} out of {} workflow instances", created.size(), chunk.size());
+      persistedTimers.forEach(this::dispatchLocally);
+    }
+    return results;
+  }
+
+  private WorkflowInstance newWorkflowInstance(WorkflowCreationRequest req) {
+    return WorkflowInstance.builder()
+        .id(UUID.randomUUID().toString())
+        .correlationId(req.getCorrelationId())
+        .status(WorkflowInstance.Status.ACTIVE)
+        .version(0)
+        .workflowType(req.getWorkflowType())
+        .initialArgs(req.getArguments())
+        .state(new HashMap<>())
+        .callbackHandlerClazz(req.getCallbackHandlerClazz())
+        .creationTime(clock.instant())
+        .build();
+  }
+
+  /**
+   * Persist the workflow instance and execute its first decision on the calling thread.
+   *
+   * <p>The decision timer is created along with the instance but only becomes due once the budget
+   * is over, so the pollers only take over if the eager decision fails or doesn't finish in time.
+   * It is deleted once the decision is committed, unless the decision replaced it with a timer of
+   * its own.
+   */
+  private void createAndDecideEagerly(WorkflowInstance workflowInstance, Duration budget) {
+    val deadline = clock.instant().plus(budget);
+    val fallbackTimer =
+        unitOfWork.execute(
+            () -> {
+              workflowInstanceStore.create(workflowInstance);
+              return timerStore.createOrUpdate(
+                  decisionTimer(workflowInstance.getId()).timeout(deadline).build());
+            });
+    log.debug("workflow instance persisted on storage {}", workflowInstance);
+    try {
+      // The decision runs on the caller's thread, which must not keep the decision state around
+      DecisionThread.isolated(
+              () ->
+                  processDecision(
+                      new DecisionHistoryCache.Entry(workflowInstance, Collections.emptyList(), 0),
+                      deadline))
+          .run();
+    } catch (Exception e) {
+      log.warn(
+          "eager decision of workflow instance {} failed, falling back to the timer pollers",
+          workflowInstance.getId(),
+          e);
+      Metrics.getCounter("workflow_instance", "eager_decision_failed").inc();
+      scheduleDecision(workflowInstance.getId(), null);
+      return;
+    }
+    // The version check makes sure that a timer replaced by the decision is kept
+    timerStore.delete(fallbackTimer);
+  }
+
+  /**
+   * Wait for a workflow instance to reach a terminal status (COMPLETED or ERROR), without polling
+   * the workflow instance.
+   *
+   * @param workflowInstanceId The workflow instance ID
+   * @param timeout How long to wait for
+   * @return A future completed with the workflow instance, or with a {@link
+   *     java.util.concurrent.TimeoutException} if it didn't complete within the timeout.
+   */
+  public CompletableFuture<WorkflowInstance> awaitCompletion(
+      @NonNull String workflowInstanceId, @NonNull Duration timeout) {
+    return completionNotifier.await(workflowInstanceId, timeout);
+  }
+
+  /**
+   * Release the background resources of the engine. Callers still waiting in {@link
+   * #awaitCompletion(String, Duration)} are failed with a {@link
+   * java.util.concurrent.CancellationException}.
+   */
+  public void shutdown() {
+    completionNotifier.shutdown();
+  }
+
+  /**
+   * Schedule a decision in response to an event on an existing workflow instance (e.g. an operation
+   * completion or a signal). Requests for the same workflow instance within the debounce window are
+   * coalesced into a single decision.
+   */
   private void scheduleDecision(String workflowInstanceId) {
-    scheduleDecision(workflowInstanceId, null);
+    val window = config.getDecisionDebounceWindow();
+    if (window.isZero()) {
+      scheduleDecision(workflowInstanceId, null);
+      return;
+    }
+    val timer =
+        timerStore.createOrCoalesce(
+            decisionTimer(workflowInstanceId).timeout(clock.instant().plus(window)).build());
+    log.debug("scheduled debounced decision. timer={}", timer);
   }
 
   private void scheduleDecision(String workflowInstanceId, @Nullable Duration timeout) {
-    val timerBuilder =
-        Timer.builder()
-            .timerId(String.format("%s-decision", workflowInstanceId))
-            .payload(new Anything(String.class, workflowInstanceId))
-            .handlerClazz(DecisionTimerHandler.class);
+    val timerBuilder = decisionTimer(workflowInstanceId);
     if (timeout != null) {
       timerBuilder.timeout(clock.instant().plus(timeout));
     }
-    val timer = timerBuilder.build();
-    timerStore.createOrUpdate(timer);
+    val timer = createTimer(timerBuilder.build());
     log.debug("scheduled decision. timer={}", timer);
   }
 
+  private static Timer.TimerBuilder decisionTimer(String workflowInstanceId) {
+    return Timer.builder()
+        .timerId(String.format("%s-decision", workflowInstanceId))
+        .payload(new Anything(String.class, workflowInstanceId))
+        .handlerClazz(DecisionTimerHandler.class);
+  }
+
+  /**
+   * Persist the given timer. If the timer is already due it will also be handed to the local timer
+   * dispatcher (if any), the persisted timer acts as a fallback in case the local node is not able
+   * to process it.
+   */
+  private Timer createTimer(Timer timer) {
+    val persistedTimer = timerStore.createOrUpdate(timer);
+    dispatchLocally(persistedTimer);
+    return persistedTimer;
+  }
+
+  private void dispatchLocally(Timer persistedTimer) {
+    val dispatcher = localTimerDispatcher;
+    if (dispatcher != null && persistedTimer.getTimeout() == null) {
+      dispatcher.tryDispatch(persistedTimer);
+    }
+  }
+
   /**
    * Retry a workflow instance whose status is ERROR.
    *
@@ -115,7 +349,17 @@ public class SkipperEngine {
     if (workflowInstance.getStatus() == WorkflowInstance.Status.COMPLETED) {
       throw new IllegalStateException("completed workflow instances cannot be replayed");
     }
-    operationStore.convertAllErrorResponsesToTransient(workflowInstance.getId());
+    unitOfWork.execute(
+        () -> {
+          operationStore.convertAllErrorResponsesToTransient(workflowInstance.getId());
+          // The history changed, bumping the version keeps the nodes from replaying the responses
+          // they have cached.
+          workflowInstanceStore.update(
+              workflowInstanceId,
+              WorkflowInstance.Mutation.builder().status(workflowInstance.getStatus()).build(),
+              workflowInstance.getVersion());
+          return null;
+        });
     scheduleDecision(workflowInstanceId);
   }
 
@@ -125,73 +369,239 @@ public class SkipperEngine {
    * @param workflowInstanceId The workflow instance ID.
    */
   public void processDecision(@NonNull String workflowInstanceId) {
-    val workflowInstance = workflowInstanceStore.get(workflowInstanceId);
-    val operationResponses = operationStore.getOperationResponses(workflowInstanceId, false);
+    processDecision(loadHistory(workflowInstanceId), null);
+  }
+
+  /**
+   * @param history The workflow instance along with its history
+   * @param deadline The time by which the decision executor must stop doing work inline, if any
+   */
+  private void processDecision(DecisionHistoryCache.Entry history, @Nullable Instant deadline) {
+    val workflowInstance = history.getInstance();
+    val workflowInstanceId = workflowInstance.getId();
+    val operationResponses =
+        getOperationResponsesToReplay(workflowInstance, history.getResponses());
     val decisionRequest =
         DecisionRequest.builder()
             .workflowInstance(workflowInstance)
             .operationResponses(operationResponses)
+            .deadline(deadline)
             .build();
 
     resetWorkflowContextData(workflowInstance, operationResponses);
 
     val decisionResponse = decisionExecutor.execute(decisionRequest, registry);
+    log.info("decision response: {}", decisionResponse);
+
+    List<Timer> timers = new ArrayList<>();
     decisionResponse
         .getOperationRequests()
         .forEach(
-            req -> {
-              try {
-                operationStore.createOperationRequest(req);
-              } catch (StorageError e) {
-                if (e.getType().equals(StorageError.Type.DUPLICATE_ENTRY)) {
-                  log.warn(
-                      "unable to persist operation request with id '{}' since it already existed: {}",
-                      req.getOperationRequestId(),
-                      e.getMessage());
-                } else {
-                  throw e;
-                }
+            req ->
+                timers.add(
+                    Timer.builder()
+                        .handlerClazz(OperationRequestTimerHandler.class)
+                        .payload(Anything.of(req.getOperationRequestId()))
+                        // deterministic timer ID to avoid multiple active
+                        // timers for the same operation request
+                        .timerId(req.getOperationRequestId())
+                        .build()));
+    if (decisionResponse.getWaitForDuration() != null) {
+      timers.add(
+          decisionTimer(workflowInstanceId)
+              .timeout(clock.instant().plus(decisionResponse.getWaitForDuration()))
+              .build());
+    }
+    if (decisionResponse.getNewStatus().isCompleted()
+        || decisionResponse.getNewStatus().isError()) {
+      timers.add(callbackTimer(workflowInstance));
+    }
+    val nextRunArgs = getNextRunArgs(workflowInstance, history.getResponses(), decisionResponse);
+    WorkflowInstance.Mutation mutation = null;
+    if (nextRunArgs != null) {
+      mutation =
+          getMutation(decisionResponse)
+              .toBuilder()
+              .nextRunArgs(nextRunArgs)
+              .nextRunStartTime(clock.instant())
+              .replayCheckpoint(null)
+              .build();
+      if (decisionResponse.getWaitForDuration() == null) {
+        timers.add(decisionTimer(workflowInstanceId).build());
+      }
+    } else if (workflowInstanceWasUpdated(workflowInstance, decisionResponse)) {
+      mutation = getMutation(decisionResponse);
+    }
+    val finalMutation = mutation;
+    val inlineExecutions = decisionResponse.getInlineExecutions();
+
+    // All the writes of the decision are committed at once, so that a failure (e.g. an optimistic
+    // lock error) can't leave the decision half persisted.
+    val persistedTimers =
+        unitOfWork.execute(
+            () -> {
+              if (finalMutation != null) {
+                workflowInstanceStore.update(
+                    workflowInstanceId, finalMutation, workflowInstance.getVersion());
+              }
+              operationStore.createOperationRequests(decisionResponse.getOperationRequests());
+              if (!inlineExecutions.isEmpty()) {
+                operationStore.createOperationRequests(
+                    inlineExecutions.stream()
+                        .map(DecisionResponse.InlineExecution::getRequest)
+                        .collect(Collectors.toList()));
+                operationStore.createOperationResponses(
+                    inlineExecutions.stream()
+                        .map(DecisionResponse.InlineExecution::getResponse)
+                        .collect(Collectors.toList()));
+              }
+              if (nextRunArgs != null) {
+                operationStore.archiveHistory(workflowInstanceId, workflowInstance.getRunNumber());
               }
-              timerStore.createOrUpdate(
-                  Timer.builder()
-                      .handlerClazz(OperationRequestTimerHandler.class)
-                      .payload(Anything.of(req.getOperationRequestId()))
-                      // deterministic timer ID to avoid multiple active
-                      // timers for the same operation request
-                      .timerId(req.getOperationRequestId())
-                      .build());
+              return timerStore.createOrUpdateAll(timers);
             });
-    if (decisionResponse.getWaitForDuration() != null) {
-      scheduleDecision(workflowInstanceId, decisionResponse.getWaitForDuration());
+    if (finalMutation != null && nextRunArgs == null) {
+      val status = decisionResponse.getNewStatus();
+      if (status.isCompleted() || status.isError()) {
+        completionNotifier.notifyCompleted(workflowInstance.apply(finalMutation));
+      }
     }
-    log.info("decision response: {}", decisionResponse);
+    if (historyCache != null) {
+      if (nextRunArgs != null) {
+        historyCache.invalidate(workflowInstanceId);
+      } else {
+        val responses = new ArrayList<>(history.getResponses());
+        inlineExecutions.stream()
+            .map(DecisionResponse.InlineExecution::getResponse)
+            .filter(response -> !response.isTransient())
+            .forEach(responses::add);
+        // The responses created by this decision are numbered after the cached sequence, they will
+        // be fetched again by the next decision and deduplicated.
+        historyCache.put(
+            new DecisionHistoryCache.Entry(
+                finalMutation != null ? workflowInstance.apply(finalMutation) : workflowInstance,
+                responses,
+                history.getResponseSequence()));
+      }
+    }
+    if (nextRunArgs != null) {
+      log.info(
+          "workflow instance {} continued as new after run {}",
+          workflowInstanceId,
+          workflowInstance.getRunNumber());
+      Metrics.getCounter("workflow_instance", "continued_as_new").inc();
+    }
+    // The timers can't be dispatched before they are committed, otherwise they couldn't be claimed
+    persistedTimers.forEach(this::dispatchLocally);
+  }
 
-    if (workflowInstanceWasUpdated(workflowInstance, decisionResponse)) {
-      val mutation =
-          WorkflowInstance.Mutation.builder()
-              .status(decisionResponse.getNewStatus())
-              .statusReason(
-                  decisionResponse.getStatusReason() != null
-                      ? decisionResponse.getStatusReason()
-                      : null)
-              .state(decisionResponse.getNewState() != null ? decisionResponse.getNewState() : null)
-              .result(decisionResponse.getResult() != null ? decisionResponse.getResult() : null)
-              .build();
-      workflowInstanceStore.update(workflowInstanceId, mutation, workflowInstance.getVersion());
+  /**
+   * @param history The whole history of the current run, including the responses before the replay
+   *     checkpoint, which are still stored until the history is compacted.
+   * @return The arguments of the next run if the decision ends the current run of the workflow
+   *     instance, either because the workflow asked for it or because its history is over the
+   *     compaction threshold, null otherwise.
+   */
+  @Nullable
+  private List<Anything> getNextRunArgs(
+      WorkflowInstance workflowInstance,
+      List<OperationResponse> history,
+      DecisionResponse decisionResponse) {
+    if (decisionResponse.getContinueAsNewArgs() != null) {
+      return decisionResponse.getContinueAsNewArgs();
     }
-    if (!decisionResponse.getInlineExecutions().isEmpty()) {
-      decisionResponse
-          .getInlineExecutions()
-          .forEach(
-              exe ->
-                  operationStore.createOperationRequestAndResponse(
-                      exe.getRequest(), exe.getResponse()));
+    val threshold = config.getHistoryCompactionThreshold();
+    // A wait is the only point where the workflow is known to have no operations in flight.
+    // Restarting a workflow that doesn't resume from its state would execute its side effects
+    // again, so only the ones that opted in are compacted.
+    if (threshold > 0
+        && history.size() >= threshold
+        && isResumable(workflowInstance)
+        && decisionResponse.getWaitForDuration() != null) {
+      return workflowInstance.getInitialArgs();
     }
+    return null;
+  }
 
-    if (decisionResponse.getNewStatus().isCompleted()
-        || decisionResponse.getNewStatus().isError()) {
-      scheduleCallback(workflowInstance);
+  /**
+   * Load the workflow instance along with its non-transient operation responses. A cached history
+   * is reused as long as the instance didn't change since, in which case only the responses
+   * numbered after the cached response sequence are fetched.
+   */
+  private DecisionHistoryCache.Entry loadHistory(String workflowInstanceId) {
+    if (historyCache == null) {
+      return new DecisionHistoryCache.Entry(
+          workflowInstanceStore.get(workflowInstanceId),
+          operationStore.getOperationResponses(workflowInstanceId, false),
+          0);
     }
+    val cached =
+        historyCache.get(workflowInstanceId, workflowInstanceStore.getVersion(workflowInstanceId));
+    // Read before the responses: every response numbered up to it is visible from then on
+    val responseSequence = operationStore.getLatestResponseSequence(workflowInstanceId);
+    if (cached.isPresent()) {
+      // Taken out until the decision is committed, so that a failed decision can't leave behind
+      // a state that the workflow mutated in place.
+      historyCache.invalidate(workflowInstanceId);
+      val cachedSequence = cached.get().getResponseSequence();
+      val newResponses =
+          responseSequence == cachedSequence
+              ? Collections.<OperationResponse>emptyList()
+              : operationStore.getOperationResponsesAfter(workflowInstanceId, cachedSequence);
+      return cached.get().withResponses(newResponses, responseSequence);
+    }
+    return new DecisionHistoryCache.Entry(
+        workflowInstanceStore.get(workflowInstanceId),
+        operationStore.getOperationResponses(workflowInstanceId, false),
+        responseSequence);
+  }
+
+  /**
+   * Resumable workflows only replay the responses recorded after their replay checkpoint, the rest
+   * are already reflected on their state.
+   *
+   * @return A new list, which the decision is free to append to.
+   */
+  private List<OperationResponse> getOperationResponsesToReplay(
+      WorkflowInstance workflowInstance, List<OperationResponse> responses) {
+    val checkpoint = workflowInstance.getReplayCheckpoint();
+    if (checkpoint == null || !isResumable(workflowInstance)) {
+      return new ArrayList<>(responses);
+    }
+    return responses.stream()
+        .filter(response -> !checkpoint.isReplayed(response))
+        .collect(Collectors.toList());
+  }
+
+  private static boolean isResumable(WorkflowInstance workflowInstance) {
+    return workflowInstance
+        .getWorkflowType()
+        .getClazz()
+        .isAnnotationPresent(ResumableWorkflow.class);
+  }
+
+  private WorkflowInstance.Mutation getMutation(DecisionResponse decisionResponse) {
+    val mutation =
+        WorkflowInstance.Mutation.builder()
+            .status(decisionResponse.getNewStatus())
+            .statusReason(
+                decisionResponse.getStatusReason() != null
+                    ? decisionResponse.getStatusReason()
+                    : null)
+            .result(decisionResponse.getResult() != null ? decisionResponse.getResult() : null)
+            .replayCheckpoint(decisionResponse.getReplayCheckpoint());
+    if (decisionResponse.getNewState() != null) {
+      if (decisionResponse.getChangedStateFields() != null) {
+        val statePatch = new HashMap<String, Anything>();
+        decisionResponse
+            .getChangedStateFields()
+            .forEach(field -> statePatch.put(field, decisionResponse.getNewState().get(field)));
+        mutation.statePatch(statePatch);
+      } else {
+        mutation.state(decisionResponse.getNewState());
+      }
+    }
+    return mutation.build();
   }
 
   private boolean workflowInstanceWasUpdated(
@@ -199,10 +609,20 @@ public class SkipperEngine {
     boolean statusChanged = decisionResponse.getNewStatus() != workflowInstance.getStatus();
     boolean resultChanged =
         !Objects.equals(decisionResponse.getResult(), workflowInstance.getResult());
-    boolean stateChanged =
-        decisionResponse.getNewState() != null
-            && !Objects.equals(decisionResponse.getNewState(), workflowInstance.getState());
-    return statusChanged || resultChanged || stateChanged;
+    boolean stateChanged;
+    if (decisionResponse.getNewState() == null) {
+      stateChanged = false;
+    } else if (decisionResponse.getChangedStateFields() != null) {
+      stateChanged = !decisionResponse.getChangedStateFields().isEmpty();
+    } else {
+      stateChanged = !Objects.equals(decisionResponse.getNewState(), workflowInstance.getState());
+    }
+    boolean checkpointChanged =
+        decisionResponse.getReplayCheckpoint() != null
+            && !decisionResponse
+                .getReplayCheckpoint()
+                .equals(workflowInstance.getReplayCheckpoint());
+    return statusChanged || resultChanged || stateChanged || checkpointChanged;
   }
 
   private void resetWorkflowContextData(
@@ -214,16 +634,14 @@ public class SkipperEngine {
         .set();
   }
 
-  private void scheduleCallback(WorkflowInstance workflowInstance) {
-    val timer =
-        Timer.builder()
-            .timerId(
-                String.format(
-                    "%s-callback-%d", workflowInstance.getId(), workflowInstance.getVersion()))
-            .handlerClazz(WorkflowInstanceCallbackTimerHandler.class)
-            .payload(new Anything(String.class, workflowInstance.getId()))
-            .build();
-    timerStore.createOrUpdate(timer);
+  private static Timer callbackTimer(WorkflowInstance workflowInstance) {
+    return Timer.builder()
+        .timerId(
+            String.format(
+                "%s-callback-%d", workflowInstance.getId(), workflowInstance.getVersion()))
+        .handlerClazz(WorkflowInstanceCallbackTimerHandler.class)
+        .payload(new Anything(String.class, workflowInstance.getId()))
+        .build();
   }
 
   /**
@@ -353,11 +771,57 @@ public class SkipperEngine {
     return workflowInstanceStore.get(id);
   }
 
-  public Optional<WorkflowInstance> getWorkflowInstanceByCorrelationId(String correlationId) {
-    // TODO: implement a proper find by correlation ID here.
-    return workflowInstanceStore.find().stream()
-        .filter(wf -> wf.getCorrelationId().equals(correlationId))
-        .findFirst();
+  /**
+   * Get many workflow instances at once.
+   *
+   * @param workflowInstanceIds The workflow instance IDs
+   * @return The workflow instances found, the IDs that don't exist are skipped
+   */
+  public List<WorkflowInstance> getWorkflowInstances(
+      @NonNull Collection<String> workflowInstanceIds) {
+    return workflowInstanceStore.getAll(workflowInstanceIds);
+  }
+
+  /**
+   * @param workflowType The workflow type
+   * @param correlationId The correlation ID the workflow instance was created with
+   * @return The workflow instance, if any
+   */
+  public Optional<WorkflowInstance> getWorkflowInstanceByCorrelationId(
+      @NonNull WorkflowType workflowType, @NonNull String correlationId) {
+    return workflowInstanceStore.findByCorrelationId(workflowType, correlationId);
+  }
+
+  /**
+   * Looks up the correlation ID under each of the registered workflow types, one indexed lookup per
+   * type.
+   *
+   * @param correlationId The correlation ID the workflow instance was created with
+   * @return The first workflow instance found, if any
+   * @deprecated Correlation IDs are only unique per workflow type, use {@link
+   *     #getWorkflowInstanceByCorrelationId(WorkflowType, String)} instead.
+   */
+  @Deprecated
+  public Optional<WorkflowInstance> getWorkflowInstanceByCorrelationId(
+      @NonNull String correlationId) {
+    for (val clazz : registry.getWorkflowClasses()) {
+      val instance = getWorkflowInstanceByCorrelationId(new WorkflowType(clazz), correlationId);
+      if (instance.isPresent()) {
+        return instance;
+      }
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * @param workflowClassName The fully qualified name of the workflow class
+   * @return The workflow type, if the workflow is registered with this engine
+   */
+  public Optional<WorkflowType> getRegisteredWorkflowType(@NonNull String workflowClassName) {
+    return registry.getWorkflowClasses().stream()
+        .filter(clazz -> clazz.getName().equals(workflowClassName))
+        .findFirst()
+        .map(WorkflowType::new);
   }
 
   /**
@@ -384,6 +848,26 @@ public class SkipperEngine {
     return operationStore.getOperationRequests(workflowInstanceId);
   }
 
+  /**
+   * Get the timers that kept failing and were moved to quarantine.
+   *
+   * @param limit The maximum number of timers to return
+   * @return The quarantined timers, most recent first
+   */
+  public List<QuarantinedTimer> getQuarantinedTimers(int limit) {
+    return timerStore.getQuarantinedTimers(limit);
+  }
+
+  /**
+   * Move a quarantined timer back to the active timers, with its retries reset.
+   *
+   * @param timerId The timer ID
+   * @throws IllegalArgumentException In case the timer is not quarantined
+   */
+  public void requeueQuarantinedTimer(@NonNull String timerId) {
+    timerStore.requeueQuarantinedTimer(timerId);
+  }
+
   public List<WorkflowInstance> findWorkflowInstances() {
     return workflowInstanceStore.find();
   }
@@ -405,6 +889,22 @@ public class SkipperEngine {
       @NonNull String workflowInstanceId,
       @NonNull String signalMethodName,
       @NonNull List<Anything> signalArgs) {
+    // The signal runs on the caller's thread, which must not keep the workflow context around
+    Runnable signal =
+        DecisionThread.isolated(
+            () -> deliverSignal(workflowInstanceId, signalMethodName, signalArgs));
+    val dispatcher = localTimerDispatcher;
+    if (dispatcher == null) {
+      signal.run();
+      return;
+    }
+    // Wait for the decisions already being processed locally so that the signal doesn't
+    // interleave with them
+    dispatcher.runSerialized(workflowInstanceId, signal);
+  }
+
+  private void deliverSignal(
+      String workflowInstanceId, String signalMethodName, List<Anything> signalArgs) {
     val workflowInstance = workflowInstanceStore.get(workflowInstanceId);
     if (workflowInstance.getStatus().isCompleted()) {
       throw new IllegalStateException(
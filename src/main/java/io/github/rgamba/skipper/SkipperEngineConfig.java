@@ -0,0 +1,64 @@
+package io.github.rgamba.skipper;
+
+import java.time.Duration;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+/** Tuning knobs of the {@link SkipperEngine}. */
+@Value
+@Builder(toBuilder = true)
+public class SkipperEngineConfig {
+  /**
+   * How long a decision requested by an event (e.g. an operation completion or a signal) waits
+   * before running. All the decisions requested for the same workflow instance within the window
+   * are coalesced into a single decision run, which avoids replaying the workflow history once per
+   * event on bursty fan-ins. The first decision of a new workflow instance is never debounced. Zero
+   * disables debouncing, in which case decisions are dispatched right away.
+   */
+  @Builder.Default @NonNull Duration decisionDebounceWindow = Duration.ZERO;
+
+  /**
+   * Number of operation responses after which a workflow instance automatically continues as new
+   * (see {@link io.github.rgamba.skipper.api.Control#continueAsNew(Object...)}) with its current
+   * arguments and state, so that its history doesn't grow without limit. It only happens when a
+   * decision ends up waiting, and the new run starts when the wait is over. Only applies to the
+   * workflows annotated with {@link io.github.rgamba.skipper.api.annotations.ResumableWorkflow},
+   * which rebuild their progress from their state, as any other workflow would execute its side
+   * effects again. Zero disables it.
+   */
+  @Builder.Default int historyCompactionThreshold = 0;
+
+  /**
+   * Maximum estimated memory footprint of the workflow instances and histories cached between
+   * decisions, see {@link DecisionHistoryCache}. Zero disables the cache, in which case every
+   * decision loads the whole history from the store.
+   */
+  @Builder.Default long historyCacheMaxBytes = 0;
+
+  /**
+   * How often the completion feed is checked for workflow instances completed on other nodes while
+   * there are callers waiting on them, see {@link WorkflowCompletionNotifier}.
+   */
+  @Builder.Default @NonNull Duration completionFeedPollInterval = Duration.ofMillis(500);
+
+  /** How long the entries of the completion feed are kept around before being pruned. */
+  @Builder.Default @NonNull Duration completionFeedRetention = Duration.ofHours(1);
+
+  /**
+   * How long the completion feed is re-scanned for completions that become visible after others
+   * with a higher sequence, i.e. committed out of order. It should cover the longest transaction
+   * that completes a workflow instance.
+   */
+  @Builder.Default @NonNull Duration completionFeedGracePeriod = Duration.ofSeconds(10);
+
+  /**
+   * Maximum number of workflow instances written by a single transaction of {@link
+   * SkipperEngine#createWorkflowInstances(java.util.List)}.
+   */
+  @Builder.Default int bulkCreationChunkSize = 500;
+
+  public static SkipperEngineConfig defaults() {
+    return SkipperEngineConfig.builder().build();
+  }
+}
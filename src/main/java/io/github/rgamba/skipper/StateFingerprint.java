@@ -0,0 +1,66 @@
+package io.github.rgamba.skipper;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import io.github.rgamba.skipper.common.Anything;
+import io.github.rgamba.skipper.serde.SerdeUtils;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Per-field fingerprints of a workflow state, used to find out which state fields were changed by a
+ * decision without deep comparing the whole state.
+ *
+ * <p>Fingerprints are taken from the serialized form of the fields, so they must be taken before
+ * the workflow runs: state fields are handed to the workflow as they are, and a workflow mutating a
+ * collection in place would otherwise mutate the state it's compared against.
+ *
+ * <p>A null field and a missing field are the same thing, as null fields aren't persisted.
+ */
+public class StateFingerprint {
+  private static final Gson gson = SerdeUtils.getGson();
+
+  private final Map<String, Long> fingerprints;
+
+  private StateFingerprint(Map<String, Long> fingerprints) {
+    this.fingerprints = fingerprints;
+  }
+
+  public static StateFingerprint of(@NonNull Map<String, Anything> state) {
+    Map<String, Long> fingerprints = new HashMap<>();
+    state.forEach(
+        (field, value) -> {
+          if (value != null) {
+            fingerprints.put(field, fingerprint(value));
+          }
+        });
+    return new StateFingerprint(fingerprints);
+  }
+
+  private static long fingerprint(Anything value) {
+    return Hashing.murmur3_128().hashString(gson.toJson(value), Charsets.UTF_8).asLong();
+  }
+
+  /**
+   * @param state The new state
+   * @return The names of the fields of the new state that are new, have a different value or were
+   *     set to null
+   */
+  public Set<String> getChangedFields(@NonNull Map<String, Anything> state) {
+    Set<String> changed = new HashSet<>();
+    state.forEach(
+        (field, value) -> {
+          val newFingerprint = value != null ? fingerprint(value) : null;
+          if (!Objects.equals(fingerprints.get(field), newFingerprint)) {
+            changed.add(field);
+          }
+        });
+    return changed;
+  }
+}
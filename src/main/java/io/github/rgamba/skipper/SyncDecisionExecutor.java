@@ -1,5 +1,7 @@
 package io.github.rgamba.skipper;
 
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import io.github.rgamba.skipper.api.DecisionRequest;
@@ -10,13 +12,32 @@ import io.github.rgamba.skipper.common.Anything;
 import io.github.rgamba.skipper.models.OperationRequest;
 import io.github.rgamba.skipper.models.OperationResponse;
 import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
+import lombok.Getter;
 import lombok.NonNull;
 import lombok.val;
 import lombok.var;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * This is a variation of the {@link DecisionExecutor} that will attempt to execute all operations
@@ -26,16 +47,51 @@ import lombok.var;
  *
  * <p>This strategy does not give away any of the guarantees that the {@link DecisionExecutor} does,
  * but it does increase the chances of operations being executed more than once in very rare cases.
+ *
+ * <p>The operations requested by a single decision (e.g. all the operations joined by the workflow)
+ * are independent of each other, so they are executed concurrently on a shared operation pool,
+ * created by the same {@link WorkerExecutorFactory} as the timer worker pools. When the pool is
+ * saturated the operations that can't be submitted are not executed inline: they are handed over to
+ * the timer store as if they had run out of time budget, so the decision thread never runs them
+ * itself and the {@link SyncDecisionExecutorConfig#getOperationTimeBudget() time budget} is always
+ * enforced. Only the operations that haven't started by the end of the budget are handed over, the
+ * ones already running are interrupted and waited for, so that no operation runs twice.
  */
 public class SyncDecisionExecutor extends DecisionExecutor {
+  private static final Logger logger = LoggerFactory.getLogger(SyncDecisionExecutor.class);
+
   @NonNull private final OperationExecutor operationExecutor;
   @NonNull private final Clock clock;
+  @NonNull private final SyncDecisionExecutorConfig config;
+  @NonNull private final ExecutorService operationPool;
+
+  public SyncDecisionExecutor(@NonNull OperationExecutor operationExecutor, @NonNull Clock clock) {
+    this(operationExecutor, clock, SyncDecisionExecutorConfig.defaults());
+  }
+
+  public SyncDecisionExecutor(
+      @NonNull OperationExecutor operationExecutor,
+      @NonNull Clock clock,
+      @NonNull SyncDecisionExecutorConfig config) {
+    this(operationExecutor, clock, config, new PlatformWorkerExecutorFactory());
+  }
 
   @Inject
   public SyncDecisionExecutor(
-      @NonNull OperationExecutor operationExecutor, @Named("UTC") @NonNull Clock clock) {
+      @NonNull OperationExecutor operationExecutor,
+      @Named("UTC") @NonNull Clock clock,
+      @NonNull SyncDecisionExecutorConfig config,
+      @NonNull WorkerExecutorFactory executorFactory) {
     this.operationExecutor = operationExecutor;
     this.clock = clock;
+    this.config = config;
+    this.operationPool =
+        executorFactory.create(
+            "inline-operation",
+            TimerHandlerPoolConfig.builder()
+                .poolSize(config.getOperationPoolSize())
+                .queueCapacity(config.getOperationPoolSize())
+                .build());
   }
 
   @Override
@@ -47,12 +103,26 @@ public class SyncDecisionExecutor extends DecisionExecutor {
     List<OperationResponse> operationResponses = decisionRequest.getOperationResponses();
     List<DecisionResponse.InlineExecution> inlineExecutions = new ArrayList<>();
     val decisionResponseBuilder = DecisionResponse.builder();
+    // Every iteration replays the workflow on top of the same initial state, so the changes need to
+    // be tracked against the state as it was before the first iteration.
+    val initialState = StateFingerprint.of(decisionRequest.getWorkflowInstance().getState());
+    val start = clock.instant();
+    val inlineDeadline =
+        decisionRequest.getDeadline() != null
+            ? min(start.plus(config.getMaxInlineDuration()), decisionRequest.getDeadline())
+            : start.plus(config.getMaxInlineDuration());
+    val operationDeadline = min(start.plus(config.getOperationTimeBudget()), inlineDeadline);
+    int iterations = 0;
+    Map<String, Anything> newState;
     do {
       DecisionResponse response = super.execute(decisionRequest, registry);
       decisionResponseBuilder.newStatus(response.getNewStatus());
-      decisionResponseBuilder.newState(response.getNewState());
+      newState = response.getNewState();
+      decisionResponseBuilder.newState(newState);
       decisionResponseBuilder.statusReason(response.getStatusReason());
       decisionResponseBuilder.result(response.getResult());
+      decisionResponseBuilder.continueAsNewArgs(response.getContinueAsNewArgs());
+      decisionResponseBuilder.replayCheckpoint(response.getReplayCheckpoint());
       operationRequests = response.getOperationRequests();
       if (response.getWaitForDuration() != null
           || operationRequests.stream().anyMatch(req -> req.getOperationType().isWorkflow())) {
@@ -62,7 +132,16 @@ public class SyncDecisionExecutor extends DecisionExecutor {
         decisionResponseBuilder.waitForDuration(response.getWaitForDuration());
         break;
       }
-      for (val inlineExecution : executeOperations(operationRequests, registry)) {
+      if (iterations++ >= config.getMaxInlineIterations()
+          || !clock.instant().isBefore(inlineDeadline)) {
+        // Out of budget, the progress made so far is persisted along with the pending operation
+        // requests, which will be executed asynchronously.
+        Metrics.getCounter("sync_decision_executor", "inline_budget_exceeded").inc();
+        break;
+      }
+      val executions = executeOperations(operationRequests, registry, operationDeadline);
+      Set<String> executedRequestIds = new HashSet<>();
+      for (val inlineExecution : executions) {
         if (inlineExecution.getResponse().isTransient()) {
           // Non-transient operation results cannot be processed synchronously,
           // so we need to break in order to retry async.
@@ -70,53 +149,218 @@ public class SyncDecisionExecutor extends DecisionExecutor {
         }
         operationResponses.add(inlineExecution.getResponse());
         inlineExecutions.add(inlineExecution);
+        executedRequestIds.add(inlineExecution.getRequest().getOperationRequestId());
+      }
+      if (executions.size() < operationRequests.size()) {
+        // The time budget ran out, the operations that didn't make it will run asynchronously
+        Metrics.getCounter("sync_decision_executor", "operation_budget_exceeded").inc();
+        operationRequests =
+            operationRequests.stream()
+                .filter(req -> !executedRequestIds.contains(req.getOperationRequestId()))
+                .collect(Collectors.toList());
+        break;
       }
-      ;
     } while (!operationRequests.isEmpty());
+    if (newState != null) {
+      decisionResponseBuilder.changedStateFields(initialState.getChangedFields(newState));
+    }
     return decisionResponseBuilder
         .operationRequests(operationRequests)
         .inlineExecutions(inlineExecutions)
         .build();
   }
 
+  /**
+   * Execute the operations, up to {@link SyncDecisionExecutorConfig#getOperationParallelism()} at a
+   * time.
+   *
+   * @return The executions that completed before the deadline, in request order. Operations that
+   *     haven't started by the deadline are not executed inline anymore. Operations already running
+   *     are interrupted and waited for, so that they are never executed again asynchronously while
+   *     still running.
+   */
   private List<DecisionResponse.InlineExecution> executeOperations(
-      @NonNull List<OperationRequest> operationRequests, @NonNull DependencyRegistry registry) {
-    return operationRequests.stream()
-        .map(
-            req -> {
-              val response = operationExecutor.execute(req, registry);
-              // TODO: refactor all these code and put it in OperationExecutor to remove duplication
-              // with SkipperEngine
-              var responseError = response.getError();
-              boolean isTransient = false;
-              if (response.getStatus().equals(OperationExecutionResponse.Status.RETRIABLE_ERROR)) {
-                if (req.getRetryStrategy()
-                    .getNextRetryDelay(req.getFailedAttempts() + 1)
-                    .isPresent()) {
-                  isTransient = true;
-                } else {
-                  responseError =
-                      new Anything(
-                          OperationError.class,
-                          new OperationError((Throwable) responseError.getValue()));
-                }
-              }
-              val operationResponse =
-                  OperationResponse.builder()
-                      .operationRequestId(req.getOperationRequestId())
-                      .result(response.getResult())
-                      .isSuccess(!response.isError())
-                      .operationType(req.getOperationType())
-                      .iteration(req.getIteration())
-                      .id(UUID.randomUUID().toString())
-                      .workflowInstanceId(req.getWorkflowInstanceId())
-                      .creationTime(clock.instant())
-                      .isTransient(isTransient)
-                      .error(responseError)
-                      .executionDuration(response.getExecutionDuration())
-                      .build();
-              return new DecisionResponse.InlineExecution(req, operationResponse);
-            })
-        .collect(Collectors.toList());
+      @NonNull List<OperationRequest> operationRequests,
+      @NonNull DependencyRegistry registry,
+      @NonNull Instant deadline) {
+    if (operationRequests.size() < 2 || config.getOperationParallelism() < 2) {
+      List<DecisionResponse.InlineExecution> executions = new ArrayList<>();
+      for (val req : operationRequests) {
+        if (!clock.instant().isBefore(deadline)) {
+          break;
+        }
+        executions.add(executeOperation(req, registry));
+      }
+      return executions;
+    }
+    val completionService =
+        new ExecutorCompletionService<DecisionResponse.InlineExecution>(operationPool);
+    Map<Future<DecisionResponse.InlineExecution>, InlineOperation> pending = new HashMap<>();
+    val results = new DecisionResponse.InlineExecution[operationRequests.size()];
+    int submitted = 0;
+    // Once the pool rejects an operation, the rest are handed over to the async path
+    boolean saturated = false;
+    try {
+      while (!saturated
+          && submitted < Math.min(config.getOperationParallelism(), operationRequests.size())) {
+        saturated = !submit(completionService, pending, operationRequests, submitted, registry);
+        submitted += saturated ? 0 : 1;
+      }
+      while (!pending.isEmpty()) {
+        long remainingMillis = Duration.between(clock.instant(), deadline).toMillis();
+        val future =
+            remainingMillis > 0
+                ? completionService.poll(remainingMillis, TimeUnit.MILLISECONDS)
+                : null;
+        if (future == null) {
+          logger.warn(
+              "{} operation(s) did not complete within the inline time budget",
+              operationRequests.size() - submitted + pending.size());
+          break;
+        }
+        results[pending.remove(future).getIndex()] = getResult(future);
+        if (!saturated && submitted < operationRequests.size()) {
+          saturated = !submit(completionService, pending, operationRequests, submitted, registry);
+          submitted += saturated ? 0 : 1;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      for (val entry : pending.entrySet()) {
+        if (entry.getValue().claim()) {
+          // It never started, so it is safe to execute it asynchronously instead
+          entry.getKey().cancel(false);
+          continue;
+        }
+        entry.getValue().interrupt();
+        results[entry.getValue().getIndex()] = awaitResult(entry.getKey());
+      }
+    }
+    return Arrays.stream(results).filter(Objects::nonNull).collect(Collectors.toList());
+  }
+
+  /** @return false if the pool is saturated and rejected the operation. */
+  private boolean submit(
+      ExecutorCompletionService<DecisionResponse.InlineExecution> completionService,
+      Map<Future<DecisionResponse.InlineExecution>, InlineOperation> pending,
+      List<OperationRequest> operationRequests,
+      int index,
+      DependencyRegistry registry) {
+    val operation = new InlineOperation(operationRequests.get(index), index, registry);
+    try {
+      pending.put(completionService.submit(operation), operation);
+      return true;
+    } catch (RejectedExecutionException e) {
+      Metrics.getCounter("sync_decision_executor", "operation_pool_saturated").inc();
+      return false;
+    }
+  }
+
+  private static Instant min(Instant a, Instant b) {
+    return a.isBefore(b) ? a : b;
+  }
+
+  private static DecisionResponse.InlineExecution getResult(
+      Future<DecisionResponse.InlineExecution> future) throws InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  /** Waits for an operation that is already running, even if this thread is interrupted. */
+  private static DecisionResponse.InlineExecution awaitResult(
+      Future<DecisionResponse.InlineExecution> future) {
+    try {
+      return Uninterruptibles.getUninterruptibly(future);
+    } catch (ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  /**
+   * An operation submitted to the operation pool. Either the worker starts it or the decision
+   * thread claims it back once the time budget runs out, but never both, so that an operation is
+   * not executed inline and asynchronously at the same time.
+   */
+  private class InlineOperation implements Callable<DecisionResponse.InlineExecution> {
+    private final OperationRequest request;
+    @Getter private final int index;
+    private final DependencyRegistry registry;
+    private final AtomicBoolean claimed = new AtomicBoolean();
+    private Thread runner;
+
+    InlineOperation(OperationRequest request, int index, DependencyRegistry registry) {
+      this.request = request;
+      this.index = index;
+      this.registry = registry;
+    }
+
+    /** @return true if the operation hasn't started, and won't ever start. */
+    boolean claim() {
+      return claimed.compareAndSet(false, true);
+    }
+
+    synchronized void interrupt() {
+      if (runner != null) {
+        runner.interrupt();
+      }
+    }
+
+    @Override
+    public DecisionResponse.InlineExecution call() {
+      if (!claim()) {
+        return null;
+      }
+      synchronized (this) {
+        runner = Thread.currentThread();
+      }
+      try {
+        return executeOperation(request, registry);
+      } finally {
+        synchronized (this) {
+          runner = null;
+          // Don't leak a late interruption to the next task of the worker
+          Thread.interrupted();
+        }
+      }
+    }
+  }
+
+  private DecisionResponse.InlineExecution executeOperation(
+      @NonNull OperationRequest req, @NonNull DependencyRegistry registry) {
+    val response = operationExecutor.execute(req, registry);
+    // TODO: refactor all these code and put it in OperationExecutor to remove duplication
+    // with SkipperEngine
+    var responseError = response.getError();
+    boolean isTransient = false;
+    if (response.getStatus().equals(OperationExecutionResponse.Status.RETRIABLE_ERROR)) {
+      if (req.getRetryStrategy().getNextRetryDelay(req.getFailedAttempts() + 1).isPresent()) {
+        isTransient = true;
+      } else {
+        responseError =
+            new Anything(
+                OperationError.class, new OperationError((Throwable) responseError.getValue()));
+      }
+    }
+    val operationResponse =
+        OperationResponse.builder()
+            .operationRequestId(req.getOperationRequestId())
+            .result(response.getResult())
+            .isSuccess(!response.isError())
+            .operationType(req.getOperationType())
+            .iteration(req.getIteration())
+            .id(UUID.randomUUID().toString())
+            .workflowInstanceId(req.getWorkflowInstanceId())
+            .creationTime(clock.instant())
+            .isTransient(isTransient)
+            .error(responseError)
+            .executionDuration(response.getExecutionDuration())
+            .build();
+    return new DecisionResponse.InlineExecution(req, operationResponse);
   }
 }
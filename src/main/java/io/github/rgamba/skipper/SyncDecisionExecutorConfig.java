@@ -0,0 +1,42 @@
+package io.github.rgamba.skipper;
+
+import java.time.Duration;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+/** Tuning knobs of the {@link SyncDecisionExecutor}. */
+@Value
+@Builder(toBuilder = true)
+public class SyncDecisionExecutorConfig {
+  /**
+   * Max number of operations of a single decision that are executed concurrently, e.g. when the
+   * workflow joins several promises. One executes them sequentially on the decision thread.
+   */
+  @Builder.Default int operationParallelism = 8;
+  /**
+   * Number of workers shared by all the decisions to execute operations concurrently, and number of
+   * operations that can be queued waiting for one. Operations that don't fit are executed
+   * asynchronously. With virtual threads the pool is not bounded, the concurrency is bounded by the
+   * number of decisions running times the {@link #operationParallelism}.
+   */
+  @Builder.Default int operationPoolSize = 64;
+  /**
+   * Total time a decision can spend executing operations inline. Operations that haven't started
+   * within the budget are handed over to the timer store and executed asynchronously. Operations
+   * already running are interrupted, and the decision waits for them to finish.
+   */
+  @Builder.Default @NonNull Duration operationTimeBudget = Duration.ofSeconds(30);
+  /**
+   * Wall-clock time after which a decision stops executing operations inline. The pending
+   * operations are handed over to the timer store, so that a long sequential workflow doesn't hold
+   * a timer worker (and its lease) for as long as all of its operations take.
+   */
+  @Builder.Default @NonNull Duration maxInlineDuration = Duration.ofSeconds(10);
+  /** Max number of replay rounds of a decision that execute operations inline. */
+  @Builder.Default int maxInlineIterations = 50;
+
+  public static SyncDecisionExecutorConfig defaults() {
+    return SyncDecisionExecutorConfig.builder().build();
+  }
+}
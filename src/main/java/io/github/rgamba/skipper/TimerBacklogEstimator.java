@@ -0,0 +1,175 @@
+package io.github.rgamba.skipper;
+
+import io.github.rgamba.skipper.models.Timer;
+import io.github.rgamba.skipper.store.TimerStore;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.NonNull;
+import lombok.val;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a cached estimate of the expired timers backlog, refreshed in the background.
+ *
+ * <p>Metric reporters read the cached values, so the cost of computing the backlog doesn't depend
+ * on how many reporters there are or how often they scrape.
+ */
+public class TimerBacklogEstimator {
+  private static Logger logger = LoggerFactory.getLogger(TimerBacklogEstimator.class);
+
+  public enum Mode {
+    /** Count all the expired timers. Accurate, but the cost grows with the backlog. */
+    EXACT,
+    /** Count the expired timers up to a limit, the backlog is reported as at most the limit. */
+    CAPPED,
+    /**
+     * Don't query the store at all, derive the metrics from the timers claimed by the local fetch
+     * loop since the last refresh that were already overdue. The size of the backlog left in the
+     * store is unknown, the number of overdue timers this node drained during the refresh interval
+     * is published instead, under its own gauge: it is a throughput, it tells that the node is
+     * lagging, not by how much. Timers without a timeout count as due when claimed, as their
+     * enqueue time is unknown.
+     */
+    OBSERVED
+  }
+
+  private final TimerStore timerStore;
+  private final Clock clock;
+  private final Mode mode;
+  private final long countLimit;
+  private final Duration refreshInterval;
+  private final ScheduledExecutorService executor;
+  private volatile long backlogSize = 0;
+  private volatile long drainedOverdueCount = 0;
+  private volatile long oldestDueAgeMillis = 0;
+  // Observations from the fetch loop since the last refresh, guarded by this
+  private long observedOverdue = 0;
+  private Instant observedOldestTimeout = null;
+
+  public TimerBacklogEstimator(
+      @NonNull TimerStore timerStore,
+      @NonNull Clock clock,
+      @NonNull Mode mode,
+      long countLimit,
+      @NonNull Duration refreshInterval) {
+    this.timerStore = timerStore;
+    this.clock = clock;
+    this.mode = mode;
+    this.countLimit = countLimit;
+    this.refreshInterval = refreshInterval;
+    this.executor =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              val thread = new Thread(runnable, "timer-backlog-estimator");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  public void start() {
+    if (mode == Mode.OBSERVED) {
+      Metrics.registerGauge("timers", "overdue_drained_count", this::getDrainedOverdueCount);
+    } else {
+      Metrics.registerGauge("timers", "expired_backlog_size", this::getBacklogSize);
+    }
+    Metrics.registerGauge("timers", "oldest_due_age_millis", this::getOldestDueAgeMillis);
+    executor.scheduleWithFixedDelay(
+        this::refreshSafely, 0, refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  /** Stop refreshing the estimate in the background. */
+  public void stop() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * @return The estimated number of expired timers that are waiting to be processed. Always 0 in
+   *     {@link Mode#OBSERVED} mode.
+   */
+  public long getBacklogSize() {
+    return backlogSize;
+  }
+
+  /**
+   * @return The number of overdue timers claimed during the last refresh interval. Only computed in
+   *     {@link Mode#OBSERVED} mode.
+   */
+  public long getDrainedOverdueCount() {
+    return drainedOverdueCount;
+  }
+
+  /** @return How long the oldest expired timer has been waiting to be processed. */
+  public long getOldestDueAgeMillis() {
+    return oldestDueAgeMillis;
+  }
+
+  /**
+   * Record the timers claimed by the fetch loop. Only used in {@link Mode#OBSERVED} mode.
+   *
+   * @param claimed The timers that were just claimed
+   */
+  public void observe(@NonNull List<Timer> claimed) {
+    if (mode != Mode.OBSERVED || claimed.isEmpty()) {
+      return;
+    }
+    val now = clock.instant();
+    synchronized (this) {
+      for (val timer : claimed) {
+        val timeout = timer.getTimeout() == null ? now : timer.getTimeout();
+        if (timeout.isAfter(now)) {
+          // Claimed ahead of time, not part of the backlog
+          continue;
+        }
+        observedOverdue++;
+        if (observedOldestTimeout == null || timeout.isBefore(observedOldestTimeout)) {
+          observedOldestTimeout = timeout;
+        }
+      }
+    }
+  }
+
+  private void refreshSafely() {
+    try {
+      refresh();
+    } catch (Exception e) {
+      logger.warn("unable to refresh the timer backlog estimate: {}", e.getMessage());
+    }
+  }
+
+  void refresh() {
+    val now = clock.instant();
+    switch (mode) {
+      case EXACT:
+      case CAPPED:
+        backlogSize =
+            mode == Mode.EXACT
+                ? timerStore.countExpiredTimers()
+                : timerStore.countExpiredTimers(countLimit);
+        oldestDueAgeMillis =
+            timerStore
+                .getOldestExpiredTimeout()
+                .map(timeout -> Math.max(0, Duration.between(timeout, now).toMillis()))
+                .orElse(0L);
+        break;
+      case OBSERVED:
+        synchronized (this) {
+          drainedOverdueCount = observedOverdue;
+          oldestDueAgeMillis =
+              observedOldestTimeout == null
+                  ? 0
+                  : Math.max(0, Duration.between(observedOldestTimeout, now).toMillis());
+          observedOverdue = 0;
+          observedOldestTimeout = null;
+        }
+        break;
+      default:
+        throw new IllegalStateException("unknown mode " + mode);
+    }
+  }
+}
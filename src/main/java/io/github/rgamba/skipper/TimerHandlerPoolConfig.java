@@ -0,0 +1,20 @@
+package io.github.rgamba.skipper;
+
+import lombok.Builder;
+import lombok.Value;
+
+/** Configuration of the worker pool that processes the timers of a given timer handler. */
+@Value
+@Builder(toBuilder = true)
+public class TimerHandlerPoolConfig {
+  /** Number of threads that execute the handler. */
+  @Builder.Default int poolSize = 16;
+  /** Number of claimed timers that can wait for a free worker. */
+  @Builder.Default int queueCapacity = 256;
+  /**
+   * Pools with higher priority claim their timers first on every fetch, and their threads run with
+   * this {@link Thread#getPriority() thread priority}. Must be between {@link Thread#MIN_PRIORITY}
+   * and {@link Thread#MAX_PRIORITY}.
+   */
+  @Builder.Default int priority = Thread.NORM_PRIORITY;
+}
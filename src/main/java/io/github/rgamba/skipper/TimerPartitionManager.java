@@ -0,0 +1,119 @@
+package io.github.rgamba.skipper;
+
+import io.github.rgamba.skipper.models.Timer;
+import io.github.rgamba.skipper.store.TimerPartitionStore;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides which timer partitions the current node is responsible for.
+ *
+ * <p>Every node sends periodic heartbeats to the membership table. Partitions are spread evenly
+ * across all live nodes (partition {@code p} belongs to the {@code p % n}-th live node, sorted by
+ * node ID) and each node takes a lease on its share. When nodes join or die, the next refresh on
+ * every node will compute the new assignment, release the partitions it no longer owns and acquire
+ * the new ones as soon as their previous lease is released or expired.
+ *
+ * <p>This class is not thread-safe, {@link #refreshIfNeeded()} is expected to be called from the
+ * timer fetch loop only.
+ */
+public class TimerPartitionManager {
+  private static Logger logger = LoggerFactory.getLogger(TimerPartitionManager.class);
+
+  public static final Duration DEFAULT_REFRESH_INTERVAL = Duration.ofSeconds(5);
+  public static final Duration DEFAULT_LEASE_DURATION = Duration.ofSeconds(15);
+
+  @Getter private final String nodeId;
+  private final TimerPartitionStore partitionStore;
+  private final Clock clock;
+  private final Duration refreshInterval;
+  private final Duration leaseDuration;
+  private volatile Set<Integer> ownedPartitions = Collections.emptySet();
+  private Instant nextRefresh = Instant.MIN;
+
+  public TimerPartitionManager(@NonNull TimerPartitionStore partitionStore, @NonNull Clock clock) {
+    this(partitionStore, clock, DEFAULT_REFRESH_INTERVAL, DEFAULT_LEASE_DURATION);
+  }
+
+  public TimerPartitionManager(
+      @NonNull TimerPartitionStore partitionStore,
+      @NonNull Clock clock,
+      @NonNull Duration refreshInterval,
+      @NonNull Duration leaseDuration) {
+    if (leaseDuration.compareTo(refreshInterval) <= 0) {
+      throw new IllegalArgumentException("leaseDuration must be longer than refreshInterval");
+    }
+    this.nodeId = UUID.randomUUID().toString();
+    this.partitionStore = partitionStore;
+    this.clock = clock;
+    this.refreshInterval = refreshInterval;
+    this.leaseDuration = leaseDuration;
+  }
+
+  /** @return The partitions currently leased by this node. */
+  public Set<Integer> getOwnedPartitions() {
+    return ownedPartitions;
+  }
+
+  /**
+   * Refresh the membership and partition leases, but only if the refresh interval has elapsed since
+   * the last refresh.
+   */
+  public void refreshIfNeeded() {
+    if (clock.instant().isBefore(nextRefresh)) {
+      return;
+    }
+    refresh();
+  }
+
+  /** Send a heartbeat, recompute the partition assignment and renew the partition leases. */
+  public void refresh() {
+    try (val unused = Metrics.getStoreLatencyTimer("timer_partitions", "refresh").time()) {
+      partitionStore.heartbeat(nodeId);
+      val liveNodes = new ArrayList<>(partitionStore.getLiveNodes(leaseDuration));
+      if (!liveNodes.contains(nodeId)) {
+        liveNodes.add(nodeId);
+        Collections.sort(liveNodes);
+      }
+      val desired = assignPartitions(liveNodes.indexOf(nodeId), liveNodes.size());
+      partitionStore.releasePartitions(nodeId, desired);
+      val owned = partitionStore.acquirePartitions(nodeId, desired, leaseDuration);
+      if (!owned.equals(ownedPartitions)) {
+        logger.info(
+            "timer partition ownership changed. node={} liveNodes={} owned={}",
+            nodeId,
+            liveNodes.size(),
+            owned.size());
+      }
+      ownedPartitions = Collections.unmodifiableSet(owned);
+      nextRefresh = clock.instant().plus(refreshInterval);
+    } catch (Exception e) {
+      // If we are unable to renew the leases we need to stop processing the partitions before
+      // the leases expire and another node takes over.
+      logger.error("unable to refresh timer partitions: {}", e.getMessage());
+      ownedPartitions = Collections.emptySet();
+      throw e;
+    }
+  }
+
+  static Set<Integer> assignPartitions(int nodeIndex, int nodeCount) {
+    Set<Integer> partitions = new HashSet<>();
+    for (int p = 0; p < Timer.PARTITION_COUNT; p++) {
+      if (p % nodeCount == nodeIndex) {
+        partitions.add(p);
+      }
+    }
+    return partitions;
+  }
+}
@@ -4,53 +4,225 @@ import com.google.inject.Inject;
 import io.github.rgamba.skipper.models.Timer;
 import io.github.rgamba.skipper.runtime.DecisionThread;
 import io.github.rgamba.skipper.store.TimerStore;
+import io.github.rgamba.skipper.timers.HierarchicalTimingWheel;
 import io.github.rgamba.skipper.timers.TimerHandler;
+import java.time.Clock;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
 import lombok.NonNull;
 import lombok.SneakyThrows;
 import lombok.val;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class TimerProcessor {
+public class TimerProcessor implements LocalTimerDispatcher {
   private static Logger logger = LoggerFactory.getLogger(TimerProcessor.class);
 
   private final SkipperEngine engine;
   private final TimerStore timerStore;
-  private final Duration fetchDelay = Duration.ofMillis(50);
-  private final Map<Class<? extends TimerHandler>, TimerHandler> handlerMap;
-  private final ThreadPoolExecutor executor;
+  private final TimerPartitionManager partitionManager;
+  private final TimerProcessorConfig config;
+  private final Clock clock;
+  private final ExecutorService schedulerExecutor;
+  private final TimerBacklogEstimator backlogEstimator;
+  // One worker pool per timer handler, sorted by descending priority
+  private final List<TimerWorkerPool> pools;
+  private final Map<Class<? extends TimerHandler>, TimerWorkerPool> poolMap = new HashMap<>();
+  // Lanes of the timers with an affinity key, shared by all the pools
+  private final WorkflowBasedExecutor workflowExecutor;
+  // Timers that were claimed ahead of their timeout. Guarded by its own monitor.
+  private final HierarchicalTimingWheel<Timer> timingWheel;
+  // Timers handed over by the local dispatcher that didn't start running yet, by timer ID. A newer
+  // version of a queued timer replaces the queued one instead of queuing another execution, so a
+  // burst of requests for the same timer (e.g. decisions for the same workflow instance) collapses
+  // into a single run after the one in progress.
+  private final ConcurrentHashMap<String, Timer> queuedLocalTimers = new ConcurrentHashMap<>();
+  // Timers whose handler is currently running, their leases are kept alive until they finish.
+  private final Set<Timer> runningTimers = ConcurrentHashMap.newKeySet();
   final AtomicInteger prevTimersCount = new AtomicInteger();
 
   @Inject
   public TimerProcessor(
+      @NonNull Clock clock,
       @NonNull SkipperEngine engine,
       @NonNull TimerStore timerStore,
-      @NonNull Map<Class<? extends TimerHandler>, TimerHandler> handlerMap) {
+      @NonNull TimerPartitionManager partitionManager,
+      @NonNull Map<Class<? extends TimerHandler>, TimerHandler> handlerMap,
+      @NonNull TimerProcessorConfig config) {
+    this(
+        clock,
+        engine,
+        timerStore,
+        partitionManager,
+        handlerMap,
+        config,
+        new PlatformWorkerExecutorFactory());
+  }
+
+  public TimerProcessor(
+      @NonNull Clock clock,
+      @NonNull SkipperEngine engine,
+      @NonNull TimerStore timerStore,
+      @NonNull TimerPartitionManager partitionManager,
+      @NonNull Map<Class<? extends TimerHandler>, TimerHandler> handlerMap,
+      @NonNull TimerProcessorConfig config,
+      @NonNull WorkerExecutorFactory executorFactory) {
+    if (config.getLookAheadWindow().compareTo(config.getLeaseDuration()) >= 0) {
+      throw new IllegalArgumentException("lookAheadWindow must be shorter than leaseDuration");
+    }
+    this.clock = clock;
     this.engine = engine;
     this.timerStore = timerStore;
-    this.handlerMap = handlerMap;
-    executor = (ThreadPoolExecutor) Executors.newCachedThreadPool();
+    this.partitionManager = partitionManager;
+    this.config = config;
+    this.workflowExecutor = new WorkflowBasedExecutor();
+    handlerMap.forEach(
+        (clazz, handler) ->
+            poolMap.put(
+                clazz,
+                new TimerWorkerPool(
+                    clazz,
+                    handler,
+                    config.getHandlerPoolConfig(clazz),
+                    workflowExecutor,
+                    executorFactory)));
+    pools = new ArrayList<>(poolMap.values());
+    pools.sort(
+        Comparator.comparingInt((TimerWorkerPool p) -> p.getConfig().getPriority()).reversed());
+    timingWheel =
+        new HierarchicalTimingWheel<>(
+            config.getTimingWheelTick(), config.getTimingWheelSize(), clock.millis());
+    schedulerExecutor = Executors.newFixedThreadPool(3);
+    backlogEstimator =
+        new TimerBacklogEstimator(
+            timerStore,
+            clock,
+            config.getBacklogEstimatorMode(),
+            config.getBacklogCountLimit(),
+            config.getBacklogRefreshInterval());
   }
 
   @SneakyThrows
   public void start() {
-    executor.submit(this::startInternal);
+    schedulerExecutor.submit(this::startInternal);
+    schedulerExecutor.submit(this::runTimingWheel);
+    schedulerExecutor.submit(this::runLeaseRenewal);
+    engine.registerLocalTimerDispatcher(this);
+  }
+
+  @Override
+  public void runSerialized(@NonNull String affinityKey, @NonNull Runnable task) {
+    workflowExecutor.runInLane(affinityKey, config.getSignalLaneTimeout(), task);
+  }
+
+  @Override
+  public boolean tryDispatch(@NonNull Timer timer) {
+    val pool = poolMap.get(timer.getHandlerClazz());
+    if (pool == null) {
+      return false;
+    }
+    val coalesced = new AtomicBoolean(false);
+    queuedLocalTimers.compute(
+        timer.getTimerId(),
+        (id, queued) -> {
+          if (queued == null) {
+            return timer;
+          }
+          coalesced.set(true);
+          return queued.getVersion() >= timer.getVersion() ? queued : timer;
+        });
+    if (coalesced.get()) {
+      Metrics.getCounter("timers", "local_dispatch_coalesced").inc();
+      return true;
+    }
+    if (pool.getFreeCapacity() == 0) {
+      queuedLocalTimers.remove(timer.getTimerId());
+      return false;
+    }
+    pool.acquire();
+    try {
+      execute(
+          pool,
+          timer,
+          () -> processLocalTimer(pool, timer.getTimerId()),
+          () -> rejectLocalTimer(pool, timer));
+      Metrics.getCounter("timers", "local_dispatch").inc();
+      return true;
+    } catch (RejectedExecutionException e) {
+      rejectLocalTimer(pool, timer);
+      return false;
+    }
+  }
+
+  private void rejectLocalTimer(TimerWorkerPool pool, Timer timer) {
+    // The timer is not claimed yet, the regular polling will take care of it.
+    queuedLocalTimers.remove(timer.getTimerId());
+    pool.release();
+  }
+
+  private void processLocalTimer(TimerWorkerPool pool, String timerId) {
+    // From now on, new versions of the timer are queued for another run.
+    val timer = queuedLocalTimers.remove(timerId);
+    Optional<Timer> claimed;
+    try {
+      claimed = timerStore.claim(timer, config.getLeaseDuration());
+    } catch (Exception e) {
+      logger.warn("unable to claim timer '{}': {}", timer.getTimerId(), e.getMessage());
+      claimed = Optional.empty();
+    }
+    if (!claimed.isPresent()) {
+      // Either another node got to it first or the timer was updated in the meantime.
+      pool.release();
+      return;
+    }
+    processTimer(pool, claimed.get());
+  }
+
+  /**
+   * Stop fetching and dispatching timers, along with the rest of the background work of the
+   * processor. The timers already submitted to the worker pools are still processed, the ones that
+   * outlive their lease might be processed again by another node.
+   */
+  public void stop() {
+    schedulerExecutor.shutdownNow();
+    backlogEstimator.stop();
+    pools.forEach(TimerWorkerPool::shutdown);
   }
 
   @SneakyThrows
   private void startInternal() {
-    Metrics.registerIntegerGauge(
-        "timers", "expired_backlog_size", () -> (int) timerStore.countExpiredTimers());
+    backlogEstimator.start();
     Metrics.registerIntegerGauge("timers", "expired_timer_fetch_count", prevTimersCount::get);
+    Metrics.registerIntegerGauge(
+        "timers", "owned_partitions", () -> partitionManager.getOwnedPartitions().size());
+    Metrics.registerIntegerGauge(
+        "timers", "in_flight", () -> pools.stream().mapToInt(TimerWorkerPool::getInFlight).sum());
+    Metrics.registerIntegerGauge("timers", "timing_wheel_size", this::getTimingWheelSize);
+    Metrics.registerIntegerGauge("timers", "workflow_lanes", workflowExecutor::getLaneCount);
+    pools.forEach(TimerWorkerPool::registerMetrics);
     while (true) {
       try {
         startProcessing();
       } catch (Throwable e) {
+        if (e instanceof InterruptedException) {
+          // The processor has been stopped
+          return;
+        }
         logger.error("startProcessing threw unexpected error: {}", e.getMessage());
         Thread.sleep(100);
       }
@@ -59,34 +231,194 @@ public class TimerProcessor {
 
   @SneakyThrows
   private void startProcessing() {
-    logger.info("starting timer processing");
+    logger.info("starting timer processing. node={}", partitionManager.getNodeId());
     while (true) {
-      val timers = timerStore.getExpiredTimers();
-      prevTimersCount.set(timers.size());
-      Metrics.getTimerProcessingCount("all").mark(timers.size());
-      logger.debug("fetched {} timers to process", timers.size());
-      if (timers.isEmpty()) {
-        Thread.sleep(fetchDelay.toMillis());
-        continue;
+      partitionManager.refreshIfNeeded();
+      val partitions = partitionManager.getOwnedPartitions();
+      int fetched = 0;
+      if (!partitions.isEmpty()) {
+        // Each handler claims up to its own free capacity, higher priority handlers go first.
+        for (val pool : pools) {
+          fetched += fetch(pool, partitions);
+        }
+      }
+      prevTimersCount.set(fetched);
+      if (fetched == 0) {
+        Thread.sleep(getIdleFetchDelay(partitions).toMillis());
       }
+    }
+  }
 
-      timers.forEach(
-          timer -> {
-            try (val unused = Metrics.TIMERS_DISPATCH_LATENCY_TIMER.time()) {
-              executor.execute(() -> processTimer(timer));
-            }
-          });
+  /**
+   * Nothing was fetched: either there is nothing to do, other nodes are still holding the leases of
+   * our partitions, or the workers are saturated. In the first case there is no point in polling
+   * until the next timer enters the look-ahead window, so we sleep until then, capped by {@link
+   * TimerProcessorConfig#getMaxIdleFetchDelay()}.
+   */
+  private Duration getIdleFetchDelay(Set<Integer> partitions) {
+    val minDelay = config.getFetchDelay();
+    if (partitions.isEmpty() || pools.stream().anyMatch(pool -> pool.getFreeCapacity() == 0)) {
+      return minDelay;
+    }
+    try {
+      return computeIdleFetchDelay(
+          clock.instant(),
+          timerStore.getNextTimeout(partitions).orElse(null),
+          config.getLookAheadWindow(),
+          minDelay,
+          config.getMaxIdleFetchDelay());
+    } catch (Exception e) {
+      logger.warn("unable to get the next timer timeout: {}", e.getMessage());
+      return minDelay;
     }
   }
 
-  private void processTimer(Timer t) {
-    if (!handlerMap.containsKey(t.getHandlerClazz())) {
-      logger.error("invalid timer handler class {}", t.getHandlerClazz());
-      return;
+  static Duration computeIdleFetchDelay(
+      Instant now,
+      @Nullable Instant nextTimeout,
+      Duration lookAhead,
+      Duration minDelay,
+      Duration maxDelay) {
+    if (nextTimeout == null) {
+      return maxDelay;
     }
+    val delay = Duration.between(now, nextTimeout.minus(lookAhead));
+    if (delay.compareTo(minDelay) < 0) {
+      return minDelay;
+    }
+    return delay.compareTo(maxDelay) > 0 ? maxDelay : delay;
+  }
+
+  private int fetch(TimerWorkerPool pool, Set<Integer> partitions) {
+    val fetchSize =
+        pool.getFetchSize(
+            config.getLeaseDuration(), config.getMinFetchSize(), config.getMaxFetchSize());
+    if (fetchSize == 0) {
+      return 0;
+    }
+    val timers =
+        timerStore.getExpiredTimers(
+            partitions,
+            pool.getHandlerClazz(),
+            config.getLookAheadWindow(),
+            config.getLeaseDuration(),
+            fetchSize);
+    Metrics.getTimerProcessingCount("all").mark(timers.size());
+    backlogEstimator.observe(timers);
+    logger.debug("fetched {} {} timers to process", timers.size(), pool.getHandlerClazz());
+    timers.forEach(
+        timer -> {
+          try (val unused = Metrics.TIMERS_DISPATCH_LATENCY_TIMER.time()) {
+            pool.acquire();
+            schedule(timer);
+          }
+        });
+    return timers.size();
+  }
+
+  private void schedule(Timer timer) {
+    val timeout = timer.getTimeout();
+    if (timeout != null && timeout.toEpochMilli() > clock.millis()) {
+      synchronized (timingWheel) {
+        if (timingWheel.add(timer, timeout.toEpochMilli())) {
+          timingWheel.notifyAll();
+          return;
+        }
+      }
+    }
+    dispatch(timer);
+  }
+
+  /**
+   * Fires the timers on the timing wheel as they become due. The thread sleeps until the next
+   * deadline of the wheel, and gets woken up whenever a new timer is added.
+   */
+  @SneakyThrows
+  private void runTimingWheel() {
+    while (true) {
+      List<Timer> due;
+      synchronized (timingWheel) {
+        due = timingWheel.advance(clock.millis());
+        if (due.isEmpty()) {
+          val next = timingWheel.nextDeadline();
+          if (next == Long.MAX_VALUE) {
+            timingWheel.wait();
+          } else {
+            timingWheel.wait(Math.max(1, next - clock.millis()));
+          }
+          continue;
+        }
+      }
+      due.forEach(this::dispatch);
+    }
+  }
+
+  /**
+   * Extends the leases of the running timers every third of the lease duration, so that timers
+   * whose handler runs for longer than the lease (e.g. decisions executing operations inline) are
+   * not claimed and processed again by another node in the meantime.
+   */
+  @SneakyThrows
+  private void runLeaseRenewal() {
+    val interval = config.getLeaseDuration().dividedBy(3);
+    while (true) {
+      Thread.sleep(interval.toMillis());
+      for (val timer : runningTimers) {
+        try {
+          if (timerStore.extendLease(timer, config.getLeaseDuration())) {
+            Metrics.getCounter("timers", "lease_extended").inc();
+          }
+        } catch (Exception e) {
+          logger.warn(
+              "unable to extend the lease of timer '{}': {}", timer.getTimerId(), e.getMessage());
+        }
+      }
+    }
+  }
+
+  private int getTimingWheelSize() {
+    synchronized (timingWheel) {
+      return timingWheel.size();
+    }
+  }
+
+  /** Submits the timer to its worker pool. The timer must already be accounted as in-flight. */
+  private void dispatch(Timer timer) {
+    val pool = poolMap.get(timer.getHandlerClazz());
+    try {
+      execute(pool, timer, () -> processTimer(pool, timer), () -> rejectTimer(pool, timer));
+    } catch (RejectedExecutionException e) {
+      rejectTimer(pool, timer);
+    }
+  }
+
+  private void rejectTimer(TimerWorkerPool pool, Timer timer) {
+    pool.release();
+    Metrics.getCounter("timers", "rejected").inc();
+    logger.warn("worker pool rejected timer '{}', releasing it", timer.getTimerId());
+    releaseTimer(timer);
+  }
+
+  private void execute(TimerWorkerPool pool, Timer timer, Runnable task, Runnable onRejected) {
+    pool.execute(pool.getHandler().getAffinityKey(timer.getPayload().getValue()), task, onRejected);
+  }
+
+  private void processTimer(TimerWorkerPool pool, Timer t) {
+    val start = System.nanoTime();
+    runningTimers.add(t);
+    try {
+      processTimerInternal(pool.getHandler(), t);
+    } finally {
+      runningTimers.remove(t);
+      pool.release();
+      pool.recordLatency(System.nanoTime() - start);
+    }
+  }
+
+  private void processTimerInternal(TimerHandler handler, Timer t) {
     logger.info("processing timer={}", t);
     try {
-      handlerMap.get(t.getHandlerClazz()).process(t.getPayload().getValue(), engine);
+      handler.process(t.getPayload().getValue(), engine);
       if (!timerStore.delete(t)) {
         logger.info(
             "unable to delete the timer as it was probably updated by the handler. timer={}", t);
@@ -97,17 +429,67 @@ public class TimerProcessor {
           t.getTimerId(),
           e.getMessage(),
           e.getStackTrace());
-      try {
-        timerStore.update(
-            t.getTimerId(), Duration.ZERO); // Give it some breathing room before we retry
-      } catch (Exception e1) {
-        logger.error(
-            "unable to re-schedule timer '{}', it will be re-executed on lease expiration. error={}",
-            t.getTimerId(),
-            e1.getMessage());
-      }
+      handleFailure(t, e);
     } finally {
       DecisionThread.clear();
     }
   }
+
+  private void handleFailure(Timer t, Exception error) {
+    val attempts = t.getRetries() + 1;
+    try {
+      if (attempts >= config.getMaxAttempts()) {
+        if (timerStore.quarantine(t, String.valueOf(error))) {
+          Metrics.getCounter("timers", "quarantined").inc();
+          logger.error(
+              "timer '{}' failed {} times, it has been quarantined. error={}",
+              t.getTimerId(),
+              attempts,
+              error.getMessage());
+        }
+        return;
+      }
+      val delay =
+          computeRetryDelay(
+              attempts,
+              config.getRetryBaseDelay(),
+              config.getRetryMaxDelay(),
+              ThreadLocalRandom.current().nextDouble());
+      if (!timerStore.reschedule(t, delay)) {
+        logger.info(
+            "unable to reschedule the timer as it was probably updated by the handler. timer={}",
+            t);
+      }
+    } catch (Exception e) {
+      logger.error(
+          "unable to re-schedule timer '{}', it will be re-executed on lease expiration. error={}",
+          t.getTimerId(),
+          e.getMessage());
+    }
+  }
+
+  /**
+   * Exponential backoff with jitter: the delay doubles on every attempt up to the max delay, and a
+   * random value between 0 and half of it is subtracted to avoid retrying in lockstep.
+   *
+   * @param attempt The number of attempts so far, starting at 1
+   * @param random A random value between 0 (inclusive) and 1 (exclusive)
+   */
+  static Duration computeRetryDelay(
+      int attempt, Duration baseDelay, Duration maxDelay, double random) {
+    val exponent = Math.min(attempt - 1, 30);
+    val delayMillis = Math.min(maxDelay.toMillis(), baseDelay.toMillis() * (1L << exponent));
+    return Duration.ofMillis(delayMillis - (long) (delayMillis / 2.0 * random));
+  }
+
+  private void releaseTimer(Timer t) {
+    try {
+      timerStore.update(t.getTimerId(), Duration.ZERO);
+    } catch (Exception e) {
+      logger.error(
+          "unable to re-schedule timer '{}', it will be re-executed on lease expiration. error={}",
+          t.getTimerId(),
+          e.getMessage());
+    }
+  }
 }
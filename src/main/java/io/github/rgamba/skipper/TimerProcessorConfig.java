@@ -0,0 +1,101 @@
+package io.github.rgamba.skipper;
+
+import io.github.rgamba.skipper.store.TimerStore;
+import io.github.rgamba.skipper.timers.DecisionTimerHandler;
+import io.github.rgamba.skipper.timers.OperationRequestTimerHandler;
+import io.github.rgamba.skipper.timers.TimerHandler;
+import io.github.rgamba.skipper.timers.WorkflowInstanceCallbackTimerHandler;
+import java.time.Duration;
+import java.util.Map;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Singular;
+import lombok.Value;
+
+/** Tuning knobs for the {@link TimerProcessor}. */
+@Value
+@Builder(toBuilder = true)
+public class TimerProcessorConfig {
+  /** Worker pool configuration for the handlers that don't have a specific one. */
+  @Builder.Default @NonNull
+  TimerHandlerPoolConfig defaultHandlerPool = TimerHandlerPoolConfig.builder().build();
+  /** Worker pool configuration for specific timer handlers. */
+  @Singular Map<Class<? extends TimerHandler>, TimerHandlerPoolConfig> handlerPools;
+  /** Lower bound of the number of timers claimed on each fetch, per handler. */
+  @Builder.Default int minFetchSize = 10;
+  /** Upper bound of the number of timers claimed on each fetch, per handler. */
+  @Builder.Default int maxFetchSize = 300;
+  /**
+   * Min delay between fetches when nothing was fetched. It is also the delay used when the workers
+   * are saturated or other nodes still hold the leases of our partitions.
+   */
+  @Builder.Default @NonNull Duration fetchDelay = Duration.ofMillis(50);
+  /**
+   * Max delay between fetches when there is nothing to do. When idle, the processor sleeps until
+   * the next known timer enters the look-ahead window, but never longer than this, which bounds the
+   * delay of the timers that are created due (e.g. immediate decisions) and that could not be
+   * dispatched locally by the node that created them.
+   */
+  @Builder.Default @NonNull Duration maxIdleFetchDelay = Duration.ofSeconds(1);
+  /**
+   * Lease taken on the timers claimed by the processor, it's handed to the {@link TimerStore} on
+   * every claim. The fetch size is adjusted so that the claimed timers can be processed well within
+   * the lease, and the leases of the running timers are renewed every third of it.
+   */
+  @Builder.Default @NonNull Duration leaseDuration = TimerStore.DEFAULT_LEASE_DURATION;
+  /**
+   * Timers due within this window are claimed ahead of time and kept on an in-memory timing wheel
+   * so that they fire at their exact timeout instead of on the next poll. Must be shorter than the
+   * lease duration.
+   */
+  @Builder.Default @NonNull Duration lookAheadWindow = Duration.ofSeconds(2);
+  /**
+   * Timers for the same workflow instance are processed serially on a lane, and signals wait for
+   * their turn on the lane of their workflow instance. A signal that doesn't get its turn within
+   * this timeout is delivered right away instead.
+   */
+  @Builder.Default @NonNull Duration signalLaneTimeout = Duration.ofSeconds(10);
+  /**
+   * Number of times a timer is attempted before it is moved to the quarantine (dead-letter)
+   * storage.
+   */
+  @Builder.Default int maxAttempts = 10;
+  /** Delay before the first retry of a failed timer, it doubles on every subsequent attempt. */
+  @Builder.Default @NonNull Duration retryBaseDelay = Duration.ofSeconds(1);
+  /** Upper bound of the delay between retries of a failed timer. */
+  @Builder.Default @NonNull Duration retryMaxDelay = Duration.ofMinutes(5);
+  /** How the expired timers backlog metric is computed. */
+  @Builder.Default @NonNull
+  TimerBacklogEstimator.Mode backlogEstimatorMode = TimerBacklogEstimator.Mode.CAPPED;
+  /** Max backlog counted when using {@link TimerBacklogEstimator.Mode#CAPPED}. */
+  @Builder.Default long backlogCountLimit = 10_000;
+  /** How often the expired timers backlog metric is refreshed. */
+  @Builder.Default @NonNull Duration backlogRefreshInterval = Duration.ofSeconds(10);
+  /** Resolution of the timing wheel. */
+  @Builder.Default @NonNull Duration timingWheelTick = Duration.ofMillis(10);
+  /** Number of buckets on each level of the timing wheel. */
+  @Builder.Default int timingWheelSize = 64;
+
+  public TimerHandlerPoolConfig getHandlerPoolConfig(
+      @NonNull Class<? extends TimerHandler> handlerClazz) {
+    return handlerPools.getOrDefault(handlerClazz, defaultHandlerPool);
+  }
+
+  /**
+   * The default configuration gives decisions, which are cheap and are what moves workflows
+   * forward, their own high priority pool so that they are not starved by slow operations.
+   */
+  public static TimerProcessorConfig defaults() {
+    return TimerProcessorConfig.builder()
+        .handlerPool(
+            DecisionTimerHandler.class,
+            TimerHandlerPoolConfig.builder().poolSize(16).queueCapacity(256).priority(7).build())
+        .handlerPool(
+            OperationRequestTimerHandler.class,
+            TimerHandlerPoolConfig.builder().poolSize(32).queueCapacity(256).build())
+        .handlerPool(
+            WorkflowInstanceCallbackTimerHandler.class,
+            TimerHandlerPoolConfig.builder().poolSize(4).queueCapacity(64).build())
+        .build();
+  }
+}
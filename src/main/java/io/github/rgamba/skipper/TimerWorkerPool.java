@@ -0,0 +1,142 @@
+package io.github.rgamba.skipper;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import io.github.rgamba.skipper.runtime.DecisionThread;
+import io.github.rgamba.skipper.timers.TimerHandler;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Bounded worker pool dedicated to a single timer handler.
+ *
+ * <p>Keeps track of the timers that have been claimed for this handler and are not finished yet
+ * (in-flight) so that the fetch loop never claims more timers than the pool can hold, and of the
+ * observed handler latency, which drives the fetch size.
+ *
+ * <p>Timers with an affinity key run on the lanes of a {@link WorkflowBasedExecutor} that is shared
+ * by all the pools, so timers with the same key are serialized even across handlers (e.g. a
+ * decision and a callback for the same workflow instance), while each one still runs on the workers
+ * of its own pool.
+ */
+class TimerWorkerPool {
+  private static final double LATENCY_EWMA_ALPHA = 0.2;
+
+  @Getter private final Class<? extends TimerHandler> handlerClazz;
+  @Getter private final TimerHandler handler;
+  @Getter private final TimerHandlerPoolConfig config;
+  private final ExecutorService executor;
+  // Runs the timers with the same affinity key (e.g. workflow instance) serially, shared by the
+  // pools
+  private final WorkflowBasedExecutor workflowExecutor;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final com.codahale.metrics.Timer latencyTimer;
+  // Exponentially weighted moving average of the handler latency, in millis.
+  private volatile double latencyMillis = 0;
+
+  TimerWorkerPool(
+      @NonNull Class<? extends TimerHandler> handlerClazz,
+      @NonNull TimerHandler handler,
+      @NonNull TimerHandlerPoolConfig config,
+      @NonNull WorkflowBasedExecutor workflowExecutor,
+      @NonNull WorkerExecutorFactory executorFactory) {
+    this.handlerClazz = handlerClazz;
+    this.handler = handler;
+    this.config = config;
+    this.executor = executorFactory.create(handlerClazz.getSimpleName(), config);
+    this.workflowExecutor = workflowExecutor;
+    this.latencyTimer =
+        Metrics.registry.timer(name("timers", "pool", handlerClazz.getSimpleName(), "latency"));
+  }
+
+  void registerMetrics() {
+    val component = name("timers", "pool", handlerClazz.getSimpleName());
+    if (executor instanceof ThreadPoolExecutor) {
+      val pool = (ThreadPoolExecutor) executor;
+      Metrics.registerIntegerGauge(component, "pool_size", pool::getPoolSize);
+      Metrics.registerIntegerGauge(component, "active_count", pool::getActiveCount);
+      Metrics.registerIntegerGauge(component, "queue_depth", () -> pool.getQueue().size());
+    }
+    Metrics.registerIntegerGauge(component, "in_flight", inFlight::get);
+  }
+
+  /** @return How many more timers can be claimed for this pool. */
+  int getFreeCapacity() {
+    return Math.max(0, config.getPoolSize() + config.getQueueCapacity() - inFlight.get());
+  }
+
+  int getInFlight() {
+    return inFlight.get();
+  }
+
+  /** Account a claimed timer as in-flight, must be followed by a call to {@link #release()}. */
+  void acquire() {
+    inFlight.incrementAndGet();
+  }
+
+  void release() {
+    inFlight.decrementAndGet();
+  }
+
+  /**
+   * Run the task on the pool.
+   *
+   * @param affinityKey Tasks with the same affinity key are executed serially, null if the task can
+   *     run concurrently with any other task.
+   * @param task The task to execute
+   * @param onRejected Called instead of the task if the pool rejects it later on, once the tasks
+   *     queued before it with the same affinity key are done
+   * @throws RejectedExecutionException If the pool is saturated
+   */
+  void execute(@Nullable String affinityKey, @NonNull Runnable task, @NonNull Runnable onRejected) {
+    // Workers are shared by many timers, make sure no decision context leaks between them.
+    Runnable isolated = DecisionThread.isolated(task);
+    if (affinityKey == null) {
+      executor.execute(isolated);
+    } else {
+      workflowExecutor.execute(affinityKey, executor, isolated, onRejected);
+    }
+  }
+
+  /** Stop accepting timers, the ones already submitted are still processed. */
+  void shutdown() {
+    executor.shutdown();
+  }
+
+  void recordLatency(long nanos) {
+    latencyTimer.update(nanos, TimeUnit.NANOSECONDS);
+    val millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+    val prev = latencyMillis;
+    latencyMillis =
+        prev <= 0 ? millis : LATENCY_EWMA_ALPHA * millis + (1 - LATENCY_EWMA_ALPHA) * prev;
+  }
+
+  /**
+   * The fetch size is the number of timers the pool is expected to process in half of the lease
+   * duration the timers are claimed with, given the observed handler latency. This way we avoid
+   * claiming timers that will just wait in the queue until their lease expires and then get
+   * processed twice.
+   */
+  int getFetchSize(Duration leaseDuration, int min, int max) {
+    return Math.min(
+        getFreeCapacity(),
+        computeFetchSize(config.getPoolSize(), leaseDuration, latencyMillis, min, max));
+  }
+
+  static int computeFetchSize(
+      int poolSize, Duration leaseDuration, double latencyMillis, int min, int max) {
+    if (latencyMillis <= 0) {
+      return max;
+    }
+    val throughput = poolSize * (leaseDuration.toMillis() / 2.0) / latencyMillis;
+    return (int) Math.max(min, Math.min(max, throughput));
+  }
+}
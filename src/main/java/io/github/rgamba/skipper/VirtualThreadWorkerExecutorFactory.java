@@ -0,0 +1,50 @@
+package io.github.rgamba.skipper;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs every handler on its own virtual thread, so handlers blocked on I/O don't hold a platform
+ * thread. Makes sense for pools with a large {@link TimerHandlerPoolConfig#getPoolSize()}, which in
+ * this mode is the max number of handlers running concurrently rather than a number of threads.
+ *
+ * <p>Virtual threads don't support {@link TimerHandlerPoolConfig#getPriority() thread priorities},
+ * the priority only affects the order in which the pools claim their timers.
+ *
+ * <p>Falls back to {@link PlatformWorkerExecutorFactory} on JDKs without virtual threads.
+ */
+public class VirtualThreadWorkerExecutorFactory implements WorkerExecutorFactory {
+  private static Logger logger = LoggerFactory.getLogger(VirtualThreadWorkerExecutorFactory.class);
+  // Resolved reflectively as we still target Java 8
+  private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutorMethod();
+
+  private final WorkerExecutorFactory fallback = new PlatformWorkerExecutorFactory();
+
+  private static Method findVirtualThreadExecutorMethod() {
+    try {
+      return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  /** @return true if the running JDK supports virtual threads. */
+  public static boolean isSupported() {
+    return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+  }
+
+  @Override
+  @SneakyThrows
+  public ExecutorService create(@NonNull String name, @NonNull TimerHandlerPoolConfig config) {
+    if (!isSupported()) {
+      logger.warn("virtual threads are not supported, using platform threads for pool {}", name);
+      return fallback.create(name, config);
+    }
+    return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+  }
+}
@@ -0,0 +1,20 @@
+package io.github.rgamba.skipper;
+
+import java.util.concurrent.ExecutorService;
+import lombok.NonNull;
+
+/**
+ * Creates the executors that run the timer handlers.
+ *
+ * <p>The number of tasks submitted to an executor is already bounded by the caller to {@link
+ * TimerHandlerPoolConfig#getPoolSize()} plus {@link TimerHandlerPoolConfig#getQueueCapacity()}, so
+ * implementations are free to use unbounded executors.
+ */
+public interface WorkerExecutorFactory {
+  /**
+   * @param name The name of the pool, used to name the threads
+   * @param config The configuration of the pool
+   * @return A new executor
+   */
+  ExecutorService create(@NonNull String name, @NonNull TimerHandlerPoolConfig config);
+}
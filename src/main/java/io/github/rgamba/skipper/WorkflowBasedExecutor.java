@@ -1,16 +1,293 @@
 package io.github.rgamba.skipper;
 
-import java.time.Instant;
-import java.util.PriorityQueue;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nullable;
+import lombok.NonNull;
+import lombok.val;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Executor that runs the tasks submitted for the same workflow instance serially, in submission
+ * order, while tasks for different workflow instances run in parallel.
+ *
+ * <p>Each workflow instance gets a lane, which is just a queue of pending tasks. Lanes don't own
+ * threads: a lane with pending work has exactly one task submitted to the shared (bounded) delegate
+ * executor, which runs the next pending task of the lane and re-submits itself if there is more
+ * work. A lane is removed as soon as its queue drains, so only the workflow instances with pending
+ * work hold one.
+ *
+ * <p>Tasks may be submitted with their own delegate executor, in which case each task runs on the
+ * executor it was submitted with while still being serialized with the rest of the tasks of its
+ * workflow instance. This allows several pools to share the same lanes.
+ *
+ * <p>A task is never run on a thread of an executor other than its own. If its executor rejects it
+ * once its turn on the lane comes, the task is failed: its rejection handler is called instead, and
+ * the lane moves on to the next task.
+ *
+ * <p>Work that must run on a specific thread (e.g. an API call that delivers a signal) can still be
+ * ordered with the rest of the lane with {@link #runInLane(String, Duration, Runnable)}.
+ */
 public class WorkflowBasedExecutor {
-  private final ConcurrentHashMap<String, ExecutorService> executorMap = new ConcurrentHashMap<>();
-  private final PriorityQueue<QueueElement> lastActivityQueue = new PriorityQueue<>();
+  private static Logger logger = LoggerFactory.getLogger(WorkflowBasedExecutor.class);
+  private static final ThreadLocal<String> currentLane = new ThreadLocal<>();
 
-  private static class QueueElement {
-    String key;
-    Instant lastActivity;
+  @Nullable private final Executor delegate;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Map<String, Lane> executorMap = new HashMap<>();
+
+  public WorkflowBasedExecutor(@NonNull Executor delegate) {
+    this.delegate = delegate;
+  }
+
+  /**
+   * Creates an executor without a default delegate, tasks must be submitted with {@link
+   * #execute(String, Executor, Runnable)}.
+   */
+  public WorkflowBasedExecutor() {
+    this.delegate = null;
+  }
+
+  /**
+   * Execute the task on the lane of the given workflow instance.
+   *
+   * @param workflowInstanceId The workflow instance ID the task belongs to
+   * @param task The task to execute
+   * @throws RejectedExecutionException If the delegate executor rejects the lane
+   */
+  public void execute(@NonNull String workflowInstanceId, @NonNull Runnable task) {
+    if (delegate == null) {
+      throw new IllegalStateException("the executor has no default delegate");
+    }
+    execute(workflowInstanceId, delegate, task);
+  }
+
+  /**
+   * Execute the task on the given executor, serially with the rest of the tasks submitted for the
+   * same workflow instance. A task that its executor rejects once its turn comes is dropped with an
+   * error.
+   *
+   * @param workflowInstanceId The workflow instance ID the task belongs to
+   * @param executor The executor to run the task on
+   * @param task The task to execute
+   * @throws RejectedExecutionException If the executor rejects the lane
+   */
+  public void execute(
+      @NonNull String workflowInstanceId, @NonNull Executor executor, @NonNull Runnable task) {
+    execute(
+        workflowInstanceId,
+        executor,
+        task,
+        () ->
+            logger.error("executor rejected a task for workflow instance {}", workflowInstanceId));
+  }
+
+  /**
+   * Execute the task on the given executor, serially with the rest of the tasks submitted for the
+   * same workflow instance.
+   *
+   * @param workflowInstanceId The workflow instance ID the task belongs to
+   * @param executor The executor to run the task on
+   * @param task The task to execute
+   * @param onRejected Called instead of the task if the executor rejects it once the task's turn on
+   *     the lane comes, on the thread that ran the previous task of the lane
+   * @throws RejectedExecutionException If the executor rejects the lane right away, in which case
+   *     the rejection handler is not called
+   */
+  public void execute(
+      @NonNull String workflowInstanceId,
+      @NonNull Executor executor,
+      @NonNull Runnable task,
+      @NonNull Runnable onRejected) {
+    lock.lock();
+    try {
+      val lane = executorMap.computeIfAbsent(workflowInstanceId, Lane::new);
+      lane.pending.add(new PendingTask(executor, task, onRejected));
+      if (lane.running) {
+        return;
+      }
+      lane.running = true;
+      try {
+        executor.execute(() -> runNext(lane));
+      } catch (RejectedExecutionException e) {
+        lane.pending.removeLast();
+        lane.running = false;
+        removeIfDrained(lane);
+        throw e;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Run the task on the calling thread, serially with the rest of the tasks of the same workflow
+   * instance: the task waits for the tasks already queued on the lane to complete, and the tasks
+   * submitted after it wait for it to complete.
+   *
+   * <p>If the lane doesn't get to the task within the timeout, or the calling thread is already
+   * running a task of the same lane, the task runs right away instead so that the caller never
+   * deadlocks on its own lane.
+   *
+   * @param workflowInstanceId The workflow instance ID the task belongs to
+   * @param timeout How long to wait for the task's turn on the lane
+   * @param task The task to run
+   */
+  public void runInLane(
+      @NonNull String workflowInstanceId, @NonNull Duration timeout, @NonNull Runnable task) {
+    if (workflowInstanceId.equals(currentLane.get())) {
+      task.run();
+      return;
+    }
+    val turn = new CompletableFuture<Runnable>();
+    val failure = new AtomicReference<RuntimeException>();
+    Executor handoff =
+        r -> {
+          if (!turn.complete(r)) {
+            // The caller gave up waiting and already ran the task
+            throw new RejectedExecutionException("task already ran out of lane order");
+          }
+        };
+    try {
+      execute(
+          workflowInstanceId,
+          handoff,
+          () -> {
+            try {
+              task.run();
+            } catch (RuntimeException e) {
+              failure.set(e);
+            }
+          },
+          () -> {});
+    } catch (RejectedExecutionException e) {
+      // Not reachable, the hand-off executor accepts the first turn
+      task.run();
+      return;
+    }
+    Runnable runLane;
+    try {
+      runLane = turn.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    } catch (InterruptedException | TimeoutException | ExecutionException e) {
+      if (e instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
+      if (turn.cancel(false)) {
+        logger.warn(
+            "timed out waiting for the lane of workflow instance {}, running the task out of order",
+            workflowInstanceId);
+        task.run();
+        return;
+      }
+      runLane = turn.join();
+    }
+    runLane.run();
+    if (failure.get() != null) {
+      throw failure.get();
+    }
+  }
+
+  /** @return The number of lanes currently allocated. */
+  public int getLaneCount() {
+    lock.lock();
+    try {
+      return executorMap.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void runNext(Lane lane) {
+    PendingTask next;
+    lock.lock();
+    try {
+      next = lane.pending.poll();
+    } finally {
+      lock.unlock();
+    }
+    val previousLane = currentLane.get();
+    currentLane.set(lane.key);
+    try {
+      next.task.run();
+    } catch (Throwable e) {
+      logger.error("task for workflow instance {} failed: {}", lane.key, e.getMessage());
+    } finally {
+      currentLane.set(previousLane);
+    }
+    submitNext(lane);
+  }
+
+  /**
+   * Hand the lane over to the executor of its next task. Tasks rejected by their executor are
+   * failed rather than run on the current thread, which might belong to another pool.
+   */
+  private void submitNext(Lane lane) {
+    while (true) {
+      PendingTask rejected;
+      lock.lock();
+      try {
+        if (lane.pending.isEmpty()) {
+          lane.running = false;
+          removeIfDrained(lane);
+          return;
+        }
+        try {
+          // Give other lanes a chance to run before we process the next task of this lane
+          lane.pending.peek().executor.execute(() -> runNext(lane));
+          return;
+        } catch (RejectedExecutionException e) {
+          rejected = lane.pending.poll();
+        }
+      } finally {
+        lock.unlock();
+      }
+      Metrics.getCounter("workflow_executor", "rejected").inc();
+      try {
+        rejected.onRejected.run();
+      } catch (Throwable e) {
+        logger.error(
+            "rejection handler for workflow instance {} failed: {}", lane.key, e.getMessage());
+      }
+    }
+  }
+
+  private void removeIfDrained(Lane lane) {
+    if (lane.pending.isEmpty()) {
+      executorMap.remove(lane.key, lane);
+    }
+  }
+
+  private static class Lane {
+    final String key;
+    final Deque<PendingTask> pending = new ArrayDeque<>();
+    boolean running = false;
+
+    Lane(String key) {
+      this.key = key;
+    }
+  }
+
+  private static class PendingTask {
+    final Executor executor;
+    final Runnable task;
+    final Runnable onRejected;
+
+    PendingTask(Executor executor, Runnable task, Runnable onRejected) {
+      this.executor = executor;
+      this.task = task;
+      this.onRejected = onRejected;
+    }
   }
 }
@@ -0,0 +1,262 @@
+package io.github.rgamba.skipper;
+
+import io.github.rgamba.skipper.models.WorkflowCompletion;
+import io.github.rgamba.skipper.models.WorkflowInstance;
+import io.github.rgamba.skipper.store.WorkflowInstanceStore;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import lombok.NonNull;
+import lombok.val;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Completes the futures of the callers waiting for workflow instances to reach a terminal status
+ * (COMPLETED or ERROR).
+ *
+ * <p>Decisions executed on this node notify their completions directly. Completions on other nodes
+ * are picked up from the completion feed of the {@link WorkflowInstanceStore}, which is followed in
+ * the background by a single query per poll interval regardless of how many callers are waiting,
+ * and only while there is someone waiting.
+ *
+ * <p>The sequence of a completion is assigned when it's written but it only becomes visible when
+ * its transaction commits, so a completion can show up after others with a higher sequence. The
+ * feed is therefore re-read from the last sequence seen as of the grace period ago, skipping the
+ * completions already handled. As a last resort, the status of the workflow instance is checked
+ * once more before failing a caller with a timeout.
+ */
+public class WorkflowCompletionNotifier {
+  private static final Logger logger = LoggerFactory.getLogger(WorkflowCompletionNotifier.class);
+  private static final int FEED_BATCH_SIZE = 500;
+
+  private final WorkflowInstanceStore workflowInstanceStore;
+  private final Clock clock;
+  private final Duration pollInterval;
+  private final Duration feedRetention;
+  private final Duration feedGracePeriod;
+  private final Map<String, List<CompletableFuture<WorkflowInstance>>> waiters =
+      new ConcurrentHashMap<>();
+  private final ScheduledExecutorService executor;
+  // Guarded by this
+  private boolean started = false;
+  private long lastSequence = 0;
+  private Instant nextPruneTime = Instant.MIN;
+  // Last sequence seen at the start of each poll within the grace period, oldest first
+  private final Deque<Map.Entry<Instant, Long>> pollCheckpoints = new ArrayDeque<>();
+  // Sequences handled after the oldest checkpoint
+  private final TreeSet<Long> handledSequences = new TreeSet<>();
+
+  public WorkflowCompletionNotifier(
+      @NonNull WorkflowInstanceStore workflowInstanceStore,
+      @NonNull Clock clock,
+      @NonNull Duration pollInterval,
+      @NonNull Duration feedRetention,
+      @NonNull Duration feedGracePeriod) {
+    this.workflowInstanceStore = workflowInstanceStore;
+    this.clock = clock;
+    this.pollInterval = pollInterval;
+    this.feedRetention = feedRetention;
+    this.feedGracePeriod = feedGracePeriod;
+    this.executor =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              val thread = new Thread(runnable, "workflow-completion-notifier");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /**
+   * @param workflowInstanceId The workflow instance ID
+   * @param timeout How long to wait for the workflow instance to complete
+   * @return A future completed with the workflow instance once it reaches a terminal status, or
+   *     completed exceptionally with a {@link TimeoutException} if it doesn't within the timeout.
+   * @throws IllegalStateException If the notifier was shut down
+   */
+  public CompletableFuture<WorkflowInstance> await(
+      @NonNull String workflowInstanceId, @NonNull Duration timeout) {
+    if (executor.isShutdown()) {
+      throw new IllegalStateException("the workflow completion notifier was shut down");
+    }
+    startFollowingFeed();
+    val future = new CompletableFuture<WorkflowInstance>();
+    waiters.compute(
+        workflowInstanceId,
+        (id, futures) -> {
+          val list =
+              futures == null ? new ArrayList<CompletableFuture<WorkflowInstance>>() : futures;
+          list.add(future);
+          return list;
+        });
+    val timeoutTask =
+        executor.schedule(
+            () -> expire(workflowInstanceId, future), timeout.toMillis(), TimeUnit.MILLISECONDS);
+    future.whenComplete(
+        (instance, error) -> {
+          timeoutTask.cancel(false);
+          removeWaiter(workflowInstanceId, future);
+        });
+    try {
+      // It might have completed before the caller started waiting, from then on the feed covers it
+      val instance = workflowInstanceStore.get(workflowInstanceId);
+      if (isTerminal(instance.getStatus())) {
+        future.complete(instance);
+      }
+    } catch (RuntimeException e) {
+      // Nobody is going to wait on the future, don't leave it registered
+      future.completeExceptionally(e);
+      throw e;
+    }
+    return future;
+  }
+
+  /**
+   * Stop following the completion feed. The callers still waiting are failed with a {@link
+   * CancellationException}, and no new callers are accepted.
+   */
+  public void shutdown() {
+    executor.shutdownNow();
+    for (val workflowInstanceId : waiters.keySet()) {
+      val futures = waiters.remove(workflowInstanceId);
+      if (futures != null) {
+        futures.forEach(
+            future ->
+                future.completeExceptionally(
+                    new CancellationException("the workflow completion notifier was shut down")));
+      }
+    }
+  }
+
+  /**
+   * Notify the completion of a workflow instance on this node.
+   *
+   * @param workflowInstance The workflow instance, as of its terminal status
+   */
+  public void notifyCompleted(@NonNull WorkflowInstance workflowInstance) {
+    if (!isTerminal(workflowInstance.getStatus())) {
+      return;
+    }
+    val futures = waiters.remove(workflowInstance.getId());
+    if (futures == null) {
+      return;
+    }
+    Metrics.getCounter("workflow_completion_notifier", "local_completion").inc();
+    completeAll(futures, workflowInstance);
+  }
+
+  private synchronized void startFollowingFeed() {
+    if (started) {
+      return;
+    }
+    // Completions before this point are detected by the status check of the waiters
+    lastSequence = workflowInstanceStore.getLatestCompletionSequence();
+    executor.scheduleWithFixedDelay(
+        this::pollSafely, pollInterval.toMillis(), pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    started = true;
+  }
+
+  private void pollSafely() {
+    try {
+      poll();
+    } catch (Exception e) {
+      logger.warn("unable to follow the workflow completion feed: {}", e.getMessage());
+    }
+  }
+
+  synchronized void poll() {
+    if (waiters.isEmpty()) {
+      return;
+    }
+    val now = clock.instant();
+    pollCheckpoints.addLast(new AbstractMap.SimpleImmutableEntry<>(now, lastSequence));
+    while (pollCheckpoints.size() > 1
+        && pollCheckpoints.peekFirst().getKey().isBefore(now.minus(feedGracePeriod))) {
+      pollCheckpoints.removeFirst();
+    }
+    long sequence = pollCheckpoints.peekFirst().getValue();
+    handledSequences.headSet(sequence, true).clear();
+    List<WorkflowCompletion> completions;
+    do {
+      completions = workflowInstanceStore.getCompletionsAfter(sequence, FEED_BATCH_SIZE);
+      Set<String> awaited = new HashSet<>();
+      for (val completion : completions) {
+        sequence = completion.getSequence();
+        if (!handledSequences.add(sequence)) {
+          continue;
+        }
+        lastSequence = Math.max(lastSequence, sequence);
+        if (waiters.containsKey(completion.getWorkflowInstanceId())) {
+          awaited.add(completion.getWorkflowInstanceId());
+        }
+      }
+      if (!awaited.isEmpty()) {
+        for (val instance : workflowInstanceStore.getAll(awaited)) {
+          val futures = waiters.remove(instance.getId());
+          if (futures != null) {
+            Metrics.getCounter("workflow_completion_notifier", "feed_completion").inc();
+            completeAll(futures, instance);
+          }
+        }
+      }
+    } while (completions.size() == FEED_BATCH_SIZE);
+    if (!now.isBefore(nextPruneTime)) {
+      workflowInstanceStore.deleteCompletionsBefore(now.minus(feedRetention));
+      nextPruneTime = now.plus(feedRetention);
+    }
+  }
+
+  private void expire(String workflowInstanceId, CompletableFuture<WorkflowInstance> future) {
+    try {
+      // The completion might not have made it through the feed yet
+      val instance = workflowInstanceStore.get(workflowInstanceId);
+      if (isTerminal(instance.getStatus())) {
+        Metrics.getCounter("workflow_completion_notifier", "timeout_completion").inc();
+        future.complete(instance);
+        return;
+      }
+    } catch (Exception e) {
+      logger.warn(
+          "unable to check the status of workflow instance {}: {}",
+          workflowInstanceId,
+          e.getMessage());
+    }
+    future.completeExceptionally(
+        new TimeoutException(
+            "workflow instance " + workflowInstanceId + " didn't complete in time"));
+  }
+
+  private void removeWaiter(String workflowInstanceId, CompletableFuture<WorkflowInstance> future) {
+    waiters.computeIfPresent(
+        workflowInstanceId,
+        (id, futures) -> {
+          futures.remove(future);
+          return futures.isEmpty() ? null : futures;
+        });
+  }
+
+  private static void completeAll(
+      List<CompletableFuture<WorkflowInstance>> futures, WorkflowInstance workflowInstance) {
+    futures.forEach(future -> future.complete(workflowInstance));
+  }
+
+  private static boolean isTerminal(WorkflowInstance.Status status) {
+    return status.isCompleted() || status.isError();
+  }
+}
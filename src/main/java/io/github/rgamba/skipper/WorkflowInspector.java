@@ -1,121 +1,114 @@
 package io.github.rgamba.skipper;
 
 import io.github.rgamba.skipper.api.SkipperWorkflow;
-import io.github.rgamba.skipper.api.annotations.SignalConsumer;
-import io.github.rgamba.skipper.api.annotations.StateField;
-import io.github.rgamba.skipper.api.annotations.WorkflowMethod;
 import io.github.rgamba.skipper.common.Anything;
-import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.util.Arrays;
+import java.lang.reflect.Parameter;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import lombok.Getter;
 import lombok.NonNull;
+import lombok.SneakyThrows;
 import lombok.val;
-import sun.reflect.generics.reflectiveObjects.ParameterizedTypeImpl;
 
 public class WorkflowInspector {
-  private final Class<? extends SkipperWorkflow> clazz;
+  private final WorkflowMetadata metadata;
 
   @Getter private final SkipperWorkflow instance;
 
   public WorkflowInspector(
       @NonNull Class<? extends SkipperWorkflow> clazz, @NonNull SkipperWorkflow instance) {
-    this.clazz = clazz;
+    this.metadata = WorkflowMetadata.of(clazz);
     this.instance = instance;
   }
 
+  @SneakyThrows
   public Map<String, Anything> getState() {
     Map<String, Anything> result = new HashMap<>();
-    for (val field : getStateFields().collect(Collectors.toList())) {
-      try {
-        if (!field.isAccessible()) {
-          field.setAccessible(true);
-        }
-        if (field.get(instance) == null) {
-          result.put(field.getName(), null);
-        } else {
-          if (field.getType().getTypeParameters().length > 0) {
-            val args = ((ParameterizedTypeImpl) field.getGenericType()).getActualTypeArguments();
-            Class<?>[] params = Arrays.stream(args).map(t -> (Class) t).toArray(Class<?>[]::new);
-            result.put(field.getName(), new Anything(field.getType(), field.get(instance), params));
-          } else {
-            result.put(field.getName(), new Anything(field.getType(), field.get(instance)));
-          }
-        }
-      } catch (IllegalAccessException e) {
-        throw new IllegalStateException(
-            String.format("unable to access state field %s, it must be public", field.getName()));
+    for (val field : metadata.getStateFields()) {
+      val value = field.get(instance);
+      if (value == null) {
+        result.put(field.getName(), null);
+      } else {
+        result.put(field.getName(), new Anything(field.getType(), value, field.getTypeArguments()));
       }
     }
     return result;
   }
 
+  @SneakyThrows
   public void setState(@NonNull Map<String, Anything> newState) {
-    getStateFields()
-        .forEach(
-            s -> {
-              try {
-                if (newState.containsKey(s.getName())) {
-                  if (!s.isAccessible()) {
-                    s.setAccessible(true);
-                  }
-                  s.set(instance, newState.get(s.getName()).getValue());
-                }
-              } catch (IllegalArgumentException e) {
-                throw new IllegalArgumentException(
-                    String.format(
-                        "unable to set state field %s with value of type '%s', expected type is '%s'",
-                        s.getName(), newState.get(s.getName()).getClazz(), s.getType()),
-                    e);
-              } catch (IllegalAccessException e) {
-                throw new IllegalStateException(
-                    String.format(
-                        "unable to access state field %s, it must be public", s.getName()));
-              }
-            });
+    for (val field : metadata.getStateFields()) {
+      if (!newState.containsKey(field.getName())) {
+        continue;
+      }
+      val value = newState.get(field.getName());
+      if (value == null || value.getValue() == null) {
+        if (field.getType().isPrimitive()) {
+          throw new IllegalArgumentException(
+              String.format(
+                  "unable to set state field %s to null, its type is '%s'",
+                  field.getName(), field.getType()));
+        }
+        field.set(instance, null);
+        continue;
+      }
+      try {
+        field.set(instance, value.getValue());
+      } catch (IllegalArgumentException | ClassCastException e) {
+        throw new IllegalArgumentException(
+            String.format(
+                "unable to set state field %s with value of type '%s', expected type is '%s'",
+                field.getName(), value.getClazz(), field.getType()),
+            e);
+      }
+    }
   }
 
   public Method getWorkflowMethod() {
-    return Stream.of(clazz.getDeclaredMethods())
-        .filter(m -> m.isAnnotationPresent(WorkflowMethod.class))
-        .findFirst()
-        .orElseThrow(
-            () ->
-                new IllegalArgumentException(
-                    String.format("the workflow class %s does not have a WorkflowMethod", clazz)));
+    return metadata.getWorkflowMethod().getMethod();
   }
 
   public Method getSignalConsumerMethod(String methodName) {
-    return Stream.of(clazz.getDeclaredMethods())
-        .filter(m -> m.isAnnotationPresent(SignalConsumer.class))
-        .filter(m -> m.getName().equals(methodName))
-        .findFirst()
-        .orElseThrow(
-            () ->
-                new IllegalArgumentException(
-                    String.format(
-                        "the workflow class %s does not have a SignalConsumer method named '%s'",
-                        clazz, methodName)));
+    return metadata.getSignalConsumerMethod(methodName).getMethod();
   }
 
-  private Stream<Field> getStateFields() {
-    return Stream.of(clazz.getDeclaredFields())
-        .filter(f -> f.isAnnotationPresent(StateField.class));
+  /**
+   * Invoke the workflow method with the given arguments.
+   *
+   * @return The value returned by the workflow method. Exceptions thrown by the workflow method are
+   *     propagated as they are.
+   */
+  public Object invokeWorkflowMethod(@NonNull List<Anything> methodArgs) throws Throwable {
+    val method = metadata.getWorkflowMethod();
+    return method.invoke(
+        instance, getMethodParams(method.getName(), method.getParameters(), methodArgs));
+  }
+
+  /**
+   * Invoke the signal consumer method with the given arguments.
+   *
+   * @throws IllegalArgumentException If the signal consumer doesn't exist or the arguments don't
+   *     match its signature. Exceptions thrown by the signal consumer are propagated as they are.
+   */
+  public void invokeSignalConsumer(@NonNull String methodName, @NonNull List<Anything> methodArgs)
+      throws Throwable {
+    val method = metadata.getSignalConsumerMethod(methodName);
+    method.invoke(instance, getMethodParams(method.getName(), method.getParameters(), methodArgs));
   }
 
   public Object[] getMethodParams(@NonNull Method method, @NonNull List<Anything> methodArgs) {
-    if (methodArgs.size() != method.getParameters().length) {
+    return getMethodParams(method.getName(), method.getParameters(), methodArgs);
+  }
+
+  private Object[] getMethodParams(
+      String methodName, Parameter[] params, @NonNull List<Anything> methodArgs) {
+    if (methodArgs.size() != params.length) {
       throw new IllegalArgumentException(
           String.format(
-              "expected %d method arguments but got %d",
-              method.getParameters().length, methodArgs.size()));
+              "expected %d method arguments but got %d", params.length, methodArgs.size()));
     }
-    val params = method.getParameters();
     val response = new Object[methodArgs.size()];
     for (int i = 0; i < methodArgs.size(); i++) {
       val argValue = methodArgs.get(i);
@@ -124,7 +117,7 @@ public class WorkflowInspector {
           throw new IllegalArgumentException(
               String.format(
                   "null value provided for non-nullable argument '%s' in workflow method '%s'",
-                  params[i].getName(), method.getName()));
+                  params[i].getName(), methodName));
         }
         response[i] = null;
       } else {
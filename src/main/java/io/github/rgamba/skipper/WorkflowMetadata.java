@@ -0,0 +1,145 @@
+package io.github.rgamba.skipper;
+
+import io.github.rgamba.skipper.api.SkipperWorkflow;
+import io.github.rgamba.skipper.api.annotations.SignalConsumer;
+import io.github.rgamba.skipper.api.annotations.StateField;
+import io.github.rgamba.skipper.api.annotations.WorkflowMethod;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Cached reflection data of a workflow class: its workflow method, signal consumers and state
+ * fields. It's built once per class, the first time the class is registered or executed.
+ */
+public class WorkflowMetadata {
+  private static final Map<Class<?>, WorkflowMetadata> cache = new ConcurrentHashMap<>();
+
+  private final Class<? extends SkipperWorkflow> clazz;
+  @Nullable private final MethodMetadata workflowMethod;
+  private final Map<String, MethodMetadata> signalConsumers = new HashMap<>();
+  @Getter private final List<StateFieldMetadata> stateFields;
+
+  private WorkflowMetadata(Class<? extends SkipperWorkflow> clazz) {
+    this.clazz = clazz;
+    MethodMetadata workflowMethod = null;
+    for (Method method : clazz.getDeclaredMethods()) {
+      if (workflowMethod == null && method.isAnnotationPresent(WorkflowMethod.class)) {
+        workflowMethod = new MethodMetadata(method);
+      }
+      if (method.isAnnotationPresent(SignalConsumer.class)
+          && !signalConsumers.containsKey(method.getName())) {
+        signalConsumers.put(method.getName(), new MethodMetadata(method));
+      }
+    }
+    this.workflowMethod = workflowMethod;
+    List<StateFieldMetadata> fields = new ArrayList<>();
+    for (Field field : clazz.getDeclaredFields()) {
+      if (field.isAnnotationPresent(StateField.class)) {
+        fields.add(new StateFieldMetadata(field));
+      }
+    }
+    this.stateFields = Collections.unmodifiableList(fields);
+  }
+
+  public static WorkflowMetadata of(@NonNull Class<? extends SkipperWorkflow> clazz) {
+    return cache.computeIfAbsent(clazz, c -> new WorkflowMetadata(clazz));
+  }
+
+  /** @throws IllegalArgumentException If the class doesn't have a {@link WorkflowMethod} */
+  public MethodMetadata getWorkflowMethod() {
+    if (workflowMethod == null) {
+      throw new IllegalArgumentException(
+          String.format("the workflow class %s does not have a WorkflowMethod", clazz));
+    }
+    return workflowMethod;
+  }
+
+  /** @throws IllegalArgumentException If the class doesn't have the {@link SignalConsumer} */
+  public MethodMetadata getSignalConsumerMethod(@NonNull String methodName) {
+    MethodMetadata method = signalConsumers.get(methodName);
+    if (method == null) {
+      throw new IllegalArgumentException(
+          String.format(
+              "the workflow class %s does not have a SignalConsumer method named '%s'",
+              clazz, methodName));
+    }
+    return method;
+  }
+
+  /** A {@link StateField} with its generic type arguments resolved. */
+  @Getter
+  public static class StateFieldMetadata {
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE =
+        MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final String name;
+    private final Class<?> type;
+    private final Class<?>[] typeArguments;
+
+    @Getter(lombok.AccessLevel.NONE)
+    private final MethodHandle getter;
+
+    @Getter(lombok.AccessLevel.NONE)
+    private final MethodHandle setter;
+
+    StateFieldMetadata(Field field) {
+      this.name = field.getName();
+      this.type = field.getType();
+      this.typeArguments = resolveTypeArguments(field);
+      MethodMetadata.trySetAccessible(field);
+      try {
+        val lookup = MethodHandles.lookup();
+        this.getter = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+        this.setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+      } catch (IllegalAccessException e) {
+        throw new IllegalStateException(
+            String.format("unable to access state field %s, it must be public", name), e);
+      }
+    }
+
+    private static Class<?>[] resolveTypeArguments(Field field) {
+      if (field.getType().getTypeParameters().length == 0
+          || !(field.getGenericType() instanceof ParameterizedType)) {
+        return new Class<?>[0];
+      }
+      Type[] args = ((ParameterizedType) field.getGenericType()).getActualTypeArguments();
+      return Arrays.stream(args).map(StateFieldMetadata::rawType).toArray(Class<?>[]::new);
+    }
+
+    private static Class<?> rawType(Type type) {
+      if (type instanceof Class) {
+        return (Class<?>) type;
+      }
+      if (type instanceof ParameterizedType) {
+        return (Class<?>) ((ParameterizedType) type).getRawType();
+      }
+      // Type variables and wildcards can't be resolved from the field declaration
+      return Object.class;
+    }
+
+    public Object get(@NonNull Object instance) throws Throwable {
+      return (Object) getter.invokeExact(instance);
+    }
+
+    public void set(@NonNull Object instance, Object value) throws Throwable {
+      setter.invokeExact(instance, value);
+    }
+  }
+}
@@ -3,6 +3,7 @@ package io.github.rgamba.skipper.admin;
 import io.github.rgamba.skipper.SkipperEngine;
 import io.github.rgamba.skipper.models.OperationRequest;
 import io.github.rgamba.skipper.models.OperationResponse;
+import io.github.rgamba.skipper.models.QuarantinedTimer;
 import io.github.rgamba.skipper.models.WorkflowInstance;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -20,6 +21,9 @@ public class AdminResource {
     OperationResponse response;
   }
 
+  private static final int MAX_BATCH_SIZE = 100;
+  private static final int MAX_QUARANTINED_TIMERS = 1000;
+
   private final SkipperEngine engine;
 
   public AdminResource(@NonNull SkipperEngine engine) {
@@ -47,12 +51,34 @@ public class AdminResource {
     return engine.getWorkflowInstance(workflowInstanceId);
   }
 
+  @GET
+  @Produces(MediaType.APPLICATION_JSON)
+  @Path("/workflow-instances/batch")
+  public List<WorkflowInstance> getWorkflowInstancesById(@QueryParam("id") List<String> ids) {
+    if (ids.size() > MAX_BATCH_SIZE) {
+      throw new BadRequestException(
+          "at most " + MAX_BATCH_SIZE + " workflow instances can be requested at once");
+    }
+    return engine.getWorkflowInstances(ids);
+  }
+
   @GET
   @Produces(MediaType.APPLICATION_JSON)
   @Path("/workflow-instances/by-correlation-id/{id}")
   public WorkflowInstance getWorkflowInstanceByCorrelationId(
-      @PathParam("id") String workflowInstanceId) {
-    return engine.getWorkflowInstanceByCorrelationId(workflowInstanceId).get();
+      @PathParam("id") String correlationId, @QueryParam("workflowType") String workflowType) {
+    final Optional<WorkflowInstance> instance;
+    if (workflowType == null) {
+      // Kept for the clients that predate the workflowType query param
+      instance = engine.getWorkflowInstanceByCorrelationId(correlationId);
+    } else {
+      val type =
+          engine
+              .getRegisteredWorkflowType(workflowType)
+              .orElseThrow(() -> new BadRequestException("unknown workflow type " + workflowType));
+      instance = engine.getWorkflowInstanceByCorrelationId(type, correlationId);
+    }
+    return instance.orElseThrow(NotFoundException::new);
   }
 
   @GET
@@ -87,6 +113,31 @@ public class AdminResource {
     return result;
   }
 
+  @GET
+  @Produces(MediaType.APPLICATION_JSON)
+  @Path("/quarantined-timers")
+  public List<QuarantinedTimer> getQuarantinedTimers(
+      @QueryParam("limit") @DefaultValue("100") String limit) {
+    // Taken as a string, a malformed int query param would be answered with a 404
+    final int parsedLimit;
+    try {
+      parsedLimit = Integer.parseInt(limit);
+    } catch (NumberFormatException e) {
+      throw new BadRequestException("limit must be a number");
+    }
+    if (parsedLimit < 1) {
+      throw new BadRequestException("limit must be positive");
+    }
+    return engine.getQuarantinedTimers(Math.min(parsedLimit, MAX_QUARANTINED_TIMERS));
+  }
+
+  @POST
+  @Produces(MediaType.APPLICATION_JSON)
+  @Path("/quarantined-timers/{id}/requeue")
+  public void requeueQuarantinedTimer(@PathParam("id") String timerId) {
+    engine.requeueQuarantinedTimer(timerId);
+  }
+
   @POST
   @Produces(MediaType.APPLICATION_JSON)
   @Path("/workflow-instances/{id}/replay")
@@ -1,9 +1,11 @@
 package io.github.rgamba.skipper.api;
 
+import io.github.rgamba.skipper.common.Anything;
 import io.github.rgamba.skipper.models.NoRetry;
 import io.github.rgamba.skipper.models.OperationRequest;
 import io.github.rgamba.skipper.models.OperationResponse;
 import io.github.rgamba.skipper.models.OperationType;
+import io.github.rgamba.skipper.runtime.ContinueAsNew;
 import io.github.rgamba.skipper.runtime.DecisionThread;
 import io.github.rgamba.skipper.runtime.StopWorkflowExecution;
 import java.time.Duration;
@@ -12,6 +14,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.NonNull;
 import lombok.SneakyThrows;
 import lombok.val;
@@ -34,6 +38,24 @@ public class Control {
     throw new StopWorkflowExecution(operationRequests);
   }
 
+  /**
+   * Complete the current run of the workflow instance and start a new one with the given arguments,
+   * which replays the workflow method from the beginning on top of the current state. The history
+   * of the current run is archived, so that long-running workflows (e.g. polling loops) don't need
+   * to replay an ever-growing history.
+   *
+   * <p>This method never returns, its return type just allows it to be used as the return value of
+   * the workflow method.
+   *
+   * @param args The arguments of the workflow method for the new run
+   */
+  public static <T> T continueAsNew(Object... args) {
+    throw new ContinueAsNew(
+        Stream.of(args)
+            .map(arg -> arg == null ? null : Anything.of(arg))
+            .collect(Collectors.toList()));
+  }
+
   @SneakyThrows
   public static void waitUntil(@NonNull Callable<Boolean> condition, Duration timeout) {
     val timeoutId =
@@ -49,11 +71,7 @@ public class Control {
             .orElse(0L)
             .toString();
     Optional<OperationResponse> timeoutResponse =
-        DecisionThread.getWorkflowContext().getOperationResponses().stream()
-            .filter(resp -> resp.getOperationType().isWaitTimeout())
-            .filter(resp -> resp.getOperationType().getMethod().equals(index))
-            .filter(resp -> !resp.isTransient())
-            .findFirst();
+        DecisionThread.getWorkflowContext().getResponseIndex().findWaitTimeoutResponse(index);
     if (timeoutResponse.isPresent()) {
       throw new WaitTimeout();
     }
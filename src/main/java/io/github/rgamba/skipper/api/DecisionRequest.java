@@ -2,6 +2,7 @@ package io.github.rgamba.skipper.api;
 
 import io.github.rgamba.skipper.models.OperationResponse;
 import io.github.rgamba.skipper.models.WorkflowInstance;
+import java.time.Instant;
 import java.util.List;
 import lombok.Builder;
 import lombok.NonNull;
@@ -12,4 +13,9 @@ import lombok.Value;
 public class DecisionRequest {
   @NonNull WorkflowInstance workflowInstance;
   @NonNull List<OperationResponse> operationResponses;
+  /**
+   * When set, the work the decision executor would otherwise do inline past this point must be left
+   * to the asynchronous path instead.
+   */
+  Instant deadline;
 }
@@ -4,10 +4,12 @@ import io.github.rgamba.skipper.common.Anything;
 import io.github.rgamba.skipper.common.ValidationUtils;
 import io.github.rgamba.skipper.models.OperationRequest;
 import io.github.rgamba.skipper.models.OperationResponse;
+import io.github.rgamba.skipper.models.ReplayCheckpoint;
 import io.github.rgamba.skipper.models.WorkflowInstance;
 import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import lombok.Builder;
 import lombok.NonNull;
 import lombok.Value;
@@ -18,9 +20,19 @@ public class DecisionResponse {
   Anything result;
   @NonNull List<OperationRequest> operationRequests;
   Map<String, Anything> newState;
+  /**
+   * The fields of the new state that changed during the decision, null if unknown, in which case
+   * the whole new state must be considered changed.
+   */
+  Set<String> changedStateFields;
+
   @NonNull WorkflowInstance.Status newStatus;
   String statusReason;
   Duration waitForDuration;
+  /** When set, the current run is over and a new one must be started with these arguments. */
+  List<Anything> continueAsNewArgs;
+  /** The position reached in the history by a resumable workflow, null for other workflows. */
+  ReplayCheckpoint replayCheckpoint;
 
   @NonNull List<InlineExecution> inlineExecutions;
 
@@ -28,9 +40,12 @@ public class DecisionResponse {
       Anything result,
       @NonNull List<OperationRequest> operationRequests,
       Map<String, Anything> newState,
+      Set<String> changedStateFields,
       @NonNull WorkflowInstance.Status newStatus,
       String statusReason,
       Duration waitForDuration,
+      List<Anything> continueAsNewArgs,
+      ReplayCheckpoint replayCheckpoint,
       @NonNull List<InlineExecution> inlineExecutions) {
     ValidationUtils.when(
             newStatus.equals(WorkflowInstance.Status.COMPLETED)
@@ -45,18 +60,27 @@ public class DecisionResponse {
         .thenExpect(statusReason != null, "statusReason must be provided when Status == ERROR");
     ValidationUtils.when(newStatus.equals(WorkflowInstance.Status.ACTIVE))
         .thenExpect(
-            operationRequests.size() > 0 || waitForDuration != null,
-            "operationRequests or waitDuration are expected when Status == ACTIVE");
+            operationRequests.size() > 0 || waitForDuration != null || continueAsNewArgs != null,
+            "operationRequests, waitDuration or continueAsNewArgs are expected when Status == ACTIVE");
     ValidationUtils.when(waitForDuration != null)
         .thenExpect(
             operationRequests.isEmpty(), "cannot have a simultaneous wait and operation request");
+    ValidationUtils.when(continueAsNewArgs != null)
+        .thenExpect(
+            newStatus.equals(WorkflowInstance.Status.ACTIVE)
+                && operationRequests.isEmpty()
+                && waitForDuration == null,
+            "continueAsNewArgs can only be set along with Status == ACTIVE and nothing else pending");
 
     this.result = result;
     this.operationRequests = operationRequests;
     this.newState = newState;
+    this.changedStateFields = changedStateFields;
     this.newStatus = newStatus;
     this.statusReason = statusReason;
     this.waitForDuration = waitForDuration;
+    this.continueAsNewArgs = continueAsNewArgs;
+    this.replayCheckpoint = replayCheckpoint;
     this.inlineExecutions = inlineExecutions;
   }
 
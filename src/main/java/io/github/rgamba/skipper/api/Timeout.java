@@ -12,7 +12,7 @@ public class Timeout extends Promise {
         () -> {
           Instant lastCheckpoint =
               DecisionThread.getLatestCurrentExecutionCheckpoint()
-                  .orElse(DecisionThread.getWorkflowContext().getWorkflowInstanceCreationTime());
+                  .orElse(DecisionThread.getWorkflowContext().getRunStartTime());
           Instant now = DecisionThread.getWorkflowContext().getCurrentTime();
           Instant timeoutEnd = lastCheckpoint.plus(timeout);
           if (now.isBefore(timeoutEnd)) {
@@ -3,6 +3,7 @@ package io.github.rgamba.skipper.api;
 import io.github.rgamba.skipper.common.Anything;
 import io.github.rgamba.skipper.common.ValidationUtils;
 import io.github.rgamba.skipper.models.WorkflowType;
+import java.time.Duration;
 import java.util.List;
 import lombok.Builder;
 import lombok.NonNull;
@@ -17,17 +18,27 @@ public class WorkflowCreationRequest {
   @NonNull WorkflowType workflowType;
   @NonNull List<Anything> arguments;
   Class<? extends CallbackHandler> callbackHandlerClazz;
+  /**
+   * When set, the first decision is executed on the calling thread right after the workflow
+   * instance is created, instead of waiting for a timer poller to pick it up. The decision must
+   * finish within this budget, otherwise the rest is left to the pollers.
+   */
+  Duration eagerDecisionBudget;
 
   public WorkflowCreationRequest(
       @NonNull String correlationId,
       @NonNull WorkflowType workflowType,
       @NonNull List<Anything> arguments,
-      Class<? extends CallbackHandler> callbackHandlerClazz) {
+      Class<? extends CallbackHandler> callbackHandlerClazz,
+      Duration eagerDecisionBudget) {
     ValidationUtils.require(correlationId.length() < CORRELATION_ID_MAX_SIZE)
         .orFail("correlationId must be shorter than %d chars", CORRELATION_ID_MAX_SIZE);
+    ValidationUtils.require(eagerDecisionBudget == null || !eagerDecisionBudget.isNegative())
+        .orFail("eagerDecisionBudget cannot be negative");
     this.correlationId = correlationId;
     this.workflowType = workflowType;
     this.arguments = arguments;
     this.callbackHandlerClazz = callbackHandlerClazz;
+    this.eagerDecisionBudget = eagerDecisionBudget;
   }
 }
@@ -0,0 +1,22 @@
+package io.github.rgamba.skipper.api;
+
+import io.github.rgamba.skipper.models.WorkflowInstance;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+/** The outcome of a single workflow instance creation within a bulk creation. */
+@Value
+@Builder(toBuilder = true)
+public class WorkflowCreationResult {
+  public enum Status {
+    CREATED,
+    /** A workflow instance of the same type and correlation ID already exists. */
+    DUPLICATE_CORRELATION_ID
+  }
+
+  @NonNull WorkflowCreationRequest request;
+  @NonNull Status status;
+  /** The workflow instance created, null unless the status is CREATED. */
+  WorkflowInstance workflowInstance;
+}
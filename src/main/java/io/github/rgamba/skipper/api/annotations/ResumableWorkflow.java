@@ -0,0 +1,27 @@
+package io.github.rgamba.skipper.api.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Opts a workflow into resuming its decisions from the last replay checkpoint instead of replaying
+ * its whole history.
+ *
+ * <p>Every decision records how many responses of each operation were replayed, along with the
+ * state. The next decision restores the state and skips those responses, so the workflow method
+ * runs again from the beginning but only finds the responses recorded after the checkpoint.
+ *
+ * <p>This is only correct if the workflow method resumes deterministically from its {@link
+ * StateField}s alone, e.g. when it is written as an explicit step function that records the current
+ * step and the result of every operation in its state right after the operation returns. Local
+ * variables and any other data derived from earlier operation results won't be recomputed.
+ *
+ * <p>For the same reason, resumable workflows are the only ones that are automatically continued as
+ * new once their history reaches {@link
+ * io.github.rgamba.skipper.SkipperEngineConfig#getHistoryCompactionThreshold()}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ResumableWorkflow {}
@@ -5,9 +5,13 @@ import io.github.rgamba.skipper.api.CallbackHandler;
 import io.github.rgamba.skipper.api.SkipperWorkflow;
 import io.github.rgamba.skipper.api.WorkflowCreationRequest;
 import io.github.rgamba.skipper.api.WorkflowCreationResponse;
+import io.github.rgamba.skipper.api.WorkflowCreationResult;
 import io.github.rgamba.skipper.common.Anything;
 import io.github.rgamba.skipper.models.WorkflowInstance;
 import io.github.rgamba.skipper.models.WorkflowType;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import lombok.NonNull;
@@ -46,6 +50,34 @@ public class SkipperClient {
     return engine.createWorkflowInstance(req);
   }
 
+  /**
+   * Create many workflow instances at once, see {@link
+   * SkipperEngine#createWorkflowInstances(List)}.
+   *
+   * @param requests The workflow instance creation requests
+   * @return The result of each request, in the same order as the requests.
+   */
+  public List<WorkflowCreationResult> createWorkflowInstances(
+      @NonNull List<WorkflowCreationRequest> requests) {
+    return engine.createWorkflowInstances(requests);
+  }
+
+  /**
+   * Create a workflow instance and wait for it to complete.
+   *
+   * @param timeout How long to wait for the workflow instance to complete
+   * @return A future completed with the workflow instance once its status is COMPLETED or ERROR, or
+   *     with a {@link java.util.concurrent.TimeoutException} if it didn't complete in time.
+   */
+  public CompletableFuture<WorkflowInstance> createWorkflowInstanceAndAwait(
+      @NonNull Class<? extends SkipperWorkflow> workflow,
+      @NonNull String correlationId,
+      @NonNull Duration timeout,
+      Object... initialArgs) {
+    val response = createWorkflowInstance(workflow, correlationId, initialArgs);
+    return engine.awaitCompletion(response.getWorkflowInstance().getId(), timeout);
+  }
+
   public WorkflowInstance getWorkflowInstance(@NonNull String workflowInstanceId) {
     return engine.getWorkflowInstance(workflowInstanceId);
   }
@@ -5,10 +5,16 @@ import io.github.rgamba.skipper.api.CallbackHandler;
 import io.github.rgamba.skipper.api.SkipperWorkflow;
 import io.github.rgamba.skipper.api.annotations.SignalConsumer;
 import io.github.rgamba.skipper.api.annotations.WorkflowMethod;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javassist.util.proxy.Proxy;
 import javassist.util.proxy.ProxyFactory;
 import lombok.NonNull;
 
 public class SkipperClientFactory {
+  // Proxy classes are generated once per workflow class and only instantiated on every call.
+  private static final Map<Class<?>, Class<?>> proxyClasses = new ConcurrentHashMap<>();
+
   private final SkipperEngine engine;
 
   public SkipperClientFactory(@NonNull SkipperEngine engine) {
@@ -19,22 +25,28 @@ public class SkipperClientFactory {
       Class<T> clazz,
       @NonNull String correlationId,
       Class<? extends CallbackHandler> callbackHandler) {
-    ProxyFactory factory = new ProxyFactory();
-    factory.setSuperclass(clazz);
-    factory.setFilter(
-        method ->
-            method.isAnnotationPresent(WorkflowMethod.class)
-                || method.isAnnotationPresent(SignalConsumer.class));
     Object instance;
     try {
       instance =
-          factory.create(
-              new Class<?>[0],
-              new Object[0],
-              new WorkflowProxyHandler(engine, clazz, correlationId, callbackHandler));
+          proxyClasses
+              .computeIfAbsent(clazz, SkipperClientFactory::createProxyClass)
+              .getDeclaredConstructor()
+              .newInstance();
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
+    ((Proxy) instance)
+        .setHandler(new WorkflowProxyHandler(engine, clazz, correlationId, callbackHandler));
     return clazz.cast(instance);
   }
+
+  private static Class<?> createProxyClass(Class<?> clazz) {
+    ProxyFactory factory = new ProxyFactory();
+    factory.setSuperclass(clazz);
+    factory.setFilter(
+        method ->
+            method.isAnnotationPresent(WorkflowMethod.class)
+                || method.isAnnotationPresent(SignalConsumer.class));
+    return factory.createClass();
+  }
 }
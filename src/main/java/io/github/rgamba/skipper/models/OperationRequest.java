@@ -31,6 +31,14 @@ public class OperationRequest implements Serializable {
   int failedAttempts;
 
   public static String createOperationRequestId(OperationRequest req) {
+    return createOperationRequestId(req, 0);
+  }
+
+  /**
+   * @param runNumber The run of the workflow instance the request belongs to. Requests of different
+   *     runs get different IDs, even though their iterations start over on every run.
+   */
+  public static String createOperationRequestId(OperationRequest req, int runNumber) {
     String token =
         String.format(
             "%s_%s_%s_%d_%d",
@@ -39,7 +47,7 @@ public class OperationRequest implements Serializable {
             req.getOperationType().getMethod(),
             req.getIteration(),
             req.getFailedAttempts());
-    return Hashing.sha256().hashString(token, Charsets.UTF_8).toString();
+    return hash(token, runNumber);
   }
 
   /**
@@ -50,6 +58,14 @@ public class OperationRequest implements Serializable {
    * @return The idempotency token
    */
   public String generateIdempotencyToken() {
+    return generateIdempotencyToken(0);
+  }
+
+  /**
+   * @param runNumber The run of the workflow instance the request belongs to
+   * @return The idempotency token, unique to the given run of the workflow instance
+   */
+  public String generateIdempotencyToken(int runNumber) {
     String token =
         String.format(
             "%s_%s_%s_%d",
@@ -57,6 +73,14 @@ public class OperationRequest implements Serializable {
             operationType.getClazz().getName(),
             operationType.getMethod(),
             iteration);
+    return hash(token, runNumber);
+  }
+
+  private static String hash(String token, int runNumber) {
+    // The first run keeps the original format, so that the IDs of existing requests don't change
+    if (runNumber > 0) {
+      token = String.format("%s_run%d", token, runNumber);
+    }
     return Hashing.sha256().hashString(token, Charsets.UTF_8).toString();
   }
 }
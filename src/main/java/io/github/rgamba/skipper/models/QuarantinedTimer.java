@@ -0,0 +1,18 @@
+package io.github.rgamba.skipper.models;
+
+import java.time.Instant;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * A timer that kept failing after the maximum number of attempts and was moved out of the timers
+ * table, so it doesn't keep being retried. It can be inspected and re-enqueued from the admin API.
+ */
+@Value
+@Builder(toBuilder = true)
+public class QuarantinedTimer {
+  @NonNull Timer timer;
+  String lastError;
+  @NonNull Instant quarantineTime;
+}
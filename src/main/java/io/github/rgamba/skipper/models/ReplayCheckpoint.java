@@ -0,0 +1,37 @@
+package io.github.rgamba.skipper.models;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Map;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+import lombok.val;
+
+/**
+ * Position of a {@link io.github.rgamba.skipper.api.annotations.ResumableWorkflow} in its history,
+ * the responses before it don't need to be replayed again.
+ */
+@Value
+@Builder(toBuilder = true)
+public class ReplayCheckpoint implements Serializable {
+  /** Number of responses replayed for every operation method, keyed by {@link #key}. */
+  @NonNull Map<String, Integer> iterations;
+  /** The latest execution checkpoint reached by the replay, null if none. */
+  Instant executionCheckpoint;
+
+  public static String key(@NonNull Class<?> clazz, @NonNull String method) {
+    return clazz.getName() + "#" + method;
+  }
+
+  /** @return The number of responses replayed for the given operation method. */
+  public int getIteration(@NonNull Class<?> clazz, @NonNull String method) {
+    return iterations.getOrDefault(key(clazz, method), 0);
+  }
+
+  /** @return Whether the response was already replayed before the checkpoint. */
+  public boolean isReplayed(@NonNull OperationResponse response) {
+    val type = response.getOperationType();
+    return response.getIteration() < getIteration(type.getClazz(), type.getMethod());
+  }
+}
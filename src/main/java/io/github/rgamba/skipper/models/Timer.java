@@ -2,16 +2,54 @@ package io.github.rgamba.skipper.models;
 
 import io.github.rgamba.skipper.common.Anything;
 import io.github.rgamba.skipper.timers.TimerHandler;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
 import lombok.*;
 
 @Value
 @Builder(toBuilder = true)
 public class Timer {
+  /**
+   * Fixed number of partitions timers are hashed into. Partition ownership is leased by timer
+   * processor nodes, so changing this value requires re-partitioning the timers table.
+   */
+  public static final int PARTITION_COUNT = 64;
+
   @NonNull String timerId;
   Instant timeout;
   @NonNull Class<? extends TimerHandler> handlerClazz;
   @NonNull Anything payload;
   int retries;
   @NonNull int version;
+  /**
+   * Token of the lease taken on the timer by the claim that returned it, null if the timer wasn't
+   * returned by a claim. Only the holder of the token can extend the lease.
+   */
+  @EqualsAndHashCode.Exclude String leaseOwner;
+
+  public int getPartition() {
+    return partitionOf(timerId);
+  }
+
+  /**
+   * Computes the partition the given timer ID belongs to. The hash function must match the one used
+   * by the storage layer (CRC32) so that existing rows can be back-filled with SQL.
+   *
+   * @param timerId The timer ID
+   * @return The partition number, between 0 and {@link #PARTITION_COUNT} (exclusive)
+   */
+  public static int partitionOf(@NonNull String timerId) {
+    CRC32 crc = new CRC32();
+    crc.update(timerId.getBytes(StandardCharsets.UTF_8));
+    return (int) (crc.getValue() % PARTITION_COUNT);
+  }
+
+  /** @return The set of all the timer partitions. */
+  public static Set<Integer> allPartitions() {
+    return IntStream.range(0, PARTITION_COUNT).boxed().collect(Collectors.toSet());
+  }
 }
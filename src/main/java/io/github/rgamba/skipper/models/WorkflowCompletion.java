@@ -0,0 +1,20 @@
+package io.github.rgamba.skipper.models;
+
+import java.time.Instant;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * An entry of the completion feed, recorded whenever a workflow instance reaches a terminal status.
+ * The sequence numbers grow with every entry, so the feed can be followed from the last sequence
+ * seen.
+ */
+@Value
+@Builder(toBuilder = true)
+public class WorkflowCompletion {
+  long sequence;
+  @NonNull String workflowInstanceId;
+  @NonNull WorkflowInstance.Status status;
+  @NonNull Instant completionTime;
+}
@@ -6,11 +6,13 @@ import io.github.rgamba.skipper.common.ValidationUtils;
 import java.io.Serializable;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import lombok.Builder;
 import lombok.NonNull;
 import lombok.Value;
+import lombok.val;
 
 @Builder(toBuilder = true)
 @Value
@@ -22,6 +24,13 @@ public class WorkflowInstance implements Serializable {
   @NonNull Map<String, Anything> state;
   @NonNull List<Anything> initialArgs;
   int version;
+  /** The current run, starting at 0 and incremented every time the instance continues as new. */
+  int runNumber;
+  /** When the current run started, null for the first run as it starts at the creation time. */
+  Instant runStartTime;
+  /** Where the next decision resumes from, only set for resumable workflows. */
+  ReplayCheckpoint replayCheckpoint;
+
   @NonNull Status status;
   String statusReason;
   Class<? extends CallbackHandler> callbackHandlerClazz;
@@ -36,6 +45,9 @@ public class WorkflowInstance implements Serializable {
       @NonNull Map<String, Anything> state,
       @NonNull List<Anything> initialArgs,
       int version,
+      int runNumber,
+      Instant runStartTime,
+      ReplayCheckpoint replayCheckpoint,
       @NonNull Status status,
       String statusReason,
       Class<? extends CallbackHandler> callbackHandlerClazz,
@@ -49,12 +61,65 @@ public class WorkflowInstance implements Serializable {
     this.state = state;
     this.initialArgs = initialArgs;
     this.version = version;
+    this.runNumber = runNumber;
+    this.runStartTime = runStartTime;
+    this.replayCheckpoint = replayCheckpoint;
     this.status = status;
     this.statusReason = statusReason;
     this.callbackHandlerClazz = callbackHandlerClazz;
     this.creationTime = creationTime.truncatedTo(ChronoUnit.SECONDS);
   }
 
+  /**
+   * @param mutation The mutation to apply
+   * @return A copy of this instance with the mutation applied, same as the stores do on update.
+   */
+  public WorkflowInstance apply(@NonNull Mutation mutation) {
+    val builder = toBuilder().version(version + 1);
+    if (mutation.getState() != null) {
+      builder.state(mutation.getState());
+    } else if (mutation.getStatePatch() != null) {
+      val newState = new HashMap<>(state);
+      mutation
+          .getStatePatch()
+          .forEach(
+              (field, value) -> {
+                if (value != null) {
+                  newState.put(field, value);
+                } else {
+                  newState.remove(field);
+                }
+              });
+      builder.state(newState);
+    }
+    if (mutation.getStatus() != null) {
+      builder.status(mutation.getStatus());
+    }
+    if (mutation.getStatusReason() != null) {
+      builder.statusReason(mutation.getStatusReason());
+    }
+    if (mutation.getResult() != null) {
+      builder.result(mutation.getResult());
+    }
+    if (mutation.getNextRunArgs() != null) {
+      builder
+          .initialArgs(mutation.getNextRunArgs())
+          .result(null)
+          .replayCheckpoint(null)
+          .runNumber(runNumber + 1)
+          .runStartTime(mutation.getNextRunStartTime());
+    }
+    if (mutation.getReplayCheckpoint() != null) {
+      builder.replayCheckpoint(mutation.getReplayCheckpoint());
+    }
+    return builder.build();
+  }
+
+  /** @return The time the current run started, which is the time its decisions are relative to. */
+  public Instant getCurrentRunStartTime() {
+    return runStartTime != null ? runStartTime : creationTime;
+  }
+
   public enum Status {
     ACTIVE,
     COMPLETED,
@@ -73,8 +138,25 @@ public class WorkflowInstance implements Serializable {
   @Builder(toBuilder = true)
   public static class Mutation {
     Status status;
+    /** Replaces the whole state. */
     Map<String, Anything> state;
+    /**
+     * Sets only the given state fields, leaving the rest untouched. Fields with a null value are
+     * removed. Ignored if state is set.
+     */
+    Map<String, Anything> statePatch;
+
     String statusReason;
     Anything result;
+    ReplayCheckpoint replayCheckpoint;
+
+    /**
+     * Starts the next run of the instance with the given arguments. The run number is incremented
+     * and the result and replay checkpoint are cleared, the state is carried over unless it's also
+     * mutated.
+     */
+    List<Anything> nextRunArgs;
+    /** The start time of the next run, required along with nextRunArgs. */
+    Instant nextRunStartTime;
   }
 }
@@ -6,8 +6,10 @@ import io.github.rgamba.skipper.DecisionExecutor;
 import io.github.rgamba.skipper.DependencyRegistry;
 import io.github.rgamba.skipper.OperationExecutor;
 import io.github.rgamba.skipper.SkipperEngine;
+import io.github.rgamba.skipper.SkipperEngineConfig;
 import io.github.rgamba.skipper.store.OperationStore;
 import io.github.rgamba.skipper.store.TimerStore;
+import io.github.rgamba.skipper.store.UnitOfWork;
 import io.github.rgamba.skipper.store.WorkflowInstanceStore;
 import java.time.Clock;
 import lombok.NonNull;
@@ -19,6 +21,7 @@ public class SkipperEngineFactory {
   private final DecisionExecutor decisionExecutor;
   private final OperationExecutor operationExecutor;
   private final Clock clock;
+  private final UnitOfWork unitOfWork;
 
   @Inject
   public SkipperEngineFactory(
@@ -27,16 +30,23 @@ public class SkipperEngineFactory {
       @NonNull OperationStore operationStore,
       @NonNull TimerStore timerStore,
       @NonNull DecisionExecutor decisionExecutor,
-      @NonNull OperationExecutor operationExecutor) {
+      @NonNull OperationExecutor operationExecutor,
+      @NonNull UnitOfWork unitOfWork) {
     this.workflowInstanceStore = workflowInstanceStore;
     this.operationStore = operationStore;
     this.timerStore = timerStore;
     this.decisionExecutor = decisionExecutor;
     this.operationExecutor = operationExecutor;
     this.clock = clock;
+    this.unitOfWork = unitOfWork;
   }
 
   public SkipperEngine create(DependencyRegistry registry) {
+    return create(registry, SkipperEngineConfig.defaults());
+  }
+
+  public SkipperEngine create(
+      @NonNull DependencyRegistry registry, @NonNull SkipperEngineConfig config) {
     return new SkipperEngine(
         clock,
         workflowInstanceStore,
@@ -44,6 +54,8 @@ public class SkipperEngineFactory {
         timerStore,
         decisionExecutor,
         operationExecutor,
-        registry);
+        registry,
+        config,
+        unitOfWork);
   }
 }
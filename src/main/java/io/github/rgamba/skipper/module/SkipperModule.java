@@ -3,25 +3,60 @@ package io.github.rgamba.skipper.module;
 import com.google.inject.AbstractModule;
 import com.google.inject.name.Names;
 import io.github.rgamba.skipper.DecisionExecutor;
+import io.github.rgamba.skipper.PlatformWorkerExecutorFactory;
 import io.github.rgamba.skipper.SyncDecisionExecutor;
+import io.github.rgamba.skipper.SyncDecisionExecutorConfig;
+import io.github.rgamba.skipper.WorkerExecutorFactory;
 import io.github.rgamba.skipper.store.OperationStore;
 import io.github.rgamba.skipper.store.SqlTransactionManager;
+import io.github.rgamba.skipper.store.TimerPartitionStore;
 import io.github.rgamba.skipper.store.TimerStore;
+import io.github.rgamba.skipper.store.UnitOfWork;
 import io.github.rgamba.skipper.store.WorkflowInstanceStore;
 import io.github.rgamba.skipper.store.mysql.MySqlOperationStore;
+import io.github.rgamba.skipper.store.mysql.MySqlTimerPartitionStore;
 import io.github.rgamba.skipper.store.mysql.MySqlTimerStore;
 import io.github.rgamba.skipper.store.mysql.MySqlWorkflowInstanceStore;
+import io.github.rgamba.skipper.store.mysql.SqlUnitOfWork;
 import java.time.Clock;
 
 public class SkipperModule extends AbstractModule {
   private final String jdbcUrl;
   private final String dbUser;
   private final String dbPass;
+  private final Class<? extends WorkerExecutorFactory> workerExecutorFactory;
+  private final SyncDecisionExecutorConfig syncDecisionExecutorConfig;
 
   public SkipperModule(String jdbcUrl, String dbUser, String dbPass) {
+    this(jdbcUrl, dbUser, dbPass, PlatformWorkerExecutorFactory.class);
+  }
+
+  public SkipperModule(
+      String jdbcUrl,
+      String dbUser,
+      String dbPass,
+      Class<? extends WorkerExecutorFactory> workerExecutorFactory) {
+    this(jdbcUrl, dbUser, dbPass, workerExecutorFactory, SyncDecisionExecutorConfig.defaults());
+  }
+
+  /**
+   * @param workerExecutorFactory The factory of the executors that run the timer handlers, e.g.
+   *     {@link io.github.rgamba.skipper.VirtualThreadWorkerExecutorFactory} to run them on virtual
+   *     threads. It also creates the pool that runs the operations executed inline by the
+   *     decisions.
+   * @param syncDecisionExecutorConfig The configuration of the inline execution of operations.
+   */
+  public SkipperModule(
+      String jdbcUrl,
+      String dbUser,
+      String dbPass,
+      Class<? extends WorkerExecutorFactory> workerExecutorFactory,
+      SyncDecisionExecutorConfig syncDecisionExecutorConfig) {
     this.jdbcUrl = jdbcUrl;
     this.dbUser = dbUser;
     this.dbPass = dbPass;
+    this.workerExecutorFactory = workerExecutorFactory;
+    this.syncDecisionExecutorConfig = syncDecisionExecutorConfig;
   }
 
   @Override
@@ -29,8 +64,12 @@ public class SkipperModule extends AbstractModule {
     bind(Clock.class).annotatedWith(Names.named("UTC")).toInstance(Clock.systemUTC());
     bind(WorkflowInstanceStore.class).to(MySqlWorkflowInstanceStore.class);
     bind(TimerStore.class).to(MySqlTimerStore.class);
+    bind(TimerPartitionStore.class).to(MySqlTimerPartitionStore.class);
     bind(OperationStore.class).to(MySqlOperationStore.class);
+    bind(UnitOfWork.class).to(SqlUnitOfWork.class);
     bind(DecisionExecutor.class).to(SyncDecisionExecutor.class);
+    bind(WorkerExecutorFactory.class).to(workerExecutorFactory);
+    bind(SyncDecisionExecutorConfig.class).toInstance(syncDecisionExecutorConfig);
     bindConstant().annotatedWith(SqlTransactionManager.JdbcUrl.class).to(jdbcUrl);
     bindConstant().annotatedWith(SqlTransactionManager.DbUser.class).to(dbUser);
     bindConstant().annotatedWith(SqlTransactionManager.DbPassword.class).to(dbPass);
@@ -1,36 +1,56 @@
 package io.github.rgamba.skipper.module;
 
 import com.google.inject.Inject;
+import com.google.inject.name.Named;
 import io.github.rgamba.skipper.SkipperEngine;
+import io.github.rgamba.skipper.TimerPartitionManager;
 import io.github.rgamba.skipper.TimerProcessor;
+import io.github.rgamba.skipper.TimerProcessorConfig;
+import io.github.rgamba.skipper.WorkerExecutorFactory;
+import io.github.rgamba.skipper.store.TimerPartitionStore;
 import io.github.rgamba.skipper.store.TimerStore;
 import io.github.rgamba.skipper.timers.DecisionTimerHandler;
 import io.github.rgamba.skipper.timers.OperationRequestTimerHandler;
 import io.github.rgamba.skipper.timers.TimerHandler;
 import io.github.rgamba.skipper.timers.WorkflowInstanceCallbackTimerHandler;
+import java.time.Clock;
 import java.util.HashMap;
 import lombok.NonNull;
 import lombok.val;
 
 public class TimerProcessorFactory {
   private final TimerStore timerStore;
+  private final TimerPartitionStore timerPartitionStore;
+  private final Clock clock;
   private final DecisionTimerHandler decisionTimerHandler;
   private final OperationRequestTimerHandler operationRequestTimerHandler;
   private final WorkflowInstanceCallbackTimerHandler workflowInstanceCallbackTimerHandler;
+  private final WorkerExecutorFactory workerExecutorFactory;
 
   @Inject
   public TimerProcessorFactory(
+      @Named("UTC") Clock clock,
       @NonNull TimerStore timerStore,
+      @NonNull TimerPartitionStore timerPartitionStore,
       @NonNull DecisionTimerHandler decisionTimerHandler,
       @NonNull OperationRequestTimerHandler operationRequestTimerHandler,
-      @NonNull WorkflowInstanceCallbackTimerHandler workflowInstanceCallbackTimerHandler) {
+      @NonNull WorkflowInstanceCallbackTimerHandler workflowInstanceCallbackTimerHandler,
+      @NonNull WorkerExecutorFactory workerExecutorFactory) {
     this.timerStore = timerStore;
+    this.timerPartitionStore = timerPartitionStore;
+    this.clock = clock;
     this.decisionTimerHandler = decisionTimerHandler;
     this.operationRequestTimerHandler = operationRequestTimerHandler;
     this.workflowInstanceCallbackTimerHandler = workflowInstanceCallbackTimerHandler;
+    this.workerExecutorFactory = workerExecutorFactory;
   }
 
   public TimerProcessor create(@NonNull SkipperEngine engine) {
+    return create(engine, TimerProcessorConfig.defaults());
+  }
+
+  public TimerProcessor create(
+      @NonNull SkipperEngine engine, @NonNull TimerProcessorConfig config) {
     val timerHandlers =
         new HashMap<Class<? extends TimerHandler>, TimerHandler>() {
           {
@@ -39,6 +59,8 @@ public class TimerProcessorFactory {
             put(WorkflowInstanceCallbackTimerHandler.class, workflowInstanceCallbackTimerHandler);
           }
         };
-    return new TimerProcessor(engine, timerStore, timerHandlers);
+    val partitionManager = new TimerPartitionManager(timerPartitionStore, clock);
+    return new TimerProcessor(
+        clock, engine, timerStore, partitionManager, timerHandlers, config, workerExecutorFactory);
   }
 }
@@ -0,0 +1,30 @@
+package io.github.rgamba.skipper.runtime;
+
+import io.github.rgamba.skipper.common.Anything;
+import java.util.List;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * Serves as a signal to the decision runner that the current run of the workflow instance is over
+ * and that a new run must be started with the given arguments, see {@link
+ * io.github.rgamba.skipper.api.Control#continueAsNew(Object...)}.
+ *
+ * <p>Same as {@link StopWorkflowExecution}, this exception type must not be caught anywhere in the
+ * workflow decision context.
+ */
+@Value
+@AllArgsConstructor
+@Builder(toBuilder = true)
+public class ContinueAsNew extends Error {
+  @NonNull List<Anything> args;
+  Map<String, Anything> newState;
+
+  public ContinueAsNew(@NonNull List<Anything> args) {
+    this.args = args;
+    this.newState = null;
+  }
+}
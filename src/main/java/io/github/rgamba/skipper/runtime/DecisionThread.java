@@ -2,10 +2,12 @@ package io.github.rgamba.skipper.runtime;
 
 import io.github.rgamba.skipper.common.ValidationUtils;
 import io.github.rgamba.skipper.models.OperationResponse;
+import io.github.rgamba.skipper.models.ReplayCheckpoint;
 import io.github.rgamba.skipper.models.WorkflowInstance;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import javax.annotation.Nullable;
 import lombok.NonNull;
 
 /**
@@ -20,6 +22,8 @@ public class DecisionThread {
   // which we have a recorded result, we consider that operation's response time to be the latest
   // execution checkpoint.
   private static final ThreadLocal<Instant> latestCurrentExecutionCheckpoint = new ThreadLocal<>();
+  // Only set for resumable workflows, see ResumableWorkflow.
+  private static final ThreadLocal<ReplayTracker> replayTracker = new ThreadLocal<>();
 
   public static void setWorkflowContext(@NonNull WorkflowContext context) {
     workflowContext.set(context);
@@ -28,6 +32,7 @@ public class DecisionThread {
   public static void clear() {
     workflowContext.remove();
     latestCurrentExecutionCheckpoint.remove();
+    replayTracker.remove();
   }
 
   public static WorkflowContext getWorkflowContext() {
@@ -49,6 +54,102 @@ public class DecisionThread {
     latestCurrentExecutionCheckpoint.remove();
   }
 
+  /**
+   * Start tracking the replayed responses of a resumable workflow decision, resuming from the given
+   * checkpoint.
+   *
+   * @param from The checkpoint recorded by the previous decision, null if there is none
+   */
+  public static void startReplayTracking(@Nullable ReplayCheckpoint from) {
+    replayTracker.set(new ReplayTracker(from));
+    if (from != null && from.getExecutionCheckpoint() != null) {
+      latestCurrentExecutionCheckpoint.set(from.getExecutionCheckpoint());
+    }
+  }
+
+  public static void stopReplayTracking() {
+    replayTracker.remove();
+  }
+
+  public static Optional<ReplayTracker> getReplayTracker() {
+    return Optional.ofNullable(replayTracker.get());
+  }
+
+  /**
+   * Capture the decision state of the current thread so that it can be carried over to another
+   * thread with {@link #propagate(Runnable)}.
+   */
+  public static Snapshot capture() {
+    return new Snapshot(
+        workflowContext.get(), latestCurrentExecutionCheckpoint.get(), replayTracker.get());
+  }
+
+  /**
+   * Wrap the task so that it runs with the decision state of the current thread, regardless of the
+   * thread that ends up executing it. The state of the executing thread is restored afterwards.
+   */
+  public static Runnable propagate(@NonNull Runnable task) {
+    return capture().wrap(task);
+  }
+
+  /**
+   * Wrap the task so that it runs without any decision state, regardless of what the executing
+   * thread ran before. The state of the executing thread is restored afterwards.
+   */
+  public static Runnable isolated(@NonNull Runnable task) {
+    return Snapshot.EMPTY.wrap(task);
+  }
+
+  private static void restore(Snapshot snapshot) {
+    if (snapshot.context == null) {
+      workflowContext.remove();
+    } else {
+      workflowContext.set(snapshot.context);
+    }
+    if (snapshot.checkpoint == null) {
+      latestCurrentExecutionCheckpoint.remove();
+    } else {
+      latestCurrentExecutionCheckpoint.set(snapshot.checkpoint);
+    }
+    if (snapshot.replayTracker == null) {
+      replayTracker.remove();
+    } else {
+      replayTracker.set(snapshot.replayTracker);
+    }
+  }
+
+  /**
+   * The decision state of a thread at the time it was captured. Which context the thread was bound
+   * to can't change, but the {@link WorkflowContext} itself is shared by reference, not copied: a
+   * task propagated to another thread works on the same context as the decision that spawned it,
+   * and sees (and makes) the same changes. The same goes for the {@link ReplayTracker}.
+   */
+  public static final class Snapshot {
+    private static final Snapshot EMPTY = new Snapshot(null, null, null);
+
+    private final WorkflowContext context;
+    private final Instant checkpoint;
+    private final ReplayTracker replayTracker;
+
+    private Snapshot(WorkflowContext context, Instant checkpoint, ReplayTracker replayTracker) {
+      this.context = context;
+      this.checkpoint = checkpoint;
+      this.replayTracker = replayTracker;
+    }
+
+    public Runnable wrap(@NonNull Runnable task) {
+      return () -> {
+        Snapshot previous = capture();
+        restore(this);
+        try {
+          task.run();
+        } finally {
+          restore(previous);
+        }
+      };
+    }
+  }
+
   public static Setter contextSetter() {
     return new Setter();
   }
@@ -84,8 +185,10 @@ public class DecisionThread {
               workflowInstance.getId(),
               currentTime,
               operationResponses,
-              workflowInstance.getCreationTime()));
+              workflowInstance.getCurrentRunStartTime(),
+              workflowInstance.getRunNumber()));
       DecisionThread.removeLatestCurrentExecutionCheckpoint();
+      DecisionThread.stopReplayTracking();
     }
   }
 }
@@ -0,0 +1,67 @@
+package io.github.rgamba.skipper.runtime;
+
+import io.github.rgamba.skipper.models.OperationResponse;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import lombok.NonNull;
+import lombok.Value;
+import lombok.val;
+
+/**
+ * Index of the non-transient operation responses available to a workflow decision, so that the
+ * replay of every recorded operation is a constant time lookup instead of a scan of the whole
+ * history. When more than one response matches a key, the first one in history order wins.
+ */
+public class OperationResponseIndex {
+  private final Map<Key, OperationResponse> operations = new HashMap<>();
+  private final Map<String, OperationResponse> waitTimeouts = new HashMap<>();
+  private final int size;
+
+  OperationResponseIndex(@NonNull List<OperationResponse> responses) {
+    this.size = responses.size();
+    for (OperationResponse response : responses) {
+      if (response.isTransient()) {
+        continue;
+      }
+      val type = response.getOperationType();
+      operations.putIfAbsent(
+          new Key(type.getClazz(), type.getMethod(), response.getIteration()), response);
+      if (type.isWaitTimeout()) {
+        waitTimeouts.putIfAbsent(type.getMethod(), response);
+      }
+    }
+  }
+
+  /**
+   * @param clazz The operation class
+   * @param method The operation method name
+   * @param iteration The number of times the method has been called before in the decision
+   * @return The response recorded for the operation call, if any
+   */
+  public Optional<OperationResponse> findOperationResponse(
+      @NonNull Class<?> clazz, @NonNull String method, int iteration) {
+    return Optional.ofNullable(operations.get(new Key(clazz, method, iteration)));
+  }
+
+  /**
+   * @param checkpoint The execution checkpoint the wait was started at
+   * @return The response recorded when the wait timed out, if any
+   */
+  public Optional<OperationResponse> findWaitTimeoutResponse(@NonNull String checkpoint) {
+    return Optional.ofNullable(waitTimeouts.get(checkpoint));
+  }
+
+  /** Responses are only ever appended during a decision, so a size change means it's stale. */
+  boolean isUpToDate(List<OperationResponse> responses) {
+    return responses.size() == size;
+  }
+
+  @Value
+  private static class Key {
+    Class<?> clazz;
+    String method;
+    int iteration;
+  }
+}
@@ -0,0 +1,37 @@
+package io.github.rgamba.skipper.runtime;
+
+import io.github.rgamba.skipper.models.ReplayCheckpoint;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+import lombok.NonNull;
+
+/**
+ * Keeps track of the responses replayed by a resumable workflow decision, starting from the
+ * previous replay checkpoint (if any). Like the rest of the decision state, it must only be used
+ * from the decision thread.
+ */
+public class ReplayTracker {
+  private final Map<String, Integer> iterations;
+
+  ReplayTracker(@Nullable ReplayCheckpoint from) {
+    this.iterations = from != null ? new HashMap<>(from.getIterations()) : new HashMap<>();
+  }
+
+  /** @return The number of responses replayed so far for the given operation method. */
+  public int getIteration(@NonNull Class<?> clazz, @NonNull String method) {
+    return iterations.getOrDefault(ReplayCheckpoint.key(clazz, method), 0);
+  }
+
+  public void setIteration(@NonNull Class<?> clazz, @NonNull String method, int iteration) {
+    iterations.merge(ReplayCheckpoint.key(clazz, method), iteration, Math::max);
+  }
+
+  public ReplayCheckpoint toCheckpoint(@Nullable Instant executionCheckpoint) {
+    return ReplayCheckpoint.builder()
+        .iterations(new HashMap<>(iterations))
+        .executionCheckpoint(executionCheckpoint)
+        .build();
+  }
+}
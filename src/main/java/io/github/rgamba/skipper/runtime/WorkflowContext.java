@@ -3,17 +3,65 @@ package io.github.rgamba.skipper.runtime;
 import io.github.rgamba.skipper.models.OperationResponse;
 import java.time.Instant;
 import java.util.List;
-import lombok.AllArgsConstructor;
+import lombok.AccessLevel;
 import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NonNull;
+import lombok.ToString;
 import lombok.Value;
+import lombok.experimental.NonFinal;
 
 @Value
-@Builder
-@AllArgsConstructor
 public class WorkflowContext {
   @NonNull String workflowInstanceId;
   @NonNull Instant currentTime;
   @NonNull List<OperationResponse> operationResponses;
-  @NonNull Instant workflowInstanceCreationTime;
+  @NonNull Instant runStartTime;
+  int runNumber;
+
+  // Built on first use, as the context is created for every decision but not all of them replay
+  // operations.
+  @NonFinal
+  @Getter(AccessLevel.NONE)
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  transient volatile OperationResponseIndex responseIndex;
+
+  public WorkflowContext(
+      @NonNull String workflowInstanceId,
+      @NonNull Instant currentTime,
+      @NonNull List<OperationResponse> operationResponses,
+      @NonNull Instant runStartTime) {
+    this(workflowInstanceId, currentTime, operationResponses, runStartTime, 0);
+  }
+
+  /**
+   * @param runStartTime The start time of the current run of the workflow instance, which is its
+   *     creation time for the first run.
+   * @param runNumber The current run of the workflow instance.
+   */
+  @Builder
+  public WorkflowContext(
+      @NonNull String workflowInstanceId,
+      @NonNull Instant currentTime,
+      @NonNull List<OperationResponse> operationResponses,
+      @NonNull Instant runStartTime,
+      int runNumber) {
+    this.workflowInstanceId = workflowInstanceId;
+    this.currentTime = currentTime;
+    this.operationResponses = operationResponses;
+    this.runStartTime = runStartTime;
+    this.runNumber = runNumber;
+  }
+
+  /** @return The index of the operation responses, used to look them up during the replay. */
+  public OperationResponseIndex getResponseIndex() {
+    OperationResponseIndex index = responseIndex;
+    if (index == null || !index.isUpToDate(operationResponses)) {
+      index = new OperationResponseIndex(operationResponses);
+      responseIndex = index;
+    }
+    return index;
+  }
 }
@@ -14,6 +14,10 @@ import lombok.val;
 public class AnythingAdapter extends TypeAdapter<Anything> {
   @Override
   public void write(JsonWriter jsonWriter, Anything anything) throws IOException {
+    if (anything == null) {
+      jsonWriter.nullValue();
+      return;
+    }
     jsonWriter.beginObject();
     jsonWriter.name("type");
     new StrongTypeAdapter().write(jsonWriter, anything.getType());
@@ -24,6 +28,10 @@ public class AnythingAdapter extends TypeAdapter<Anything> {
 
   @Override
   public Anything read(JsonReader jsonReader) throws IOException {
+    if (jsonReader.peek() == JsonToken.NULL) {
+      jsonReader.nextNull();
+      return null;
+    }
     val builder = Anything.builder();
     jsonReader.beginObject();
     StrongType type = null;
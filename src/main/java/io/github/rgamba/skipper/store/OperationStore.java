@@ -8,20 +8,68 @@ import lombok.NonNull;
 public interface OperationStore {
   boolean createOperationRequest(@NonNull OperationRequest operationRequest);
 
+  /**
+   * Create the given operation requests in a single batch. Requests that already exist are left
+   * untouched.
+   *
+   * @param operationRequests The operation requests to create
+   */
+  void createOperationRequests(@NonNull List<OperationRequest> operationRequests);
+
   void incrementOperationRequestFailedAttempts(
       @NonNull String operationRequestId, int currentRetries);
 
   boolean createOperationResponse(@NonNull OperationResponse operationResponse);
 
+  /**
+   * Create the given operation responses in a single batch, with the same semantics as {@link
+   * #createOperationResponse(OperationResponse)}.
+   *
+   * @param operationResponses The operation responses to create
+   */
+  void createOperationResponses(@NonNull List<OperationResponse> operationResponses);
+
   List<OperationResponse> getOperationResponses(
       @NonNull String workflowInstanceId, boolean includeTransientResponses);
 
+  /**
+   * Operation responses are numbered per workflow instance as they are created, and a response only
+   * becomes visible once all the responses of the same workflow instance with a lower number are
+   * visible too.
+   *
+   * @param workflowInstanceId The workflow instance ID
+   * @return The number of the latest operation response created for the workflow instance, 0 if
+   *     there is none.
+   */
+  long getLatestResponseSequence(@NonNull String workflowInstanceId);
+
+  /**
+   * Get the non-transient operation responses of the workflow instance numbered after the given
+   * sequence (see {@link #getLatestResponseSequence(String)}), ordered by creation time.
+   *
+   * @param workflowInstanceId The workflow instance ID
+   * @param sequence The sequence number after which to return the responses
+   * @return The operation responses
+   */
+  List<OperationResponse> getOperationResponsesAfter(
+      @NonNull String workflowInstanceId, long sequence);
+
   OperationRequest getOperationRequest(@NonNull String operationRequestId);
 
   List<OperationRequest> getOperationRequests(@NonNull String workflowInstanceId);
 
   void convertAllErrorResponsesToTransient(String workflowInstanceId);
 
+  /**
+   * Move all the operation requests and responses of the workflow instance out of its history, so
+   * that they are no longer replayed. Stores that support it keep them in an archive, tagged with
+   * the run they belong to.
+   *
+   * @param workflowInstanceId The workflow instance ID
+   * @param runNumber The run of the workflow instance the history belongs to
+   */
+  void archiveHistory(@NonNull String workflowInstanceId, int runNumber);
+
   void createOperationRequestAndResponse(
       @NonNull OperationRequest operationRequest, @NonNull OperationResponse operationResponse);
 }
@@ -0,0 +1,51 @@
+package io.github.rgamba.skipper.store;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import lombok.NonNull;
+
+/**
+ * Keeps track of the timer processor nodes that are alive and of which node owns each timer
+ * partition.
+ *
+ * <p>Partition ownership is leased, so partitions owned by a node that died will become available
+ * to other nodes once the lease expires.
+ */
+public interface TimerPartitionStore {
+  /**
+   * Registers or refreshes the given node in the membership table.
+   *
+   * @param nodeId The timer processor node ID
+   */
+  void heartbeat(@NonNull String nodeId);
+
+  /**
+   * Get all nodes that have sent a heartbeat within the given TTL. The nodes that haven't are
+   * removed, a node that comes back registers itself again with its next heartbeat.
+   *
+   * @param ttl The max time since the last heartbeat for a node to be considered alive
+   * @return The IDs of all live nodes, sorted
+   */
+  List<String> getLiveNodes(@NonNull Duration ttl);
+
+  /**
+   * Try to take (or renew) the lease on the given partitions. Partitions currently leased by a
+   * different node will not be acquired.
+   *
+   * @param nodeId The timer processor node ID
+   * @param partitions The partitions to acquire
+   * @param leaseDuration The duration of the lease
+   * @return The partitions effectively owned by the node after the call
+   */
+  Set<Integer> acquirePartitions(
+      @NonNull String nodeId, @NonNull Set<Integer> partitions, @NonNull Duration leaseDuration);
+
+  /**
+   * Release all partitions owned by the given node, except for the ones provided.
+   *
+   * @param nodeId The timer processor node ID
+   * @param partitionsToKeep The partitions the node wants to keep
+   */
+  void releasePartitions(@NonNull String nodeId, @NonNull Set<Integer> partitionsToKeep);
+}
@@ -1,14 +1,41 @@
 package io.github.rgamba.skipper.store;
 
 import io.github.rgamba.skipper.common.Anything;
+import io.github.rgamba.skipper.models.QuarantinedTimer;
 import io.github.rgamba.skipper.models.Timer;
+import io.github.rgamba.skipper.timers.TimerHandler;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import lombok.NonNull;
 
 public interface TimerStore {
+  /** Lease taken on the claimed timers when the caller doesn't ask for a specific one. */
+  Duration DEFAULT_LEASE_DURATION = Duration.ofSeconds(15);
+
   Timer createOrUpdate(@NonNull Timer timer);
 
+  /**
+   * Same as {@link #createOrUpdate(Timer)} for a batch of timers.
+   *
+   * @param timers The timers to create or update
+   * @return The persisted timers, with their effective version, in the same order
+   */
+  List<Timer> createOrUpdateAll(@NonNull List<Timer> timers);
+
+  /**
+   * Create the timer or, if a timer with the same ID already exists, coalesce both into a single
+   * timer that fires at the earliest of both timeouts. If the existing timer is being processed
+   * (it's due and leased) the new timeout is used instead, so that the timer fires again after the
+   * current run.
+   *
+   * @param timer The timer to create
+   * @return The persisted timer, with its effective timeout and version
+   */
+  Timer createOrCoalesce(@NonNull Timer timer);
+
   Timer get(@NonNull String timerId);
 
   void update(@NonNull String timerId, Duration timeout);
@@ -17,7 +44,122 @@ public interface TimerStore {
 
   boolean delete(@NonNull Timer timer);
 
+  /**
+   * Take a lease on a single timer, regardless of its timeout.
+   *
+   * @param timer The timer to claim
+   * @param leaseDuration How long the lease lasts, counting from now
+   * @return The claimed timer, holding the token of its lease, or empty if the timer was updated
+   *     (its version doesn't match), deleted or is currently leased by someone else.
+   */
+  Optional<Timer> claim(@NonNull Timer timer, @NonNull Duration leaseDuration);
+
+  /** Same as {@link #claim(Timer, Duration)}, with the {@link #DEFAULT_LEASE_DURATION}. */
+  default Optional<Timer> claim(@NonNull Timer timer) {
+    return claim(timer, DEFAULT_LEASE_DURATION);
+  }
+
+  /**
+   * Extend the lease on a timer that is being processed, so that it doesn't expire while the timer
+   * handler is still running.
+   *
+   * @param timer The leased timer, as returned by the claim
+   * @param duration The new lease duration, counting from now
+   * @return false if the lease already expired or was taken by someone else, or the timer was
+   *     updated (its version doesn't match) or deleted in the meantime
+   */
+  boolean extendLease(@NonNull Timer timer, @NonNull Duration duration);
+
+  /**
+   * Re-schedule a timer that failed to be processed. This increments the timer retries and releases
+   * its lease.
+   *
+   * @param timer The timer that failed
+   * @param delay How long to wait before the timer is retried
+   * @return false if the timer was updated (its version doesn't match) or deleted in the meantime
+   */
+  boolean reschedule(@NonNull Timer timer, @NonNull Duration delay);
+
+  /**
+   * Move the timer to the quarantine (dead-letter) storage, where it won't be retried anymore.
+   *
+   * @param timer The timer to quarantine
+   * @param error The last error produced by the timer
+   * @return false if the timer was updated (its version doesn't match) or deleted in the meantime
+   */
+  boolean quarantine(@NonNull Timer timer, String error);
+
+  /**
+   * @param limit The maximum number of timers to return
+   * @return The quarantined timers, most recent first
+   */
+  List<QuarantinedTimer> getQuarantinedTimers(int limit);
+
+  /**
+   * Move a quarantined timer back to the timers storage, with its retries reset, so that it is
+   * processed right away. If a live timer with the same ID exists, the live one is kept.
+   *
+   * @param timerId The timer ID
+   * @throws IllegalArgumentException If the timer is not quarantined
+   */
+  void requeueQuarantinedTimer(@NonNull String timerId);
+
+  /** Claims the expired timers, leased for the {@link #DEFAULT_LEASE_DURATION}. */
   List<Timer> getExpiredTimers();
 
+  /**
+   * Same as {@link #getExpiredTimers()} but only considers the timers of the given handler that
+   * belong to the given partitions, and also claims the timers that will expire within the
+   * look-ahead window. The lease of a timer that is not yet due starts counting from its timeout.
+   *
+   * @param partitions The set of partitions (see {@link Timer#getPartition()}) to scan.
+   * @param handlerClazz The timer handler class of the timers to claim.
+   * @param lookAhead How far in the future to look for timers, {@link Duration#ZERO} to only claim
+   *     the timers that are already expired.
+   * @param leaseDuration How long the lease of the claimed timers lasts.
+   * @param limit The maximum number of timers to return.
+   * @return The list of timers that were leased by the caller, sorted by timeout.
+   */
+  List<Timer> getExpiredTimers(
+      @NonNull Set<Integer> partitions,
+      @NonNull Class<? extends TimerHandler> handlerClazz,
+      @NonNull Duration lookAhead,
+      @NonNull Duration leaseDuration,
+      int limit);
+
+  /**
+   * Same as {@link #getExpiredTimers(Set, Class, Duration, Duration, int)}, with the {@link
+   * #DEFAULT_LEASE_DURATION}.
+   */
+  default List<Timer> getExpiredTimers(
+      @NonNull Set<Integer> partitions,
+      @NonNull Class<? extends TimerHandler> handlerClazz,
+      @NonNull Duration lookAhead,
+      int limit) {
+    return getExpiredTimers(partitions, handlerClazz, lookAhead, DEFAULT_LEASE_DURATION, limit);
+  }
+
   long countExpiredTimers();
+
+  /**
+   * Same as {@link #countExpiredTimers()}, but stops counting once the limit is reached, which
+   * bounds the cost of the query on large backlogs.
+   *
+   * @param limit The maximum value to return
+   * @return The number of expired timers that are not leased, capped at {@code limit}
+   */
+  long countExpiredTimers(long limit);
+
+  /**
+   * @return Since when the oldest expired timer that is not leased has been due, if any. That is
+   *     its timeout, or the time it was enqueued for timers without a timeout.
+   */
+  Optional<Instant> getOldestExpiredTimeout();
+
+  /**
+   * @param partitions The set of partitions (see {@link Timer#getPartition()}) to scan.
+   * @return The earliest timeout in the future among the timers of the given partitions, if any.
+   *     Timers that are already due are not considered.
+   */
+  Optional<Instant> getNextTimeout(@NonNull Set<Integer> partitions);
 }
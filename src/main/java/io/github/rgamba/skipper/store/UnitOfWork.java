@@ -0,0 +1,20 @@
+package io.github.rgamba.skipper.store;
+
+import java.util.function.Supplier;
+import lombok.NonNull;
+
+/**
+ * Groups the writes made through the stores into a single atomic unit, e.g. all the writes of a
+ * workflow decision. Store calls made while the unit of work runs join it instead of committing on
+ * their own.
+ */
+public interface UnitOfWork {
+  /**
+   * Run the given work as a single unit. Either all the writes made by the work are persisted, or
+   * none of them are if the work throws.
+   *
+   * @param work The work to run
+   * @return The value returned by the work
+   */
+  <T> T execute(@NonNull Supplier<T> work);
+}
@@ -1,18 +1,83 @@
 package io.github.rgamba.skipper.store;
 
+import io.github.rgamba.skipper.models.WorkflowCompletion;
 import io.github.rgamba.skipper.models.WorkflowInstance;
+import io.github.rgamba.skipper.models.WorkflowType;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import lombok.NonNull;
 
 public interface WorkflowInstanceStore {
   void create(@NonNull WorkflowInstance workflowInstance);
 
+  /**
+   * Create all the given workflow instances at once. Unlike {@link #create(WorkflowInstance)}, an
+   * instance that collides with an existing one (e.g. same workflow type and correlation ID) is
+   * skipped instead of failing the whole batch.
+   *
+   * @param workflowInstances The workflow instances to create
+   * @return The IDs of the workflow instances that were created
+   */
+  Set<String> createAll(@NonNull List<WorkflowInstance> workflowInstances);
+
   WorkflowInstance get(@NonNull String workflowInstanceId);
 
+  /**
+   * Get all the given workflow instances at once.
+   *
+   * @param workflowInstanceIds The workflow instance IDs
+   * @return The workflow instances found, the IDs that don't exist are skipped
+   */
+  List<WorkflowInstance> getAll(@NonNull Collection<String> workflowInstanceIds);
+
+  /**
+   * @param workflowType The workflow type
+   * @param correlationId The correlation ID
+   * @return The workflow instance with the given type and correlation ID, if any. The pair is
+   *     unique.
+   */
+  Optional<WorkflowInstance> findByCorrelationId(
+      @NonNull WorkflowType workflowType, @NonNull String correlationId);
+
   List<WorkflowInstance> find();
 
+  /**
+   * Get the current version of the workflow instance, which is cheaper than getting the whole
+   * instance.
+   *
+   * @param workflowInstanceId The workflow instance ID
+   * @return The version of the workflow instance
+   * @throws IllegalArgumentException In case the workflow instance doesn't exist
+   */
+  int getVersion(@NonNull String workflowInstanceId);
+
+  /**
+   * Update the workflow instance. Updates that move the instance to a terminal status (COMPLETED or
+   * ERROR) also record an entry on the completion feed, atomically.
+   */
   void update(
       @NonNull String workflowInstanceId,
       @NonNull WorkflowInstance.Mutation mutation,
       int currentVersion);
+
+  /**
+   * @param sequence The last sequence already seen
+   * @param limit The maximum number of entries to return
+   * @return The entries of the completion feed after the given sequence, by sequence.
+   */
+  List<WorkflowCompletion> getCompletionsAfter(long sequence, int limit);
+
+  /** @return The sequence of the latest entry of the completion feed, 0 if it's empty. */
+  long getLatestCompletionSequence();
+
+  /**
+   * Prune the completion feed.
+   *
+   * @param before Entries recorded before this time are deleted
+   * @return The number of entries deleted
+   */
+  int deleteCompletionsBefore(@NonNull Instant before);
 }
@@ -5,7 +5,9 @@ import io.github.rgamba.skipper.models.OperationRequest;
 import io.github.rgamba.skipper.models.OperationResponse;
 import io.github.rgamba.skipper.store.OperationStore;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
@@ -18,6 +20,14 @@ public class InMemoryOperationStore implements OperationStore {
 
   private final List<OperationRequest> requests;
   private final List<OperationResponse> responses;
+  // Sequence number of the responses by ID, and latest sequence number by workflow instance ID
+  private final Map<String, Long> responseSequences = new HashMap<>();
+  private final Map<String, Long> latestResponseSequences = new HashMap<>();
+  // Histories of the previous runs, by workflow instance ID and run number
+  private final Map<String, Map<Integer, List<OperationRequest>>> archivedRequests =
+      new HashMap<>();
+  private final Map<String, Map<Integer, List<OperationResponse>>> archivedResponses =
+      new HashMap<>();
   private final ReentrantLock reqsLock = new ReentrantLock();
   private final ReentrantLock respsLock = new ReentrantLock();
 
@@ -43,6 +53,11 @@ public class InMemoryOperationStore implements OperationStore {
     }
   }
 
+  @Override
+  public void createOperationRequests(@NonNull List<OperationRequest> operationRequests) {
+    operationRequests.forEach(this::createOperationRequest);
+  }
+
   @Override
   public void incrementOperationRequestFailedAttempts(
       @NonNull String operationRequestId, int currentRetries) {
@@ -63,12 +78,20 @@ public class InMemoryOperationStore implements OperationStore {
         return false;
       }
       this.responses.add(operationResponse);
+      responseSequences.put(
+          operationResponse.getId(),
+          latestResponseSequences.merge(operationResponse.getWorkflowInstanceId(), 1L, Long::sum));
       return true;
     } finally {
       respsLock.unlock();
     }
   }
 
+  @Override
+  public void createOperationResponses(@NonNull List<OperationResponse> operationResponses) {
+    operationResponses.forEach(this::createOperationResponse);
+  }
+
   @Override
   public List<OperationResponse> getOperationResponses(
       @NonNull String workflowInstanceId, boolean includeTransientResponses) {
@@ -86,6 +109,29 @@ public class InMemoryOperationStore implements OperationStore {
     }
   }
 
+  @Override
+  public long getLatestResponseSequence(@NonNull String workflowInstanceId) {
+    respsLock.lock();
+    try {
+      return latestResponseSequences.getOrDefault(workflowInstanceId, 0L);
+    } finally {
+      respsLock.unlock();
+    }
+  }
+
+  @Override
+  public List<OperationResponse> getOperationResponsesAfter(
+      @NonNull String workflowInstanceId, long sequence) {
+    respsLock.lock();
+    try {
+      return getOperationResponses(workflowInstanceId, false).stream()
+          .filter(resp -> responseSequences.getOrDefault(resp.getId(), 0L) > sequence)
+          .collect(Collectors.toList());
+    } finally {
+      respsLock.unlock();
+    }
+  }
+
   @Override
   public OperationRequest getOperationRequest(@NonNull String operationRequestId) {
     reqsLock.lock();
@@ -133,6 +179,70 @@ public class InMemoryOperationStore implements OperationStore {
     }
   }
 
+  @Override
+  public void archiveHistory(@NonNull String workflowInstanceId, int runNumber) {
+    reqsLock.lock();
+    respsLock.lock();
+    try {
+      List<OperationRequest> archivedReqs =
+          archivedRequests
+              .computeIfAbsent(workflowInstanceId, id -> new HashMap<>())
+              .computeIfAbsent(runNumber, run -> new ArrayList<>());
+      List<OperationResponse> archivedResps =
+          archivedResponses
+              .computeIfAbsent(workflowInstanceId, id -> new HashMap<>())
+              .computeIfAbsent(runNumber, run -> new ArrayList<>());
+      this.requests.removeIf(
+          req -> {
+            if (req.getWorkflowInstanceId().equals(workflowInstanceId)) {
+              archivedReqs.add(req);
+              return true;
+            }
+            return false;
+          });
+      this.responses.removeIf(
+          resp -> {
+            if (resp.getWorkflowInstanceId().equals(workflowInstanceId)) {
+              archivedResps.add(resp);
+              responseSequences.remove(resp.getId());
+              return true;
+            }
+            return false;
+          });
+    } finally {
+      respsLock.unlock();
+      reqsLock.unlock();
+    }
+  }
+
+  /** @return The operation requests archived when the given run of the workflow instance ended. */
+  public List<OperationRequest> getArchivedOperationRequests(
+      @NonNull String workflowInstanceId, int runNumber) {
+    reqsLock.lock();
+    try {
+      return new ArrayList<>(
+          archivedRequests
+              .getOrDefault(workflowInstanceId, new HashMap<>())
+              .getOrDefault(runNumber, new ArrayList<>()));
+    } finally {
+      reqsLock.unlock();
+    }
+  }
+
+  /** @return The operation responses archived when the given run of the workflow instance ended. */
+  public List<OperationResponse> getArchivedOperationResponses(
+      @NonNull String workflowInstanceId, int runNumber) {
+    respsLock.lock();
+    try {
+      return new ArrayList<>(
+          archivedResponses
+              .getOrDefault(workflowInstanceId, new HashMap<>())
+              .getOrDefault(runNumber, new ArrayList<>()));
+    } finally {
+      respsLock.unlock();
+    }
+  }
+
   @Override
   public void createOperationRequestAndResponse(
       @NonNull OperationRequest operationRequest, @NonNull OperationResponse operationResponse) {
@@ -0,0 +1,102 @@
+package io.github.rgamba.skipper.store.inmemory;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import io.github.rgamba.skipper.store.TimerPartitionStore;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import lombok.NonNull;
+import lombok.Value;
+import lombok.val;
+
+@Singleton
+public class InMemoryTimerPartitionStore implements TimerPartitionStore {
+  private final Clock clock;
+  private final Map<String, Instant> heartbeats = new HashMap<>();
+  private final Map<Integer, Lease> leases = new HashMap<>();
+  private final ReentrantLock lock = new ReentrantLock();
+
+  @Inject
+  public InMemoryTimerPartitionStore(@Named("UTC") Clock clock) {
+    this.clock = clock;
+  }
+
+  @Override
+  public void heartbeat(@NonNull String nodeId) {
+    lock.lock();
+    try {
+      heartbeats.put(nodeId, clock.instant());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public List<String> getLiveNodes(@NonNull Duration ttl) {
+    lock.lock();
+    try {
+      val threshold = clock.instant().minus(ttl);
+      heartbeats.values().removeIf(heartbeat -> !heartbeat.isAfter(threshold));
+      return heartbeats.keySet().stream().sorted().collect(Collectors.toList());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Set<Integer> acquirePartitions(
+      @NonNull String nodeId, @NonNull Set<Integer> partitions, @NonNull Duration leaseDuration) {
+    lock.lock();
+    try {
+      val now = clock.instant();
+      for (int partition : partitions) {
+        val lease = leases.get(partition);
+        if (lease == null
+            || lease.getOwner().equals(nodeId)
+            || !lease.getExpiration().isAfter(now)) {
+          leases.put(partition, new Lease(nodeId, now.plus(leaseDuration)));
+        }
+      }
+      Set<Integer> owned = new HashSet<>();
+      leases.forEach(
+          (partition, lease) -> {
+            if (lease.getOwner().equals(nodeId) && lease.getExpiration().isAfter(now)) {
+              owned.add(partition);
+            }
+          });
+      return owned;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void releasePartitions(@NonNull String nodeId, @NonNull Set<Integer> partitionsToKeep) {
+    lock.lock();
+    try {
+      leases
+          .entrySet()
+          .removeIf(
+              entry ->
+                  entry.getValue().getOwner().equals(nodeId)
+                      && !partitionsToKeep.contains(entry.getKey()));
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Value
+  private static class Lease {
+    @NonNull String owner;
+    @NonNull Instant expiration;
+  }
+}
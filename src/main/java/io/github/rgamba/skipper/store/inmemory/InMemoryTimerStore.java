@@ -4,14 +4,25 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.google.inject.name.Named;
 import io.github.rgamba.skipper.common.Anything;
+import io.github.rgamba.skipper.models.QuarantinedTimer;
 import io.github.rgamba.skipper.models.Timer;
 import io.github.rgamba.skipper.store.TimerStore;
+import io.github.rgamba.skipper.timers.TimerHandler;
 import java.time.Clock;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import lombok.NonNull;
 import lombok.val;
 
@@ -19,6 +30,9 @@ import lombok.val;
 public class InMemoryTimerStore implements TimerStore {
   private final Clock clock;
   private List<Timer> data = new ArrayList<>();
+  private final Map<String, QuarantinedTimer> quarantined = new HashMap<>();
+  // When the timers without a timeout were enqueued, by timer ID
+  private final Map<String, Instant> enqueueTimes = new HashMap<>();
   private final ReentrantLock lock = new ReentrantLock();
 
   @Inject
@@ -35,6 +49,15 @@ public class InMemoryTimerStore implements TimerStore {
       if (existingTimer.isPresent()) {
         timer = timer.toBuilder().version(existingTimer.get().getVersion() + 1).build();
       }
+      if (timer.getTimeout() == null) {
+        // A timer that was already waiting without a timeout keeps its enqueue time
+        val wasWaiting = existingTimer.isPresent() && existingTimer.get().getTimeout() == null;
+        if (!wasWaiting || !enqueueTimes.containsKey(timerId)) {
+          enqueueTimes.put(timerId, clock.instant());
+        }
+      } else {
+        enqueueTimes.remove(timerId);
+      }
       data.removeIf(t -> timerId.equals(t.getTimerId()));
       data.add(timer);
     } finally {
@@ -43,6 +66,33 @@ public class InMemoryTimerStore implements TimerStore {
     return timer;
   }
 
+  @Override
+  public List<Timer> createOrUpdateAll(@NonNull List<Timer> timers) {
+    return timers.stream().map(this::createOrUpdate).collect(Collectors.toList());
+  }
+
+  @Override
+  public Timer createOrCoalesce(@NonNull Timer timer) {
+    lock.lock();
+    try {
+      val now = clock.instant();
+      val existingTimer =
+          data.stream().filter(t -> t.getTimerId().equals(timer.getTimerId())).findFirst();
+      // Leased timers have their timeout moved to the lease expiration, so the earliest timeout
+      // also wins over a timer that is being processed.
+      if (existingTimer.isPresent() && timer.getTimeout() != null) {
+        val existingTimeout =
+            existingTimer.get().getTimeout() == null ? now : existingTimer.get().getTimeout();
+        if (existingTimeout.isBefore(timer.getTimeout())) {
+          return createOrUpdate(timer.toBuilder().timeout(existingTimeout).build());
+        }
+      }
+      return createOrUpdate(timer);
+    } finally {
+      lock.unlock();
+    }
+  }
+
   @Override
   public Timer get(@NonNull String timerId) {
     lock.lock();
@@ -95,36 +145,201 @@ public class InMemoryTimerStore implements TimerStore {
         t -> t.getTimerId().equals(timer.getTimerId()) && t.getVersion() == timer.getVersion());
   }
 
+  @Override
+  public Optional<Timer> claim(@NonNull Timer timer, @NonNull Duration leaseDuration) {
+    lock.lock();
+    try {
+      val now = clock.instant();
+      val leaseOwner = UUID.randomUUID().toString();
+      val claimed = new AtomicBoolean(false);
+      data.replaceAll(
+          t -> {
+            if (t.getTimerId().equals(timer.getTimerId())
+                && t.getVersion() == timer.getVersion()
+                && (t.getTimeout() == null || !t.getTimeout().isAfter(now))) {
+              claimed.set(true);
+              return t.toBuilder().timeout(now.plus(leaseDuration)).leaseOwner(leaseOwner).build();
+            }
+            return t;
+          });
+      return claimed.get()
+          ? Optional.of(timer.toBuilder().leaseOwner(leaseOwner).build())
+          : Optional.empty();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean extendLease(@NonNull Timer timer, @NonNull Duration duration) {
+    lock.lock();
+    try {
+      val now = clock.instant();
+      val extended = new AtomicBoolean(false);
+      data.replaceAll(
+          t -> {
+            if (t.getTimerId().equals(timer.getTimerId())
+                && t.getVersion() == timer.getVersion()
+                && timer.getLeaseOwner() != null
+                && timer.getLeaseOwner().equals(t.getLeaseOwner())
+                && t.getTimeout() != null
+                && t.getTimeout().isAfter(now)) {
+              extended.set(true);
+              val expiration = now.plus(duration);
+              return expiration.isAfter(t.getTimeout())
+                  ? t.toBuilder().timeout(expiration).build()
+                  : t;
+            }
+            return t;
+          });
+      return extended.get();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean reschedule(@NonNull Timer timer, @NonNull Duration delay) {
+    lock.lock();
+    try {
+      val rescheduled = new AtomicBoolean(false);
+      data.replaceAll(
+          t -> {
+            if (t.getTimerId().equals(timer.getTimerId()) && t.getVersion() == timer.getVersion()) {
+              rescheduled.set(true);
+              return t.toBuilder()
+                  .timeout(clock.instant().plus(delay))
+                  .retries(t.getRetries() + 1)
+                  .build();
+            }
+            return t;
+          });
+      return rescheduled.get();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean quarantine(@NonNull Timer timer, String error) {
+    lock.lock();
+    try {
+      val removed =
+          data.removeIf(
+              t ->
+                  t.getTimerId().equals(timer.getTimerId())
+                      && t.getVersion() == timer.getVersion());
+      if (removed) {
+        quarantined.put(
+            timer.getTimerId(),
+            QuarantinedTimer.builder()
+                .timer(timer)
+                .lastError(error)
+                .quarantineTime(clock.instant())
+                .build());
+      }
+      return removed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public List<QuarantinedTimer> getQuarantinedTimers(int limit) {
+    lock.lock();
+    try {
+      return quarantined.values().stream()
+          .sorted(Comparator.comparing(QuarantinedTimer::getQuarantineTime).reversed())
+          .limit(limit)
+          .collect(Collectors.toList());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void requeueQuarantinedTimer(@NonNull String timerId) {
+    lock.lock();
+    try {
+      val entry = quarantined.remove(timerId);
+      if (entry == null) {
+        throw new IllegalArgumentException("unable to find quarantined timer " + timerId);
+      }
+      if (data.stream().noneMatch(t -> t.getTimerId().equals(timerId))) {
+        data.add(
+            entry.getTimer().toBuilder().timeout(clock.instant()).retries(0).version(0).build());
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
   @Override
   public List<Timer> getExpiredTimers() {
+    return claimExpiredTimers(
+        Timer.allPartitions(), null, Duration.ZERO, DEFAULT_LEASE_DURATION, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public List<Timer> getExpiredTimers(
+      @NonNull Set<Integer> partitions,
+      @NonNull Class<? extends TimerHandler> handlerClazz,
+      @NonNull Duration lookAhead,
+      @NonNull Duration leaseDuration,
+      int limit) {
+    return claimExpiredTimers(partitions, handlerClazz, lookAhead, leaseDuration, limit);
+  }
+
+  private List<Timer> claimExpiredTimers(
+      Set<Integer> partitions,
+      @Nullable Class<? extends TimerHandler> handlerClazz,
+      Duration lookAhead,
+      Duration leaseDuration,
+      int limit) {
     lock.lock();
     try {
-      List<Timer> result = new ArrayList<>();
+      val now = clock.instant();
+      val horizon = now.plus(lookAhead);
+      List<Timer> result =
+          data.stream()
+              .filter(
+                  timer ->
+                      partitions.contains(timer.getPartition())
+                          && (handlerClazz == null || handlerClazz.equals(timer.getHandlerClazz()))
+                          && (timer.getTimeout() == null || timer.getTimeout().isBefore(horizon)))
+              .sorted(
+                  Comparator.comparing(
+                      (Timer t) -> t.getTimeout() == null ? Instant.EPOCH : t.getTimeout()))
+              .limit(limit)
+              .collect(Collectors.toList());
+      val leaseOwner = UUID.randomUUID().toString();
+      val claimedIds = result.stream().map(Timer::getTimerId).collect(Collectors.toSet());
       data =
           data.stream()
               .map(
                   timer -> {
-                    if (timer.getTimeout() == null
-                        || timer.getTimeout().isBefore(clock.instant())) {
-                      result.add(timer);
+                    if (claimedIds.contains(timer.getTimerId())) {
+                      val leaseStart =
+                          timer.getTimeout() == null || timer.getTimeout().isBefore(now)
+                              ? now
+                              : timer.getTimeout();
                       return timer
                           .toBuilder()
-                          .timeout(clock.instant().plus(getLeaseDuration()))
+                          .timeout(leaseStart.plus(leaseDuration))
+                          .leaseOwner(leaseOwner)
                           .build();
                     }
                     return timer;
                   })
               .collect(Collectors.toList());
-      return result;
+      return result.stream()
+          .map(timer -> timer.toBuilder().leaseOwner(leaseOwner).build())
+          .collect(Collectors.toList());
     } finally {
       lock.unlock();
     }
   }
 
-  private Duration getLeaseDuration() {
-    return Duration.ofSeconds(30);
-  }
-
   @Override
   public long countExpiredTimers() {
     lock.lock();
@@ -138,4 +353,42 @@ public class InMemoryTimerStore implements TimerStore {
       lock.unlock();
     }
   }
+
+  @Override
+  public long countExpiredTimers(long limit) {
+    return Math.min(limit, countExpiredTimers());
+  }
+
+  @Override
+  public Optional<Instant> getOldestExpiredTimeout() {
+    lock.lock();
+    try {
+      val now = clock.instant();
+      return data.stream()
+          .filter(timer -> timer.getTimeout() == null || timer.getTimeout().isBefore(now))
+          .map(
+              timer ->
+                  timer.getTimeout() == null
+                      ? enqueueTimes.getOrDefault(timer.getTimerId(), now)
+                      : timer.getTimeout())
+          .min(Comparator.naturalOrder());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Optional<Instant> getNextTimeout(@NonNull Set<Integer> partitions) {
+    lock.lock();
+    try {
+      val now = clock.instant();
+      return data.stream()
+          .filter(timer -> partitions.contains(timer.getPartition()))
+          .map(Timer::getTimeout)
+          .filter(timeout -> timeout != null && timeout.isAfter(now))
+          .min(Comparator.naturalOrder());
+    } finally {
+      lock.unlock();
+    }
+  }
 }
@@ -0,0 +1,13 @@
+package io.github.rgamba.skipper.store.inmemory;
+
+import io.github.rgamba.skipper.store.UnitOfWork;
+import java.util.function.Supplier;
+import lombok.NonNull;
+
+/** The in-memory stores are not transactional, so the work is just run as it is. */
+public class InMemoryUnitOfWork implements UnitOfWork {
+  @Override
+  public <T> T execute(@NonNull Supplier<T> work) {
+    return work.get();
+  }
+}
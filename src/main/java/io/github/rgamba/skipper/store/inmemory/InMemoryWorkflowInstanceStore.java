@@ -1,8 +1,12 @@
 package io.github.rgamba.skipper.store.inmemory;
 
 import com.google.inject.Singleton;
+import io.github.rgamba.skipper.models.WorkflowCompletion;
 import io.github.rgamba.skipper.models.WorkflowInstance;
+import io.github.rgamba.skipper.models.WorkflowType;
 import io.github.rgamba.skipper.store.WorkflowInstanceStore;
+import java.time.Clock;
+import java.time.Instant;
 import java.util.*;
 import java.util.stream.Collectors;
 import lombok.NonNull;
@@ -11,9 +15,18 @@ import lombok.val;
 @Singleton
 public class InMemoryWorkflowInstanceStore implements WorkflowInstanceStore {
   private List<WorkflowInstance> data;
+  private final List<WorkflowCompletion> completions;
+  private long lastCompletionSequence;
+  private final Clock clock;
 
   public InMemoryWorkflowInstanceStore() {
+    this(Clock.systemUTC());
+  }
+
+  public InMemoryWorkflowInstanceStore(@NonNull Clock clock) {
     this.data = new ArrayList<>();
+    this.completions = new ArrayList<>();
+    this.clock = clock;
   }
 
   @Override
@@ -24,6 +37,26 @@ public class InMemoryWorkflowInstanceStore implements WorkflowInstanceStore {
     this.data.add(workflowInstance);
   }
 
+  @Override
+  public Set<String> createAll(@NonNull List<WorkflowInstance> workflowInstances) {
+    Set<String> created = new HashSet<>();
+    for (WorkflowInstance workflowInstance : workflowInstances) {
+      boolean exists =
+          this.data.stream()
+              .anyMatch(
+                  wf ->
+                      wf.getId().equals(workflowInstance.getId())
+                          || (wf.getWorkflowType().equals(workflowInstance.getWorkflowType())
+                              && wf.getCorrelationId()
+                                  .equals(workflowInstance.getCorrelationId())));
+      if (!exists) {
+        this.data.add(workflowInstance);
+        created.add(workflowInstance.getId());
+      }
+    }
+    return created;
+  }
+
   @Override
   public WorkflowInstance get(@NonNull String workflowInstanceId) {
     Optional<WorkflowInstance> instance =
@@ -34,30 +67,87 @@ public class InMemoryWorkflowInstanceStore implements WorkflowInstanceStore {
     throw new IllegalArgumentException("invalid workflow ID provided");
   }
 
+  @Override
+  public List<WorkflowInstance> getAll(@NonNull Collection<String> workflowInstanceIds) {
+    return this.data.stream()
+        .filter(wf -> workflowInstanceIds.contains(wf.getId()))
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public Optional<WorkflowInstance> findByCorrelationId(
+      @NonNull WorkflowType workflowType, @NonNull String correlationId) {
+    return this.data.stream()
+        .filter(
+            wf ->
+                wf.getWorkflowType().equals(workflowType)
+                    && wf.getCorrelationId().equals(correlationId))
+        .findFirst();
+  }
+
   public List<WorkflowInstance> find() {
     return new ArrayList<>(this.data);
   }
 
+  @Override
+  public int getVersion(@NonNull String workflowInstanceId) {
+    return get(workflowInstanceId).getVersion();
+  }
+
   @Override
   public void update(
       @NonNull String workflowInstanceId,
       @NonNull WorkflowInstance.Mutation mutation,
       int version) {
+    // Only a transition into a terminal status is a completion
+    val wasTerminal =
+        this.data.stream()
+            .filter(wf -> wf.getId().equals(workflowInstanceId))
+            .anyMatch(wf -> isTerminal(wf.getStatus()));
     this.data =
         this.data.stream()
-            .map(
-                wf -> {
-                  if (wf.getId().equals(workflowInstanceId)) {
-                    val builder = wf.toBuilder().version(wf.getVersion() + 1);
-                    if (mutation.getState() != null) builder.state(mutation.getState()).build();
-                    if (mutation.getStatus() != null) builder.status(mutation.getStatus());
-                    if (mutation.getStatusReason() != null)
-                      builder.statusReason(mutation.getStatusReason());
-                    if (mutation.getResult() != null) builder.result(mutation.getResult());
-                    return builder.build();
-                  }
-                  return wf;
-                })
+            .map(wf -> wf.getId().equals(workflowInstanceId) ? wf.apply(mutation) : wf)
             .collect(Collectors.toList());
+    if (!wasTerminal && isTerminal(mutation.getStatus())) {
+      synchronized (completions) {
+        completions.add(
+            WorkflowCompletion.builder()
+                .sequence(++lastCompletionSequence)
+                .workflowInstanceId(workflowInstanceId)
+                .status(mutation.getStatus())
+                .completionTime(clock.instant())
+                .build());
+      }
+    }
+  }
+
+  private static boolean isTerminal(WorkflowInstance.Status status) {
+    return status != null && (status.isCompleted() || status.isError());
+  }
+
+  @Override
+  public List<WorkflowCompletion> getCompletionsAfter(long sequence, int limit) {
+    synchronized (completions) {
+      return completions.stream()
+          .filter(completion -> completion.getSequence() > sequence)
+          .limit(limit)
+          .collect(Collectors.toList());
+    }
+  }
+
+  @Override
+  public long getLatestCompletionSequence() {
+    synchronized (completions) {
+      return lastCompletionSequence;
+    }
+  }
+
+  @Override
+  public int deleteCompletionsBefore(@NonNull Instant before) {
+    synchronized (completions) {
+      int size = completions.size();
+      completions.removeIf(completion -> completion.getCompletionTime().isBefore(before));
+      return size - completions.size();
+    }
   }
 }
@@ -14,12 +14,16 @@ import io.github.rgamba.skipper.store.DateTimeUtil;
 import io.github.rgamba.skipper.store.OperationStore;
 import io.github.rgamba.skipper.store.SqlTransactionManager;
 import io.github.rgamba.skipper.store.StorageError;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.stream.Collectors;
 import lombok.NonNull;
 import lombok.SneakyThrows;
 import lombok.val;
@@ -28,6 +32,30 @@ public class MySqlOperationStore implements OperationStore {
   private final SqlTransactionManager transactionManager;
   private final Gson gson = SerdeUtils.getGson();
 
+  private static final String INSERT_OPERATION_REQUEST_SQL =
+      ""
+          + "INSERT INTO operation_requests (id, workflow_instance_id, operation_type, iteration, creation_time, arguments, retry_strategy, timeout_secs, failed_attempts) "
+          + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+  private static final String INSERT_OPERATION_RESPONSE_SQL =
+      ""
+          + "INSERT INTO operation_responses (id, workflow_instance_id, operation_type, iteration, creation_time_millis, is_success, is_transient, operation_request_id, result, error, execution_duration_millis, child_workflow_instance_id, seq) "
+          + "SELECT ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ? FROM dual "
+          + "WHERE NOT EXISTS ("
+          + "    SELECT * FROM operation_responses "
+          + "    WHERE workflow_instance_id = ? "
+          + "        AND operation_type = ? "
+          + "        AND iteration = ? "
+          + "        AND is_transient = false "
+          + ")";
+
+  // The row stays locked until the transaction commits, which serializes the responses of the same
+  // workflow instance. LAST_INSERT_ID(expr) makes the new value available to the connection.
+  private static final String RESERVE_RESPONSE_SEQUENCE_SQL =
+      ""
+          + "INSERT INTO operation_response_sequences (workflow_instance_id, seq) VALUES (?, LAST_INSERT_ID(?)) "
+          + "ON DUPLICATE KEY UPDATE seq = LAST_INSERT_ID(seq + ?)";
+
   @Inject
   public MySqlOperationStore(@NonNull SqlTransactionManager transactionManager) {
     this.transactionManager = transactionManager;
@@ -35,24 +63,10 @@ public class MySqlOperationStore implements OperationStore {
 
   @Override
   public boolean createOperationRequest(@NonNull OperationRequest operationRequest) {
-    val sql =
-        ""
-            + "INSERT INTO operation_requests (id, workflow_instance_id, operation_type, iteration, creation_time, arguments, retry_strategy, timeout_secs, failed_attempts) "
-            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
     transactionManager.execute(
         conn -> {
-          try (val ps = conn.prepareStatement(sql)) {
-            int i = 0;
-            ps.setString(++i, operationRequest.getOperationRequestId());
-            ps.setString(++i, operationRequest.getWorkflowInstanceId());
-            ps.setString(++i, gson.toJson(operationRequest.getOperationType()));
-            ps.setInt(++i, operationRequest.getIteration());
-            ps.setTimestamp(
-                ++i, DateTimeUtil.instantToTimestamp(operationRequest.getCreationTime()));
-            ps.setString(++i, gson.toJson(operationRequest.getArguments()));
-            ps.setString(++i, gson.toJson(operationRequest.getRetryStrategy()));
-            ps.setLong(++i, operationRequest.getTimeout().getSeconds());
-            ps.setInt(++i, operationRequest.getFailedAttempts());
+          try (val ps = conn.prepareStatement(INSERT_OPERATION_REQUEST_SQL)) {
+            setOperationRequestParams(ps, operationRequest);
             return ps.executeUpdate();
           } catch (SQLException e) {
             if (isDuplicateKeyError(e)) {
@@ -68,6 +82,45 @@ public class MySqlOperationStore implements OperationStore {
     return true;
   }
 
+  @Override
+  public void createOperationRequests(@NonNull List<OperationRequest> operationRequests) {
+    if (operationRequests.isEmpty()) {
+      return;
+    }
+    // Existing requests are kept as they are
+    val sql = INSERT_OPERATION_REQUEST_SQL + " ON DUPLICATE KEY UPDATE id = id";
+    try (val ignored = Metrics.getStoreLatencyTimer("operation_request", "create_batch").time()) {
+      transactionManager.execute(
+          conn -> {
+            try (val ps = conn.prepareStatement(sql)) {
+              for (val operationRequest : operationRequests) {
+                setOperationRequestParams(ps, operationRequest);
+                ps.addBatch();
+              }
+              return ps.executeBatch();
+            } catch (SQLException e) {
+              Metrics.errorCounter("operation_request", "unknown").inc();
+              throw new StorageError(
+                  "unexpected mysql error when trying to create operation requests", e);
+            }
+          });
+    }
+  }
+
+  private void setOperationRequestParams(PreparedStatement ps, OperationRequest operationRequest)
+      throws SQLException {
+    int i = 0;
+    ps.setString(++i, operationRequest.getOperationRequestId());
+    ps.setString(++i, operationRequest.getWorkflowInstanceId());
+    ps.setString(++i, gson.toJson(operationRequest.getOperationType()));
+    ps.setInt(++i, operationRequest.getIteration());
+    ps.setTimestamp(++i, DateTimeUtil.instantToTimestamp(operationRequest.getCreationTime()));
+    ps.setString(++i, gson.toJson(operationRequest.getArguments()));
+    ps.setString(++i, gson.toJson(operationRequest.getRetryStrategy()));
+    ps.setLong(++i, operationRequest.getTimeout().getSeconds());
+    ps.setInt(++i, operationRequest.getFailedAttempts());
+  }
+
   @Override
   public void incrementOperationRequestFailedAttempts(
       @NonNull String operationRequestId, int currentRetries) {
@@ -91,42 +144,11 @@ public class MySqlOperationStore implements OperationStore {
 
   @Override
   public boolean createOperationResponse(@NonNull OperationResponse resp) {
-    val sql =
-        ""
-            + "INSERT INTO operation_responses (id, workflow_instance_id, operation_type, iteration, creation_time_millis, is_success, is_transient, operation_request_id, result, error, execution_duration_millis, child_workflow_instance_id) "
-            + "SELECT ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ? FROM dual "
-            + "WHERE NOT EXISTS ("
-            + "    SELECT * FROM operation_responses "
-            + "    WHERE workflow_instance_id = ? "
-            + "        AND operation_type = ? "
-            + "        AND iteration = ? "
-            + "        AND is_transient = false "
-            + ")";
     return transactionManager.execute(
         conn -> {
-          try (val ps = conn.prepareStatement(sql)) {
-            int i = 0;
-            // Insert values
-            ps.setString(++i, resp.getId());
-            ps.setString(++i, resp.getWorkflowInstanceId());
-            ps.setString(++i, gson.toJson(resp.getOperationType()));
-            ps.setInt(++i, resp.getIteration());
-            ps.setLong(++i, resp.getCreationTime().toEpochMilli());
-            ps.setBoolean(++i, resp.isSuccess());
-            ps.setBoolean(++i, resp.isTransient());
-            ps.setString(++i, resp.getOperationRequestId());
-            val resultJson = resp.getResult() == null ? null : gson.toJson(resp.getResult());
-            ps.setString(++i, resultJson);
-            val errorJson = resp.getError() == null ? null : gson.toJson(resp.getError());
-            ps.setString(++i, errorJson);
-            ps.setLong(
-                ++i,
-                resp.getExecutionDuration() == null ? 0 : resp.getExecutionDuration().toMillis());
-            ps.setString(++i, resp.getChildWorkflowInstanceId());
-            // Where clause values
-            ps.setString(++i, resp.getWorkflowInstanceId());
-            ps.setString(++i, gson.toJson(resp.getOperationType()));
-            ps.setInt(++i, resp.getIteration());
+          try (val ps = conn.prepareStatement(INSERT_OPERATION_RESPONSE_SQL)) {
+            val seq = reserveResponseSequence(conn, resp.getWorkflowInstanceId(), 1);
+            setOperationResponseParams(ps, resp, seq);
             return ps.executeUpdate() == 1;
           } catch (SQLException e) {
             if (isDuplicateKeyError(e)) {
@@ -139,6 +161,86 @@ public class MySqlOperationStore implements OperationStore {
         });
   }
 
+  @Override
+  public void createOperationResponses(@NonNull List<OperationResponse> operationResponses) {
+    if (operationResponses.isEmpty()) {
+      return;
+    }
+    try (val ignored = Metrics.getStoreLatencyTimer("operation_response", "create_batch").time()) {
+      transactionManager.execute(
+          conn -> {
+            try (val ps = conn.prepareStatement(INSERT_OPERATION_RESPONSE_SQL)) {
+              val byWorkflowInstance =
+                  operationResponses.stream()
+                      .collect(
+                          Collectors.groupingBy(
+                              OperationResponse::getWorkflowInstanceId,
+                              LinkedHashMap::new,
+                              Collectors.toList()));
+              for (val responses : byWorkflowInstance.values()) {
+                val lastSeq =
+                    reserveResponseSequence(
+                        conn, responses.get(0).getWorkflowInstanceId(), responses.size());
+                long seq = lastSeq - responses.size();
+                for (val resp : responses) {
+                  setOperationResponseParams(ps, resp, ++seq);
+                  ps.addBatch();
+                }
+              }
+              return ps.executeBatch();
+            } catch (SQLException e) {
+              Metrics.errorCounter("operation_response", "unknown").inc();
+              throw new StorageError(
+                  "unexpected mysql error when trying to create operation responses: "
+                      + e.getMessage(),
+                  e);
+            }
+          });
+    }
+  }
+
+  /** @return The last of the {@code count} sequence numbers reserved for the workflow instance. */
+  private long reserveResponseSequence(Connection conn, String workflowInstanceId, int count)
+      throws SQLException {
+    try (val ps = conn.prepareStatement(RESERVE_RESPONSE_SEQUENCE_SQL)) {
+      ps.setString(1, workflowInstanceId);
+      ps.setLong(2, count);
+      ps.setLong(3, count);
+      ps.executeUpdate();
+    }
+    try (val ps = conn.prepareStatement("SELECT LAST_INSERT_ID()")) {
+      val result = ps.executeQuery();
+      result.next();
+      return result.getLong(1);
+    }
+  }
+
+  private void setOperationResponseParams(PreparedStatement ps, OperationResponse resp, long seq)
+      throws SQLException {
+    int i = 0;
+    // Insert values
+    ps.setString(++i, resp.getId());
+    ps.setString(++i, resp.getWorkflowInstanceId());
+    ps.setString(++i, gson.toJson(resp.getOperationType()));
+    ps.setInt(++i, resp.getIteration());
+    ps.setLong(++i, resp.getCreationTime().toEpochMilli());
+    ps.setBoolean(++i, resp.isSuccess());
+    ps.setBoolean(++i, resp.isTransient());
+    ps.setString(++i, resp.getOperationRequestId());
+    val resultJson = resp.getResult() == null ? null : gson.toJson(resp.getResult());
+    ps.setString(++i, resultJson);
+    val errorJson = resp.getError() == null ? null : gson.toJson(resp.getError());
+    ps.setString(++i, errorJson);
+    ps.setLong(
+        ++i, resp.getExecutionDuration() == null ? 0 : resp.getExecutionDuration().toMillis());
+    ps.setString(++i, resp.getChildWorkflowInstanceId());
+    ps.setLong(++i, seq);
+    // Where clause values
+    ps.setString(++i, resp.getWorkflowInstanceId());
+    ps.setString(++i, gson.toJson(resp.getOperationType()));
+    ps.setInt(++i, resp.getIteration());
+  }
+
   private boolean isDuplicateKeyError(SQLException e) {
     return e.getMessage().toLowerCase().contains("duplicate entry");
   }
@@ -174,6 +276,49 @@ public class MySqlOperationStore implements OperationStore {
         });
   }
 
+  @Override
+  public long getLatestResponseSequence(@NonNull String workflowInstanceId) {
+    val sql = "SELECT seq FROM operation_response_sequences WHERE workflow_instance_id = ?";
+    return transactionManager.execute(
+        conn -> {
+          try (val ps = conn.prepareStatement(sql)) {
+            ps.setString(1, workflowInstanceId);
+            val result = ps.executeQuery();
+            return result.next() ? result.getLong("seq") : 0L;
+          } catch (SQLException e) {
+            throw new StorageError(
+                "unexpected mysql error while trying to get the response sequence", e);
+          }
+        });
+  }
+
+  @Override
+  public List<OperationResponse> getOperationResponsesAfter(
+      @NonNull String workflowInstanceId, long sequence) {
+    val sql =
+        ""
+            + "SELECT id, workflow_instance_id, operation_type, iteration, creation_time_millis, is_success, is_transient, operation_request_id, result, error, execution_duration_millis, child_workflow_instance_id "
+            + "FROM operation_responses "
+            + "WHERE workflow_instance_id = ? AND seq > ? AND is_transient = false "
+            + "ORDER BY creation_time_millis ASC";
+    return transactionManager.execute(
+        conn -> {
+          try (val ps = conn.prepareStatement(sql)) {
+            ps.setString(1, workflowInstanceId);
+            ps.setLong(2, sequence);
+            val result = ps.executeQuery();
+            List<OperationResponse> responses = new ArrayList<>();
+            while (result.next()) {
+              responses.add(recordToOperationResponse(result));
+            }
+            return responses;
+          } catch (SQLException e) {
+            throw new StorageError(
+                "unexpected mysql error while trying to get operation responses", e);
+          }
+        });
+  }
+
   @SneakyThrows
   private OperationResponse recordToOperationResponse(ResultSet result) {
     val builder = OperationResponse.builder();
@@ -284,6 +429,44 @@ public class MySqlOperationStore implements OperationStore {
         });
   }
 
+  @Override
+  public void archiveHistory(@NonNull String workflowInstanceId, int runNumber) {
+    val statements =
+        new String[] {
+          ""
+              + "INSERT INTO operation_requests_archive (run_number, id, workflow_instance_id, operation_type, iteration, creation_time, arguments, retry_strategy, timeout_secs, failed_attempts) "
+              + "SELECT ?, id, workflow_instance_id, operation_type, iteration, creation_time, arguments, retry_strategy, timeout_secs, failed_attempts "
+              + "FROM operation_requests WHERE workflow_instance_id = ?",
+          ""
+              + "INSERT INTO operation_responses_archive (run_number, id, workflow_instance_id, operation_type, iteration, creation_time_millis, is_success, is_transient, operation_request_id, result, error, execution_duration_millis, child_workflow_instance_id) "
+              + "SELECT ?, id, workflow_instance_id, operation_type, iteration, creation_time_millis, is_success, is_transient, operation_request_id, result, error, execution_duration_millis, child_workflow_instance_id "
+              + "FROM operation_responses WHERE workflow_instance_id = ?",
+          "DELETE FROM operation_requests WHERE workflow_instance_id = ?",
+          "DELETE FROM operation_responses WHERE workflow_instance_id = ?"
+        };
+    try (val ignored = Metrics.getStoreLatencyTimer("operation_history", "archive").time()) {
+      transactionManager.execute(
+          conn -> {
+            try {
+              for (val sql : statements) {
+                try (val ps = conn.prepareStatement(sql)) {
+                  int i = 0;
+                  if (sql.startsWith("INSERT")) {
+                    ps.setInt(++i, runNumber);
+                  }
+                  ps.setString(++i, workflowInstanceId);
+                  ps.executeUpdate();
+                }
+              }
+              return true;
+            } catch (SQLException e) {
+              throw new StorageError(
+                  "unexpected mysql error when trying to archive the operation history", e);
+            }
+          });
+    }
+  }
+
   @Override
   public void createOperationRequestAndResponse(
       @NonNull OperationRequest operationRequest, @NonNull OperationResponse operationResponse) {
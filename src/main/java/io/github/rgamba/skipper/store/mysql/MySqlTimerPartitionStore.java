@@ -0,0 +1,155 @@
+package io.github.rgamba.skipper.store.mysql;
+
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import io.github.rgamba.skipper.Metrics;
+import io.github.rgamba.skipper.store.SqlTransactionManager;
+import io.github.rgamba.skipper.store.StorageError;
+import io.github.rgamba.skipper.store.TimerPartitionStore;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import lombok.NonNull;
+import lombok.val;
+
+public class MySqlTimerPartitionStore implements TimerPartitionStore {
+  private final SqlTransactionManager transactionManager;
+  private final Clock clock;
+
+  @Inject
+  public MySqlTimerPartitionStore(
+      @NonNull SqlTransactionManager transactionManager, @NonNull @Named("UTC") Clock clock) {
+    this.transactionManager = transactionManager;
+    this.clock = clock;
+  }
+
+  @Override
+  public void heartbeat(@NonNull String nodeId) {
+    val sql =
+        ""
+            + "INSERT INTO timer_processor_nodes (node_id, heartbeat_ts_millis) VALUES (?, ?) "
+            + "ON DUPLICATE KEY UPDATE heartbeat_ts_millis = VALUES(heartbeat_ts_millis)";
+    transactionManager.execute(
+        conn -> {
+          try (val ps = conn.prepareStatement(sql)) {
+            ps.setString(1, nodeId);
+            ps.setLong(2, clock.instant().toEpochMilli());
+            return ps.executeUpdate();
+          } catch (SQLException e) {
+            Metrics.errorCounter("timer_partitions", "heartbeat").inc();
+            throw new StorageError("unable to register node heartbeat: " + e.getMessage(), e);
+          }
+        });
+  }
+
+  @Override
+  public List<String> getLiveNodes(@NonNull Duration ttl) {
+    val deleteSql = "DELETE FROM timer_processor_nodes WHERE heartbeat_ts_millis <= ?";
+    val sql =
+        ""
+            + "SELECT node_id FROM timer_processor_nodes "
+            + "WHERE heartbeat_ts_millis > ? ORDER BY node_id ASC";
+    return transactionManager.execute(
+        conn -> {
+          val threshold = clock.instant().minus(ttl).toEpochMilli();
+          // Prune the nodes that are gone, so that the table doesn't grow with every node restart
+          try (val ps = conn.prepareStatement(deleteSql)) {
+            ps.setLong(1, threshold);
+            ps.executeUpdate();
+          } catch (SQLException e) {
+            Metrics.errorCounter("timer_partitions", "prune_nodes").inc();
+            throw new StorageError("unable to prune dead nodes: " + e.getMessage(), e);
+          }
+          try (val ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, threshold);
+            val result = ps.executeQuery();
+            List<String> nodes = new ArrayList<>();
+            while (result.next()) {
+              nodes.add(result.getString("node_id"));
+            }
+            return nodes;
+          } catch (SQLException e) {
+            throw new StorageError("unable to get live nodes: " + e.getMessage(), e);
+          }
+        });
+  }
+
+  @Override
+  public Set<Integer> acquirePartitions(
+      @NonNull String nodeId, @NonNull Set<Integer> partitions, @NonNull Duration leaseDuration) {
+    val selectSql =
+        ""
+            + "SELECT partition_id FROM timer_partition_leases "
+            + "WHERE owner = ? AND lease_expiration_ts_millis > ?";
+    return transactionManager.execute(
+        conn -> {
+          val now = clock.instant();
+          if (!partitions.isEmpty()) {
+            val updateSql =
+                ""
+                    + "UPDATE timer_partition_leases SET owner = ?, lease_expiration_ts_millis = ? "
+                    + "WHERE partition_id IN ("
+                    + SqlUtils.placeholders(partitions.size())
+                    + ") "
+                    + "AND (owner IS NULL OR owner = ? OR lease_expiration_ts_millis <= ?)";
+            try (val ps = conn.prepareStatement(updateSql)) {
+              int i = 0;
+              ps.setString(++i, nodeId);
+              ps.setLong(++i, now.plus(leaseDuration).toEpochMilli());
+              for (int partition : partitions) {
+                ps.setInt(++i, partition);
+              }
+              ps.setString(++i, nodeId);
+              ps.setLong(++i, now.toEpochMilli());
+              ps.executeUpdate();
+            } catch (SQLException e) {
+              Metrics.errorCounter("timer_partitions", "acquire").inc();
+              throw new StorageError("unable to acquire timer partitions: " + e.getMessage(), e);
+            }
+          }
+          try (val ps = conn.prepareStatement(selectSql)) {
+            ps.setString(1, nodeId);
+            ps.setLong(2, now.toEpochMilli());
+            val result = ps.executeQuery();
+            Set<Integer> owned = new HashSet<>();
+            while (result.next()) {
+              owned.add(result.getInt("partition_id"));
+            }
+            return owned;
+          } catch (SQLException e) {
+            throw new StorageError("unable to get owned timer partitions: " + e.getMessage(), e);
+          }
+        });
+  }
+
+  @Override
+  public void releasePartitions(@NonNull String nodeId, @NonNull Set<Integer> partitionsToKeep) {
+    StringBuilder sql = new StringBuilder();
+    sql.append(
+        "UPDATE timer_partition_leases SET owner = NULL, lease_expiration_ts_millis = 0 "
+            + "WHERE owner = ?");
+    if (!partitionsToKeep.isEmpty()) {
+      sql.append(" AND partition_id NOT IN (")
+          .append(SqlUtils.placeholders(partitionsToKeep.size()))
+          .append(")");
+    }
+    String finalSql = sql.toString();
+    transactionManager.execute(
+        conn -> {
+          try (val ps = conn.prepareStatement(finalSql)) {
+            int i = 0;
+            ps.setString(++i, nodeId);
+            for (int partition : partitionsToKeep) {
+              ps.setInt(++i, partition);
+            }
+            return ps.executeUpdate();
+          } catch (SQLException e) {
+            throw new StorageError("unable to release timer partitions: " + e.getMessage(), e);
+          }
+        });
+  }
+}
@@ -5,6 +5,7 @@ import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import io.github.rgamba.skipper.Metrics;
 import io.github.rgamba.skipper.common.Anything;
+import io.github.rgamba.skipper.models.QuarantinedTimer;
 import io.github.rgamba.skipper.models.Timer;
 import io.github.rgamba.skipper.serde.SerdeUtils;
 import io.github.rgamba.skipper.store.SqlTransactionManager;
@@ -17,8 +18,16 @@ import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import lombok.NonNull;
 import lombok.SneakyThrows;
 import lombok.val;
@@ -27,7 +36,7 @@ public class MySqlTimerStore implements TimerStore {
   private final SqlTransactionManager transactionManager;
   private static final Gson gson = SerdeUtils.getGson();
   private final Clock clock;
-  public static final Duration leaseDuration = Duration.ofSeconds(15);
+  private static final int DEFAULT_FETCH_LIMIT = 300;
 
   @Inject
   public MySqlTimerStore(
@@ -38,42 +47,153 @@ public class MySqlTimerStore implements TimerStore {
 
   @Override
   public Timer createOrUpdate(@NonNull Timer timer) {
+    return upsert(timer, false);
+  }
+
+  @Override
+  public Timer createOrCoalesce(@NonNull Timer timer) {
+    return upsert(timer, true);
+  }
+
+  // A timer that was already waiting without a timeout keeps its enqueue time, must be assigned
+  // before the timeout and the lease.
+  private static final String ENQUEUED_UPDATE_EXPR =
+      "enqueued_ts_millis = IF(timeout_ts_millis = 0 AND lease_expiration_ts_millis <= VALUES(enqueued_ts_millis), "
+          + "enqueued_ts_millis, VALUES(enqueued_ts_millis))";
+
+  private static String upsertSql(String timeoutExpr) {
+    return ""
+        + "INSERT INTO timers (id, partition_id, timeout_ts_millis, handler_clazz, payload, retries, version, enqueued_ts_millis) "
+        + "    VALUES (?, ?, ?, ?, ?, ?, 0, ?) "
+        + "ON DUPLICATE KEY"
+        + "    UPDATE "
+        + ENQUEUED_UPDATE_EXPR
+        + ", timeout_ts_millis = "
+        + timeoutExpr
+        + ", handler_clazz = ?, payload = ?, retries = ?, version = version + 1, "
+        + "    lease_owner = NULL, lease_expiration_ts_millis = 0";
+  }
+
+  @Override
+  public List<Timer> createOrUpdateAll(@NonNull List<Timer> timers) {
+    if (timers.isEmpty()) {
+      return new ArrayList<>();
+    }
+    // A single multi-row statement, the update takes the values of the row being inserted
     val sql =
-        ""
-            + "INSERT INTO timers (id, timeout_ts_millis, handler_clazz, payload, retries, version) "
-            + "    VALUES (?, ?, ?, ?, ?, 0) "
-            + "ON DUPLICATE KEY"
-            + "    UPDATE timeout_ts_millis = ?, handler_clazz = ?, payload = ?, retries = ?, version = version + 1";
-    val builder = timer.toBuilder();
-    int version =
-        transactionManager.execute(
-            conn -> {
-              try {
-                val ps = conn.prepareStatement(sql);
-                int i = 0;
-                long timeoutMillis =
-                    timer.getTimeout() == null ? 0 : timer.getTimeout().toEpochMilli();
-                // Values for INSERT
+        "INSERT INTO timers (id, partition_id, timeout_ts_millis, handler_clazz, payload, retries, version, enqueued_ts_millis) VALUES "
+            + String.join(", ", Collections.nCopies(timers.size(), "(?, ?, ?, ?, ?, ?, 0, ?)"))
+            + " ON DUPLICATE KEY UPDATE "
+            + ENQUEUED_UPDATE_EXPR
+            + ", timeout_ts_millis = VALUES(timeout_ts_millis), "
+            + "handler_clazz = VALUES(handler_clazz), payload = VALUES(payload), "
+            + "retries = VALUES(retries), version = version + 1, "
+            + "lease_owner = NULL, lease_expiration_ts_millis = 0";
+    val readSql =
+        "SELECT id, version FROM timers WHERE id IN (" + SqlUtils.placeholders(timers.size()) + ")";
+    try (val ignored = Metrics.getStoreLatencyTimer("timers", "upsert_batch").time()) {
+      return transactionManager.execute(
+          conn -> {
+            try (val ps = conn.prepareStatement(sql)) {
+              int i = 0;
+              val now = clock.instant().toEpochMilli();
+              for (val timer : timers) {
                 ps.setString(++i, timer.getTimerId());
-                ps.setLong(++i, timeoutMillis);
-                ps.setString(++i, timer.getHandlerClazz().getName());
-                ps.setString(++i, gson.toJson(timer.getPayload()));
-                ps.setInt(++i, timer.getRetries());
-                // Values for UPDATE
-                ps.setLong(++i, timeoutMillis);
+                ps.setInt(++i, timer.getPartition());
+                ps.setLong(++i, timer.getTimeout() == null ? 0 : timer.getTimeout().toEpochMilli());
                 ps.setString(++i, timer.getHandlerClazz().getName());
                 ps.setString(++i, gson.toJson(timer.getPayload()));
                 ps.setInt(++i, timer.getRetries());
-                if (ps.executeUpdate() == 1) {
-                  return timer.getVersion() + 1;
-                }
-                return timer.getVersion();
-              } catch (SQLException e) {
-                Metrics.errorCounter("timer", "unknown").inc();
-                throw new StorageError("unable to upsert timer: " + e.getMessage(), e);
+                ps.setLong(++i, now);
+              }
+              ps.executeUpdate();
+            } catch (SQLException e) {
+              Metrics.errorCounter("timer", "unknown").inc();
+              throw new StorageError("unable to upsert timers: " + e.getMessage(), e);
+            }
+            // The rows are locked by the upsert so the versions we read are the ones we just wrote.
+            Map<String, Integer> versions = new HashMap<>();
+            try (val ps = conn.prepareStatement(readSql)) {
+              int i = 0;
+              for (val timer : timers) {
+                ps.setString(++i, timer.getTimerId());
+              }
+              val result = ps.executeQuery();
+              while (result.next()) {
+                versions.put(result.getString("id"), result.getInt("version"));
               }
-            });
-    return builder.version(version).build();
+            } catch (SQLException e) {
+              Metrics.errorCounter("timer", "unknown").inc();
+              throw new StorageError("unable to read upserted timers: " + e.getMessage(), e);
+            }
+            return timers.stream()
+                .map(timer -> timer.toBuilder().version(versions.get(timer.getTimerId())).build())
+                .collect(Collectors.toList());
+          });
+    }
+  }
+
+  private Timer upsert(Timer timer, boolean coalesce) {
+    // When coalescing, the earliest timeout wins unless the existing timer is due and leased, i.e.
+    // it's being processed. The timeout must be assigned before the lease is cleared.
+    val timeoutExpr =
+        coalesce
+            ? "IF(lease_expiration_ts_millis > ? AND timeout_ts_millis <= ?, ?, LEAST(timeout_ts_millis, ?))"
+            : "?";
+    val sql = upsertSql(timeoutExpr);
+    val readSql = "SELECT version, timeout_ts_millis FROM timers WHERE id = ?";
+    val builder = timer.toBuilder();
+    transactionManager.execute(
+        conn -> {
+          try (val ps = conn.prepareStatement(sql)) {
+            int i = 0;
+            long timeoutMillis = timer.getTimeout() == null ? 0 : timer.getTimeout().toEpochMilli();
+            // Values for INSERT
+            ps.setString(++i, timer.getTimerId());
+            ps.setInt(++i, timer.getPartition());
+            ps.setLong(++i, timeoutMillis);
+            ps.setString(++i, timer.getHandlerClazz().getName());
+            ps.setString(++i, gson.toJson(timer.getPayload()));
+            ps.setInt(++i, timer.getRetries());
+            val now = clock.instant().toEpochMilli();
+            ps.setLong(++i, now);
+            // Values for UPDATE
+            if (coalesce) {
+              ps.setLong(++i, now);
+              ps.setLong(++i, now);
+              ps.setLong(++i, timeoutMillis);
+            }
+            ps.setLong(++i, timeoutMillis);
+            ps.setString(++i, timer.getHandlerClazz().getName());
+            ps.setString(++i, gson.toJson(timer.getPayload()));
+            ps.setInt(++i, timer.getRetries());
+            if (ps.executeUpdate() == 1) {
+              // A new row was inserted
+              builder.version(0);
+              return null;
+            }
+          } catch (SQLException e) {
+            Metrics.errorCounter("timer", "unknown").inc();
+            throw new StorageError("unable to upsert timer: " + e.getMessage(), e);
+          }
+          // The existing row was updated, the row is locked by the upsert so the values we
+          // read are the ones we just wrote.
+          try (val ps = conn.prepareStatement(readSql)) {
+            ps.setString(1, timer.getTimerId());
+            val result = ps.executeQuery();
+            result.next();
+            builder.version(result.getInt("version"));
+            if (coalesce) {
+              val timeoutMillis = result.getLong("timeout_ts_millis");
+              builder.timeout(timeoutMillis == 0 ? null : Instant.ofEpochMilli(timeoutMillis));
+            }
+            return null;
+          } catch (SQLException e) {
+            Metrics.errorCounter("timer", "unknown").inc();
+            throw new StorageError("unable to read upserted timer: " + e.getMessage(), e);
+          }
+        });
+    return builder.build();
   }
 
   @Override
@@ -115,7 +235,10 @@ public class MySqlTimerStore implements TimerStore {
 
   @Override
   public void update(@NonNull String timerId, Duration timeout) {
-    val sql = "UPDATE timers SET timeout_ts_millis = ? WHERE id = ?";
+    val sql =
+        ""
+            + "UPDATE timers SET timeout_ts_millis = ?, lease_owner = NULL, lease_expiration_ts_millis = 0 "
+            + "WHERE id = ?";
     this.transactionManager.execute(
         conn -> {
           try (val ps = conn.prepareStatement(sql)) {
@@ -149,78 +272,313 @@ public class MySqlTimerStore implements TimerStore {
         });
   }
 
+  @Override
+  public Optional<Timer> claim(@NonNull Timer timer, @NonNull Duration leaseDuration) {
+    val sql =
+        ""
+            + "UPDATE timers SET lease_owner = ?, lease_expiration_ts_millis = ? "
+            + "WHERE id = ? AND version = ? AND lease_expiration_ts_millis <= ?";
+    val leaseOwner = UUID.randomUUID().toString();
+    return this.transactionManager.execute(
+        conn -> {
+          try (val ps = conn.prepareStatement(sql)) {
+            val now = clock.instant().toEpochMilli();
+            int i = 0;
+            ps.setString(++i, leaseOwner);
+            ps.setLong(++i, now + leaseDuration.toMillis());
+            ps.setString(++i, timer.getTimerId());
+            ps.setInt(++i, timer.getVersion());
+            ps.setLong(++i, now);
+            return ps.executeUpdate() > 0
+                ? Optional.of(timer.toBuilder().leaseOwner(leaseOwner).build())
+                : Optional.<Timer>empty();
+          } catch (SQLException e) {
+            Metrics.errorCounter("timers", "claim").inc();
+            throw new StorageError("unable to claim timer: " + e.getMessage(), e);
+          }
+        });
+  }
+
+  @Override
+  public boolean extendLease(@NonNull Timer timer, @NonNull Duration duration) {
+    if (timer.getLeaseOwner() == null) {
+      return false;
+    }
+    // Claims don't bump the version, so once the lease lapses another claim can take it over with
+    // the same version. Only the holder of the lease can extend it.
+    val sql =
+        ""
+            + "UPDATE timers SET lease_expiration_ts_millis = GREATEST(lease_expiration_ts_millis, ?) "
+            + "WHERE id = ? AND version = ? AND lease_owner = ? AND lease_expiration_ts_millis > ?";
+    return this.transactionManager.execute(
+        conn -> {
+          try (val ps = conn.prepareStatement(sql)) {
+            val now = clock.instant().toEpochMilli();
+            ps.setLong(1, now + duration.toMillis());
+            ps.setString(2, timer.getTimerId());
+            ps.setInt(3, timer.getVersion());
+            ps.setString(4, timer.getLeaseOwner());
+            ps.setLong(5, now);
+            return ps.executeUpdate() > 0;
+          } catch (SQLException e) {
+            Metrics.errorCounter("timers", "extend_lease").inc();
+            throw new StorageError("unable to extend timer lease: " + e.getMessage(), e);
+          }
+        });
+  }
+
+  @Override
+  public boolean reschedule(@NonNull Timer timer, @NonNull Duration delay) {
+    val sql =
+        ""
+            + "UPDATE timers SET timeout_ts_millis = ?, retries = retries + 1, "
+            + "    lease_owner = NULL, lease_expiration_ts_millis = 0 "
+            + "WHERE id = ? AND version = ?";
+    return this.transactionManager.execute(
+        conn -> {
+          try (val ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, clock.instant().plus(delay).toEpochMilli());
+            ps.setString(2, timer.getTimerId());
+            ps.setInt(3, timer.getVersion());
+            return ps.executeUpdate() > 0;
+          } catch (SQLException e) {
+            Metrics.errorCounter("timers", "reschedule").inc();
+            throw new StorageError("unable to reschedule timer: " + e.getMessage(), e);
+          }
+        });
+  }
+
+  @Override
+  public boolean quarantine(@NonNull Timer timer, String error) {
+    val deleteSql = "DELETE FROM timers WHERE id = ? AND version = ?";
+    val insertSql =
+        ""
+            + "INSERT INTO timers_dead_letter "
+            + "    (id, timeout_ts_millis, handler_clazz, payload, retries, last_error, quarantined_ts_millis) "
+            + "    VALUES (?, ?, ?, ?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE "
+            + "    timeout_ts_millis = VALUES(timeout_ts_millis), handler_clazz = VALUES(handler_clazz), "
+            + "    payload = VALUES(payload), retries = VALUES(retries), last_error = VALUES(last_error), "
+            + "    quarantined_ts_millis = VALUES(quarantined_ts_millis)";
+    return this.transactionManager.execute(
+        conn -> {
+          try {
+            try (val ps = conn.prepareStatement(deleteSql)) {
+              ps.setString(1, timer.getTimerId());
+              ps.setInt(2, timer.getVersion());
+              if (ps.executeUpdate() == 0) {
+                return false;
+              }
+            }
+            try (val ps = conn.prepareStatement(insertSql)) {
+              int i = 0;
+              ps.setString(++i, timer.getTimerId());
+              ps.setLong(++i, timer.getTimeout() == null ? 0 : timer.getTimeout().toEpochMilli());
+              ps.setString(++i, timer.getHandlerClazz().getName());
+              ps.setString(++i, gson.toJson(timer.getPayload()));
+              ps.setInt(++i, timer.getRetries());
+              ps.setString(++i, error);
+              ps.setLong(++i, clock.instant().toEpochMilli());
+              ps.executeUpdate();
+            }
+            return true;
+          } catch (SQLException e) {
+            Metrics.errorCounter("timers", "quarantine").inc();
+            throw new StorageError("unable to quarantine timer: " + e.getMessage(), e);
+          }
+        });
+  }
+
+  @Override
+  public List<QuarantinedTimer> getQuarantinedTimers(int limit) {
+    val sql =
+        ""
+            + "SELECT id, timeout_ts_millis, handler_clazz, payload, retries, 0 AS version, "
+            + "    last_error, quarantined_ts_millis "
+            + "FROM timers_dead_letter ORDER BY quarantined_ts_millis DESC LIMIT ?";
+    return this.transactionManager.execute(
+        conn -> {
+          try (val ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, limit);
+            val result = ps.executeQuery();
+            List<QuarantinedTimer> timers = new ArrayList<>();
+            while (result.next()) {
+              timers.add(
+                  QuarantinedTimer.builder()
+                      .timer(recordToInstance(result))
+                      .lastError(result.getString("last_error"))
+                      .quarantineTime(Instant.ofEpochMilli(result.getLong("quarantined_ts_millis")))
+                      .build());
+            }
+            return timers;
+          } catch (SQLException e) {
+            throw new StorageError("unable to get quarantined timers: " + e.getMessage(), e);
+          }
+        });
+  }
+
+  @Override
+  public void requeueQuarantinedTimer(@NonNull String timerId) {
+    val insertSql =
+        ""
+            + "INSERT INTO timers (id, partition_id, timeout_ts_millis, handler_clazz, payload, retries, version, enqueued_ts_millis) "
+            + "    SELECT id, ?, ?, handler_clazz, payload, 0, 0, ? FROM timers_dead_letter WHERE id = ? "
+            + "ON DUPLICATE KEY UPDATE id = id";
+    val deleteSql = "DELETE FROM timers_dead_letter WHERE id = ?";
+    this.transactionManager.execute(
+        conn -> {
+          try {
+            try (val ps = conn.prepareStatement(insertSql)) {
+              ps.setInt(1, Timer.partitionOf(timerId));
+              val now = clock.instant().toEpochMilli();
+              ps.setLong(2, now);
+              ps.setLong(3, now);
+              ps.setString(4, timerId);
+              ps.executeUpdate();
+            }
+            try (val ps = conn.prepareStatement(deleteSql)) {
+              ps.setString(1, timerId);
+              if (ps.executeUpdate() == 0) {
+                throw new IllegalArgumentException("unable to find quarantined timer " + timerId);
+              }
+            }
+            return null;
+          } catch (SQLException e) {
+            throw new StorageError("unable to requeue quarantined timer: " + e.getMessage(), e);
+          }
+        });
+  }
+
   @Override
   public List<Timer> getExpiredTimers() {
-    val expiredIds = getExpiredIds();
-    if (expiredIds.isEmpty()) {
+    return claimExpiredTimers(
+        Timer.allPartitions(), null, Duration.ZERO, DEFAULT_LEASE_DURATION, DEFAULT_FETCH_LIMIT);
+  }
+
+  /**
+   * Claims a batch of up to {@code limit} expired timers from the given partitions.
+   *
+   * <p>The claim is done with a single {@code UPDATE ... ORDER BY ... LIMIT} that stamps the due
+   * timers with a unique owner token and a lease deadline, followed by a read of the rows owned by
+   * that token. A timer can only be claimed when its lease is expired, which means it will be
+   * retried by any node once the lease expires if the current owner fails to process it. Timers
+   * claimed ahead of their timeout are leased until {@code timeout + leaseDuration}.
+   */
+  @Override
+  public List<Timer> getExpiredTimers(
+      @NonNull Set<Integer> partitions,
+      @NonNull Class<? extends TimerHandler> handlerClazz,
+      @NonNull Duration lookAhead,
+      @NonNull Duration leaseDuration,
+      int limit) {
+    return claimExpiredTimers(partitions, handlerClazz, lookAhead, leaseDuration, limit);
+  }
+
+  private List<Timer> claimExpiredTimers(
+      Set<Integer> partitions,
+      @Nullable Class<? extends TimerHandler> handlerClazz,
+      Duration lookAhead,
+      Duration leaseDuration,
+      int limit) {
+    if (partitions.isEmpty() || limit < 1) {
       return new ArrayList<>();
     }
-    val sql =
-        String.format(
-            ""
-                + "SELECT id, timeout_ts_millis, handler_clazz, payload, retries, version FROM timers "
-                + "WHERE id IN ('%s') "
-                + "FOR UPDATE SKIP LOCKED",
-            String.join("','", expiredIds));
-    val updateLeaseSql = "" + "UPDATE timers SET timeout_ts_millis = ? WHERE id IN ('%s')";
+    val claimSql =
+        ""
+            + "UPDATE timers "
+            + "SET lease_owner = ?, lease_expiration_ts_millis = GREATEST(timeout_ts_millis, ?) + ? "
+            + "WHERE partition_id IN ("
+            + SqlUtils.placeholders(partitions.size())
+            + ") "
+            + (handlerClazz == null ? "" : "AND handler_clazz = ? ")
+            + "AND timeout_ts_millis <= ? AND lease_expiration_ts_millis <= ? "
+            + "ORDER BY timeout_ts_millis ASC, id ASC LIMIT ?";
+    val selectSql =
+        ""
+            + "SELECT id, timeout_ts_millis, handler_clazz, payload, retries, version FROM timers "
+            + "WHERE lease_owner = ?";
+    val leaseOwner = UUID.randomUUID().toString();
     try (val latencyTimer = Metrics.getStoreLatencyTimer("timers", "get_expired").time()) {
       return this.transactionManager.execute(
           conn -> {
-            // First fetch the results
-            List<Timer> timers = new ArrayList<>();
-            val now = clock.instant();
-            try (val ps = conn.prepareStatement(sql)) {
-              val result = ps.executeQuery();
-              while (result.next()) {
-                timers.add(recordToInstance(result));
+            val now = clock.instant().toEpochMilli();
+            try (val ps = conn.prepareStatement(claimSql)) {
+              int i = 0;
+              ps.setString(++i, leaseOwner);
+              ps.setLong(++i, now);
+              ps.setLong(++i, leaseDuration.toMillis());
+              for (int partition : partitions) {
+                ps.setInt(++i, partition);
+              }
+              if (handlerClazz != null) {
+                ps.setString(++i, handlerClazz.getName());
+              }
+              ps.setLong(++i, now + lookAhead.toMillis());
+              ps.setLong(++i, now);
+              ps.setInt(++i, limit);
+              if (ps.executeUpdate() == 0) {
+                return new ArrayList<>();
               }
             } catch (SQLException e) {
               Metrics.errorCounter("timers", "getExpiredTimers").inc();
               throw new StorageError(
-                  "unexpected mysql error while trying to select timers" + e.getMessage(), e);
+                  "unexpected mysql error while trying to claim timers: " + e.getMessage(), e);
             }
-            // Now update the timers lease
-            String ids = timers.stream().map(Timer::getTimerId).collect(Collectors.joining("','"));
-            try (val ps = conn.prepareStatement(String.format(updateLeaseSql, ids))) {
-              ps.setLong(1, now.plus(leaseDuration).toEpochMilli());
-              ps.executeUpdate();
+            List<Timer> timers = new ArrayList<>();
+            try (val ps = conn.prepareStatement(selectSql)) {
+              ps.setString(1, leaseOwner);
+              val result = ps.executeQuery();
+              while (result.next()) {
+                timers.add(recordToInstance(result).toBuilder().leaseOwner(leaseOwner).build());
+              }
             } catch (SQLException e) {
+              Metrics.errorCounter("timers", "getExpiredTimers").inc();
               throw new StorageError(
-                  "unexpected mysql error while trying to update the timers lease" + e.getMessage(),
+                  "unexpected mysql error while trying to select claimed timers: " + e.getMessage(),
                   e);
             }
+            timers.sort(
+                Comparator.comparing(
+                        (Timer t) -> t.getTimeout() == null ? Instant.EPOCH : t.getTimeout())
+                    .thenComparing(Timer::getTimerId));
             return timers;
           });
     }
   }
 
-  private List<String> getExpiredIds() {
+  @Override
+  public long countExpiredTimers() {
     val sql =
-        "SELECT id FROM timers WHERE timeout_ts_millis <= ? ORDER BY timeout_ts_millis ASC, id ASC LIMIT 300";
+        "SELECT count(*) FROM timers WHERE timeout_ts_millis <= ? AND lease_expiration_ts_millis <= ?";
     return this.transactionManager.execute(
         conn -> {
           try (val ps = conn.prepareStatement(sql)) {
-            List<String> timers = new ArrayList<>();
-            ps.setLong(1, clock.instant().toEpochMilli());
-            val result = ps.executeQuery();
-            while (result.next()) {
-              timers.add(result.getString("id"));
-            }
-            return timers;
+            val now = clock.instant().toEpochMilli();
+            ps.setLong(1, now);
+            ps.setLong(2, now);
+            val record = ps.executeQuery();
+            record.next();
+            return record.getLong(1);
           } catch (SQLException e) {
-            throw new StorageError(
-                "unexpected mysql error while trying to get expired timers" + e.getMessage(), e);
+            throw new StorageError("unable to count timers: " + e.getMessage(), e);
           }
         });
   }
 
   @Override
-  public long countExpiredTimers() {
-    val sql = "SELECT count(*) FROM timers WHERE timeout_ts_millis <= ? ";
+  public long countExpiredTimers(long limit) {
+    val sql =
+        ""
+            + "SELECT count(*) FROM ("
+            + "    SELECT 1 FROM timers WHERE timeout_ts_millis <= ? AND lease_expiration_ts_millis <= ? LIMIT ?"
+            + ") capped";
     return this.transactionManager.execute(
         conn -> {
           try (val ps = conn.prepareStatement(sql)) {
-            ps.setLong(1, clock.instant().toEpochMilli());
+            val now = clock.instant().toEpochMilli();
+            ps.setLong(1, now);
+            ps.setLong(2, now);
+            ps.setLong(3, limit);
             val record = ps.executeQuery();
             record.next();
             return record.getLong(1);
@@ -229,4 +587,68 @@ public class MySqlTimerStore implements TimerStore {
           }
         });
   }
+
+  @Override
+  public Optional<Instant> getOldestExpiredTimeout() {
+    val sql =
+        ""
+            + "SELECT "
+            + "    (SELECT timeout_ts_millis FROM timers "
+            + "     WHERE timeout_ts_millis > 0 AND timeout_ts_millis <= ? AND lease_expiration_ts_millis <= ? "
+            + "     ORDER BY timeout_ts_millis ASC LIMIT 1), "
+            + "    (SELECT MIN(enqueued_ts_millis) FROM timers "
+            + "     WHERE timeout_ts_millis = 0 AND lease_expiration_ts_millis <= ?)";
+    return this.transactionManager.execute(
+        conn -> {
+          try (val ps = conn.prepareStatement(sql)) {
+            val now = clock.instant().toEpochMilli();
+            ps.setLong(1, now);
+            ps.setLong(2, now);
+            ps.setLong(3, now);
+            val record = ps.executeQuery();
+            record.next();
+            // Timers without a timeout have been due since they were enqueued
+            Long oldest = null;
+            for (int column = 1; column <= 2; column++) {
+              val millis = record.getLong(column);
+              if (!record.wasNull() && (oldest == null || millis < oldest)) {
+                oldest = millis;
+              }
+            }
+            return Optional.ofNullable(oldest).map(Instant::ofEpochMilli);
+          } catch (SQLException e) {
+            throw new StorageError("unable to get the oldest expired timer: " + e.getMessage(), e);
+          }
+        });
+  }
+
+  @Override
+  public Optional<Instant> getNextTimeout(@NonNull Set<Integer> partitions) {
+    if (partitions.isEmpty()) {
+      return Optional.empty();
+    }
+    val sql =
+        ""
+            + "SELECT MIN(timeout_ts_millis) FROM timers WHERE partition_id IN ("
+            + SqlUtils.placeholders(partitions.size())
+            + ") AND timeout_ts_millis > ?";
+    return this.transactionManager.execute(
+        conn -> {
+          try (val ps = conn.prepareStatement(sql)) {
+            int i = 0;
+            for (int partition : partitions) {
+              ps.setInt(++i, partition);
+            }
+            ps.setLong(++i, clock.instant().toEpochMilli());
+            val record = ps.executeQuery();
+            record.next();
+            val timeout = record.getLong(1);
+            return record.wasNull()
+                ? Optional.<Instant>empty()
+                : Optional.of(Instant.ofEpochMilli(timeout));
+          } catch (SQLException e) {
+            throw new StorageError("unable to get the next timer timeout: " + e.getMessage(), e);
+          }
+        });
+  }
 }
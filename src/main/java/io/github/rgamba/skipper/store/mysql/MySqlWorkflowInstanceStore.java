@@ -3,9 +3,13 @@ package io.github.rgamba.skipper.store.mysql;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import com.google.inject.Inject;
+import com.google.inject.name.Named;
 import io.github.rgamba.skipper.Metrics;
 import io.github.rgamba.skipper.api.CallbackHandler;
 import io.github.rgamba.skipper.common.Anything;
+import io.github.rgamba.skipper.common.ValidationUtils;
+import io.github.rgamba.skipper.models.ReplayCheckpoint;
+import io.github.rgamba.skipper.models.WorkflowCompletion;
 import io.github.rgamba.skipper.models.WorkflowInstance;
 import io.github.rgamba.skipper.models.WorkflowType;
 import io.github.rgamba.skipper.serde.SerdeUtils;
@@ -13,14 +17,22 @@ import io.github.rgamba.skipper.store.DateTimeUtil;
 import io.github.rgamba.skipper.store.SqlTransactionManager;
 import io.github.rgamba.skipper.store.StorageError;
 import io.github.rgamba.skipper.store.WorkflowInstanceStore;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.Set;
+import javax.annotation.Nullable;
 import lombok.NonNull;
 import lombok.SneakyThrows;
 import lombok.val;
@@ -30,51 +42,32 @@ public class MySqlWorkflowInstanceStore implements WorkflowInstanceStore {
   private static final Gson gson = SerdeUtils.getGson();
 
   private final SqlTransactionManager transactionManager;
+  private final Clock clock;
 
   @Inject
-  public MySqlWorkflowInstanceStore(@NonNull SqlTransactionManager transactionManager) {
+  public MySqlWorkflowInstanceStore(
+      @NonNull SqlTransactionManager transactionManager, @NonNull @Named("UTC") Clock clock) {
     this.transactionManager = transactionManager;
+    this.clock = clock;
+  }
+
+  public MySqlWorkflowInstanceStore(@NonNull SqlTransactionManager transactionManager) {
+    this(transactionManager, Clock.systemUTC());
   }
 
+  private static final String INSERT_SQL =
+      "INSERT INTO workflow_instances (id, correlation_id, workflow_type, initial_args, status, callback_handler_clazz, creation_time, state, result, status_reason, version, run_number, run_start_ts_millis) VALUES ";
+  private static final String INSERT_VALUES = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
   @Override
   @SneakyThrows
   public void create(@NonNull WorkflowInstance workflowInstance) {
-    val sql =
-        "INSERT INTO workflow_instances (id, correlation_id, workflow_type, initial_args, status, callback_handler_clazz, creation_time, state, result, status_reason, version)"
-            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    val sql = INSERT_SQL + INSERT_VALUES;
     this.transactionManager.execute(
         conn -> {
           try {
             try (val ps = conn.prepareStatement(sql)) {
-              int i = 0;
-              ps.setString(++i, workflowInstance.getId());
-              ps.setString(++i, workflowInstance.getCorrelationId());
-              ps.setString(++i, gson.toJson(workflowInstance.getWorkflowType()));
-              ps.setString(
-                  ++i,
-                  gson.toJson(
-                      workflowInstance.getInitialArgs(),
-                      TypeToken.getParameterized(List.class, Anything.class).getType()));
-              ps.setString(++i, WorkflowInstance.Status.ACTIVE.toString());
-              ps.setString(
-                  ++i,
-                  workflowInstance.getCallbackHandlerClazz() != null
-                      ? workflowInstance.getCallbackHandlerClazz().getName()
-                      : null);
-              ps.setTimestamp(++i, Timestamp.from(workflowInstance.getCreationTime()));
-              ps.setString(
-                  ++i,
-                  gson.toJson(
-                      workflowInstance.getState(),
-                      TypeToken.getParameterized(Map.class, String.class, Anything.class)
-                          .getType()));
-              ps.setString(
-                  ++i,
-                  workflowInstance.getResult() == null
-                      ? null
-                      : new Gson().toJson(workflowInstance.getResult()));
-              ps.setString(++i, workflowInstance.getStatusReason());
-              ps.setInt(++i, workflowInstance.getVersion());
+              setInsertParams(ps, 0, workflowInstance);
               return ps.executeUpdate();
             }
           } catch (SQLException e) {
@@ -87,12 +80,97 @@ public class MySqlWorkflowInstanceStore implements WorkflowInstanceStore {
         });
   }
 
+  @Override
+  public Set<String> createAll(@NonNull List<WorkflowInstance> workflowInstances) {
+    if (workflowInstances.isEmpty()) {
+      return new HashSet<>();
+    }
+    // The rows that collide with an existing one are left as they are, the ones that made it are
+    // read back to tell them apart.
+    val sql =
+        INSERT_SQL
+            + String.join(", ", Collections.nCopies(workflowInstances.size(), INSERT_VALUES))
+            + " ON DUPLICATE KEY UPDATE id = id";
+    val readSql =
+        "SELECT id FROM workflow_instances WHERE id IN ("
+            + SqlUtils.placeholders(workflowInstances.size())
+            + ")";
+    try (val ignored = Metrics.getStoreLatencyTimer("workflow_instance", "create_batch").time()) {
+      return this.transactionManager.execute(
+          conn -> {
+            try {
+              try (val ps = conn.prepareStatement(sql)) {
+                int i = 0;
+                for (val workflowInstance : workflowInstances) {
+                  i = setInsertParams(ps, i, workflowInstance);
+                }
+                ps.executeUpdate();
+              }
+              Set<String> created = new HashSet<>();
+              try (val ps = conn.prepareStatement(readSql)) {
+                int i = 0;
+                for (val workflowInstance : workflowInstances) {
+                  ps.setString(++i, workflowInstance.getId());
+                }
+                val result = ps.executeQuery();
+                while (result.next()) {
+                  created.add(result.getString("id"));
+                }
+              }
+              return created;
+            } catch (SQLException e) {
+              throw new StorageError("unexpected mysql error", e);
+            }
+          });
+    }
+  }
+
+  /** @return The index of the last parameter set. */
+  private static int setInsertParams(PreparedStatement ps, int i, WorkflowInstance workflowInstance)
+      throws SQLException {
+    ps.setString(++i, workflowInstance.getId());
+    ps.setString(++i, workflowInstance.getCorrelationId());
+    ps.setString(++i, gson.toJson(workflowInstance.getWorkflowType()));
+    ps.setString(
+        ++i,
+        gson.toJson(
+            workflowInstance.getInitialArgs(),
+            TypeToken.getParameterized(List.class, Anything.class).getType()));
+    ps.setString(++i, WorkflowInstance.Status.ACTIVE.toString());
+    ps.setString(
+        ++i,
+        workflowInstance.getCallbackHandlerClazz() != null
+            ? workflowInstance.getCallbackHandlerClazz().getName()
+            : null);
+    ps.setTimestamp(++i, Timestamp.from(workflowInstance.getCreationTime()));
+    ps.setString(
+        ++i,
+        gson.toJson(
+            workflowInstance.getState(),
+            TypeToken.getParameterized(Map.class, String.class, Anything.class).getType()));
+    ps.setString(
+        ++i,
+        workflowInstance.getResult() == null
+            ? null
+            : new Gson().toJson(workflowInstance.getResult()));
+    ps.setString(++i, workflowInstance.getStatusReason());
+    ps.setInt(++i, workflowInstance.getVersion());
+    ps.setInt(++i, workflowInstance.getRunNumber());
+    ps.setObject(
+        ++i,
+        workflowInstance.getRunStartTime() != null
+            ? workflowInstance.getRunStartTime().toEpochMilli()
+            : null);
+    return i;
+  }
+
+  private static final String SELECT_SQL =
+      "SELECT id, correlation_id, workflow_type, initial_args, status, callback_handler_clazz, creation_time, state, result, status_reason, version, run_number, run_start_ts_millis, replay_iterations, replay_checkpoint_ts_millis FROM workflow_instances";
+
   @Override
   @SneakyThrows
   public WorkflowInstance get(@NonNull String workflowInstanceId) {
-    val sql =
-        "SELECT id, correlation_id, workflow_type, initial_args, status, callback_handler_clazz, creation_time, state, result, status_reason, version FROM workflow_instances"
-            + "  WHERE id = ?";
+    val sql = SELECT_SQL + " WHERE id = ?";
     return this.transactionManager.execute(
         conn -> {
           try (val ps = conn.prepareStatement(sql)) {
@@ -109,6 +187,53 @@ public class MySqlWorkflowInstanceStore implements WorkflowInstanceStore {
         });
   }
 
+  @Override
+  public List<WorkflowInstance> getAll(@NonNull Collection<String> workflowInstanceIds) {
+    if (workflowInstanceIds.isEmpty()) {
+      return new ArrayList<>();
+    }
+    val sql =
+        SELECT_SQL + " WHERE id IN (" + SqlUtils.placeholders(workflowInstanceIds.size()) + ")";
+    return this.transactionManager.execute(
+        conn -> {
+          List<WorkflowInstance> instances = new ArrayList<>();
+          try (val ps = conn.prepareStatement(sql)) {
+            int i = 0;
+            for (val workflowInstanceId : workflowInstanceIds) {
+              ps.setString(++i, workflowInstanceId);
+            }
+            val result = ps.executeQuery();
+            while (result.next()) {
+              instances.add(recordToInstance(result));
+            }
+            return instances;
+          } catch (SQLException e) {
+            throw new StorageError("unexpected mysql error", e);
+          }
+        });
+  }
+
+  @Override
+  public Optional<WorkflowInstance> findByCorrelationId(
+      @NonNull WorkflowType workflowType, @NonNull String correlationId) {
+    // Matches the correlation_id_unique index, the workflow type is stored the same way on insert
+    val sql = SELECT_SQL + " WHERE workflow_type = ? AND correlation_id = ?";
+    return this.transactionManager.execute(
+        conn -> {
+          try (val ps = conn.prepareStatement(sql)) {
+            ps.setString(1, gson.toJson(workflowType));
+            ps.setString(2, correlationId);
+            val result = ps.executeQuery();
+            if (!result.next()) {
+              return Optional.empty();
+            }
+            return Optional.of(recordToInstance(result));
+          } catch (SQLException e) {
+            throw new StorageError("unexpected mysql error", e);
+          }
+        });
+  }
+
   @SneakyThrows
   private WorkflowInstance recordToInstance(ResultSet result) {
     val builder = WorkflowInstance.builder();
@@ -146,6 +271,24 @@ public class MySqlWorkflowInstanceStore implements WorkflowInstanceStore {
       }
       builder.statusReason(result.getString("status_reason"));
       builder.version(result.getInt("version"));
+      builder.runNumber(result.getInt("run_number"));
+      long runStartMillis = result.getLong("run_start_ts_millis");
+      if (!result.wasNull()) {
+        builder.runStartTime(Instant.ofEpochMilli(runStartMillis));
+      }
+      String replayIterations = result.getString("replay_iterations");
+      if (replayIterations != null) {
+        Map<String, Integer> iterations =
+            gson.fromJson(
+                replayIterations,
+                TypeToken.getParameterized(Map.class, String.class, Integer.class).getType());
+        val checkpoint = ReplayCheckpoint.builder().iterations(iterations);
+        long executionCheckpointMillis = result.getLong("replay_checkpoint_ts_millis");
+        if (!result.wasNull()) {
+          checkpoint.executionCheckpoint(Instant.ofEpochMilli(executionCheckpointMillis));
+        }
+        builder.replayCheckpoint(checkpoint.build());
+      }
     } catch (ClassCastException | ClassNotFoundException e) {
       throw new StorageError("unable to deserialize into a class type", e);
     }
@@ -155,11 +298,7 @@ public class MySqlWorkflowInstanceStore implements WorkflowInstanceStore {
   @Override
   public List<WorkflowInstance> find() {
     // TODO: limit the result size here
-    val sql =
-        ""
-            + "SELECT id, correlation_id, workflow_type, initial_args, status, callback_handler_clazz, creation_time, state, result, status_reason, version "
-            + "FROM workflow_instances "
-            + "ORDER BY creation_time DESC";
+    val sql = SELECT_SQL + " ORDER BY creation_time DESC";
     return this.transactionManager.execute(
         conn -> {
           List<WorkflowInstance> instances = new ArrayList<>();
@@ -175,29 +314,106 @@ public class MySqlWorkflowInstanceStore implements WorkflowInstanceStore {
         });
   }
 
+  @Override
+  public int getVersion(@NonNull String workflowInstanceId) {
+    val sql = "SELECT version FROM workflow_instances WHERE id = ?";
+    return this.transactionManager.execute(
+        conn -> {
+          try (val ps = conn.prepareStatement(sql)) {
+            ps.setString(1, workflowInstanceId);
+            val result = ps.executeQuery();
+            if (!result.next()) {
+              throw new IllegalArgumentException(
+                  "unable to find workflow instance with id " + workflowInstanceId);
+            }
+            return result.getInt("version");
+          } catch (SQLException e) {
+            throw new StorageError("unexpected mysql error", e);
+          }
+        });
+  }
+
   @Override
   public void update(
       @NonNull String workflowInstanceId,
       WorkflowInstance.@NonNull Mutation mutation,
       int version) {
-    Map<String, String> fieldsToUpdate = new LinkedHashMap<>();
+    List<String> assignments = new ArrayList<>();
+    List<Object> params = new ArrayList<>();
     if (mutation.getResult() != null) {
-      fieldsToUpdate.put("result", gson.toJson(mutation.getResult()));
+      assignments.add("result = ?");
+      params.add(gson.toJson(mutation.getResult()));
     }
     if (mutation.getStatus() != null) {
-      fieldsToUpdate.put("status", mutation.getStatus().name());
+      assignments.add("status = ?");
+      params.add(mutation.getStatus().name());
     }
     if (mutation.getState() != null) {
-      fieldsToUpdate.put("state", gson.toJson(mutation.getState()));
+      assignments.add("state = ?");
+      params.add(gson.toJson(mutation.getState()));
+    } else if (mutation.getStatePatch() != null && !mutation.getStatePatch().isEmpty()) {
+      // Only the changed fields are sent over, the rest of the state document stays as it is.
+      // Fields set to null are removed, same as a full state write leaves them out.
+      StringBuilder setArgs = new StringBuilder();
+      StringBuilder removeArgs = new StringBuilder();
+      List<Object> setParams = new ArrayList<>();
+      List<Object> removeParams = new ArrayList<>();
+      for (val field : mutation.getStatePatch().entrySet()) {
+        val path = "$.\"" + field.getKey() + "\"";
+        if (field.getValue() == null) {
+          removeArgs.append(", ?");
+          removeParams.add(path);
+        } else {
+          setArgs.append(", ?, CAST(? AS JSON)");
+          setParams.add(path);
+          setParams.add(gson.toJson(field.getValue()));
+        }
+      }
+      String state = "COALESCE(state, JSON_OBJECT())";
+      if (!setParams.isEmpty()) {
+        state = "JSON_SET(" + state + setArgs + ")";
+      }
+      if (!removeParams.isEmpty()) {
+        state = "JSON_REMOVE(" + state + removeArgs + ")";
+      }
+      assignments.add("state = " + state);
+      params.addAll(setParams);
+      params.addAll(removeParams);
     }
     if (mutation.getStatusReason() != null) {
-      fieldsToUpdate.put("status_reason", mutation.getStatusReason());
+      assignments.add("status_reason = ?");
+      params.add(mutation.getStatusReason());
+    }
+    if (mutation.getReplayCheckpoint() != null) {
+      val checkpoint = mutation.getReplayCheckpoint();
+      assignments.add("replay_iterations = ?");
+      params.add(gson.toJson(checkpoint.getIterations()));
+      assignments.add("replay_checkpoint_ts_millis = ?");
+      params.add(
+          checkpoint.getExecutionCheckpoint() != null
+              ? checkpoint.getExecutionCheckpoint().toEpochMilli()
+              : null);
+    } else if (mutation.getNextRunArgs() != null) {
+      // The checkpoint points into the history of the previous run
+      assignments.add("replay_iterations = NULL");
+      assignments.add("replay_checkpoint_ts_millis = NULL");
+    }
+    if (mutation.getNextRunArgs() != null) {
+      ValidationUtils.require(mutation.getNextRunStartTime() != null)
+          .orFail("nextRunStartTime must be provided along with nextRunArgs");
+      assignments.add("initial_args = ?");
+      params.add(
+          gson.toJson(
+              mutation.getNextRunArgs(),
+              TypeToken.getParameterized(List.class, Anything.class).getType()));
+      assignments.add("result = NULL");
+      assignments.add("run_number = run_number + 1");
+      assignments.add("run_start_ts_millis = ?");
+      params.add(mutation.getNextRunStartTime().toEpochMilli());
     }
-    String assignments =
-        fieldsToUpdate.keySet().stream().map(key -> key + " = ?").collect(Collectors.joining(","));
     val sql =
         "UPDATE workflow_instances SET "
-            + assignments
+            + String.join(",", assignments)
             + ", version = version + 1 "
             + "WHERE id = ? AND version = ?";
     int updatedRows;
@@ -206,14 +422,23 @@ public class MySqlWorkflowInstanceStore implements WorkflowInstanceStore {
           this.transactionManager.execute(
               conn -> {
                 try {
+                  // Only a transition into a terminal status is a completion. The version check of
+                  // the update guarantees the status read here is the one being replaced.
+                  val completes =
+                      isTerminal(mutation.getStatus())
+                          && !isTerminal(getStatus(conn, workflowInstanceId, version));
                   try (val ps = conn.prepareStatement(sql)) {
                     int i = 0;
-                    for (val entry : fieldsToUpdate.entrySet()) {
-                      ps.setString(++i, entry.getValue());
+                    for (val param : params) {
+                      ps.setObject(++i, param);
                     }
                     ps.setString(++i, workflowInstanceId);
                     ps.setInt(++i, version);
-                    return ps.executeUpdate();
+                    val rows = ps.executeUpdate();
+                    if (rows > 0 && completes) {
+                      recordCompletion(conn, workflowInstanceId, mutation.getStatus());
+                    }
+                    return rows;
                   }
                 } catch (SQLException e) {
                   throw new StorageError("unexpected mysql error", e);
@@ -228,4 +453,93 @@ public class MySqlWorkflowInstanceStore implements WorkflowInstanceStore {
               + "', probably a caused by an optimistic lock error!");
     }
   }
+
+  private static boolean isTerminal(WorkflowInstance.Status status) {
+    return status != null && (status.isCompleted() || status.isError());
+  }
+
+  /** @return The status of the workflow instance at the given version, null if there is none. */
+  @Nullable
+  private static WorkflowInstance.Status getStatus(
+      Connection conn, String workflowInstanceId, int version) throws SQLException {
+    val sql = "SELECT status FROM workflow_instances WHERE id = ? AND version = ?";
+    try (val ps = conn.prepareStatement(sql)) {
+      ps.setString(1, workflowInstanceId);
+      ps.setInt(2, version);
+      try (val rs = ps.executeQuery()) {
+        return rs.next() ? WorkflowInstance.Status.valueOf(rs.getString("status")) : null;
+      }
+    }
+  }
+
+  private void recordCompletion(
+      Connection conn, String workflowInstanceId, WorkflowInstance.Status status)
+      throws SQLException {
+    val sql =
+        "INSERT INTO workflow_completions (workflow_instance_id, status, completion_ts_millis) "
+            + "VALUES (?, ?, ?)";
+    try (val ps = conn.prepareStatement(sql)) {
+      ps.setString(1, workflowInstanceId);
+      ps.setString(2, status.name());
+      ps.setLong(3, clock.millis());
+      ps.executeUpdate();
+    }
+  }
+
+  @Override
+  public List<WorkflowCompletion> getCompletionsAfter(long sequence, int limit) {
+    val sql =
+        "SELECT seq, workflow_instance_id, status, completion_ts_millis FROM workflow_completions "
+            + "WHERE seq > ? ORDER BY seq LIMIT ?";
+    return this.transactionManager.execute(
+        conn -> {
+          try (val ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, sequence);
+            ps.setInt(2, limit);
+            val rs = ps.executeQuery();
+            List<WorkflowCompletion> completions = new ArrayList<>();
+            while (rs.next()) {
+              completions.add(
+                  WorkflowCompletion.builder()
+                      .sequence(rs.getLong("seq"))
+                      .workflowInstanceId(rs.getString("workflow_instance_id"))
+                      .status(WorkflowInstance.Status.valueOf(rs.getString("status")))
+                      .completionTime(Instant.ofEpochMilli(rs.getLong("completion_ts_millis")))
+                      .build());
+            }
+            return completions;
+          } catch (SQLException e) {
+            throw new StorageError("unexpected mysql error", e);
+          }
+        });
+  }
+
+  @Override
+  public long getLatestCompletionSequence() {
+    val sql = "SELECT COALESCE(MAX(seq), 0) AS seq FROM workflow_completions";
+    return this.transactionManager.execute(
+        conn -> {
+          try (val ps = conn.prepareStatement(sql)) {
+            val rs = ps.executeQuery();
+            rs.next();
+            return rs.getLong("seq");
+          } catch (SQLException e) {
+            throw new StorageError("unexpected mysql error", e);
+          }
+        });
+  }
+
+  @Override
+  public int deleteCompletionsBefore(@NonNull Instant before) {
+    val sql = "DELETE FROM workflow_completions WHERE completion_ts_millis < ?";
+    return this.transactionManager.execute(
+        conn -> {
+          try (val ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, before.toEpochMilli());
+            return ps.executeUpdate();
+          } catch (SQLException e) {
+            throw new StorageError("unexpected mysql error", e);
+          }
+        });
+  }
 }
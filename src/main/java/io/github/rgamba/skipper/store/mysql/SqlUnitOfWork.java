@@ -0,0 +1,22 @@
+package io.github.rgamba.skipper.store.mysql;
+
+import com.google.inject.Inject;
+import io.github.rgamba.skipper.store.SqlTransactionManager;
+import io.github.rgamba.skipper.store.UnitOfWork;
+import java.util.function.Supplier;
+import lombok.NonNull;
+
+/** Runs the unit of work in a single transaction, which the MySQL stores join. */
+public class SqlUnitOfWork implements UnitOfWork {
+  private final SqlTransactionManager transactionManager;
+
+  @Inject
+  public SqlUnitOfWork(@NonNull SqlTransactionManager transactionManager) {
+    this.transactionManager = transactionManager;
+  }
+
+  @Override
+  public <T> T execute(@NonNull Supplier<T> work) {
+    return transactionManager.execute(conn -> work.get());
+  }
+}
@@ -0,0 +1,20 @@
+package io.github.rgamba.skipper.store.mysql;
+
+import java.util.Collections;
+
+final class SqlUtils {
+  private SqlUtils() {}
+
+  /**
+   * Builds a list of JDBC placeholders to be used on IN clauses, e.g. {@code ?, ?, ?}.
+   *
+   * @param count The number of placeholders, must be greater than zero
+   * @return The comma separated placeholders
+   */
+  static String placeholders(int count) {
+    if (count < 1) {
+      throw new IllegalArgumentException("placeholder count must be greater than zero");
+    }
+    return String.join(", ", Collections.nCopies(count, "?"));
+  }
+}
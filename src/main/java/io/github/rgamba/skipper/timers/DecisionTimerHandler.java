@@ -17,4 +17,10 @@ public class DecisionTimerHandler implements TimerHandler {
     logger.info("processing decision request for workflowId={}", workflowInstanceId);
     engine.processDecision(workflowInstanceId);
   }
+
+  @Override
+  public String getAffinityKey(Object payload) {
+    // The payload is the workflow instance ID
+    return payload instanceof String ? (String) payload : null;
+  }
 }
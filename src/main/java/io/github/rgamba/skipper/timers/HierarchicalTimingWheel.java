@@ -0,0 +1,170 @@
+package io.github.rgamba.skipper.timers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import lombok.NonNull;
+
+/**
+ * Hierarchical timing wheel used to fire in-memory timers at their due time.
+ *
+ * <p>The lowest level has {@code wheelSize} buckets of {@code tick} each. Items that are due beyond
+ * the span of a level are placed on a coarser overflow level, which is created lazily and has a
+ * tick equal to the full span of the level below. When a coarse bucket expires its items are
+ * re-inserted and cascade down to the finer levels until they are due. Only non-empty buckets are
+ * tracked in a priority queue, so finding the next deadline doesn't require ticking through empty
+ * slots.
+ *
+ * <p>This class is not thread-safe, callers are expected to synchronize the access.
+ *
+ * @param <T> The type of the items scheduled in the wheel
+ */
+public class HierarchicalTimingWheel<T> {
+  private final Level root;
+  private final PriorityQueue<Bucket> pendingBuckets =
+      new PriorityQueue<>(Comparator.comparingLong(b -> b.expiration));
+  private int size = 0;
+
+  public HierarchicalTimingWheel(@NonNull Duration tick, int wheelSize, long startMillis) {
+    if (tick.toMillis() < 1) {
+      throw new IllegalArgumentException("tick must be at least one millisecond");
+    }
+    if (wheelSize < 2) {
+      throw new IllegalArgumentException("wheelSize must be at least 2");
+    }
+    this.root = new Level(tick.toMillis(), wheelSize, startMillis);
+  }
+
+  /**
+   * Schedule an item on the wheel.
+   *
+   * @param item The item to schedule
+   * @param deadlineMillis The epoch millis at which the item is due
+   * @return false if the deadline is behind the wheel clock and the item was not added, in which
+   *     case the caller is expected to process it right away
+   */
+  public boolean add(@NonNull T item, long deadlineMillis) {
+    if (!root.add(new Entry<>(item, deadlineMillis))) {
+      return false;
+    }
+    size++;
+    return true;
+  }
+
+  /**
+   * Advance the wheel up to the given time.
+   *
+   * @param nowMillis The current epoch millis
+   * @return The items that became due, in no particular order
+   */
+  public List<T> advance(long nowMillis) {
+    List<T> due = new ArrayList<>();
+    while (!pendingBuckets.isEmpty() && pendingBuckets.peek().expiration <= nowMillis) {
+      Bucket bucket = pendingBuckets.poll();
+      root.advanceClock(bucket.expiration);
+      for (Entry<T> entry : bucket.flush()) {
+        if (entry.deadline <= nowMillis || !root.add(entry)) {
+          due.add(entry.item);
+          size--;
+        }
+      }
+    }
+    root.advanceClock(nowMillis);
+    return due;
+  }
+
+  /**
+   * @return The epoch millis at which {@link #advance(long)} should be called next, or {@link
+   *     Long#MAX_VALUE} if the wheel is empty.
+   */
+  public long nextDeadline() {
+    Bucket next = pendingBuckets.peek();
+    return next == null ? Long.MAX_VALUE : next.expiration;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  private static class Entry<T> {
+    final T item;
+    final long deadline;
+
+    Entry(T item, long deadline) {
+      this.item = item;
+      this.deadline = deadline;
+    }
+  }
+
+  private class Bucket {
+    long expiration = -1;
+    List<Entry<T>> entries = new ArrayList<>();
+
+    List<Entry<T>> flush() {
+      List<Entry<T>> result = entries;
+      entries = new ArrayList<>();
+      expiration = -1;
+      return result;
+    }
+  }
+
+  private class Level {
+    final long tick;
+    final int wheelSize;
+    final long interval;
+    final List<Bucket> buckets;
+    long currentTime;
+    Level overflow;
+
+    Level(long tick, int wheelSize, long startMillis) {
+      this.tick = tick;
+      this.wheelSize = wheelSize;
+      this.interval = tick * wheelSize;
+      this.currentTime = startMillis - (startMillis % tick);
+      this.buckets = new ArrayList<>(wheelSize);
+      for (int i = 0; i < wheelSize; i++) {
+        buckets.add(new Bucket());
+      }
+    }
+
+    boolean add(Entry<T> entry) {
+      if (entry.deadline < currentTime) {
+        return false;
+      }
+      if (entry.deadline < currentTime + interval) {
+        long virtualId = entry.deadline / tick;
+        Bucket bucket = buckets.get((int) (virtualId % wheelSize));
+        bucket.entries.add(entry);
+        // Overflow buckets expire at the start of their range so that their items can cascade down
+        // to the finer levels, while the root buckets expire at the end of their tick so that
+        // items are never fired before they are due.
+        long expiration = this == root ? virtualId * tick + tick - 1 : virtualId * tick;
+        if (bucket.expiration != expiration) {
+          // The bucket was either empty or already flushed for a previous round of the wheel
+          bucket.expiration = expiration;
+          pendingBuckets.add(bucket);
+        }
+        return true;
+      }
+      if (overflow == null) {
+        overflow = new Level(interval, wheelSize, currentTime);
+      }
+      return overflow.add(entry);
+    }
+
+    void advanceClock(long timeMillis) {
+      if (timeMillis >= currentTime + tick) {
+        currentTime = timeMillis - (timeMillis % tick);
+        if (overflow != null) {
+          overflow.advanceClock(currentTime);
+        }
+      }
+    }
+  }
+}
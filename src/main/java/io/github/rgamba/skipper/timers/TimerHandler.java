@@ -1,8 +1,23 @@
 package io.github.rgamba.skipper.timers;
 
 import io.github.rgamba.skipper.SkipperEngine;
+import javax.annotation.Nullable;
 import lombok.NonNull;
 
 public interface TimerHandler {
   void process(Object payload, @NonNull SkipperEngine engine);
+
+  /**
+   * Timers that return the same affinity key are processed serially, in the order they are
+   * dispatched. This is used to avoid processing concurrent timers that mutate the same workflow
+   * instance.
+   *
+   * @param payload The timer payload
+   * @return The affinity key (usually the workflow instance ID), or null if the timer can be
+   *     processed concurrently with any other timer.
+   */
+  @Nullable
+  default String getAffinityKey(Object payload) {
+    return null;
+  }
 }
@@ -11,4 +11,10 @@ public class WorkflowInstanceCallbackTimerHandler implements TimerHandler {
         .orFail("payload '%s' must be a string", payload);
     engine.executeWorkflowInstanceCallback((String) payload);
   }
+
+  @Override
+  public String getAffinityKey(Object payload) {
+    // The payload is the workflow instance ID
+    return payload instanceof String ? (String) payload : null;
+  }
 }
@@ -0,0 +1,10 @@
+-- Feed of the workflow instances that reached a terminal status, followed by the nodes waiting on
+-- them instead of polling the workflow instances.
+CREATE TABLE `workflow_completions` (
+    `seq` bigint NOT NULL AUTO_INCREMENT,
+    `workflow_instance_id` varchar(100) NOT NULL,
+    `status` varchar(50) NOT NULL,
+    `completion_ts_millis` bigint NOT NULL,
+    PRIMARY KEY (`seq`),
+    KEY `completion_ts` (`completion_ts_millis`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb3;
@@ -0,0 +1,4 @@
+-- Timers created without a timeout are stored as due at 0, keep track of when they were enqueued
+-- so that the backlog age can be computed from when they actually became due.
+ALTER TABLE timers ADD COLUMN enqueued_ts_millis bigint NOT NULL DEFAULT '0';
+UPDATE timers SET enqueued_ts_millis = FLOOR(UNIX_TIMESTAMP(NOW(3)) * 1000) WHERE timeout_ts_millis = 0;
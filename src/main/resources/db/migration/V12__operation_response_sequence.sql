@@ -0,0 +1,11 @@
+-- Per workflow instance sequence of the operation responses. The responses of a workflow instance
+-- are numbered while holding the lock of its sequence row, so they become visible in sequence
+-- order and a reader can fetch only the responses after the latest sequence it has seen.
+CREATE TABLE `operation_response_sequences` (
+    `workflow_instance_id` varchar(100) NOT NULL,
+    `seq` bigint NOT NULL,
+    PRIMARY KEY (`workflow_instance_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb3;
+ALTER TABLE operation_responses
+    ADD COLUMN seq bigint NOT NULL DEFAULT '0',
+    ADD KEY `workflow_instance_seq` (`workflow_instance_id`, `seq`);
@@ -0,0 +1,28 @@
+ALTER TABLE timers ADD COLUMN partition_id int NOT NULL DEFAULT 0;
+-- Must match Timer.partitionOf(), which uses CRC32 over Timer.PARTITION_COUNT (64) partitions.
+UPDATE timers SET partition_id = CRC32(id) % 64;
+ALTER TABLE timers ADD KEY `partition_timeout` (`partition_id`, `timeout_ts_millis`);
+
+CREATE TABLE `timer_partition_leases` (
+    `partition_id` int NOT NULL,
+    `owner` varchar(100) DEFAULT NULL,
+    `lease_expiration_ts_millis` bigint NOT NULL DEFAULT '0',
+    PRIMARY KEY (`partition_id`),
+    KEY `owner` (`owner`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb3;
+
+-- One row per partition, 0 to 63. Built without WITH RECURSIVE, which MySQL 5.7 doesn't support.
+INSERT INTO timer_partition_leases (partition_id)
+    SELECT high.n * 8 + low.n FROM
+        (SELECT 0 AS n UNION ALL SELECT 1 UNION ALL SELECT 2 UNION ALL SELECT 3
+            UNION ALL SELECT 4 UNION ALL SELECT 5 UNION ALL SELECT 6 UNION ALL SELECT 7) AS low
+        CROSS JOIN
+        (SELECT 0 AS n UNION ALL SELECT 1 UNION ALL SELECT 2 UNION ALL SELECT 3
+            UNION ALL SELECT 4 UNION ALL SELECT 5 UNION ALL SELECT 6 UNION ALL SELECT 7) AS high;
+
+CREATE TABLE `timer_processor_nodes` (
+    `node_id` varchar(100) NOT NULL,
+    `heartbeat_ts_millis` bigint NOT NULL,
+    PRIMARY KEY (`node_id`),
+    KEY `heartbeat` (`heartbeat_ts_millis`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb3;
@@ -0,0 +1,6 @@
+-- Timers are claimed by stamping them with an owner token and a lease deadline instead of
+-- pushing timeout_ts_millis forward, so the original timeout is preserved.
+ALTER TABLE timers
+    ADD COLUMN lease_owner varchar(100) DEFAULT NULL,
+    ADD COLUMN lease_expiration_ts_millis bigint NOT NULL DEFAULT '0',
+    ADD KEY `lease_owner` (`lease_owner`);
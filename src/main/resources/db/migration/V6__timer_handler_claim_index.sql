@@ -0,0 +1,2 @@
+-- Timers are claimed per handler class, so each handler worker pool can fill its own quota.
+ALTER TABLE timers ADD KEY `handler_partition_timeout` (`handler_clazz`, `partition_id`, `timeout_ts_millis`);
@@ -0,0 +1,11 @@
+CREATE TABLE `timers_dead_letter` (
+    `id` varchar(100) NOT NULL,
+    `timeout_ts_millis` bigint DEFAULT NULL,
+    `handler_clazz` varchar(255) DEFAULT NULL,
+    `payload` json DEFAULT NULL,
+    `retries` int DEFAULT '0',
+    `last_error` text DEFAULT NULL,
+    `quarantined_ts_millis` bigint NOT NULL,
+    PRIMARY KEY (`id`),
+    KEY `quarantined` (`quarantined_ts_millis`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb3;
@@ -0,0 +1,38 @@
+-- Workflow instances can continue as new, which starts a new run and archives the history of the
+-- previous one.
+ALTER TABLE workflow_instances
+    ADD COLUMN run_number int NOT NULL DEFAULT '0',
+    ADD COLUMN run_start_ts_millis bigint DEFAULT NULL;
+
+CREATE TABLE `operation_requests_archive` (
+    `id` varchar(255) NOT NULL,
+    `run_number` int NOT NULL,
+    `workflow_instance_id` varchar(100) NOT NULL,
+    `operation_type` varchar(255) NOT NULL,
+    `iteration` int NOT NULL,
+    `creation_time` datetime DEFAULT NULL,
+    `arguments` json DEFAULT NULL,
+    `retry_strategy` json DEFAULT NULL,
+    `timeout_secs` bigint DEFAULT NULL,
+    `failed_attempts` int DEFAULT '0',
+    PRIMARY KEY (`id`),
+    KEY `workflow_instance_run` (`workflow_instance_id`, `run_number`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb3;
+
+CREATE TABLE `operation_responses_archive` (
+    `id` varchar(255) NOT NULL,
+    `run_number` int NOT NULL,
+    `workflow_instance_id` varchar(100) NOT NULL,
+    `operation_type` varchar(255) NOT NULL,
+    `iteration` int NOT NULL,
+    `creation_time_millis` bigint DEFAULT NULL,
+    `is_success` tinyint(1) NOT NULL,
+    `is_transient` tinyint(1) NOT NULL,
+    `operation_request_id` varchar(255) NOT NULL,
+    `result` json DEFAULT NULL,
+    `error` json DEFAULT NULL,
+    `execution_duration_millis` bigint DEFAULT NULL,
+    `child_workflow_instance_id` varchar(100) DEFAULT NULL,
+    PRIMARY KEY (`id`),
+    KEY `workflow_instance_run` (`workflow_instance_id`, `run_number`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb3;
@@ -0,0 +1,4 @@
+-- Resumable workflows record where their next decision resumes from in the history.
+ALTER TABLE workflow_instances
+    ADD COLUMN replay_iterations json DEFAULT NULL,
+    ADD COLUMN replay_checkpoint_ts_millis bigint DEFAULT NULL;
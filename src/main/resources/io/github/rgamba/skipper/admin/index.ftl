@@ -377,7 +377,7 @@ Workflow detail view
                         <a href="#" onclick="navigateToWorkflow('{{response.childWorkflowInstanceId}}'); return false;">View workflow</a>
                         {{else}}
                         {{#if_eq request.operationType.clazzType 'WORKFLOW'}}
-                        <a href="#" onclick="view_workflow_by_correlation_id('{{request.operationRequestId}}');">View workflow</a>
+                        <a href="#" onclick="view_workflow_by_correlation_id('{{request.operationRequestId}}', '{{request.operationType.clazz}}');">View workflow</a>
                         {{else}}
                         <a href="#" onclick="show_data('Operation input', '{{to_json request.arguments}}');return false">View input</a>
                         {{/if_eq}}
@@ -493,8 +493,8 @@ Workflow detail view
         view_workflow_internal("/admin/workflow-instances/" + id)
     }
 
-    function view_workflow_by_correlation_id(id) {
-        view_workflow_internal("/admin/workflow-instances/by-correlation-id/" + id)
+    function view_workflow_by_correlation_id(id, workflow_type) {
+        view_workflow_internal("/admin/workflow-instances/by-correlation-id/" + id + "?workflowType=" + encodeURIComponent(workflow_type))
     }
 
     /**
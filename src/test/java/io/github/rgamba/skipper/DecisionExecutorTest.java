@@ -5,22 +5,29 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import io.github.rgamba.skipper.api.Control;
 import io.github.rgamba.skipper.api.DecisionRequest;
 import io.github.rgamba.skipper.api.SkipperWorkflow;
+import io.github.rgamba.skipper.api.annotations.ResumableWorkflow;
 import io.github.rgamba.skipper.api.annotations.StateField;
 import io.github.rgamba.skipper.api.annotations.WorkflowMethod;
 import io.github.rgamba.skipper.common.Anything;
 import io.github.rgamba.skipper.models.*;
+import io.github.rgamba.skipper.runtime.DecisionThread;
 import io.github.rgamba.skipper.runtime.StopWorkflowExecution;
+import io.github.rgamba.skipper.runtime.WorkflowContext;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import lombok.Value;
 import lombok.val;
 import lombok.var;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -46,6 +53,11 @@ public class DecisionExecutorTest {
           .operationResponses(new ArrayList<>())
           .build();
 
+  @After
+  public void tearDown() {
+    DecisionThread.clear();
+  }
+
   @Before
   public void setUp() {
     executor = new DecisionExecutor();
@@ -220,6 +232,81 @@ public class DecisionExecutorTest {
     assertEquals(WorkflowInstance.Status.ACTIVE, result.getNewStatus());
   }
 
+  @Test
+  public void testExecuteWhenDecisionContinuesAsNew() {
+    when(registry.getWorkflow(eq(ContinuesAsNew.class))).thenReturn(new ContinuesAsNew());
+    val args = new ArrayList<Anything>();
+    args.add(Anything.of(2));
+    var req =
+        DECISION_REQUEST
+            .toBuilder()
+            .workflowInstance(
+                TEST_WORKFLOW_INSTANCE
+                    .toBuilder()
+                    .workflowType(new WorkflowType(ContinuesAsNew.class))
+                    .initialArgs(args)
+                    .build())
+            .build();
+    var result = executor.execute(req, registry);
+    assertEquals(WorkflowInstance.Status.ACTIVE, result.getNewStatus());
+    assertTrue(result.getOperationRequests().isEmpty());
+    assertEquals(1, result.getContinueAsNewArgs().size());
+    assertEquals(1, result.getContinueAsNewArgs().get(0).getValue());
+    assertEquals(2, result.getNewState().get("total").getValue());
+    assertEquals(Collections.singleton("total"), result.getChangedStateFields());
+  }
+
+  @Test
+  public void testResumableWorkflowResumesFromTheReplayCheckpoint() {
+    when(registry.getWorkflow(eq(StepWorkflow.class))).thenAnswer(invocation -> new StepWorkflow());
+    val responses = new ArrayList<OperationResponse>();
+    responses.add(greetResponse(0, "r0"));
+    DecisionThread.setWorkflowContext(
+        new WorkflowContext(TEST_WORKFLOW_ID, Instant.MIN, responses, Instant.MIN));
+    val instance =
+        TEST_WORKFLOW_INSTANCE
+            .toBuilder()
+            .workflowType(new WorkflowType(StepWorkflow.class))
+            .build();
+    val first =
+        executor.execute(DECISION_REQUEST.toBuilder().workflowInstance(instance).build(), registry);
+    assertEquals(WorkflowInstance.Status.ACTIVE, first.getNewStatus());
+    assertEquals(1, first.getReplayCheckpoint().getIteration(Greeter.class, "greet"));
+
+    // The next decision only gets the responses after the checkpoint
+    val newResponses = new ArrayList<OperationResponse>();
+    newResponses.add(greetResponse(1, "r1"));
+    DecisionThread.setWorkflowContext(
+        new WorkflowContext(TEST_WORKFLOW_ID, Instant.MIN, newResponses, Instant.MIN));
+    val resumed =
+        instance
+            .toBuilder()
+            .state(first.getNewState())
+            .replayCheckpoint(first.getReplayCheckpoint())
+            .build();
+    val second =
+        executor.execute(DECISION_REQUEST.toBuilder().workflowInstance(resumed).build(), registry);
+    assertEquals(WorkflowInstance.Status.ACTIVE, second.getNewStatus());
+    assertEquals(1, second.getOperationRequests().size());
+    assertEquals(2, second.getOperationRequests().get(0).getIteration());
+    assertEquals(2, second.getReplayCheckpoint().getIteration(Greeter.class, "greet"));
+    assertEquals(Arrays.asList("r0", "r1"), second.getNewState().get("greetings").getValue());
+  }
+
+  private static OperationResponse greetResponse(int iteration, String result) {
+    return OperationResponse.builder()
+        .id("res" + iteration)
+        .operationRequestId("req" + iteration)
+        .workflowInstanceId(TEST_WORKFLOW_ID)
+        .operationType(new OperationType(Greeter.class, "greet"))
+        .iteration(iteration)
+        .creationTime(Instant.MIN)
+        .isSuccess(true)
+        .isTransient(false)
+        .result(Anything.of(result))
+        .build();
+  }
+
   @Test
   public void testExecuteWhenDecisionThrowsUnexpectedException() {
     when(registry.getWorkflow(eq(ThrowsUnexpected.class))).thenReturn(new ThrowsUnexpected());
@@ -295,6 +382,40 @@ public class DecisionExecutorTest {
     }
   }
 
+  private static class ContinuesAsNew implements SkipperWorkflow {
+    @StateField Integer total = 0;
+
+    @WorkflowMethod
+    public Integer test(Integer remaining) {
+      if (remaining == 0) {
+        return total;
+      }
+      total += remaining;
+      return Control.continueAsNew(remaining - 1);
+    }
+  }
+
+  public static class Greeter {
+    public String greet(String name) {
+      return "hello " + name;
+    }
+  }
+
+  @ResumableWorkflow
+  private static class StepWorkflow implements SkipperWorkflow {
+    private final Greeter greeter = OperationProxyFactory.create(Greeter.class);
+    @StateField Integer step = 0;
+    @StateField ArrayList<String> greetings = new ArrayList<>();
+
+    @WorkflowMethod
+    public void test() {
+      while (step < 3) {
+        greetings.add(greeter.greet("step " + step));
+        step++;
+      }
+    }
+  }
+
   private static class ThrowsUnexpected implements SkipperWorkflow {
     @WorkflowMethod
     public void test() {
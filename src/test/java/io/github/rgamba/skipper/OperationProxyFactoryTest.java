@@ -0,0 +1,52 @@
+package io.github.rgamba.skipper;
+
+import static org.junit.Assert.*;
+
+import io.github.rgamba.skipper.api.OperationConfig;
+import io.github.rgamba.skipper.models.FixedRetryStrategy;
+import io.github.rgamba.skipper.runtime.DecisionThread;
+import io.github.rgamba.skipper.runtime.StopWorkflowExecution;
+import io.github.rgamba.skipper.runtime.WorkflowContext;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import lombok.val;
+import net.jcip.annotations.NotThreadSafe;
+import org.junit.After;
+import org.junit.Test;
+
+@NotThreadSafe
+public class OperationProxyFactoryTest {
+  public static class Greeter {
+    public String greet(String name) {
+      return "hello " + name;
+    }
+  }
+
+  @After
+  public void tearDown() {
+    DecisionThread.clear();
+  }
+
+  @Test
+  public void testProxyClassIsReusedWithFreshHandlers() {
+    DecisionThread.setWorkflowContext(
+        new WorkflowContext("wf123", Instant.MIN, new ArrayList<>(), Instant.MIN));
+    val first =
+        FixedRetryStrategy.builder().retryDelay(Duration.ofSeconds(1)).maxRetries(1).build();
+    val second =
+        FixedRetryStrategy.builder().retryDelay(Duration.ofSeconds(2)).maxRetries(2).build();
+    val proxy1 =
+        OperationProxyFactory.create(
+            Greeter.class, OperationConfig.builder().retryStrategy(first).build());
+    val proxy2 =
+        OperationProxyFactory.create(
+            Greeter.class, OperationConfig.builder().retryStrategy(second).build());
+
+    assertSame(proxy1.getClass(), proxy2.getClass());
+    val e1 = assertThrows(StopWorkflowExecution.class, () -> proxy1.greet("foo"));
+    assertEquals(first, e1.getOperationRequests().get(0).getRetryStrategy());
+    val e2 = assertThrows(StopWorkflowExecution.class, () -> proxy2.greet("foo"));
+    assertEquals(second, e2.getOperationRequests().get(0).getRetryStrategy());
+  }
+}
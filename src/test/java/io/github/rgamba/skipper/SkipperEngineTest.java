@@ -5,11 +5,13 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 import io.github.rgamba.skipper.api.*;
+import io.github.rgamba.skipper.api.annotations.ResumableWorkflow;
 import io.github.rgamba.skipper.common.Anything;
 import io.github.rgamba.skipper.models.*;
 import io.github.rgamba.skipper.runtime.DecisionThread;
 import io.github.rgamba.skipper.store.OperationStore;
 import io.github.rgamba.skipper.store.TimerStore;
+import io.github.rgamba.skipper.store.UnitOfWork;
 import io.github.rgamba.skipper.store.WorkflowInstanceStore;
 import io.github.rgamba.skipper.timers.DecisionTimerHandler;
 import io.github.rgamba.skipper.timers.OperationRequestTimerHandler;
@@ -18,7 +20,16 @@ import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import lombok.NonNull;
 import lombok.val;
 import net.jcip.annotations.NotThreadSafe;
 import org.junit.Before;
@@ -88,6 +99,245 @@ public class SkipperEngineTest {
     assertEquals(DecisionTimerHandler.class, captor.getValue().getHandlerClazz());
   }
 
+  @Test
+  public void testCreateWorkflowInstanceWithEagerDecision() {
+    // given
+    when(timerStore.createOrUpdate(any()))
+        .thenAnswer(inv -> ((Timer) inv.getArgument(0)).toBuilder().version(1).build());
+    val decisionResponse =
+        DecisionResponse.builder()
+            .operationRequests(new ArrayList<>())
+            .newStatus(WorkflowInstance.Status.COMPLETED)
+            .newState(new HashMap<>())
+            .inlineExecutions(new ArrayList<>())
+            .build();
+    when(decisionExecutor.execute(any(), any())).thenReturn(decisionResponse);
+    val req =
+        WorkflowCreationRequest.builder()
+            .workflowType(new WorkflowType(SkipperWorkflow.class))
+            .arguments(new ArrayList<>())
+            .correlationId("test123")
+            .eagerDecisionBudget(Duration.ofSeconds(1))
+            .build();
+    // when
+    val response = engine.createWorkflowInstance(req);
+    // then the decision runs right away, bounded by the budget
+    val deadline = clock.instant().plus(Duration.ofSeconds(1));
+    ArgumentCaptor<DecisionRequest> requestCaptor = ArgumentCaptor.forClass(DecisionRequest.class);
+    verify(decisionExecutor, times(1)).execute(requestCaptor.capture(), any());
+    assertEquals(response.getWorkflowInstance(), requestCaptor.getValue().getWorkflowInstance());
+    assertEquals(deadline, requestCaptor.getValue().getDeadline());
+    verify(workflowInstanceStore, never()).get(any());
+    // and the fallback timer, which only becomes due after the budget, is removed
+    ArgumentCaptor<Timer> timerCaptor = ArgumentCaptor.forClass(Timer.class);
+    verify(timerStore, times(1)).createOrUpdate(timerCaptor.capture());
+    assertEquals(DecisionTimerHandler.class, timerCaptor.getValue().getHandlerClazz());
+    assertEquals(deadline, timerCaptor.getValue().getTimeout());
+    verify(timerStore, times(1)).delete(eq(timerCaptor.getValue().toBuilder().version(1).build()));
+  }
+
+  @Test
+  public void testEagerDecisionDoesNotLeaveTheDecisionStateOnTheCallerThread() {
+    // given a caller thread without decision state
+    DecisionThread.clear();
+    // and a decision that binds the thread to the workflow, like the decision executor does
+    when(timerStore.createOrUpdate(any()))
+        .thenAnswer(inv -> ((Timer) inv.getArgument(0)).toBuilder().version(1).build());
+    when(decisionExecutor.execute(any(), any()))
+        .thenAnswer(
+            inv -> {
+              DecisionRequest request = inv.getArgument(0);
+              DecisionThread.contextSetter()
+                  .workflowInstance(request.getWorkflowInstance())
+                  .currentTime(Instant.MIN)
+                  .operationResponses(new ArrayList<>())
+                  .set();
+              DecisionThread.setLatestCurrentExecutionCheckpoint(Instant.MIN);
+              DecisionThread.startReplayTracking(null);
+              return DecisionResponse.builder()
+                  .operationRequests(new ArrayList<>())
+                  .newStatus(WorkflowInstance.Status.COMPLETED)
+                  .newState(new HashMap<>())
+                  .inlineExecutions(new ArrayList<>())
+                  .build();
+            });
+    val req =
+        WorkflowCreationRequest.builder()
+            .workflowType(new WorkflowType(SkipperWorkflow.class))
+            .arguments(new ArrayList<>())
+            .correlationId("test123")
+            .eagerDecisionBudget(Duration.ofSeconds(1))
+            .build();
+    // when
+    engine.createWorkflowInstance(req);
+    // then
+    verify(decisionExecutor, times(1)).execute(any(), any());
+    assertThrows(IllegalStateException.class, DecisionThread::getWorkflowContext);
+    assertFalse(DecisionThread.getLatestCurrentExecutionCheckpoint().isPresent());
+    assertFalse(DecisionThread.getReplayTracker().isPresent());
+  }
+
+  @Test
+  public void testCreateWorkflowInstanceWhenEagerDecisionFails() {
+    // given
+    when(timerStore.createOrUpdate(any()))
+        .thenAnswer(inv -> ((Timer) inv.getArgument(0)).toBuilder().version(1).build());
+    when(decisionExecutor.execute(any(), any())).thenThrow(new IllegalStateException("boom"));
+    val req =
+        WorkflowCreationRequest.builder()
+            .workflowType(new WorkflowType(SkipperWorkflow.class))
+            .arguments(new ArrayList<>())
+            .correlationId("test123")
+            .eagerDecisionBudget(Duration.ofSeconds(1))
+            .build();
+    // when
+    engine.createWorkflowInstance(req);
+    // then the decision is handed over to the pollers right away
+    ArgumentCaptor<Timer> timerCaptor = ArgumentCaptor.forClass(Timer.class);
+    verify(timerStore, times(2)).createOrUpdate(timerCaptor.capture());
+    assertNull(timerCaptor.getAllValues().get(1).getTimeout());
+    verify(timerStore, never()).delete(any());
+  }
+
+  @Test
+  public void testCreateWorkflowInstancesInChunks() {
+    // given
+    engine =
+        new SkipperEngine(
+            clock,
+            workflowInstanceStore,
+            operationStore,
+            timerStore,
+            decisionExecutor,
+            operationExecutor,
+            registry,
+            SkipperEngineConfig.builder().bulkCreationChunkSize(2).build());
+    when(workflowInstanceStore.createAll(any()))
+        .thenAnswer(
+            inv ->
+                ((List<WorkflowInstance>) inv.getArgument(0))
+                    .stream()
+                        .filter(instance -> !instance.getCorrelationId().equals("taken"))
+                        .map(WorkflowInstance::getId)
+                        .collect(Collectors.toSet()));
+    val reqs = new ArrayList<WorkflowCreationRequest>();
+    for (val correlationId : Arrays.asList("a", "taken", "b")) {
+      reqs.add(
+          WorkflowCreationRequest.builder()
+              .workflowType(new WorkflowType(SkipperWorkflow.class))
+              .arguments(new ArrayList<>())
+              .correlationId(correlationId)
+              .build());
+    }
+    // when
+    val results = engine.createWorkflowInstances(reqs);
+    // then
+    verify(workflowInstanceStore, times(2)).createAll(any());
+    verify(workflowInstanceStore, never()).create(any());
+    assertEquals(3, results.size());
+    assertEquals(WorkflowCreationResult.Status.CREATED, results.get(0).getStatus());
+    assertEquals("a", results.get(0).getWorkflowInstance().getCorrelationId());
+    assertEquals(
+        WorkflowCreationResult.Status.DUPLICATE_CORRELATION_ID, results.get(1).getStatus());
+    assertNull(results.get(1).getWorkflowInstance());
+    assertEquals(reqs.get(1), results.get(1).getRequest());
+    assertEquals(WorkflowCreationResult.Status.CREATED, results.get(2).getStatus());
+    // Only the instances created get a decision timer
+    ArgumentCaptor<List<Timer>> timerCaptor = listCaptor();
+    verify(timerStore, times(2)).createOrUpdateAll(timerCaptor.capture());
+    assertEquals(
+        Collections.singletonList(results.get(0).getWorkflowInstance().getId()),
+        timerCaptor.getAllValues().get(0).stream()
+            .map(timer -> timer.getPayload().getValue())
+            .collect(Collectors.toList()));
+    assertEquals(1, timerCaptor.getAllValues().get(1).size());
+  }
+
+  @Test
+  public void testImmediatelyDueTimersAreDispatchedLocally() {
+    // given
+    val dispatcher = mock(LocalTimerDispatcher.class);
+    engine.registerLocalTimerDispatcher(dispatcher);
+    when(timerStore.createOrUpdate(any()))
+        .thenAnswer(inv -> ((Timer) inv.getArgument(0)).toBuilder().version(3).build());
+    val req =
+        WorkflowCreationRequest.builder()
+            .workflowType(new WorkflowType(SkipperWorkflow.class))
+            .arguments(new ArrayList<>())
+            .correlationId("test123")
+            .build();
+    // when
+    engine.createWorkflowInstance(req);
+    // then
+    ArgumentCaptor<Timer> captor = ArgumentCaptor.forClass(Timer.class);
+    verify(dispatcher, times(1)).tryDispatch(captor.capture());
+    assertEquals(DecisionTimerHandler.class, captor.getValue().getHandlerClazz());
+    // The dispatched timer must carry the persisted version so that it can be claimed
+    assertEquals(3, captor.getValue().getVersion());
+  }
+
+  @Test
+  public void testDecisionsAreDebounced() {
+    // given
+    val debouncedEngine =
+        new SkipperEngine(
+            clock,
+            workflowInstanceStore,
+            operationStore,
+            timerStore,
+            decisionExecutor,
+            operationExecutor,
+            registry,
+            SkipperEngineConfig.builder().decisionDebounceWindow(Duration.ofMillis(500)).build());
+    val dispatcher = mock(LocalTimerDispatcher.class);
+    debouncedEngine.registerLocalTimerDispatcher(dispatcher);
+    when(timerStore.createOrCoalesce(any())).thenAnswer(inv -> inv.getArgument(0));
+    when(workflowInstanceStore.get(eq(TEST_WORKFLOW_ID))).thenReturn(TEST_WORKFLOW_INSTANCE);
+    // when an event is delivered to an existing workflow instance
+    debouncedEngine.retryFailedWorkflowInstance(TEST_WORKFLOW_ID);
+    // then
+    ArgumentCaptor<Timer> captor = ArgumentCaptor.forClass(Timer.class);
+    verify(timerStore, times(1)).createOrCoalesce(captor.capture());
+    verify(timerStore, never()).createOrUpdate(any());
+    assertEquals(DecisionTimerHandler.class, captor.getValue().getHandlerClazz());
+    assertEquals(TEST_WORKFLOW_ID, captor.getValue().getPayload().getValue());
+    assertEquals(Instant.MIN.plusMillis(500), captor.getValue().getTimeout());
+    // Debounced decisions wait for the window to close, they are not dispatched right away
+    verify(dispatcher, never()).tryDispatch(any());
+  }
+
+  @Test
+  public void testTheFirstDecisionIsNotDebounced() {
+    // given
+    val debouncedEngine =
+        new SkipperEngine(
+            clock,
+            workflowInstanceStore,
+            operationStore,
+            timerStore,
+            decisionExecutor,
+            operationExecutor,
+            registry,
+            SkipperEngineConfig.builder().decisionDebounceWindow(Duration.ofMillis(500)).build());
+    val dispatcher = mock(LocalTimerDispatcher.class);
+    debouncedEngine.registerLocalTimerDispatcher(dispatcher);
+    when(timerStore.createOrUpdate(any())).thenAnswer(inv -> inv.getArgument(0));
+    val req =
+        WorkflowCreationRequest.builder()
+            .workflowType(new WorkflowType(SkipperWorkflow.class))
+            .arguments(new ArrayList<>())
+            .correlationId("test123")
+            .build();
+    // when
+    debouncedEngine.createWorkflowInstance(req);
+    // then
+    ArgumentCaptor<Timer> captor = ArgumentCaptor.forClass(Timer.class);
+    verify(timerStore, never()).createOrCoalesce(any());
+    verify(timerStore, times(1)).createOrUpdate(captor.capture());
+    assertNull(captor.getValue().getTimeout());
+    verify(dispatcher, times(1)).tryDispatch(any());
+  }
+
   @Test
   public void
       testProcessDecisionWhenOperationResponsesAndStateIsUnchangedOperationRequestIsCreated() {
@@ -121,22 +371,73 @@ public class SkipperEngineTest {
             .inlineExecutions(new ArrayList<>())
             .build();
     when(decisionExecutor.execute(any(), any())).thenReturn(decisionResponse);
-    when(timerStore.createOrUpdate(any())).thenReturn(null);
-    when(operationStore.createOperationRequest(any())).thenReturn(true);
     doNothing().when(workflowInstanceStore).update(any(), any(), anyInt());
     // when
     engine.processDecision(TEST_WORKFLOW_ID);
     // then
     assertEquals(TEST_WORKFLOW_ID, DecisionThread.getWorkflowContext().getWorkflowInstanceId());
-    ArgumentCaptor<OperationRequest> captor = ArgumentCaptor.forClass(OperationRequest.class);
-    verify(operationStore, times(1)).createOperationRequest(captor.capture());
-    assertEquals(operationRequest, captor.getValue());
-    ArgumentCaptor<Timer> timerCaptor = ArgumentCaptor.forClass(Timer.class);
-    verify(timerStore, times(1)).createOrUpdate(timerCaptor.capture());
-    assertEquals(
-        operationRequest.getOperationRequestId(), timerCaptor.getValue().getPayload().getValue());
-    assertEquals(OperationRequestTimerHandler.class, timerCaptor.getValue().getHandlerClazz());
+    ArgumentCaptor<List<OperationRequest>> captor = listCaptor();
+    verify(operationStore, times(1)).createOperationRequests(captor.capture());
+    assertEquals(Collections.singletonList(operationRequest), captor.getValue());
+    ArgumentCaptor<List<Timer>> timerCaptor = listCaptor();
+    verify(timerStore, times(1)).createOrUpdateAll(timerCaptor.capture());
+    assertEquals(1, timerCaptor.getValue().size());
+    val timer = timerCaptor.getValue().get(0);
+    assertEquals(operationRequest.getOperationRequestId(), timer.getPayload().getValue());
+    assertEquals(OperationRequestTimerHandler.class, timer.getHandlerClazz());
     verify(workflowInstanceStore, times(0)).update(eq(TEST_WORKFLOW_ID), any(), anyInt());
+    verify(timerStore, never()).createOrUpdate(any());
+  }
+
+  @Test
+  public void testProcessDecisionCommitsAllWritesBeforeDispatchingTimers() {
+    // given
+    val committed = new AtomicBoolean(false);
+    val unitOfWork =
+        new UnitOfWork() {
+          @Override
+          public <T> T execute(@NonNull Supplier<T> work) {
+            T result = work.get();
+            committed.set(true);
+            return result;
+          }
+        };
+    val transactionalEngine =
+        new SkipperEngine(
+            clock,
+            workflowInstanceStore,
+            operationStore,
+            timerStore,
+            decisionExecutor,
+            operationExecutor,
+            registry,
+            SkipperEngineConfig.defaults(),
+            unitOfWork);
+    val dispatcher = mock(LocalTimerDispatcher.class);
+    transactionalEngine.registerLocalTimerDispatcher(dispatcher);
+    when(dispatcher.tryDispatch(any()))
+        .thenAnswer(
+            inv -> {
+              assertTrue("timers must be dispatched after the commit", committed.get());
+              return true;
+            });
+    when(workflowInstanceStore.get(eq(TEST_WORKFLOW_ID))).thenReturn(TEST_WORKFLOW_INSTANCE);
+    when(operationStore.getOperationResponses(eq(TEST_WORKFLOW_ID), anyBoolean()))
+        .thenReturn(new ArrayList<>());
+    when(decisionExecutor.execute(any(), any()))
+        .thenReturn(
+            DecisionResponse.builder()
+                .operationRequests(new ArrayList<>())
+                .newStatus(WorkflowInstance.Status.COMPLETED)
+                .newState(new HashMap<>())
+                .inlineExecutions(new ArrayList<>())
+                .build());
+    when(timerStore.createOrUpdateAll(any())).thenAnswer(inv -> inv.getArgument(0));
+    // when
+    transactionalEngine.processDecision(TEST_WORKFLOW_ID);
+    // then
+    verify(workflowInstanceStore, times(1)).update(eq(TEST_WORKFLOW_ID), any(), anyInt());
+    verify(dispatcher, times(1)).tryDispatch(any());
   }
 
   @Test
@@ -160,17 +461,18 @@ public class SkipperEngineTest {
             .inlineExecutions(new ArrayList<>())
             .build();
     when(decisionExecutor.execute(any(), any())).thenReturn(decisionResponse);
-    when(timerStore.createOrUpdate(any())).thenReturn(null);
-    when(operationStore.createOperationRequest(any())).thenReturn(true);
     doNothing().when(workflowInstanceStore).update(any(), any(), anyInt());
     // when
     engine.processDecision(TEST_WORKFLOW_ID);
     // then
-    verify(operationStore, times(0)).createOperationRequest(any());
-    ArgumentCaptor<Timer> timerCaptor = ArgumentCaptor.forClass(Timer.class);
-    verify(timerStore, times(1)).createOrUpdate(timerCaptor.capture());
+    verify(operationStore, never()).createOperationRequest(any());
+    verify(operationStore, times(1)).createOperationRequests(eq(Collections.emptyList()));
+    ArgumentCaptor<List<Timer>> timerCaptor = listCaptor();
+    verify(timerStore, times(1)).createOrUpdateAll(timerCaptor.capture());
+    assertEquals(1, timerCaptor.getValue().size());
     assertEquals(
-        WorkflowInstanceCallbackTimerHandler.class, timerCaptor.getValue().getHandlerClazz());
+        WorkflowInstanceCallbackTimerHandler.class,
+        timerCaptor.getValue().get(0).getHandlerClazz());
     ArgumentCaptor<WorkflowInstance.Mutation> mutationArgumentCaptor =
         ArgumentCaptor.forClass(WorkflowInstance.Mutation.class);
     verify(workflowInstanceStore, times(1))
@@ -195,18 +497,230 @@ public class SkipperEngineTest {
             .inlineExecutions(new ArrayList<>())
             .build();
     when(decisionExecutor.execute(any(), any())).thenReturn(decisionResponse);
-    when(timerStore.createOrUpdate(any())).thenReturn(null);
-    when(operationStore.createOperationRequest(any())).thenReturn(true);
     doNothing().when(workflowInstanceStore).update(any(), any(), anyInt());
     // when
     engine.processDecision(TEST_WORKFLOW_ID);
     // then
-    verify(operationStore, times(0)).createOperationRequest(any());
-    ArgumentCaptor<Timer> timerCaptor = ArgumentCaptor.forClass(Timer.class);
-    verify(timerStore, times(1)).createOrUpdate(timerCaptor.capture());
-    assertEquals(DecisionTimerHandler.class, timerCaptor.getValue().getHandlerClazz());
-    assertEquals(TEST_WORKFLOW_ID, timerCaptor.getValue().getPayload().getValue());
-    assertEquals(clock.instant().plus(Duration.ofSeconds(10)), timerCaptor.getValue().getTimeout());
+    verify(operationStore, times(1)).createOperationRequests(eq(Collections.emptyList()));
+    ArgumentCaptor<List<Timer>> timerCaptor = listCaptor();
+    verify(timerStore, times(1)).createOrUpdateAll(timerCaptor.capture());
+    assertEquals(1, timerCaptor.getValue().size());
+    val timer = timerCaptor.getValue().get(0);
+    assertEquals(DecisionTimerHandler.class, timer.getHandlerClazz());
+    assertEquals(TEST_WORKFLOW_ID, timer.getPayload().getValue());
+    assertEquals(clock.instant().plus(Duration.ofSeconds(10)), timer.getTimeout());
+  }
+
+  @Test
+  public void testProcessDecisionWhenWorkflowContinuesAsNew() {
+    // given
+    val instance = TEST_WORKFLOW_INSTANCE.toBuilder().runNumber(3).build();
+    when(workflowInstanceStore.get(eq(TEST_WORKFLOW_ID))).thenReturn(instance);
+    when(operationStore.getOperationResponses(eq(TEST_WORKFLOW_ID), anyBoolean()))
+        .thenReturn(new ArrayList<>());
+    val nextRunArgs = Collections.singletonList(Anything.of(10));
+    val decisionResponse =
+        DecisionResponse.builder()
+            .operationRequests(new ArrayList<>())
+            .newStatus(WorkflowInstance.Status.ACTIVE)
+            .newState(new HashMap<>())
+            .continueAsNewArgs(nextRunArgs)
+            .inlineExecutions(new ArrayList<>())
+            .build();
+    when(decisionExecutor.execute(any(), any())).thenReturn(decisionResponse);
+    // when
+    engine.processDecision(TEST_WORKFLOW_ID);
+    // then
+    ArgumentCaptor<WorkflowInstance.Mutation> mutationCaptor =
+        ArgumentCaptor.forClass(WorkflowInstance.Mutation.class);
+    verify(workflowInstanceStore, times(1))
+        .update(eq(TEST_WORKFLOW_ID), mutationCaptor.capture(), anyInt());
+    assertEquals(nextRunArgs, mutationCaptor.getValue().getNextRunArgs());
+    assertEquals(clock.instant(), mutationCaptor.getValue().getNextRunStartTime());
+    verify(operationStore, times(1)).archiveHistory(eq(TEST_WORKFLOW_ID), eq(3));
+    ArgumentCaptor<List<Timer>> timerCaptor = listCaptor();
+    verify(timerStore, times(1)).createOrUpdateAll(timerCaptor.capture());
+    assertEquals(1, timerCaptor.getValue().size());
+    val timer = timerCaptor.getValue().get(0);
+    assertEquals(DecisionTimerHandler.class, timer.getHandlerClazz());
+    assertNull(timer.getTimeout());
+  }
+
+  @Test
+  public void testProcessDecisionCompactsHistoryOverTheThreshold() {
+    // given
+    val initialArgs = Collections.singletonList(Anything.of("arg"));
+    val responses = givenWaitingDecisionWithCompactionThreshold(2);
+    // Every response is behind the checkpoint, so none of them is replayed but they are all still
+    // part of the history
+    val checkpoint =
+        ReplayCheckpoint.builder()
+            .iterations(
+                Collections.singletonMap(
+                    ReplayCheckpoint.key(
+                        TEST_OPERATION_TYPE.getClazz(), TEST_OPERATION_TYPE.getMethod()),
+                    2))
+            .build();
+    when(workflowInstanceStore.get(eq(TEST_WORKFLOW_ID)))
+        .thenReturn(
+            TEST_WORKFLOW_INSTANCE
+                .toBuilder()
+                .workflowType(new WorkflowType(ResumableTestWorkflow.class))
+                .initialArgs(initialArgs)
+                .replayCheckpoint(checkpoint)
+                .build());
+    // when under the threshold
+    engine.processDecision(TEST_WORKFLOW_ID);
+    // then
+    verify(operationStore, never()).archiveHistory(any(), anyInt());
+    // when over the threshold
+    responses.add(responses.get(0).toBuilder().id("res2").iteration(1).build());
+    engine.processDecision(TEST_WORKFLOW_ID);
+    // then
+    ArgumentCaptor<DecisionRequest> requestCaptor = ArgumentCaptor.forClass(DecisionRequest.class);
+    verify(decisionExecutor, times(2)).execute(requestCaptor.capture(), any());
+    assertTrue(requestCaptor.getValue().getOperationResponses().isEmpty());
+    verify(operationStore, times(1)).archiveHistory(eq(TEST_WORKFLOW_ID), eq(0));
+    ArgumentCaptor<WorkflowInstance.Mutation> mutationCaptor =
+        ArgumentCaptor.forClass(WorkflowInstance.Mutation.class);
+    verify(workflowInstanceStore, times(1))
+        .update(eq(TEST_WORKFLOW_ID), mutationCaptor.capture(), anyInt());
+    assertEquals(initialArgs, mutationCaptor.getValue().getNextRunArgs());
+    ArgumentCaptor<List<Timer>> timerCaptor = listCaptor();
+    verify(timerStore, times(2)).createOrUpdateAll(timerCaptor.capture());
+    // The new run starts once the wait is over
+    assertEquals(1, timerCaptor.getValue().size());
+    assertEquals(
+        clock.instant().plus(Duration.ofSeconds(10)), timerCaptor.getValue().get(0).getTimeout());
+  }
+
+  @Test
+  public void testProcessDecisionNeverCompactsTheHistoryOfWorkflowsThatDidNotOptIn() {
+    // given
+    val responses = givenWaitingDecisionWithCompactionThreshold(2);
+    when(workflowInstanceStore.get(eq(TEST_WORKFLOW_ID))).thenReturn(TEST_WORKFLOW_INSTANCE);
+    responses.add(responses.get(0).toBuilder().id("res2").iteration(1).build());
+    responses.add(responses.get(0).toBuilder().id("res3").iteration(2).build());
+    // when
+    engine.processDecision(TEST_WORKFLOW_ID);
+    // then the workflow is not restarted, which would execute its side effects again
+    verify(operationStore, never()).archiveHistory(any(), anyInt());
+    verify(workflowInstanceStore, never())
+        .update(any(), argThat(mutation -> mutation.getNextRunArgs() != null), anyInt());
+  }
+
+  /** @return The history of the workflow instance, which the test is free to append to. */
+  private List<OperationResponse> givenWaitingDecisionWithCompactionThreshold(int threshold) {
+    engine =
+        new SkipperEngine(
+            clock,
+            workflowInstanceStore,
+            operationStore,
+            timerStore,
+            decisionExecutor,
+            operationExecutor,
+            registry,
+            SkipperEngineConfig.builder().historyCompactionThreshold(threshold).build());
+    val response =
+        OperationResponse.builder()
+            .id("res1")
+            .workflowInstanceId(TEST_WORKFLOW_ID)
+            .operationType(TEST_OPERATION_TYPE)
+            .creationTime(Instant.MIN)
+            .isSuccess(true)
+            .isTransient(false)
+            .operationRequestId("req1")
+            .build();
+    val responses = new ArrayList<OperationResponse>();
+    responses.add(response);
+    when(operationStore.getOperationResponses(eq(TEST_WORKFLOW_ID), anyBoolean()))
+        .thenReturn(responses);
+    val waitResponse =
+        DecisionResponse.builder()
+            .operationRequests(new ArrayList<>())
+            .newStatus(WorkflowInstance.Status.ACTIVE)
+            .newState(new HashMap<>())
+            .waitForDuration(Duration.ofSeconds(10))
+            .inlineExecutions(new ArrayList<>())
+            .build();
+    when(decisionExecutor.execute(any(), any())).thenReturn(waitResponse);
+    return responses;
+  }
+
+  @ResumableWorkflow
+  private interface ResumableTestWorkflow extends SkipperWorkflow {}
+
+  @Test
+  public void testProcessDecisionReusesTheCachedHistory() {
+    // given
+    engine =
+        new SkipperEngine(
+            clock,
+            workflowInstanceStore,
+            operationStore,
+            timerStore,
+            decisionExecutor,
+            operationExecutor,
+            registry,
+            SkipperEngineConfig.builder().historyCacheMaxBytes(1024 * 1024).build());
+    when(workflowInstanceStore.get(eq(TEST_WORKFLOW_ID))).thenReturn(TEST_WORKFLOW_INSTANCE);
+    when(workflowInstanceStore.getVersion(eq(TEST_WORKFLOW_ID)))
+        .thenReturn(TEST_WORKFLOW_INSTANCE.getVersion());
+    val response =
+        OperationResponse.builder()
+            .id("res1")
+            .workflowInstanceId(TEST_WORKFLOW_ID)
+            .operationType(TEST_OPERATION_TYPE)
+            .creationTime(Instant.EPOCH)
+            .isSuccess(true)
+            .isTransient(false)
+            .operationRequestId("req1")
+            .build();
+    // Stamped before the cached response (e.g. clock skew or a slow commit) but numbered after it
+    val newResponse =
+        response.toBuilder().id("res2").creationTime(Instant.EPOCH.minusSeconds(60)).build();
+    when(operationStore.getOperationResponses(eq(TEST_WORKFLOW_ID), anyBoolean()))
+        .thenReturn(Collections.singletonList(response));
+    when(operationStore.getLatestResponseSequence(eq(TEST_WORKFLOW_ID))).thenReturn(1L, 2L);
+    when(operationStore.getOperationResponsesAfter(eq(TEST_WORKFLOW_ID), eq(1L)))
+        .thenReturn(Collections.singletonList(newResponse));
+    val waitResponse =
+        DecisionResponse.builder()
+            .operationRequests(new ArrayList<>())
+            .newStatus(WorkflowInstance.Status.ACTIVE)
+            .newState(new HashMap<>())
+            .waitForDuration(Duration.ofSeconds(10))
+            .inlineExecutions(new ArrayList<>())
+            .build();
+    when(decisionExecutor.execute(any(), any())).thenReturn(waitResponse);
+    // when
+    engine.processDecision(TEST_WORKFLOW_ID);
+    engine.processDecision(TEST_WORKFLOW_ID);
+    // then only the responses after the cached ones are fetched by the second decision
+    verify(workflowInstanceStore, times(1)).get(eq(TEST_WORKFLOW_ID));
+    verify(operationStore, times(1)).getOperationResponses(eq(TEST_WORKFLOW_ID), anyBoolean());
+    verify(operationStore, times(1)).getOperationResponsesAfter(eq(TEST_WORKFLOW_ID), eq(1L));
+    ArgumentCaptor<DecisionRequest> requestCaptor = ArgumentCaptor.forClass(DecisionRequest.class);
+    verify(decisionExecutor, times(2)).execute(requestCaptor.capture(), any());
+    assertEquals(
+        Arrays.asList(newResponse, response),
+        requestCaptor.getAllValues().get(1).getOperationResponses());
+    // when there are no new responses
+    engine.processDecision(TEST_WORKFLOW_ID);
+    // then nothing is fetched
+    verify(operationStore, times(1)).getOperationResponsesAfter(any(), anyLong());
+    requestCaptor = ArgumentCaptor.forClass(DecisionRequest.class);
+    verify(decisionExecutor, times(3)).execute(requestCaptor.capture(), any());
+    assertEquals(
+        Arrays.asList(newResponse, response),
+        requestCaptor.getAllValues().get(2).getOperationResponses());
+    // when the workflow instance is updated elsewhere
+    when(workflowInstanceStore.getVersion(eq(TEST_WORKFLOW_ID)))
+        .thenReturn(TEST_WORKFLOW_INSTANCE.getVersion() + 1);
+    engine.processDecision(TEST_WORKFLOW_ID);
+    // then the cached history is discarded
+    verify(workflowInstanceStore, times(2)).get(eq(TEST_WORKFLOW_ID));
+    verify(operationStore, times(2)).getOperationResponses(eq(TEST_WORKFLOW_ID), anyBoolean());
   }
 
   @Test
@@ -529,6 +1043,33 @@ public class SkipperEngineTest {
     assertEquals(TEST_WORKFLOW_ID, timerCaptor.getValue().getPayload().getValue());
   }
 
+  @Test
+  public void testSignalsAreSerializedWithTheLocalDecisions() {
+    val methodName = "testMethod";
+    when(workflowInstanceStore.get(TEST_WORKFLOW_ID)).thenReturn(TEST_WORKFLOW_INSTANCE);
+    when(decisionExecutor.executeSignalConsumer(
+            eq(TEST_WORKFLOW_INSTANCE), any(), eq(methodName), anyList()))
+        .thenReturn(new HashMap<>());
+    when(timerStore.createOrUpdate(any())).thenAnswer(inv -> inv.getArgument(0));
+    val dispatcher = mock(LocalTimerDispatcher.class);
+    doAnswer(
+            invocation -> {
+              invocation.<Runnable>getArgument(1).run();
+              return null;
+            })
+        .when(dispatcher)
+        .runSerialized(eq(TEST_WORKFLOW_ID), any());
+    engine.registerLocalTimerDispatcher(dispatcher);
+    DecisionThread.clear();
+    // when
+    engine.executeSignalConsumer(TEST_WORKFLOW_ID, methodName, new ArrayList<>());
+    // then
+    verify(dispatcher).runSerialized(eq(TEST_WORKFLOW_ID), any());
+    verify(workflowInstanceStore).update(eq(TEST_WORKFLOW_ID), any(), anyInt());
+    // The signal doesn't leave the workflow context on the caller thread
+    assertThrows(IllegalStateException.class, DecisionThread::getWorkflowContext);
+  }
+
   @Test
   public void testExecuteSignalConsumerMethodWhenWorkflowIsCompleted_signalFails() {
     val methodName = "testMethod";
@@ -546,4 +1087,33 @@ public class SkipperEngineTest {
             .getMessage()
             .contains("sending input signals to a completed workflow is not allowed"));
   }
+
+  @Test
+  @SuppressWarnings("deprecation")
+  public void testGetWorkflowInstanceByCorrelationIdLooksUpEachRegisteredWorkflowType() {
+    // given
+    val resumableType = new WorkflowType(ResumableTestWorkflow.class);
+    when(registry.getWorkflowClasses())
+        .thenReturn(
+            new LinkedHashSet<>(Arrays.asList(SkipperWorkflow.class, ResumableTestWorkflow.class)));
+    when(workflowInstanceStore.findByCorrelationId(any(), eq("corr-test-123")))
+        .thenReturn(Optional.empty());
+    when(workflowInstanceStore.findByCorrelationId(resumableType, "corr-test-123"))
+        .thenReturn(Optional.of(TEST_WORKFLOW_INSTANCE));
+    // when
+    val instance = engine.getWorkflowInstanceByCorrelationId("corr-test-123");
+    // then
+    assertEquals(Optional.of(TEST_WORKFLOW_INSTANCE), instance);
+    verify(workflowInstanceStore, times(2)).findByCorrelationId(any(), eq("corr-test-123"));
+    verify(workflowInstanceStore, never()).find();
+    assertEquals(
+        Optional.of(resumableType),
+        engine.getRegisteredWorkflowType(ResumableTestWorkflow.class.getName()));
+    assertFalse(engine.getRegisteredWorkflowType(String.class.getName()).isPresent());
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> ArgumentCaptor<List<T>> listCaptor() {
+    return ArgumentCaptor.forClass((Class<List<T>>) (Class<?>) List.class);
+  }
 }
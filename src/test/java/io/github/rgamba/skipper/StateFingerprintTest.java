@@ -0,0 +1,47 @@
+package io.github.rgamba.skipper;
+
+import static org.junit.Assert.*;
+
+import com.google.common.collect.ImmutableSet;
+import io.github.rgamba.skipper.common.Anything;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.val;
+import org.junit.Test;
+
+public class StateFingerprintTest {
+  @Test
+  public void testGetChangedFields() {
+    List<String> items = new ArrayList<>();
+    Map<String, Anything> state = new HashMap<>();
+    state.put("counter", Anything.of(1));
+    state.put("name", Anything.of("foo"));
+    state.put("items", new Anything(ArrayList.class, items, String.class));
+    val fingerprint = StateFingerprint.of(state);
+
+    assertTrue(fingerprint.getChangedFields(state).isEmpty());
+
+    Map<String, Anything> newState = new HashMap<>(state);
+    newState.put("counter", Anything.of(2));
+    newState.put("added", Anything.of(true));
+    // Mutating in place must be detected even though both states share the same object
+    items.add("bar");
+    assertEquals(
+        ImmutableSet.of("counter", "added", "items"), fingerprint.getChangedFields(newState));
+  }
+
+  @Test
+  public void testNullAndMissingFieldsAreTheSame() {
+    Map<String, Anything> state = new HashMap<>();
+    state.put("name", Anything.of("foo"));
+    val fingerprint = StateFingerprint.of(state);
+
+    Map<String, Anything> newState = new HashMap<>();
+    newState.put("name", null);
+    newState.put("missing", null);
+    assertEquals(ImmutableSet.of("name"), fingerprint.getChangedFields(newState));
+    assertTrue(StateFingerprint.of(newState).getChangedFields(newState).isEmpty());
+  }
+}
@@ -0,0 +1,349 @@
+package io.github.rgamba.skipper;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.github.rgamba.skipper.api.DecisionRequest;
+import io.github.rgamba.skipper.api.OperationExecutionResponse;
+import io.github.rgamba.skipper.api.SkipperWorkflow;
+import io.github.rgamba.skipper.api.annotations.WorkflowMethod;
+import io.github.rgamba.skipper.common.Anything;
+import io.github.rgamba.skipper.models.OperationRequest;
+import io.github.rgamba.skipper.models.OperationResponse;
+import io.github.rgamba.skipper.models.OperationType;
+import io.github.rgamba.skipper.models.WorkflowInstance;
+import io.github.rgamba.skipper.models.WorkflowType;
+import io.github.rgamba.skipper.runtime.StopWorkflowExecution;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SyncDecisionExecutorTest {
+  private static final int OPERATION_COUNT = 5;
+  private static final Clock CLOCK =
+      Clock.fixed(Instant.parse("2021-01-01T00:00:00Z"), ZoneOffset.UTC);
+
+  private OperationExecutor operationExecutor;
+  private DependencyRegistry registry;
+  private List<OperationResponse> operationResponses;
+  private DecisionRequest decisionRequest;
+
+  @Before
+  public void setUp() {
+    operationExecutor = mock(OperationExecutor.class);
+    registry = mock(DependencyRegistry.class);
+    operationResponses = new ArrayList<>();
+    when(registry.getWorkflow(eq(FanOutWorkflow.class)))
+        .thenReturn(new FanOutWorkflow(operationResponses));
+    decisionRequest =
+        DecisionRequest.builder()
+            .workflowInstance(
+                WorkflowInstance.builder()
+                    .workflowType(new WorkflowType(FanOutWorkflow.class))
+                    .id(FanOutWorkflow.WORKFLOW_ID)
+                    .correlationId("corr-123")
+                    .initialArgs(new ArrayList<>())
+                    .status(WorkflowInstance.Status.ACTIVE)
+                    .state(new HashMap<>())
+                    .creationTime(Instant.MIN)
+                    .build())
+            .operationResponses(operationResponses)
+            .build();
+  }
+
+  private static OperationExecutionResponse completed() {
+    return OperationExecutionResponse.builder()
+        .status(OperationExecutionResponse.Status.COMPLETED)
+        .result(Anything.of("ok"))
+        .executionDuration(Duration.ZERO)
+        .build();
+  }
+
+  private SyncDecisionExecutor executor(
+      SyncDecisionExecutorConfig config, ExecutorService operationPool) {
+    return new SyncDecisionExecutor(
+        operationExecutor, CLOCK, config, (name, poolConfig) -> operationPool);
+  }
+
+  @Test
+  public void testJoinedOperationsAreExecutedConcurrently() {
+    // Every operation waits for all the others to start, so they can only complete if they all run
+    // at the same time
+    val running = new CountDownLatch(OPERATION_COUNT);
+    when(operationExecutor.execute(any(), any()))
+        .thenAnswer(
+            invocation -> {
+              running.countDown();
+              assertTrue(running.await(10, TimeUnit.SECONDS));
+              return completed();
+            });
+    val executor =
+        new SyncDecisionExecutor(operationExecutor, CLOCK, SyncDecisionExecutorConfig.defaults());
+
+    val response = executor.execute(decisionRequest, registry);
+
+    assertEquals(WorkflowInstance.Status.COMPLETED, response.getNewStatus());
+    assertTrue(response.getOperationRequests().isEmpty());
+    // Results are collected in request order
+    assertEquals(
+        FanOutWorkflow.requestIds(),
+        response.getInlineExecutions().stream()
+            .map(exe -> exe.getResponse().getOperationRequestId())
+            .collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testOperationsNotStartedWithinTheBudgetAreExecutedAsync() {
+    when(operationExecutor.execute(any(), any())).thenReturn(completed());
+    // The pool accepts the operations but doesn't start them before the budget runs out
+    val pool = new QueueingExecutor();
+    val executor =
+        executor(
+            SyncDecisionExecutorConfig.builder().operationTimeBudget(Duration.ZERO).build(), pool);
+
+    val response = executor.execute(decisionRequest, registry);
+
+    assertEquals(WorkflowInstance.Status.ACTIVE, response.getNewStatus());
+    assertTrue(response.getInlineExecutions().isEmpty());
+    assertEquals(
+        FanOutWorkflow.requestIds(),
+        response.getOperationRequests().stream()
+            .map(OperationRequest::getOperationRequestId)
+            .collect(Collectors.toList()));
+    // The operations handed over to the async path never run inline, even if a worker picks them up
+    pool.runAll();
+    verify(operationExecutor, never()).execute(any(), any());
+  }
+
+  @Test
+  public void testOperationsRunningWhenTheBudgetRunsOutAreNotExecutedTwice() {
+    // The operations ignore the interruption and complete anyway
+    val started = new Semaphore(0);
+    when(operationExecutor.execute(any(), any()))
+        .thenAnswer(
+            invocation -> {
+              started.release();
+              try {
+                new CountDownLatch(1).await();
+              } catch (InterruptedException ignored) {
+              }
+              return completed();
+            });
+    val pool = Executors.newCachedThreadPool();
+    try {
+      val executor =
+          executor(
+              SyncDecisionExecutorConfig.builder().operationTimeBudget(Duration.ZERO).build(),
+              new StartingExecutor(pool, started));
+
+      val response = executor.execute(decisionRequest, registry);
+
+      // The decision waits for the running operations instead of executing them again async
+      assertEquals(WorkflowInstance.Status.COMPLETED, response.getNewStatus());
+      assertTrue(response.getOperationRequests().isEmpty());
+      assertEquals(OPERATION_COUNT, response.getInlineExecutions().size());
+      verify(operationExecutor, times(OPERATION_COUNT)).execute(any(), any());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testOperationsThatDontFitInTheSaturatedPoolAreExecutedAsync() {
+    when(operationExecutor.execute(any(), any())).thenReturn(completed());
+    // A pool with room for two operations
+    val executor = executor(SyncDecisionExecutorConfig.defaults(), new BoundedDirectExecutor(2));
+
+    val response = executor.execute(decisionRequest, registry);
+
+    // The decision thread doesn't run the rejected operations itself
+    assertEquals(WorkflowInstance.Status.ACTIVE, response.getNewStatus());
+    assertEquals(2, response.getInlineExecutions().size());
+    assertEquals(OPERATION_COUNT - 2, response.getOperationRequests().size());
+  }
+
+  @Test
+  public void testInlineIterationsAreBounded() {
+    when(operationExecutor.execute(any(), any())).thenReturn(completed());
+    when(registry.getWorkflow(eq(SequentialWorkflow.class)))
+        .thenReturn(new SequentialWorkflow(operationResponses));
+    val request =
+        decisionRequest
+            .toBuilder()
+            .workflowInstance(
+                decisionRequest
+                    .getWorkflowInstance()
+                    .toBuilder()
+                    .workflowType(new WorkflowType(SequentialWorkflow.class))
+                    .build())
+            .build();
+    val executor =
+        new SyncDecisionExecutor(
+            operationExecutor,
+            CLOCK,
+            SyncDecisionExecutorConfig.builder().maxInlineIterations(2).build());
+
+    val response = executor.execute(request, registry);
+
+    // The progress so far is kept and the next operation is handed over to the async path
+    assertEquals(WorkflowInstance.Status.ACTIVE, response.getNewStatus());
+    assertEquals(2, response.getInlineExecutions().size());
+    assertEquals(1, response.getOperationRequests().size());
+    assertEquals("req-2", response.getOperationRequests().get(0).getOperationRequestId());
+  }
+
+  /** Accepts the tasks, but only runs them when told to. */
+  private static class QueueingExecutor extends AbstractExecutorService {
+    private final List<Runnable> tasks = new ArrayList<>();
+
+    void runAll() {
+      tasks.forEach(Runnable::run);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      tasks.add(command);
+    }
+
+    @Override
+    public void shutdown() {}
+
+    @Override
+    public List<Runnable> shutdownNow() {
+      return new ArrayList<>();
+    }
+
+    @Override
+    public boolean isShutdown() {
+      return false;
+    }
+
+    @Override
+    public boolean isTerminated() {
+      return false;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+      return false;
+    }
+  }
+
+  /** Runs the tasks on the given pool, and only returns once the operation has started. */
+  private static class StartingExecutor extends QueueingExecutor {
+    private final ExecutorService pool;
+    private final Semaphore started;
+
+    StartingExecutor(ExecutorService pool, Semaphore started) {
+      this.pool = pool;
+      this.started = started;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      pool.execute(command);
+      started.acquireUninterruptibly();
+    }
+  }
+
+  /** Runs the tasks on the calling thread, and rejects them once the capacity is used up. */
+  private static class BoundedDirectExecutor extends QueueingExecutor {
+    private int capacity;
+
+    BoundedDirectExecutor(int capacity) {
+      this.capacity = capacity;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      if (capacity-- <= 0) {
+        throw new RejectedExecutionException();
+      }
+      command.run();
+    }
+  }
+
+  private static OperationRequest operationRequest(String id) {
+    return OperationRequest.builder()
+        .operationRequestId(id)
+        .workflowInstanceId(FanOutWorkflow.WORKFLOW_ID)
+        .operationType(new OperationType(String.class, "length"))
+        .retryStrategy(OperationExecutor.DEFAULT_RETRY_STRATEGY)
+        .creationTime(Instant.MIN)
+        .timeout(Duration.ZERO)
+        .iteration(0)
+        .arguments(new ArrayList<>())
+        .failedAttempts(0)
+        .build();
+  }
+
+  /** Calls one operation after the other. */
+  public static class SequentialWorkflow implements SkipperWorkflow {
+    private final List<OperationResponse> responses;
+
+    public SequentialWorkflow(List<OperationResponse> responses) {
+      this.responses = responses;
+    }
+
+    @WorkflowMethod
+    public String run() {
+      if (responses.size() < OPERATION_COUNT) {
+        List<OperationRequest> requests = new ArrayList<>();
+        requests.add(operationRequest("req-" + responses.size()));
+        throw new StopWorkflowExecution(requests);
+      }
+      return "done";
+    }
+  }
+
+  /** Joins all the operations at once. */
+  public static class FanOutWorkflow implements SkipperWorkflow {
+    static final String WORKFLOW_ID = "wf-123";
+
+    private final List<OperationResponse> responses;
+
+    public FanOutWorkflow(List<OperationResponse> responses) {
+      this.responses = responses;
+    }
+
+    static List<String> requestIds() {
+      List<String> ids = new ArrayList<>();
+      for (int i = 0; i < OPERATION_COUNT; i++) {
+        ids.add("req-" + i);
+      }
+      return ids;
+    }
+
+    @WorkflowMethod
+    public String run() {
+      if (responses.size() < OPERATION_COUNT) {
+        throw new StopWorkflowExecution(
+            requestIds().stream()
+                .map(SyncDecisionExecutorTest::operationRequest)
+                .collect(Collectors.toList()));
+      }
+      return "done";
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package io.github.rgamba.skipper;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import io.github.rgamba.skipper.common.Anything;
+import io.github.rgamba.skipper.models.Timer;
+import io.github.rgamba.skipper.store.inmemory.InMemoryTimerStore;
+import io.github.rgamba.skipper.timers.TimerHandler;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TimerBacklogEstimatorTest {
+  private final Clock clock =
+      Clock.fixed(Instant.ofEpochMilli(1662908612003L), ZoneId.systemDefault());
+  private final Duration refreshInterval = Duration.ofSeconds(10);
+  private InMemoryTimerStore store;
+
+  @Before
+  public void setUp() {
+    store = new InMemoryTimerStore(clock);
+    for (int i = 1; i <= 5; i++) {
+      store.createOrUpdate(timer("t" + i, clock.instant().minus(Duration.ofSeconds(i))));
+    }
+    store.createOrUpdate(timer("future", clock.instant().plus(Duration.ofSeconds(10))));
+  }
+
+  private Timer timer(String id, Instant timeout) {
+    return Timer.builder()
+        .handlerClazz(TimerHandler.class)
+        .timerId(id)
+        .timeout(timeout)
+        .payload(new Anything(String.class, "payload"))
+        .build();
+  }
+
+  @Test
+  public void testExactMode() {
+    val estimator =
+        new TimerBacklogEstimator(
+            store, clock, TimerBacklogEstimator.Mode.EXACT, 3, refreshInterval);
+    assertEquals(0, estimator.getBacklogSize());
+    estimator.refresh();
+    assertEquals(5, estimator.getBacklogSize());
+    assertEquals(5_000, estimator.getOldestDueAgeMillis());
+  }
+
+  @Test
+  public void testCappedMode() {
+    val estimator =
+        new TimerBacklogEstimator(
+            store, clock, TimerBacklogEstimator.Mode.CAPPED, 3, refreshInterval);
+    estimator.refresh();
+    assertEquals(3, estimator.getBacklogSize());
+    assertEquals(5_000, estimator.getOldestDueAgeMillis());
+  }
+
+  @Test
+  public void testTimersWithoutTimeoutAreDueSinceTheyWereEnqueued() {
+    val now = new AtomicReference<>(clock.instant());
+    val movingClock = mock(Clock.class);
+    when(movingClock.instant()).thenAnswer(invocation -> now.get());
+    store = new InMemoryTimerStore(movingClock);
+    store.createOrUpdate(timer("immediate", null));
+    now.set(now.get().plus(Duration.ofSeconds(3)));
+    // Re-enqueuing a timer that is still waiting doesn't reset its age
+    store.createOrUpdate(timer("immediate", null));
+    store.createOrUpdate(timer("other", null));
+    now.set(now.get().plus(Duration.ofSeconds(2)));
+    val estimator =
+        new TimerBacklogEstimator(
+            store, movingClock, TimerBacklogEstimator.Mode.EXACT, 3, refreshInterval);
+    estimator.refresh();
+    assertEquals(2, estimator.getBacklogSize());
+    assertEquals(5_000, estimator.getOldestDueAgeMillis());
+  }
+
+  @Test
+  public void testObservedMode() {
+    val estimator =
+        new TimerBacklogEstimator(
+            store, clock, TimerBacklogEstimator.Mode.OBSERVED, 3, refreshInterval);
+    estimator.observe(
+        Arrays.asList(
+            timer("a", clock.instant().minus(Duration.ofSeconds(2))),
+            timer("b", clock.instant().minus(Duration.ofSeconds(7))),
+            timer("c", clock.instant().plus(Duration.ofSeconds(1)))));
+    estimator.refresh();
+    assertEquals(2, estimator.getDrainedOverdueCount());
+    assertEquals(7_000, estimator.getOldestDueAgeMillis());
+    // The size of the backlog left in the store is unknown
+    assertEquals(0, estimator.getBacklogSize());
+    // Observations are reset on every refresh
+    estimator.refresh();
+    assertEquals(0, estimator.getDrainedOverdueCount());
+    assertEquals(0, estimator.getOldestDueAgeMillis());
+  }
+}
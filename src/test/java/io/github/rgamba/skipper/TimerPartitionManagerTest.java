@@ -0,0 +1,75 @@
+package io.github.rgamba.skipper;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import io.github.rgamba.skipper.models.Timer;
+import io.github.rgamba.skipper.store.inmemory.InMemoryTimerPartitionStore;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TimerPartitionManagerTest {
+  private final Duration refreshInterval = Duration.ofSeconds(5);
+  private final Duration leaseDuration = Duration.ofSeconds(15);
+  private Clock clock;
+  private Instant now;
+  private InMemoryTimerPartitionStore store;
+
+  @Before
+  public void setUp() {
+    now = Instant.ofEpochMilli(1662908612003L);
+    clock = mock(Clock.class);
+    when(clock.instant()).thenAnswer(invocation -> now);
+    store = new InMemoryTimerPartitionStore(clock);
+  }
+
+  @Test
+  public void testSingleNodeOwnsAllPartitions() {
+    val manager = new TimerPartitionManager(store, clock, refreshInterval, leaseDuration);
+    assertTrue(manager.getOwnedPartitions().isEmpty());
+    manager.refresh();
+    assertEquals(Timer.PARTITION_COUNT, manager.getOwnedPartitions().size());
+  }
+
+  @Test
+  public void testPartitionsAreRebalancedWhenNodesJoinAndLeave() {
+    val m1 = new TimerPartitionManager(store, clock, refreshInterval, leaseDuration);
+    val m2 = new TimerPartitionManager(store, clock, refreshInterval, leaseDuration);
+    m1.refresh();
+    assertEquals(Timer.PARTITION_COUNT, m1.getOwnedPartitions().size());
+
+    // m2 joins, but m1 still holds the leases until it refreshes and gives up its extra share
+    m2.refresh();
+    assertTrue(m2.getOwnedPartitions().isEmpty());
+    m1.refresh();
+    m2.refresh();
+    assertEquals(Timer.PARTITION_COUNT / 2, m1.getOwnedPartitions().size());
+    assertEquals(Timer.PARTITION_COUNT / 2, m2.getOwnedPartitions().size());
+    val intersection = new HashSet<>(m1.getOwnedPartitions());
+    intersection.retainAll(m2.getOwnedPartitions());
+    assertTrue(intersection.isEmpty());
+
+    // m1 dies, m2 should take over the orphan partitions once the leases expire
+    now = now.plus(leaseDuration).plusMillis(1);
+    m2.refresh();
+    assertEquals(Timer.PARTITION_COUNT, m2.getOwnedPartitions().size());
+  }
+
+  @Test
+  public void testRefreshIfNeededHonorsRefreshInterval() {
+    val manager = new TimerPartitionManager(store, clock, refreshInterval, leaseDuration);
+    manager.refreshIfNeeded();
+    val other = new TimerPartitionManager(store, clock, refreshInterval, leaseDuration);
+    other.refresh();
+    manager.refreshIfNeeded();
+    assertEquals(Timer.PARTITION_COUNT, manager.getOwnedPartitions().size());
+    now = now.plus(refreshInterval);
+    manager.refreshIfNeeded();
+    assertEquals(Timer.PARTITION_COUNT / 2, manager.getOwnedPartitions().size());
+  }
+}
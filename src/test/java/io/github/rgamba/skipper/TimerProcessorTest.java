@@ -0,0 +1,50 @@
+package io.github.rgamba.skipper;
+
+import static org.junit.Assert.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import lombok.val;
+import org.junit.Test;
+
+public class TimerProcessorTest {
+  private final Duration base = Duration.ofSeconds(1);
+  private final Duration max = Duration.ofMinutes(1);
+
+  @Test
+  public void testComputeRetryDelay() {
+    // Without jitter the delay doubles on every attempt
+    assertEquals(Duration.ofSeconds(1), TimerProcessor.computeRetryDelay(1, base, max, 0));
+    assertEquals(Duration.ofSeconds(2), TimerProcessor.computeRetryDelay(2, base, max, 0));
+    assertEquals(Duration.ofSeconds(8), TimerProcessor.computeRetryDelay(4, base, max, 0));
+    // ...up to the max delay
+    assertEquals(max, TimerProcessor.computeRetryDelay(10, base, max, 0));
+    assertEquals(max, TimerProcessor.computeRetryDelay(Integer.MAX_VALUE, base, max, 0));
+    // Jitter takes up to half of the delay
+    assertEquals(Duration.ofSeconds(6), TimerProcessor.computeRetryDelay(4, base, max, 0.5));
+    assertTrue(
+        TimerProcessor.computeRetryDelay(4, base, max, 0.999).compareTo(Duration.ofSeconds(4)) > 0);
+  }
+
+  @Test
+  public void testComputeIdleFetchDelay() {
+    val now = Instant.ofEpochMilli(1662908612003L);
+    val lookAhead = Duration.ofSeconds(2);
+    val min = Duration.ofMillis(50);
+    val idleMax = Duration.ofSeconds(1);
+    // Nothing scheduled, sleep as long as allowed
+    assertEquals(idleMax, TimerProcessor.computeIdleFetchDelay(now, null, lookAhead, min, idleMax));
+    // Sleep until the next timer enters the look-ahead window
+    assertEquals(
+        Duration.ofMillis(300),
+        TimerProcessor.computeIdleFetchDelay(now, now.plusMillis(2300), lookAhead, min, idleMax));
+    // ...but never longer than the max
+    assertEquals(
+        idleMax,
+        TimerProcessor.computeIdleFetchDelay(now, now.plusSeconds(60), lookAhead, min, idleMax));
+    // ...nor shorter than the min
+    assertEquals(
+        min,
+        TimerProcessor.computeIdleFetchDelay(now, now.plusMillis(500), lookAhead, min, idleMax));
+  }
+}
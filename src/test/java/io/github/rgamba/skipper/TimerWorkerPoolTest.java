@@ -0,0 +1,22 @@
+package io.github.rgamba.skipper;
+
+import static org.junit.Assert.*;
+
+import java.time.Duration;
+import org.junit.Test;
+
+public class TimerWorkerPoolTest {
+  private final Duration lease = Duration.ofSeconds(10);
+
+  @Test
+  public void testComputeFetchSize() {
+    // Without latency samples we claim as much as we are allowed to
+    assertEquals(300, TimerWorkerPool.computeFetchSize(10, lease, 0, 10, 300));
+    // 10 workers * 5000ms / 1000ms per timer
+    assertEquals(50, TimerWorkerPool.computeFetchSize(10, lease, 1000, 10, 300));
+    // Very slow handlers are clamped to the min fetch size
+    assertEquals(10, TimerWorkerPool.computeFetchSize(10, lease, 60_000, 10, 300));
+    // Very fast handlers are clamped to the max fetch size
+    assertEquals(300, TimerWorkerPool.computeFetchSize(10, lease, 1, 10, 300));
+  }
+}
@@ -0,0 +1,223 @@
+package io.github.rgamba.skipper;
+
+import static org.junit.Assert.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.val;
+import org.junit.Test;
+
+public class WorkflowBasedExecutorTest {
+  @Test
+  public void testTasksForTheSameWorkflowRunSerially() throws Exception {
+    val pool = Executors.newFixedThreadPool(8);
+    val executor = new WorkflowBasedExecutor(pool);
+    val concurrent = new ConcurrentHashMap<String, AtomicInteger>();
+    val maxConcurrency = new AtomicInteger();
+    List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+    val latch = new CountDownLatch(200);
+    for (int i = 0; i < 200; i++) {
+      val workflowId = "wf-" + (i % 4);
+      val taskId = i;
+      executor.execute(
+          workflowId,
+          () -> {
+            val running = concurrent.computeIfAbsent(workflowId, k -> new AtomicInteger());
+            maxConcurrency.accumulateAndGet(running.incrementAndGet(), Math::max);
+            if (workflowId.equals("wf-0")) {
+              order.add(taskId);
+            }
+            running.decrementAndGet();
+            latch.countDown();
+          });
+    }
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+    pool.shutdown();
+    assertEquals(1, maxConcurrency.get());
+    List<Integer> sorted = new ArrayList<>(order);
+    Collections.sort(sorted);
+    assertEquals(sorted, order);
+    assertEquals(50, order.size());
+  }
+
+  @Test
+  public void testLanesAreSharedAcrossExecutors() throws Exception {
+    val pool1 = Executors.newFixedThreadPool(4, runnable -> new Thread(runnable, "pool1"));
+    val pool2 = Executors.newFixedThreadPool(4, runnable -> new Thread(runnable, "pool2"));
+    val executor = new WorkflowBasedExecutor();
+    val running = new AtomicInteger();
+    val maxConcurrency = new AtomicInteger();
+    val wrongPool = new AtomicInteger();
+    val latch = new CountDownLatch(100);
+    for (int i = 0; i < 100; i++) {
+      val poolName = i % 2 == 0 ? "pool1" : "pool2";
+      executor.execute(
+          "wf-1",
+          i % 2 == 0 ? pool1 : pool2,
+          () -> {
+            maxConcurrency.accumulateAndGet(running.incrementAndGet(), Math::max);
+            if (!Thread.currentThread().getName().equals(poolName)) {
+              wrongPool.incrementAndGet();
+            }
+            running.decrementAndGet();
+            latch.countDown();
+          });
+    }
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+    pool1.shutdown();
+    pool2.shutdown();
+    // Serialized across both pools, but each task ran on the pool it was submitted to
+    assertEquals(1, maxConcurrency.get());
+    assertEquals(0, wrongPool.get());
+  }
+
+  @Test
+  public void testTasksRejectedOnTheirTurnAreFailedInsteadOfRunInline() {
+    List<Runnable> queued = new ArrayList<>();
+    Executor manual = queued::add;
+    Executor saturated =
+        runnable -> {
+          throw new RejectedExecutionException();
+        };
+    val executor = new WorkflowBasedExecutor();
+    List<String> events = new ArrayList<>();
+    executor.execute("wf-1", manual, () -> events.add("task-1"), () -> events.add("rejected-1"));
+    executor.execute("wf-1", saturated, () -> events.add("task-2"), () -> events.add("rejected-2"));
+    executor.execute("wf-1", manual, () -> events.add("task-3"), () -> events.add("rejected-3"));
+    assertEquals(1, queued.size());
+    // The second task is rejected once the first one is done, and the lane moves on to the third
+    queued.remove(0).run();
+    assertEquals(Arrays.asList("task-1", "rejected-2"), events);
+    assertEquals(1, queued.size());
+    queued.remove(0).run();
+    assertEquals(Arrays.asList("task-1", "rejected-2", "task-3"), events);
+    assertTrue(queued.isEmpty());
+  }
+
+  @Test
+  public void testLanesAreRemovedOnceTheyDrain() {
+    List<Runnable> queued = new ArrayList<>();
+    Executor manual = queued::add;
+    val executor = new WorkflowBasedExecutor(manual);
+    executor.execute("wf-1", () -> {});
+    executor.execute("wf-1", () -> {});
+    executor.execute("wf-2", () -> {});
+    assertEquals(2, executor.getLaneCount());
+    queued.remove(0).run();
+    queued.remove(0).run();
+    // wf-2 drained, wf-1 still has a pending task
+    assertEquals(1, executor.getLaneCount());
+    queued.remove(0).run();
+    assertEquals(0, executor.getLaneCount());
+    assertTrue(queued.isEmpty());
+  }
+
+  @Test
+  public void testLanesRejectedRightAwayAreRemoved() {
+    val executor =
+        new WorkflowBasedExecutor(
+            runnable -> {
+              throw new RejectedExecutionException();
+            });
+    assertThrows(RejectedExecutionException.class, () -> executor.execute("wf-1", () -> {}));
+    assertEquals(0, executor.getLaneCount());
+  }
+
+  @Test
+  public void testRunInLaneWaitsForItsTurn() throws Exception {
+    val pool = Executors.newSingleThreadExecutor();
+    val executor = new WorkflowBasedExecutor(pool);
+    List<String> events = Collections.synchronizedList(new ArrayList<>());
+    val release = new CountDownLatch(1);
+    executor.execute(
+        "wf-1",
+        () -> {
+          try {
+            release.await(10, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          events.add("task-1");
+        });
+    val ranOn = new AtomicReference<Thread>();
+    val signal =
+        new Thread(
+            () ->
+                executor.runInLane(
+                    "wf-1",
+                    Duration.ofSeconds(10),
+                    () -> {
+                      events.add("signal");
+                      ranOn.set(Thread.currentThread());
+                    }));
+    signal.start();
+    Thread.sleep(100);
+    executor.execute("wf-1", () -> events.add("task-2"));
+    assertTrue(events.isEmpty());
+    release.countDown();
+    signal.join(10000);
+    val drained = new CountDownLatch(1);
+    executor.execute("wf-1", drained::countDown);
+    assertTrue(drained.await(10, TimeUnit.SECONDS));
+    pool.shutdown();
+    assertEquals(Arrays.asList("task-1", "signal", "task-2"), events);
+    // The task ran on the thread that called runInLane
+    assertEquals(signal, ranOn.get());
+  }
+
+  @Test
+  public void testRunInLaneRunsTheTaskWhenItTimesOutWaiting() {
+    List<Runnable> queued = new ArrayList<>();
+    Executor manual = queued::add;
+    val executor = new WorkflowBasedExecutor(manual);
+    List<String> events = new ArrayList<>();
+    executor.execute("wf-1", () -> events.add("task-1"));
+    executor.runInLane("wf-1", Duration.ofMillis(10), () -> events.add("signal"));
+    assertEquals(Collections.singletonList("signal"), events);
+    // The lane skips the task that already ran and drains
+    queued.remove(0).run();
+    assertEquals(Arrays.asList("signal", "task-1"), events);
+    assertTrue(queued.isEmpty());
+    assertEquals(0, executor.getLaneCount());
+  }
+
+  @Test
+  public void testRunInLaneFromTheSameLaneRunsRightAway() {
+    val executor = new WorkflowBasedExecutor(Runnable::run);
+    List<String> events = new ArrayList<>();
+    executor.execute(
+        "wf-1",
+        () -> {
+          executor.runInLane("wf-1", Duration.ofSeconds(10), () -> events.add("signal"));
+          events.add("task");
+        });
+    assertEquals(Arrays.asList("signal", "task"), events);
+    assertEquals(0, executor.getLaneCount());
+  }
+
+  @Test
+  public void testRunInLanePropagatesTheTaskFailure() {
+    val executor = new WorkflowBasedExecutor(Runnable::run);
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            executor.runInLane(
+                "wf-1",
+                Duration.ofSeconds(10),
+                () -> {
+                  throw new IllegalStateException();
+                }));
+    assertEquals(0, executor.getLaneCount());
+  }
+}
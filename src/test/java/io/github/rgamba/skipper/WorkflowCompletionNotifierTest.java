@@ -0,0 +1,180 @@
+package io.github.rgamba.skipper;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import io.github.rgamba.skipper.api.SkipperWorkflow;
+import io.github.rgamba.skipper.common.Anything;
+import io.github.rgamba.skipper.models.WorkflowCompletion;
+import io.github.rgamba.skipper.models.WorkflowInstance;
+import io.github.rgamba.skipper.models.WorkflowType;
+import io.github.rgamba.skipper.store.WorkflowInstanceStore;
+import io.github.rgamba.skipper.store.inmemory.InMemoryWorkflowInstanceStore;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WorkflowCompletionNotifierTest {
+  private static final String WORKFLOW_INSTANCE_ID = "wf-1";
+  private static final Duration TIMEOUT = Duration.ofSeconds(10);
+  private final Clock clock =
+      Clock.fixed(Instant.ofEpochMilli(1662908612003L), ZoneId.systemDefault());
+  private InMemoryWorkflowInstanceStore store;
+  private WorkflowCompletionNotifier notifier;
+
+  @Before
+  public void setUp() {
+    store = new InMemoryWorkflowInstanceStore(clock);
+    store.create(activeInstance());
+    notifier = newNotifier(store);
+  }
+
+  @Test
+  public void testLocalCompletion() throws Exception {
+    val future = notifier.await(WORKFLOW_INSTANCE_ID, TIMEOUT);
+    assertFalse(future.isDone());
+    val completed = complete();
+    notifier.notifyCompleted(completed);
+    assertEquals(completed, future.get(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testCompletionOnAnotherNodeIsPickedUpFromTheFeed() throws Exception {
+    val future = notifier.await(WORKFLOW_INSTANCE_ID, TIMEOUT);
+    val completed = complete();
+    assertFalse(future.isDone());
+    notifier.poll();
+    assertEquals(completed, future.get(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testAwaitWhenAlreadyCompleted() {
+    val completed = complete();
+    val future = notifier.await(WORKFLOW_INSTANCE_ID, TIMEOUT);
+    assertTrue(future.isDone());
+    assertEquals(completed, future.join());
+  }
+
+  @Test
+  public void testAwaitTimesOut() throws Exception {
+    val future = notifier.await(WORKFLOW_INSTANCE_ID, Duration.ofMillis(10));
+    try {
+      future.get(1, TimeUnit.SECONDS);
+      fail("expected the await to time out");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof TimeoutException);
+    }
+  }
+
+  @Test
+  public void testCompletionThatBecomesVisibleAfterAHigherSequenceIsPickedUpFromTheFeed()
+      throws Exception {
+    val mockStore = mock(WorkflowInstanceStore.class);
+    val active = activeInstance();
+    val completed =
+        active.apply(
+            WorkflowInstance.Mutation.builder().status(WorkflowInstance.Status.COMPLETED).build());
+    when(mockStore.getLatestCompletionSequence()).thenReturn(0L);
+    when(mockStore.get(WORKFLOW_INSTANCE_ID)).thenReturn(active);
+    when(mockStore.getAll(any())).thenReturn(Collections.singletonList(completed));
+    // Sequence 1 is still being committed when sequence 2 becomes visible
+    when(mockStore.getCompletionsAfter(anyLong(), anyInt()))
+        .thenReturn(Collections.singletonList(completion(2, "wf-2")))
+        .thenReturn(Arrays.asList(completion(1, WORKFLOW_INSTANCE_ID), completion(2, "wf-2")));
+    val mockNotifier = newNotifier(mockStore);
+
+    val future = mockNotifier.await(WORKFLOW_INSTANCE_ID, TIMEOUT);
+    mockNotifier.poll();
+    assertFalse(future.isDone());
+    mockNotifier.poll();
+    assertEquals(completed, future.get(1, TimeUnit.SECONDS));
+    verify(mockStore, times(2)).getCompletionsAfter(eq(0L), anyInt());
+    verify(mockStore, times(1)).getAll(any());
+  }
+
+  @Test
+  public void testAwaitChecksTheStatusBeforeTimingOut() throws Exception {
+    val mockStore = mock(WorkflowInstanceStore.class);
+    val active = activeInstance();
+    val completed =
+        active.apply(
+            WorkflowInstance.Mutation.builder().status(WorkflowInstance.Status.COMPLETED).build());
+    when(mockStore.get(WORKFLOW_INSTANCE_ID)).thenReturn(active).thenReturn(completed);
+    val mockNotifier = newNotifier(mockStore);
+
+    val future = mockNotifier.await(WORKFLOW_INSTANCE_ID, Duration.ofMillis(10));
+    assertEquals(completed, future.get(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testAwaitDoesNotKeepTheWaiterWhenTheStatusCheckFails() {
+    val mockStore = mock(WorkflowInstanceStore.class);
+    when(mockStore.get(WORKFLOW_INSTANCE_ID)).thenThrow(new IllegalStateException("boom"));
+    val mockNotifier = newNotifier(mockStore);
+
+    assertThrows(
+        IllegalStateException.class, () -> mockNotifier.await(WORKFLOW_INSTANCE_ID, TIMEOUT));
+    // Nobody is waiting, so there is no need to read the feed
+    mockNotifier.poll();
+    verify(mockStore, never()).getCompletionsAfter(anyLong(), anyInt());
+  }
+
+  @Test
+  public void testShutdownFailsTheWaiters() {
+    val future = notifier.await(WORKFLOW_INSTANCE_ID, TIMEOUT);
+    notifier.shutdown();
+    assertTrue(future.isCompletedExceptionally());
+    assertThrows(CancellationException.class, future::join);
+    assertThrows(IllegalStateException.class, () -> notifier.await(WORKFLOW_INSTANCE_ID, TIMEOUT));
+  }
+
+  private WorkflowCompletionNotifier newNotifier(WorkflowInstanceStore store) {
+    // The background poll never kicks in during the tests
+    return new WorkflowCompletionNotifier(
+        store, clock, Duration.ofHours(1), Duration.ofHours(1), TIMEOUT);
+  }
+
+  private WorkflowInstance activeInstance() {
+    return WorkflowInstance.builder()
+        .id(WORKFLOW_INSTANCE_ID)
+        .correlationId("corr-1")
+        .workflowType(new WorkflowType(SkipperWorkflow.class))
+        .initialArgs(new ArrayList<>())
+        .status(WorkflowInstance.Status.ACTIVE)
+        .state(new HashMap<>())
+        .creationTime(clock.instant())
+        .build();
+  }
+
+  private WorkflowCompletion completion(long sequence, String workflowInstanceId) {
+    return WorkflowCompletion.builder()
+        .sequence(sequence)
+        .workflowInstanceId(workflowInstanceId)
+        .status(WorkflowInstance.Status.COMPLETED)
+        .completionTime(clock.instant())
+        .build();
+  }
+
+  private WorkflowInstance complete() {
+    store.update(
+        WORKFLOW_INSTANCE_ID,
+        WorkflowInstance.Mutation.builder()
+            .status(WorkflowInstance.Status.COMPLETED)
+            .result(Anything.of("done"))
+            .build(),
+        0);
+    return store.get(WORKFLOW_INSTANCE_ID);
+  }
+}
@@ -1,10 +1,15 @@
 package io.github.rgamba.skipper;
 
+import static org.junit.Assert.*;
+
 import io.github.rgamba.skipper.api.SkipperWorkflow;
 import io.github.rgamba.skipper.api.annotations.StateField;
 import io.github.rgamba.skipper.api.annotations.WorkflowMethod;
+import io.github.rgamba.skipper.common.Anything;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import org.junit.Test;
 
 public class WorkflowInspectorTest {
@@ -17,6 +22,45 @@ public class WorkflowInspectorTest {
     inspector.getState();
   }
 
+  @Test
+  public void testSetStateToNull() {
+    StateParamComplexType instance = new StateParamComplexType(new ArrayList<>());
+    WorkflowInspector inspector = new WorkflowInspector(StateParamComplexType.class, instance);
+    Map<String, Anything> state = new HashMap<>();
+    state.put("users", null);
+    inspector.setState(state);
+    assertNull(instance.users);
+  }
+
+  @Test
+  public void testSetPrimitiveStateToNull() {
+    PrimitiveState instance = new PrimitiveState();
+    WorkflowInspector inspector = new WorkflowInspector(PrimitiveState.class, instance);
+    Map<String, Anything> state = new HashMap<>();
+    state.put("count", null);
+    IllegalArgumentException e =
+        assertThrows(IllegalArgumentException.class, () -> inspector.setState(state));
+    assertTrue(e.getMessage().contains("count"));
+  }
+
+  @Test
+  public void testSetStateWithTheWrongType() {
+    PrimitiveState instance = new PrimitiveState();
+    WorkflowInspector inspector = new WorkflowInspector(PrimitiveState.class, instance);
+    Map<String, Anything> state = new HashMap<>();
+    state.put("count", Anything.of("not a number"));
+    IllegalArgumentException e =
+        assertThrows(IllegalArgumentException.class, () -> inspector.setState(state));
+    assertTrue(e.getMessage().contains("java.lang.String"));
+  }
+
+  private static class PrimitiveState implements SkipperWorkflow {
+    @StateField int count;
+
+    @WorkflowMethod
+    public void test() {}
+  }
+
   private static class StateParamComplexType implements SkipperWorkflow {
     @StateField List<String> users;
 
@@ -0,0 +1,61 @@
+package io.github.rgamba.skipper;
+
+import static org.junit.Assert.*;
+
+import io.github.rgamba.skipper.api.SkipperWorkflow;
+import io.github.rgamba.skipper.api.annotations.SignalConsumer;
+import io.github.rgamba.skipper.api.annotations.StateField;
+import io.github.rgamba.skipper.api.annotations.WorkflowMethod;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import lombok.val;
+import org.junit.Test;
+
+public class WorkflowMetadataTest {
+  @Test
+  public void testMetadataIsCachedPerClass() {
+    assertSame(WorkflowMetadata.of(TestWorkflow.class), WorkflowMetadata.of(TestWorkflow.class));
+  }
+
+  @Test
+  public void testMetadata() throws Throwable {
+    val metadata = WorkflowMetadata.of(TestWorkflow.class);
+    assertEquals("run", metadata.getWorkflowMethod().getName());
+    assertEquals("signal", metadata.getSignalConsumerMethod("signal").getName());
+    assertThrows(IllegalArgumentException.class, () -> metadata.getSignalConsumerMethod("run"));
+    assertEquals(2, metadata.getStateFields().size());
+    val fields = metadata.getStateFields();
+    val users = fields.stream().filter(f -> f.getName().equals("users")).findFirst().get();
+    assertArrayEquals(new Class<?>[] {String.class}, users.getTypeArguments());
+    val nested = fields.stream().filter(f -> f.getName().equals("nested")).findFirst().get();
+    assertArrayEquals(new Class<?>[] {String.class, List.class}, nested.getTypeArguments());
+    // Invocation goes through the cached handles
+    val workflow = new TestWorkflow();
+    assertEquals(
+        "hello world", metadata.getWorkflowMethod().invoke(workflow, new Object[] {"world"}));
+    users.set(workflow, Collections.singletonList("foo"));
+    assertEquals(Collections.singletonList("foo"), users.get(workflow));
+  }
+
+  @Test
+  public void testWorkflowWithoutWorkflowMethod() {
+    val metadata = WorkflowMetadata.of(NoWorkflowMethod.class);
+    assertThrows(IllegalArgumentException.class, metadata::getWorkflowMethod);
+  }
+
+  private static class TestWorkflow implements SkipperWorkflow {
+    @StateField private List<String> users;
+    @StateField private Map<String, List<Integer>> nested;
+
+    @WorkflowMethod
+    public String run(String name) {
+      return "hello " + name;
+    }
+
+    @SignalConsumer
+    public void signal(String value) {}
+  }
+
+  private static class NoWorkflowMethod implements SkipperWorkflow {}
+}
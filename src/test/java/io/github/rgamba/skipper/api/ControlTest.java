@@ -43,7 +43,7 @@ public class ControlTest {
         WorkflowContext.builder()
             .workflowInstanceId(TEST_WORKFLOW_ID)
             .currentTime(t1)
-            .workflowInstanceCreationTime(t1)
+            .runStartTime(t1)
             .operationResponses(new ArrayList<>())
             .build();
     DecisionThread.setWorkflowContext(context);
@@ -63,7 +63,7 @@ public class ControlTest {
         WorkflowContext.builder()
             .workflowInstanceId(TEST_WORKFLOW_ID)
             .currentTime(t2)
-            .workflowInstanceCreationTime(t1)
+            .runStartTime(t1)
             .operationResponses(new ArrayList<>())
             .build();
     DecisionThread.setWorkflowContext(context);
@@ -85,7 +85,7 @@ public class ControlTest {
         WorkflowContext.builder()
             .workflowInstanceId(TEST_WORKFLOW_ID)
             .currentTime(t1)
-            .workflowInstanceCreationTime(t1)
+            .runStartTime(t1)
             .operationResponses(new ArrayList<>())
             .build();
     DecisionThread.setWorkflowContext(context);
@@ -99,7 +99,7 @@ public class ControlTest {
         WorkflowContext.builder()
             .workflowInstanceId(TEST_WORKFLOW_ID)
             .currentTime(t2)
-            .workflowInstanceCreationTime(t1)
+            .runStartTime(t1)
             .operationResponses(new ArrayList<>())
             .build();
     DecisionThread.setWorkflowContext(context);
@@ -113,7 +113,7 @@ public class ControlTest {
         WorkflowContext.builder()
             .workflowInstanceId(TEST_WORKFLOW_ID)
             .currentTime(t2)
-            .workflowInstanceCreationTime(t1)
+            .runStartTime(t1)
             .operationResponses(
                 new ArrayList<OperationResponse>() {
                   {
@@ -0,0 +1,82 @@
+package io.github.rgamba.skipper.runtime;
+
+import static org.junit.Assert.*;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.val;
+import org.junit.After;
+import org.junit.Test;
+
+public class DecisionThreadTest {
+  private final WorkflowContext context =
+      new WorkflowContext("wf-1", Instant.ofEpochMilli(1000), new ArrayList<>(), Instant.EPOCH);
+
+  @After
+  public void tearDown() {
+    DecisionThread.clear();
+  }
+
+  @Test
+  public void testPropagate() throws Exception {
+    DecisionThread.setWorkflowContext(context);
+    DecisionThread.setLatestCurrentExecutionCheckpoint(Instant.ofEpochMilli(500));
+    DecisionThread.startReplayTracking(null);
+    val tracker = DecisionThread.getReplayTracker().get();
+    val seenContext = new AtomicReference<WorkflowContext>();
+    val seenCheckpoint = new AtomicReference<Instant>();
+    val seenTracker = new AtomicReference<ReplayTracker>();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      executor
+          .submit(
+              DecisionThread.propagate(
+                  () -> {
+                    seenContext.set(DecisionThread.getWorkflowContext());
+                    seenCheckpoint.set(DecisionThread.getLatestCurrentExecutionCheckpoint().get());
+                    seenTracker.set(DecisionThread.getReplayTracker().get());
+                  }))
+          .get();
+      // The worker thread state must be restored once the task is done
+      assertFalse(
+          executor
+              .submit(() -> DecisionThread.getLatestCurrentExecutionCheckpoint())
+              .get()
+              .isPresent());
+      assertFalse(executor.submit(() -> DecisionThread.getReplayTracker()).get().isPresent());
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(context, seenContext.get());
+    assertEquals(Instant.ofEpochMilli(500), seenCheckpoint.get());
+    assertSame(tracker, seenTracker.get());
+  }
+
+  @Test
+  public void testIsolated() {
+    DecisionThread.setWorkflowContext(context);
+    DecisionThread.startReplayTracking(null);
+    val tracker = DecisionThread.getReplayTracker().get();
+    val hasContext = new AtomicReference<Boolean>();
+    val hasTracker = new AtomicReference<Boolean>();
+    DecisionThread.isolated(
+            () -> {
+              try {
+                DecisionThread.getWorkflowContext();
+                hasContext.set(true);
+              } catch (IllegalStateException e) {
+                hasContext.set(false);
+              }
+              hasTracker.set(DecisionThread.getReplayTracker().isPresent());
+            })
+        .run();
+    assertFalse(hasContext.get());
+    assertFalse(hasTracker.get());
+    // The state of the calling thread is restored
+    assertEquals(context, DecisionThread.getWorkflowContext());
+    assertSame(tracker, DecisionThread.getReplayTracker().get());
+  }
+}
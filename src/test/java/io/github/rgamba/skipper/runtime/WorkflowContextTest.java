@@ -0,0 +1,54 @@
+package io.github.rgamba.skipper.runtime;
+
+import static org.junit.Assert.*;
+
+import io.github.rgamba.skipper.common.Anything;
+import io.github.rgamba.skipper.models.OperationResponse;
+import io.github.rgamba.skipper.models.OperationType;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.val;
+import org.junit.Test;
+
+public class WorkflowContextTest {
+  private OperationResponse response(
+      String id, OperationType type, int iteration, boolean isTransient) {
+    return OperationResponse.builder()
+        .operationType(type)
+        .creationTime(Instant.now())
+        .id(id)
+        .isSuccess(!isTransient)
+        .isTransient(isTransient)
+        .error(isTransient ? Anything.of("error") : null)
+        .operationRequestId("req-" + id)
+        .workflowInstanceId("wf123")
+        .iteration(iteration)
+        .build();
+  }
+
+  @Test
+  public void testResponseIndex() {
+    List<OperationResponse> responses = new ArrayList<>();
+    responses.add(response("transient", new OperationType(String.class, "foo"), 0, true));
+    responses.add(response("first", new OperationType(String.class, "foo"), 0, false));
+    responses.add(response("duplicate", new OperationType(String.class, "foo"), 0, false));
+    responses.add(response("second", new OperationType(String.class, "foo"), 1, false));
+    responses.add(response("timeout", OperationType.waitTimeout("123"), 0, false));
+    val context = new WorkflowContext("wf123", Instant.MIN, responses, Instant.MIN);
+    val index = context.getResponseIndex();
+
+    assertEquals("first", index.findOperationResponse(String.class, "foo", 0).get().getId());
+    assertEquals("second", index.findOperationResponse(String.class, "foo", 1).get().getId());
+    assertFalse(index.findOperationResponse(String.class, "foo", 2).isPresent());
+    assertFalse(index.findOperationResponse(String.class, "bar", 0).isPresent());
+    assertEquals("timeout", index.findWaitTimeoutResponse("123").get().getId());
+    assertFalse(index.findWaitTimeoutResponse("456").isPresent());
+    // The index is reused until new responses are recorded
+    assertSame(index, context.getResponseIndex());
+    responses.add(response("third", new OperationType(String.class, "foo"), 2, false));
+    assertEquals(
+        "third",
+        context.getResponseIndex().findOperationResponse(String.class, "foo", 2).get().getId());
+  }
+}
@@ -1,13 +1,17 @@
 package io.github.rgamba.skipper.serde;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
 import io.github.rgamba.skipper.api.SkipperWorkflow;
 import io.github.rgamba.skipper.common.Anything;
 import io.github.rgamba.skipper.models.WorkflowType;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import lombok.val;
 import org.junit.Test;
 
@@ -23,4 +27,16 @@ public class AnythingAdapterTest {
     Anything deser = jsonBuilder.create().fromJson(ser, Anything.class);
     assertEquals(test, deser);
   }
+
+  @Test
+  public void testNullValue() {
+    val gson = SerdeUtils.getGson();
+    Map<String, Anything> state =
+        gson.fromJson(
+            "{\"foo\":null}",
+            TypeToken.getParameterized(Map.class, String.class, Anything.class).getType());
+    assertTrue(state.containsKey("foo"));
+    assertNull(state.get("foo"));
+    assertEquals("null", gson.toJson(null, Anything.class));
+  }
 }
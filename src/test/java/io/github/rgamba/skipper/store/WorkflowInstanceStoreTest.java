@@ -42,5 +42,53 @@ public class WorkflowInstanceStoreTest {
     state.put("foo", new Anything(String.class, "bar"));
     store.update(
         w1.getId(), WorkflowInstance.Mutation.builder().state(state).build(), w1.getVersion());
+
+    val patch = new HashMap<String, Anything>();
+    patch.put("baz", new Anything(String.class, "qux"));
+    store.update(
+        w1.getId(), WorkflowInstance.Mutation.builder().statePatch(patch).build(), w1.getVersion());
+    val expected = new HashMap<>(state);
+    expected.putAll(patch);
+    assertEquals(expected, store.get(w1.getId()).getState());
+
+    val nextRunArgs = new ArrayList<Anything>();
+    nextRunArgs.add(Anything.of("next"));
+    store.update(
+        w1.getId(),
+        WorkflowInstance.Mutation.builder()
+            .nextRunArgs(nextRunArgs)
+            .nextRunStartTime(Instant.EPOCH)
+            .build(),
+        w1.getVersion());
+    val nextRun = store.get(w1.getId());
+    assertEquals(1, nextRun.getRunNumber());
+    assertEquals(nextRunArgs, nextRun.getInitialArgs());
+    assertEquals(Instant.EPOCH, nextRun.getCurrentRunStartTime());
+    assertEquals(expected, nextRun.getState());
+  }
+
+  @Test
+  public void testOnlyTransitionsIntoATerminalStatusAreCompletions() {
+    val store = new InMemoryWorkflowInstanceStore();
+    store.create(
+        WorkflowInstance.builder()
+            .id("wf1")
+            .workflowType(new WorkflowType(SkipperWorkflow.class))
+            .status(WorkflowInstance.Status.ACTIVE)
+            .state(new HashMap<>())
+            .correlationId("corr1")
+            .initialArgs(new ArrayList<>())
+            .creationTime(Instant.MIN)
+            .build());
+    val error =
+        WorkflowInstance.Mutation.builder()
+            .status(WorkflowInstance.Status.ERROR)
+            .statusReason("failed")
+            .build();
+    store.update("wf1", error, 0);
+    assertEquals(1, store.getCompletionsAfter(0, 10).size());
+    // e.g. a failed workflow instance that is retried keeps its status
+    store.update("wf1", error, 0);
+    assertEquals(1, store.getCompletionsAfter(0, 10).size());
   }
 }
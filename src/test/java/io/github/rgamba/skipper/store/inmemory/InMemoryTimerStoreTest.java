@@ -4,11 +4,14 @@ import static org.junit.Assert.*;
 
 import io.github.rgamba.skipper.common.Anything;
 import io.github.rgamba.skipper.models.Timer;
+import io.github.rgamba.skipper.store.TimerStore;
+import io.github.rgamba.skipper.timers.DecisionTimerHandler;
 import io.github.rgamba.skipper.timers.TimerHandler;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
+import java.util.Collections;
 import lombok.val;
 import org.junit.Assert;
 import org.junit.Test;
@@ -51,9 +54,10 @@ public class InMemoryTimerStoreTest {
     assertEquals(t2, result.get(0));
     // Fetching again should produce no results, since we should've taken a lease on t2
     assertEquals(0, store.getExpiredTimers().size());
-    // Verify that the lease for t2 is 30 secs in the future
+    // Verify that t2 is leased for the default lease duration
     val newT2 = store.get(t2.getTimerId());
-    val expectedT2 = t2.toBuilder().timeout(clock.instant().plus(Duration.ofSeconds(30))).build();
+    val expectedT2 =
+        t2.toBuilder().timeout(clock.instant().plus(TimerStore.DEFAULT_LEASE_DURATION)).build();
     Assert.assertEquals(expectedT2, newT2);
     // Delete t2
     val updatedT2 = store.createOrUpdate(t2);
@@ -65,4 +69,131 @@ public class InMemoryTimerStoreTest {
     assertTrue(store.delete(updatedT2));
     assertThrows(IllegalArgumentException.class, () -> store.get(t2.getTimerId()));
   }
+
+  @Test
+  public void testGetExpiredTimersHonorsPartitionsAndLimit() {
+    val clock = Clock.fixed(Instant.ofEpochMilli(1662908612003L), ZoneId.systemDefault());
+    val store = new InMemoryTimerStore(clock);
+    for (int i = 0; i < 10; i++) {
+      store.createOrUpdate(
+          Timer.builder()
+              .handlerClazz(TimerHandler.class)
+              .timerId("t" + i)
+              .timeout(clock.instant().minus(Duration.ofSeconds(10)))
+              .payload(new Anything(String.class, "payload"))
+              .build());
+    }
+    val partition = store.get("t0").getPartition();
+    val result =
+        store.getExpiredTimers(
+            Collections.singleton(partition), TimerHandler.class, Duration.ZERO, 10);
+    assertFalse(result.isEmpty());
+    result.forEach(t -> assertEquals(partition, t.getPartition()));
+    assertEquals(
+        3,
+        store.getExpiredTimers(Timer.allPartitions(), TimerHandler.class, Duration.ZERO, 3).size());
+    // Timers are only claimed for the requested handler
+    assertTrue(
+        store
+            .getExpiredTimers(Timer.allPartitions(), DecisionTimerHandler.class, Duration.ZERO, 10)
+            .isEmpty());
+  }
+
+  @Test
+  public void testRescheduleAndQuarantine() {
+    val clock = Clock.fixed(Instant.ofEpochMilli(1662908612003L), ZoneId.systemDefault());
+    val store = new InMemoryTimerStore(clock);
+    val timer =
+        store.createOrUpdate(
+            Timer.builder()
+                .handlerClazz(TimerHandler.class)
+                .timerId("t1")
+                .payload(new Anything(String.class, "payload"))
+                .build());
+    assertTrue(store.reschedule(timer, Duration.ofSeconds(5)));
+    val rescheduled = store.get("t1");
+    assertEquals(1, rescheduled.getRetries());
+    assertEquals(clock.instant().plus(Duration.ofSeconds(5)), rescheduled.getTimeout());
+    // Stale versions are not quarantined
+    assertFalse(store.quarantine(timer.toBuilder().version(5).build(), "error"));
+    assertTrue(store.quarantine(rescheduled, "error"));
+    assertThrows(IllegalArgumentException.class, () -> store.get("t1"));
+    val quarantined = store.getQuarantinedTimers(10);
+    assertEquals(1, quarantined.size());
+    assertEquals("error", quarantined.get(0).getLastError());
+    assertEquals(rescheduled, quarantined.get(0).getTimer());
+    // Requeue
+    store.requeueQuarantinedTimer("t1");
+    assertEquals(0, store.get("t1").getRetries());
+    assertTrue(store.getQuarantinedTimers(10).isEmpty());
+    assertThrows(IllegalArgumentException.class, () -> store.requeueQuarantinedTimer("t1"));
+  }
+
+  @Test
+  public void testCreateOrCoalesceKeepsTheEarliestTimeout() {
+    val clock = Clock.fixed(Instant.ofEpochMilli(1662908612003L), ZoneId.systemDefault());
+    val store = new InMemoryTimerStore(clock);
+    val builder =
+        Timer.builder()
+            .handlerClazz(TimerHandler.class)
+            .timerId("t1")
+            .payload(new Anything(String.class, "payload"));
+    val first = store.createOrCoalesce(builder.timeout(clock.instant().plusMillis(500)).build());
+    assertEquals(0, first.getVersion());
+    val second = store.createOrCoalesce(builder.timeout(clock.instant().plusMillis(800)).build());
+    assertEquals(1, second.getVersion());
+    assertEquals(clock.instant().plusMillis(500), second.getTimeout());
+    assertEquals(second, store.get("t1"));
+    // Earlier timeouts still move the timer forward
+    val third = store.createOrCoalesce(builder.timeout(clock.instant().plusMillis(100)).build());
+    assertEquals(clock.instant().plusMillis(100), third.getTimeout());
+  }
+
+  @Test
+  public void testExtendLease() {
+    val clock = Clock.fixed(Instant.ofEpochMilli(1662908612003L), ZoneId.systemDefault());
+    val store = new InMemoryTimerStore(clock);
+    val timer =
+        store.createOrUpdate(
+            Timer.builder()
+                .handlerClazz(TimerHandler.class)
+                .timerId("t1")
+                .payload(new Anything(String.class, "payload"))
+                .build());
+    // Timers that are not leased can't be extended
+    assertFalse(store.extendLease(timer, Duration.ofMinutes(1)));
+    val claimed = store.claim(timer).get();
+    assertTrue(store.extendLease(claimed, Duration.ofMinutes(1)));
+    assertEquals(clock.instant().plus(Duration.ofMinutes(1)), store.get("t1").getTimeout());
+    assertFalse(store.extendLease(claimed.toBuilder().version(5).build(), Duration.ofMinutes(2)));
+    // Neither can the leases taken by someone else
+    assertFalse(store.extendLease(timer, Duration.ofMinutes(2)));
+    assertFalse(
+        store.extendLease(
+            claimed.toBuilder().leaseOwner("someone-else").build(), Duration.ofMinutes(2)));
+  }
+
+  @Test
+  public void testClaimsAreLeasedForTheRequestedDuration() {
+    val clock = Clock.fixed(Instant.ofEpochMilli(1662908612003L), ZoneId.systemDefault());
+    val store = new InMemoryTimerStore(clock);
+    val builder = Timer.builder().handlerClazz(TimerHandler.class).payload(Anything.of("payload"));
+    val t1 = store.createOrUpdate(builder.timerId("t1").build());
+    val t2 =
+        store.createOrUpdate(
+            builder.timerId("t2").timeout(clock.instant().minusSeconds(1)).build());
+    assertTrue(store.claim(t1, Duration.ofMinutes(1)).isPresent());
+    assertEquals(clock.instant().plus(Duration.ofMinutes(1)), store.get("t1").getTimeout());
+    assertEquals(
+        1,
+        store
+            .getExpiredTimers(
+                Collections.singleton(t2.getPartition()),
+                TimerHandler.class,
+                Duration.ZERO,
+                Duration.ofSeconds(45),
+                10)
+            .size());
+    assertEquals(clock.instant().plus(Duration.ofSeconds(45)), store.get("t2").getTimeout());
+  }
 }
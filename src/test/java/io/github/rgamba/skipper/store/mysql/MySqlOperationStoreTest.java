@@ -13,6 +13,8 @@ import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.stream.Collectors;
 import lombok.val;
 import org.junit.Before;
 import org.junit.Test;
@@ -104,4 +106,76 @@ public class MySqlOperationStoreTest extends SqlTestHelper {
     assertEquals(1, store.getOperationResponses(wfId1, false).size());
     assertEquals(1, store.getOperationResponses(wfId2, true).size());
   }
+
+  @Test
+  public void testResponseSequence() {
+    final String wfId = "wftest123";
+    final OperationType operationType = new OperationType(String.class, "testmethod");
+    OperationResponse res1 =
+        OperationResponse.builder()
+            .id("res1")
+            .workflowInstanceId(wfId)
+            .operationType(operationType)
+            .creationTime(Instant.now())
+            .isSuccess(true)
+            .isTransient(false)
+            .operationRequestId("op1")
+            .build();
+    OperationResponse res2 =
+        res1.toBuilder().id("res2").iteration(1).creationTime(Instant.EPOCH).build();
+    OperationResponse res3 = res1.toBuilder().id("res3").iteration(2).build();
+    OperationResponse other = res1.toBuilder().id("res4").workflowInstanceId("other").build();
+    assertEquals(0, store.getLatestResponseSequence(wfId));
+
+    store.createOperationResponse(res1);
+    val sequence = store.getLatestResponseSequence(wfId);
+    store.createOperationResponses(Arrays.asList(res2, other, res3));
+
+    assertEquals(sequence + 2, store.getLatestResponseSequence(wfId));
+    // Regardless of their creation time
+    assertEquals(
+        Arrays.asList("res2", "res3"),
+        store.getOperationResponsesAfter(wfId, sequence).stream()
+            .map(OperationResponse::getId)
+            .collect(Collectors.toList()));
+    assertTrue(store.getOperationResponsesAfter(wfId, sequence + 2).isEmpty());
+  }
+
+  @Test
+  public void testArchiveHistory() {
+    final OperationType operationType = new OperationType(String.class, "testmethod");
+    OperationRequest req1 =
+        OperationRequest.builder()
+            .operationRequestId("req1")
+            .workflowInstanceId("wf1")
+            .operationType(operationType)
+            .creationTime(Instant.now().truncatedTo(ChronoUnit.SECONDS))
+            .arguments(new ArrayList<>())
+            .retryStrategy(
+                FixedRetryStrategy.builder().retryDelay(Duration.ZERO).maxRetries(1).build())
+            .timeout(Duration.ofSeconds(10))
+            .build();
+    OperationResponse res1 =
+        OperationResponse.builder()
+            .id("res1")
+            .workflowInstanceId("wf1")
+            .operationType(operationType)
+            .creationTime(Instant.now())
+            .isSuccess(true)
+            .isTransient(false)
+            .operationRequestId("req1")
+            .build();
+    store.createOperationRequest(req1);
+    store.createOperationRequest(
+        req1.toBuilder().operationRequestId("req2").workflowInstanceId("wf2").build());
+    store.createOperationResponse(res1);
+
+    store.archiveHistory("wf1", 0);
+
+    assertTrue(store.getOperationRequests("wf1").isEmpty());
+    assertTrue(store.getOperationResponses("wf1", true).isEmpty());
+    assertEquals(1, store.getOperationRequests("wf2").size());
+    // The same iteration can be recorded again on the next run
+    assertTrue(store.createOperationResponse(res1.toBuilder().id("res2").build()));
+  }
 }
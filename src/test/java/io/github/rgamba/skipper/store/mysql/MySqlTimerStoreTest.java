@@ -11,6 +11,8 @@ import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.UUID;
 import lombok.val;
 import lombok.var;
@@ -88,11 +90,13 @@ public class MySqlTimerStoreTest extends SqlTestHelper {
     assertEquals(t2, result.get(0));
     // Fetching again should produce no results, since we should've taken a lease on t2
     assertEquals(0, store.getExpiredTimers().size());
-    // Verify that the lease for t2 is 30 secs in the future
+    // The claim is tracked on the lease columns, so the original timeout must be preserved
     val newT2 = store.get(t2.getTimerId());
-    val expectedT2 =
-        t2.toBuilder().timeout(clock.instant().plus(MySqlTimerStore.leaseDuration)).build();
-    Assert.assertEquals(expectedT2, newT2);
+    Assert.assertEquals(t2, newT2);
+    assertEquals(0, store.countExpiredTimers());
+    // Re-scheduling the timer releases the lease
+    store.update(t2.getTimerId(), Duration.ZERO);
+    assertEquals(1, store.getExpiredTimers().size());
   }
 
   @Test
@@ -111,4 +115,110 @@ public class MySqlTimerStoreTest extends SqlTestHelper {
     result = store.getExpiredTimers();
     assertEquals(1, result.size());
   }
+
+  @Test
+  public void testFetchTimersWithLookAhead() {
+    val t1 =
+        Timer.builder()
+            .handlerClazz(TimerHandler.class)
+            .timerId(UUID.randomUUID().toString())
+            .timeout(clock.instant().plus(Duration.ofSeconds(1)))
+            .payload(new Anything(String.class, "payload1"))
+            .build();
+    store.createOrUpdate(t1);
+    val partitions = Collections.singleton(t1.getPartition());
+    assertEquals(
+        0, store.getExpiredTimers(partitions, TimerHandler.class, Duration.ZERO, 10).size());
+    val result = store.getExpiredTimers(partitions, TimerHandler.class, Duration.ofSeconds(2), 10);
+    assertEquals(1, result.size());
+    assertEquals(t1, result.get(0));
+    // The timer is now leased, even after its timeout is reached
+    assertEquals(
+        0,
+        store.getExpiredTimers(partitions, TimerHandler.class, Duration.ofSeconds(2), 10).size());
+  }
+
+  @Test
+  public void testExtendLeaseOnlyByTheLeaseOwner() {
+    val timer =
+        store.createOrUpdate(
+            Timer.builder()
+                .handlerClazz(TimerHandler.class)
+                .timerId(UUID.randomUUID().toString())
+                .timeout(clock.instant().minus(Duration.ofSeconds(1)))
+                .payload(new Anything(String.class, "payload"))
+                .build());
+    // Timers that are not leased can't be extended
+    assertFalse(store.extendLease(timer, Duration.ofMinutes(1)));
+    val claimed = store.claim(timer).get();
+    assertTrue(store.extendLease(claimed, Duration.ofMinutes(1)));
+    // The lease lapses and another node takes it over, with the same version
+    val laterStore = new MySqlTimerStore(trxMgr, Clock.offset(clock, Duration.ofMinutes(2)));
+    val reclaimed = laterStore.claim(timer).get();
+    assertEquals(claimed.getVersion(), reclaimed.getVersion());
+    assertFalse(laterStore.extendLease(claimed, Duration.ofMinutes(1)));
+    assertTrue(laterStore.extendLease(reclaimed, Duration.ofMinutes(1)));
+  }
+
+  @Test
+  public void testCreateOrCoalesce() {
+    val builder =
+        Timer.builder()
+            .handlerClazz(TimerHandler.class)
+            .timerId(UUID.randomUUID().toString())
+            .payload(Anything.of("payload"));
+    val first = store.createOrCoalesce(builder.timeout(clock.instant().plusMillis(500)).build());
+    assertEquals(0, first.getVersion());
+    val second = store.createOrCoalesce(builder.timeout(clock.instant().plusMillis(800)).build());
+    assertEquals(1, second.getVersion());
+    assertEquals(clock.instant().plusMillis(500), second.getTimeout());
+    assertEquals(second, store.get(second.getTimerId()));
+    // Earlier timeouts still move the timer forward
+    val third = store.createOrCoalesce(builder.timeout(clock.instant().plusMillis(100)).build());
+    assertEquals(clock.instant().plusMillis(100), third.getTimeout());
+    assertEquals(third, store.get(third.getTimerId()));
+  }
+
+  @Test
+  public void testGetNextTimeout() {
+    val due =
+        Timer.builder()
+            .handlerClazz(TimerHandler.class)
+            .timerId(UUID.randomUUID().toString())
+            .timeout(clock.instant().minus(Duration.ofSeconds(1)))
+            .payload(new Anything(String.class, "due"))
+            .build();
+    val next =
+        due.toBuilder()
+            .timerId(UUID.randomUUID().toString())
+            .timeout(clock.instant().plus(Duration.ofSeconds(5)))
+            .build();
+    store.createOrUpdate(due);
+    val partitions = Collections.singleton(next.getPartition());
+    assertFalse(store.getNextTimeout(partitions).isPresent());
+    store.createOrUpdate(next);
+    assertEquals(
+        next.getTimeout(), store.getNextTimeout(Collections.singleton(next.getPartition())).get());
+  }
+
+  @Test
+  public void testCreateOrUpdateAll() {
+    val existing =
+        store.createOrUpdate(
+            Timer.builder()
+                .handlerClazz(TimerHandler.class)
+                .timerId(UUID.randomUUID().toString())
+                .payload(Anything.of("existing"))
+                .build());
+    val created =
+        Timer.builder()
+            .handlerClazz(TimerHandler.class)
+            .timerId(UUID.randomUUID().toString())
+            .payload(Anything.of("created"))
+            .build();
+    val updated = existing.toBuilder().payload(Anything.of("updated")).build();
+    val result = store.createOrUpdateAll(Arrays.asList(created, updated));
+    assertEquals(Arrays.asList(created, updated.toBuilder().version(1).build()), result);
+    assertEquals(result.get(1), store.get(existing.getTimerId()));
+  }
 }
@@ -11,6 +11,8 @@ import io.github.rgamba.skipper.store.SqlTestHelper;
 import io.github.rgamba.skipper.store.StorageError;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.UUID;
 import lombok.val;
@@ -50,6 +52,48 @@ public class MySqlWorkflowInstanceTest extends SqlTestHelper {
     store = new MySqlWorkflowInstanceStore(trxMgr);
   }
 
+  @Test
+  public void testFindByCorrelationIdAndGetAll() {
+    store.create(instance);
+    val other =
+        instance
+            .toBuilder()
+            .id(UUID.randomUUID().toString())
+            .correlationId(UUID.randomUUID().toString())
+            .build();
+    store.create(other);
+    assertEquals(
+        instance.getId(),
+        store
+            .findByCorrelationId(instance.getWorkflowType(), instance.getCorrelationId())
+            .get()
+            .getId());
+    assertFalse(
+        store
+            .findByCorrelationId(instance.getWorkflowType(), UUID.randomUUID().toString())
+            .isPresent());
+    val found = store.getAll(Arrays.asList(instance.getId(), other.getId(), "missing"));
+    assertEquals(2, found.size());
+    assertTrue(found.stream().anyMatch(wf -> wf.getId().equals(other.getId())));
+  }
+
+  @Test
+  public void testCreateAll() {
+    store.create(instance);
+    val fresh =
+        instance
+            .toBuilder()
+            .id(UUID.randomUUID().toString())
+            .correlationId(UUID.randomUUID().toString())
+            .build();
+    // Same correlation ID as an existing instance
+    val duplicate = instance.toBuilder().id(UUID.randomUUID().toString()).build();
+    val created = store.createAll(Arrays.asList(fresh, duplicate));
+    assertEquals(Collections.singleton(fresh.getId()), created);
+    assertEquals(fresh.getCorrelationId(), store.get(fresh.getId()).getCorrelationId());
+    assertThrows(IllegalArgumentException.class, () -> store.get(duplicate.getId()));
+  }
+
   @Test
   public void testCreateAndGet() throws Exception {
     // create normal
@@ -147,4 +191,75 @@ public class MySqlWorkflowInstanceTest extends SqlTestHelper {
             () -> store.update(newInstance.getId(), mutation, newInstance.getVersion()));
     assertTrue(error.getMessage().contains("optimistic lock error"));
   }
+
+  @Test
+  public void testOnlyTransitionsIntoATerminalStatusAreCompletions() {
+    store.create(instance);
+    val sequence = store.getLatestCompletionSequence();
+    val error =
+        WorkflowInstance.Mutation.builder()
+            .status(WorkflowInstance.Status.ERROR)
+            .statusReason("failed")
+            .build();
+    store.update(instance.getId(), error, instance.getVersion());
+    assertEquals(1, store.getCompletionsAfter(sequence, 10).size());
+    // e.g. a failed workflow instance that is retried keeps its status
+    store.update(instance.getId(), error, instance.getVersion() + 1);
+    assertEquals(1, store.getCompletionsAfter(sequence, 10).size());
+  }
+
+  @Test
+  public void testUpdateWithStatePatch() {
+    HashMap<String, Anything> state = new HashMap<>();
+    state.put("untouched", Anything.of("original"));
+    state.put("changed", Anything.of(1));
+    val newInstance =
+        instance
+            .toBuilder()
+            .correlationId(UUID.randomUUID().toString())
+            .id(UUID.randomUUID().toString())
+            .state(state)
+            .build();
+    store.create(newInstance);
+    HashMap<String, Anything> patch = new HashMap<>();
+    patch.put("changed", Anything.of(2));
+    patch.put("added", Anything.of("new"));
+    store.update(
+        newInstance.getId(),
+        WorkflowInstance.Mutation.builder().statePatch(patch).build(),
+        newInstance.getVersion());
+    HashMap<String, Anything> expected = new HashMap<>(state);
+    expected.putAll(patch);
+    assertEquals(expected, store.get(newInstance.getId()).getState());
+  }
+
+  @Test
+  public void testUpdateWithStatePatchSettingAFieldToNull() {
+    HashMap<String, Anything> state = new HashMap<>();
+    state.put("untouched", Anything.of("original"));
+    state.put("cleared", Anything.of(1));
+    val newInstance =
+        instance
+            .toBuilder()
+            .correlationId(UUID.randomUUID().toString())
+            .id(UUID.randomUUID().toString())
+            .state(state)
+            .build();
+    store.create(newInstance);
+    HashMap<String, Anything> patch = new HashMap<>();
+    patch.put("cleared", null);
+    patch.put("changed", Anything.of("new"));
+    store.update(
+        newInstance.getId(),
+        WorkflowInstance.Mutation.builder().statePatch(patch).build(),
+        newInstance.getVersion());
+    val updated = store.get(newInstance.getId());
+    HashMap<String, Anything> expected = new HashMap<>();
+    expected.put("untouched", Anything.of("original"));
+    expected.put("changed", Anything.of("new"));
+    assertEquals(expected, updated.getState());
+    assertEquals(
+        newInstance.apply(WorkflowInstance.Mutation.builder().statePatch(patch).build()).getState(),
+        updated.getState());
+  }
 }
@@ -58,7 +58,7 @@ public abstract class WorkflowTest {
             context.getWorkflowInstanceId(),
             context.getCurrentTime().plus(duration),
             context.getOperationResponses(),
-            context.getWorkflowInstanceCreationTime()));
+            context.getRunStartTime()));
   }
 
   protected void increaseExecutionCheckpoint() {
@@ -86,7 +86,7 @@ public abstract class WorkflowTest {
               context.getWorkflowInstanceId(),
               context.getCurrentTime(),
               newResponses,
-              context.getWorkflowInstanceCreationTime());
+              context.getRunStartTime());
       DecisionThread.setWorkflowContext(newContext);
       // Running the workflow again should no longer throw a StopWorkflowExecution exception but
       // rather
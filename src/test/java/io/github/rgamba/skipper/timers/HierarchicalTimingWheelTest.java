@@ -0,0 +1,69 @@
+package io.github.rgamba.skipper.timers;
+
+import static org.junit.Assert.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import lombok.val;
+import org.junit.Test;
+
+public class HierarchicalTimingWheelTest {
+  private final long start = 1662908612003L;
+
+  @Test
+  public void testItemsFireAtTheirDeadline() {
+    val wheel = new HierarchicalTimingWheel<String>(Duration.ofMillis(10), 8, start);
+    assertTrue(wheel.add("a", start + 25));
+    assertTrue(wheel.add("b", start + 5_000)); // Goes to an overflow level
+    assertTrue(wheel.add("c", start + 26));
+    assertEquals(3, wheel.size());
+
+    assertTrue(wheel.advance(start + 24).isEmpty());
+    assertTrue(wheel.nextDeadline() >= start + 25);
+    val due = wheel.advance(start + 30);
+    Collections.sort(due);
+    assertEquals(Arrays.asList("a", "c"), due);
+    assertTrue(wheel.advance(start + 4_999).isEmpty());
+    // Items fire at most one tick after their deadline
+    assertEquals(Collections.singletonList("b"), wheel.advance(start + 5_010));
+    assertTrue(wheel.isEmpty());
+    assertEquals(Long.MAX_VALUE, wheel.nextDeadline());
+  }
+
+  @Test
+  public void testPastDeadlinesAreRejected() {
+    val wheel = new HierarchicalTimingWheel<String>(Duration.ofMillis(10), 8, start);
+    wheel.advance(start + 1_000);
+    assertFalse(wheel.add("late", start));
+    assertTrue(wheel.isEmpty());
+  }
+
+  @Test
+  public void testItemsAreNeverFiredEarly() {
+    val random = new Random(42);
+    val wheel = new HierarchicalTimingWheel<Long>(Duration.ofMillis(10), 16, start);
+    List<Long> deadlines = new ArrayList<>();
+    for (int i = 0; i < 1_000; i++) {
+      long deadline = start + random.nextInt(100_000);
+      deadlines.add(deadline);
+      wheel.add(deadline, deadline);
+    }
+    List<Long> fired = new ArrayList<>();
+    long now = start;
+    while (!wheel.isEmpty()) {
+      now = Math.max(now + 1, Math.min(wheel.nextDeadline(), now + 1_000));
+      for (long deadline : wheel.advance(now)) {
+        assertTrue(deadline <= now);
+        assertTrue(now - deadline < 10);
+        fired.add(deadline);
+      }
+    }
+    Collections.sort(deadlines);
+    Collections.sort(fired);
+    assertEquals(deadlines, fired);
+  }
+}